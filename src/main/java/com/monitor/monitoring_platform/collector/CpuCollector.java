@@ -0,0 +1,44 @@
+//CPU 使用率采集器
+package com.monitor.monitoring_platform.collector;
+
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import com.monitor.monitoring_platform.service.CounterDeltaTracker;
+import com.monitor.monitoring_platform.service.RealSystemDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.function.UnaryOperator;
+
+@Component
+public class CpuCollector implements MetricCollector {
+
+    @Autowired
+    private RealSystemDataService realSystemDataService;
+
+    // 采集器自己的差值基线，与接口调用互不干扰
+    private final CounterDeltaTracker cpuTracker = new CounterDeltaTracker();
+
+    @Value("${monitor.collector.cpu.interval-ms:5000}")
+    private long intervalMs;
+
+    @Value("${monitor.collector.cpu.timeout-ms:2000}")
+    private long timeoutMs;
+
+    @Override
+    public String getName() { return "CPU"; }
+
+    @Override
+    public long getIntervalMs() { return intervalMs; }
+
+    @Override
+    public long getTimeoutMs() { return timeoutMs; }
+
+    @Override
+    public UnaryOperator<MetricsSnapshot> collect() {
+        double cpuUsage = realSystemDataService.getRealCpuUsage(cpuTracker);
+        LocalDateTime now = LocalDateTime.now();
+        return snapshot -> snapshot.withCpuUsage(cpuUsage, now);
+    }
+}
@@ -0,0 +1,42 @@
+//磁盘分区采集器（网络挂载卡住时只会让本采集器超时）
+package com.monitor.monitoring_platform.collector;
+
+import com.monitor.monitoring_platform.entity.DiskInfo;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import com.monitor.monitoring_platform.service.RealSystemDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+@Component
+public class DiskCollector implements MetricCollector {
+
+    @Autowired
+    private RealSystemDataService realSystemDataService;
+
+    @Value("${monitor.collector.disks.interval-ms:30000}")
+    private long intervalMs;
+
+    @Value("${monitor.collector.disks.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Override
+    public String getName() { return "Disks"; }
+
+    @Override
+    public long getIntervalMs() { return intervalMs; }
+
+    @Override
+    public long getTimeoutMs() { return timeoutMs; }
+
+    @Override
+    public UnaryOperator<MetricsSnapshot> collect() {
+        List<DiskInfo> disks = realSystemDataService.getAllDiskUsage();
+        LocalDateTime now = LocalDateTime.now();
+        return snapshot -> snapshot.withDisks(disks, now);
+    }
+}
@@ -0,0 +1,40 @@
+//内存使用率采集器
+package com.monitor.monitoring_platform.collector;
+
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import com.monitor.monitoring_platform.service.RealSystemDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.function.UnaryOperator;
+
+@Component
+public class MemoryCollector implements MetricCollector {
+
+    @Autowired
+    private RealSystemDataService realSystemDataService;
+
+    @Value("${monitor.collector.memory.interval-ms:5000}")
+    private long intervalMs;
+
+    @Value("${monitor.collector.memory.timeout-ms:2000}")
+    private long timeoutMs;
+
+    @Override
+    public String getName() { return "Memory"; }
+
+    @Override
+    public long getIntervalMs() { return intervalMs; }
+
+    @Override
+    public long getTimeoutMs() { return timeoutMs; }
+
+    @Override
+    public UnaryOperator<MetricsSnapshot> collect() {
+        double memoryUsage = realSystemDataService.getRealMemoryUsage();
+        LocalDateTime now = LocalDateTime.now();
+        return snapshot -> snapshot.withMemUsage(memoryUsage, now);
+    }
+}
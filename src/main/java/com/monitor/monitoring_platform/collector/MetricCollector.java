@@ -0,0 +1,34 @@
+//采集器扩展点：每个采集器负责一个组件，声明自己的采集间隔和超时时间
+package com.monitor.monitoring_platform.collector;
+
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 新增采集器只需实现该接口并注册为 Spring Bean，MetricsSamplerService 会自动调度。
+ * 采集器之间并行执行，超过 timeout 的一次采集会被跳过并计为失败，不影响其他采集器。
+ */
+public interface MetricCollector {
+
+    /**
+     * 采集器名称，用于日志和监控指标
+     */
+    String getName();
+
+    /**
+     * 采集间隔（毫秒）
+     */
+    long getIntervalMs();
+
+    /**
+     * 单次采集的超时时间（毫秒）
+     */
+    long getTimeoutMs();
+
+    /**
+     * 执行一次采集，返回把结果合并进快照的函数。
+     * 耗时的采集工作在这里完成，返回的函数只做字段替换，会在 CAS 循环中执行。
+     */
+    UnaryOperator<MetricsSnapshot> collect() throws Exception;
+}
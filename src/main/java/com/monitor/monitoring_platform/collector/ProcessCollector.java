@@ -0,0 +1,40 @@
+//进程数量采集器
+package com.monitor.monitoring_platform.collector;
+
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import com.monitor.monitoring_platform.service.RealSystemDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.function.UnaryOperator;
+
+@Component
+public class ProcessCollector implements MetricCollector {
+
+    @Autowired
+    private RealSystemDataService realSystemDataService;
+
+    @Value("${monitor.collector.processes.interval-ms:10000}")
+    private long intervalMs;
+
+    @Value("${monitor.collector.processes.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Override
+    public String getName() { return "Processes"; }
+
+    @Override
+    public long getIntervalMs() { return intervalMs; }
+
+    @Override
+    public long getTimeoutMs() { return timeoutMs; }
+
+    @Override
+    public UnaryOperator<MetricsSnapshot> collect() {
+        int processCount = realSystemDataService.getRealProcessCount();
+        LocalDateTime now = LocalDateTime.now();
+        return snapshot -> snapshot.withProcessCount(processCount, now);
+    }
+}
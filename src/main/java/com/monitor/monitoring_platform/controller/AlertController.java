@@ -0,0 +1,37 @@
+package com.monitor.monitoring_platform.controller;
+
+import com.monitor.monitoring_platform.entity.AlertRecord;
+import com.monitor.monitoring_platform.service.AlertEnrichmentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/alerts")
+public class AlertController {
+
+    @Autowired
+    private AlertEnrichmentService alertEnrichmentService;
+
+    /**
+     * 最近的告警（含异步生成的 AI 建议）
+     */
+    @GetMapping
+    public List<AlertRecord> getRecentAlerts() {
+        return alertEnrichmentService.getRecentAlerts();
+    }
+
+    /**
+     * 单条告警，AI 建议生成后 suggestionStatus 变为 READY
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<AlertRecord> getAlert(@PathVariable long id) {
+        AlertRecord alert = alertEnrichmentService.getAlert(id);
+        return alert != null ? ResponseEntity.ok(alert) : ResponseEntity.notFound().build();
+    }
+}
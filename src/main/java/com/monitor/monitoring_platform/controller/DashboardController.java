@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.time.LocalDateTime;
@@ -31,22 +32,25 @@ public class DashboardController {
     }
 
     @GetMapping("/history")
-    public String history(Model model) {
+    public String history(@RequestParam(defaultValue = "24") int hours, Model model) {
+        // 最长 30 天，长时间范围读降采样数据
+        hours = Math.max(1, Math.min(hours, 30 * 24));
+        model.addAttribute("hours", hours);
         try {
-            // 获取最近24小时数据
             LocalDateTime endTime = LocalDateTime.now();
-            LocalDateTime startTime = endTime.minusHours(24);
+            LocalDateTime startTime = endTime.minusHours(hours);
 
             List<SystemMetrics> historyData = dashboardService.getHistoryData(startTime, endTime);
             model.addAttribute("historyData", historyData);
             model.addAttribute("startTime", startTime);
             model.addAttribute("endTime", endTime);
+            model.addAttribute("stepMinutes", dashboardService.getHistoryStepMs(startTime, endTime) / 60000);
 
         } catch (Exception e) {
             e.printStackTrace();
             // 如果出错，设置空数据但显示页面
             model.addAttribute("historyData", new ArrayList<>());
-            model.addAttribute("startTime", LocalDateTime.now().minusHours(24));
+            model.addAttribute("startTime", LocalDateTime.now().minusHours(hours));
             model.addAttribute("endTime", LocalDateTime.now());
         }
         return "history";
@@ -3,15 +3,27 @@ package com.monitor.monitoring_platform.controller;
 import com.monitor.monitoring_platform.entity.DiskInfo;
 import com.monitor.monitoring_platform.entity.DiskSpaceAnalysis;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.ingest.IngestRejectedException;
+import com.monitor.monitoring_platform.ingest.MetricWriteBehindService;
+import com.monitor.monitoring_platform.ingest.TextIngestService;
 import com.monitor.monitoring_platform.service.DiskSpaceAnalyzer;
+import com.monitor.monitoring_platform.service.LiveMetricsBroadcaster;
 import com.monitor.monitoring_platform.service.MetricService;
-import com.monitor.monitoring_platform.service.RealSystemDataService;
+import com.monitor.monitoring_platform.service.MetricsSamplerService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api")
@@ -24,18 +36,119 @@ public class MetricController {
     private MetricService metricService;
 
     @Autowired
-    private RealSystemDataService realSystemDataService;
+    private MetricsSamplerService metricsSamplerService;
+
+    @Autowired
+    private MetricWriteBehindService metricWriteBehindService;
+
+    @Autowired
+    private TextIngestService textIngestService;
+
+    @Autowired
+    private LiveMetricsBroadcaster liveMetricsBroadcaster;
 
     @PostMapping("/metrics")
-    public String receiveMetrics(@RequestBody SystemMetrics metricsData) {
+    public ResponseEntity<String> receiveMetrics(@RequestBody SystemMetrics metricsData) {
         try {
-            return metricService.saveMetrics(metricsData);
+            return ResponseEntity.ok(metricService.saveMetrics(metricsData));
+        } catch (IngestRejectedException e) {
+            // 写入缓冲区已满，告诉上报方稍后重试
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            return "数据保存失败: " + e.getMessage();
+            return ResponseEntity.ok("数据保存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量上报：JSON 数组
+     */
+    @PostMapping(value = "/metrics/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> receiveMetricsBatch(@RequestBody List<SystemMetrics> metricsList) {
+        return buildBatchResponse(metricService.saveMetricsBatch(metricsList));
+    }
+
+    /**
+     * 批量上报：NDJSON 流（每行一个 JSON 对象），边读边写
+     */
+    @PostMapping(value = "/metrics/batch", consumes = {"application/x-ndjson", "application/jsonl"})
+    public ResponseEntity<Map<String, Object>> receiveMetricsNdjson(HttpServletRequest request) throws IOException {
+        return buildBatchResponse(metricService.saveMetricsNdjson(request.getReader()));
+    }
+
+    /**
+     * Influx 行协议上报，同时兼容 InfluxDB v2 的写入路径，Telegraf 等可以直接指向本平台
+     */
+    @PostMapping({"/metrics/influx", "/v2/write"})
+    public ResponseEntity<Map<String, Object>> receiveInfluxLines(@RequestParam(required = false) String precision,
+                                                                  HttpServletRequest request) throws IOException {
+        try (InputStream body = openBody(request)) {
+            return buildTextResponse(textIngestService.ingestInflux(body, precision));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Prometheus 文本格式上报
+     *
+     * @param component 样本没有 component 标签时使用的组件名
+     */
+    @PostMapping("/metrics/prometheus")
+    public ResponseEntity<Map<String, Object>> receivePrometheusText(@RequestParam(required = false) String component,
+                                                                     HttpServletRequest request) throws IOException {
+        try (InputStream body = openBody(request)) {
+            return buildTextResponse(textIngestService.ingestPrometheus(body, component));
         }
     }
 
+    /**
+     * 请求体输入流，Content-Encoding 为 gzip 时边读边解压（Telegraf 默认压缩）
+     */
+    private InputStream openBody(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            return new GZIPInputStream(body, 8192);
+        }
+        return body;
+    }
+
+    private ResponseEntity<Map<String, Object>> buildTextResponse(Map<String, Object> response) {
+        if ((Long) response.get("dropped") > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(metricWriteBehindService.getRetryAfterSeconds()))
+                    .body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> buildBatchResponse(List<String> statuses) {
+        int accepted = 0;
+        boolean bufferFull = false;
+        for (String status : statuses) {
+            if ("ok".equals(status)) {
+                accepted++;
+            } else if (MetricService.STATUS_BUFFER_FULL.equals(status)) {
+                bufferFull = true;
+            }
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", statuses.size());
+        response.put("accepted", accepted);
+        response.put("rejected", statuses.size() - accepted);
+        response.put("statuses", statuses);
+
+        if (bufferFull) {
+            // 部分数据因缓冲区已满被拒绝，按 statuses 重试这些条目
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(metricWriteBehindService.getRetryAfterSeconds()))
+                    .body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/metrics/latest")
     public ResponseEntity<List<SystemMetrics>> getLatestMetrics() {
         try {
@@ -51,7 +164,7 @@ public class MetricController {
 
     @GetMapping("/disks")
     public List<DiskInfo> getDiskInfo() {
-        return realSystemDataService.getAllDiskUsage();
+        return metricsSamplerService.getSnapshot().getDisks();
     }
 
     @GetMapping("/metrics/components")
@@ -59,6 +172,19 @@ public class MetricController {
             return metricService.getComponentStatus();
     }
 
+    /**
+     * 组件状态的实时推送（SSE），事件名 components，数据格式同 /metrics/components；
+     * 每次采集后推送一次，页面用 EventSource 订阅，断线后浏览器自动重连
+     */
+    @GetMapping(value = "/metrics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamComponentStatus() {
+        try {
+            return ResponseEntity.ok(liveMetricsBroadcaster.subscribe());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
     @GetMapping("/disk-analysis/{mountPoint}")
     public DiskSpaceAnalysis getDiskAnalysis(@PathVariable String mountPoint) {
         System.out.println("=== 磁盘分析API被调用 ===");
@@ -0,0 +1,221 @@
+package com.monitor.monitoring_platform.controller;
+
+import com.monitor.monitoring_platform.query.QueryEngine;
+import com.monitor.monitoring_platform.query.QueryResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * 与 Prometheus HTTP API 兼容的查询接口，Grafana 等外部仪表盘可以把本平台配置为 Prometheus 数据源。
+ * 表达式由 QueryEngine 求值（读热数据层、时序存储，步长较大时读聚合档位），不直接查询 MySQL 样本表。
+ * 时间参数为 Unix 秒（可带小数）或 RFC 3339，步长为秒数或时长（如 15s、1m）；GET 和表单 POST 都支持。
+ * 返回格式：{"status":"success","data":...}，参数错误时返回 400 和 {"status":"error","errorType":"bad_data","error":...}
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class PrometheusApiController {
+
+    // Double.parseDouble 还接受 1d、NaN 等写法，先按数字格式判断
+    private static final Pattern NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    @Autowired
+    private QueryEngine queryEngine;
+
+    /**
+     * 瞬时查询：time 时刻的值，time 缺省为当前时间
+     * 例：/api/v1/query?query=max by (component) (cpu_usage)&time=1700000000
+     */
+    @RequestMapping(value = "/query", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Map<String, Object>> query(@RequestParam String query,
+                                                     @RequestParam(required = false) String time) {
+        try {
+            long ts = time != null ? parseTime(time) : System.currentTimeMillis();
+            QueryResult result = queryEngine.evaluate(query, ts, ts, 1);
+            Map<String, Object> data = new LinkedHashMap<>();
+            if (result.isScalar()) {
+                data.put("resultType", "scalar");
+                data.put("result", List.of(seconds(ts), format(result.getScalar()[0])));
+            } else {
+                List<Map<String, Object>> vector = new ArrayList<>();
+                for (QueryResult.ResultSeries series : result.getSeries()) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("metric", series.getLabels());
+                    item.put("value", List.of(seconds(ts), format(series.getValues()[0])));
+                    vector.add(item);
+                }
+                data.put("resultType", "vector");
+                data.put("result", vector);
+            }
+            return success(data);
+        } catch (IllegalArgumentException e) {
+            return badData(e.getMessage());
+        }
+    }
+
+    /**
+     * 范围查询：[start, end] 内每隔 step 求值一次，结果为 matrix（标量结果作为一个没有标签的序列）
+     * 例：/api/v1/query_range?query=rate(network_bytes_total[5m])&start=1700000000&end=1700003600&step=60
+     */
+    @RequestMapping(value = "/query_range", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Map<String, Object>> queryRange(@RequestParam String query,
+                                                          @RequestParam String start,
+                                                          @RequestParam String end,
+                                                          @RequestParam String step) {
+        try {
+            long from = parseTime(start);
+            long to = parseTime(end);
+            long stepMs = parseStep(step);
+            QueryResult result = queryEngine.evaluate(query, from, to, stepMs);
+            List<Map<String, Object>> matrix = new ArrayList<>();
+            if (result.isScalar()) {
+                matrix.add(matrixSeries(result, Map.of(), result.getScalar()));
+            } else {
+                for (QueryResult.ResultSeries series : result.getSeries()) {
+                    matrix.add(matrixSeries(result, series.getLabels(), series.getValues()));
+                }
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("resultType", "matrix");
+            data.put("result", matrix);
+            return success(data);
+        } catch (IllegalArgumentException e) {
+            return badData(e.getMessage());
+        }
+    }
+
+    /**
+     * 匹配选择器的序列的标签集合，match[] 至少一个
+     * 例：/api/v1/series?match[]=disk_usage{component=~"Disk-.*"}
+     * start、end 为兼容参数，返回的是所有已注册的序列
+     */
+    @RequestMapping(value = "/series", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Map<String, Object>> series(@RequestParam(name = "match[]", required = false) List<String> match) {
+        if (match == null || match.isEmpty()) {
+            return badData("至少需要一个 match[] 参数");
+        }
+        try {
+            return success(queryEngine.selectSeries(match));
+        } catch (IllegalArgumentException e) {
+            return badData(e.getMessage());
+        }
+    }
+
+    /**
+     * 全部标签名，指定 match[] 时只统计匹配的序列
+     */
+    @RequestMapping(value = "/labels", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<Map<String, Object>> labels(@RequestParam(name = "match[]", required = false) List<String> match) {
+        try {
+            TreeSet<String> names = new TreeSet<>();
+            for (Map<String, String> labels : queryEngine.selectSeries(match != null ? match : List.of())) {
+                names.addAll(labels.keySet());
+            }
+            return success(new ArrayList<>(names));
+        } catch (IllegalArgumentException e) {
+            return badData(e.getMessage());
+        }
+    }
+
+    /**
+     * 标签的全部取值，如 /api/v1/label/component/values（Grafana 的模板变量使用）
+     */
+    @GetMapping("/label/{name}/values")
+    public ResponseEntity<Map<String, Object>> labelValues(@PathVariable String name,
+                                                           @RequestParam(name = "match[]", required = false) List<String> match) {
+        try {
+            TreeSet<String> values = new TreeSet<>();
+            for (Map<String, String> labels : queryEngine.selectSeries(match != null ? match : List.of())) {
+                String value = labels.get(name);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return success(new ArrayList<>(values));
+        } catch (IllegalArgumentException e) {
+            return badData(e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> matrixSeries(QueryResult result, Map<String, String> labels, double[] values) {
+        List<List<Object>> points = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                points.add(List.<Object>of(seconds(result.getTimestamp(i)), format(values[i])));
+            }
+        }
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("metric", labels);
+        item.put("values", points);
+        return item;
+    }
+
+    /**
+     * Unix 秒（可带小数）或 RFC 3339，返回毫秒
+     */
+    private static long parseTime(String text) {
+        if (NUMBER.matcher(text).matches()) {
+            return Math.round(Double.parseDouble(text) * 1000);
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的时间: " + text);
+        }
+    }
+
+    /**
+     * 秒数（可带小数）或时长，返回毫秒
+     */
+    private static long parseStep(String text) {
+        long stepMs = NUMBER.matcher(text).matches()
+                ? Math.round(Double.parseDouble(text) * 1000)
+                : QueryEngine.parseDuration(text);
+        if (stepMs <= 0) {
+            throw new IllegalArgumentException("步长必须大于 0: " + text);
+        }
+        return stepMs;
+    }
+
+    private static BigDecimal seconds(long timestampMs) {
+        return BigDecimal.valueOf(timestampMs, 3);
+    }
+
+    /**
+     * Prometheus 的样本值以字符串返回
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static ResponseEntity<Map<String, Object>> success(Object data) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "success");
+        body.put("data", data);
+        return ResponseEntity.ok(body);
+    }
+
+    private static ResponseEntity<Map<String, Object>> badData(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "error");
+        body.put("errorType", "bad_data");
+        body.put("error", message);
+        return ResponseEntity.badRequest().body(body);
+    }
+}
@@ -0,0 +1,242 @@
+package com.monitor.monitoring_platform.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.query.QueryEngine;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import com.monitor.monitoring_platform.storage.RangeQueryService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+@RestController
+@RequestMapping("/api/query")
+public class QueryController {
+
+    private static final long DEFAULT_RANGE_MS = 3600_000L;
+
+    private static final int EXPRESSION_DEFAULT_POINTS = 250;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int EXPORT_RETRY_AFTER_SECONDS = 5;
+
+    @Autowired
+    private RangeQueryService rangeQueryService;
+
+    @Autowired
+    private MetricStorageService metricStorageService;
+
+    @Autowired
+    private QueryEngine queryEngine;
+
+    /**
+     * 单个序列的范围查询，时间和步长都是毫秒
+     * 例：/api/query/range?component=CPU&metric=cpu_usage&start=...&end=...&step=300000
+     * start 缺省为 end 前一小时，end 缺省为当前时间，step 缺省时按约 1500 个点计算
+     * 图表使用 maxPoints（如图表宽度的像素数）代替 step：返回最多 maxPoints 个点，每点 ts/value，
+     * downsample=lttb（默认，保留形状）或 minmax（保留每段的极值）
+     */
+    @GetMapping("/range")
+    public ResponseEntity<Map<String, Object>> queryRange(@RequestParam String component,
+                                                          @RequestParam String metric,
+                                                          @RequestParam(required = false) Long start,
+                                                          @RequestParam(required = false) Long end,
+                                                          @RequestParam(required = false) Long step,
+                                                          @RequestParam(required = false) Integer maxPoints,
+                                                          @RequestParam(required = false) String downsample) {
+        long to = end != null ? end : System.currentTimeMillis();
+        long from = start != null ? start : to - DEFAULT_RANGE_MS;
+        try {
+            if (maxPoints != null) {
+                if (step != null) {
+                    throw new IllegalArgumentException("step 和 maxPoints 只能指定一个");
+                }
+                return ResponseEntity.ok(rangeQueryService.queryDownsampled(component, metric, from, to,
+                        maxPoints, downsample));
+            }
+            return ResponseEntity.ok(rangeQueryService.queryRange(component, metric, from, to, step));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 多个序列的范围查询，各序列并行读取，仪表盘一次请求取回所有图表的数据
+     * 例：/api/query/ranges?series=CPU:cpu_usage,Memory:mem_usage,Disk-*:disk_usage&start=...&end=...
+     * series 每项为 组件名:指标名，组件名以 * 结尾时按前缀匹配；start、end、step 的含义同 /range
+     */
+    @GetMapping("/ranges")
+    public ResponseEntity<Map<String, Object>> queryRanges(@RequestParam List<String> series,
+                                                           @RequestParam(required = false) Long start,
+                                                           @RequestParam(required = false) Long end,
+                                                           @RequestParam(required = false) Long step) {
+        long to = end != null ? end : System.currentTimeMillis();
+        long from = start != null ? start : to - DEFAULT_RANGE_MS;
+        try {
+            return ResponseEntity.ok(rangeQueryService.queryRanges(series, from, to, step));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 延迟类序列在整个时间范围内的分位数，由聚合桶的草图合并得到
+     * 例：/api/query/quantiles?component=api&metric=response_time_ms&start=...&end=...&q=0.5,0.95,0.99
+     * q 缺省为 0.5,0.95,0.99
+     */
+    @GetMapping("/quantiles")
+    public ResponseEntity<Map<String, Object>> queryQuantiles(@RequestParam String component,
+                                                              @RequestParam String metric,
+                                                              @RequestParam(required = false) Long start,
+                                                              @RequestParam(required = false) Long end,
+                                                              @RequestParam(defaultValue = "0.5,0.95,0.99") List<Double> q) {
+        long to = end != null ? end : System.currentTimeMillis();
+        long from = start != null ? start : to - DEFAULT_RANGE_MS;
+        try {
+            return ResponseEntity.ok(rangeQueryService.queryQuantiles(component, metric, from, to, q));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询表达式的范围求值，时间和步长都是毫秒
+     * 例：/api/query/expr?query=max by (component) (avg_over_time(cpu_usage[5m]))&start=...&end=...&step=60000
+     * start 缺省为 end 前一小时，end 缺省为当前时间，step 缺省时按约 250 个点计算（不小于 1 秒）
+     */
+    @GetMapping("/expr")
+    public ResponseEntity<Map<String, Object>> queryExpression(@RequestParam String query,
+                                                               @RequestParam(required = false) Long start,
+                                                               @RequestParam(required = false) Long end,
+                                                               @RequestParam(required = false) Long step) {
+        long to = end != null ? end : System.currentTimeMillis();
+        long from = start != null ? start : to - DEFAULT_RANGE_MS;
+        long stepMs = step != null ? step : Math.max(1000, (to - from) / EXPRESSION_DEFAULT_POINTS);
+        try {
+            return ResponseEntity.ok(queryEngine.queryRange(query, from, to, stepMs));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 导出 [start, end) 内的原始样本，边读边写，不在内存中汇总结果
+     * 例：/api/query/export?start=...&end=...&format=csv&component=CPU
+     * format=csv（默认，列 component,metric,ts,value）或 json（对象数组）；component、metric 缺省时导出全部序列。
+     * 同时进行的导出数达到 monitor.query.export.max-concurrent 时返回 429
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(required = false) Long start,
+                       @RequestParam(required = false) Long end,
+                       @RequestParam(defaultValue = "csv") String format,
+                       @RequestParam(required = false) String component,
+                       @RequestParam(required = false) String metric,
+                       HttpServletResponse response) throws IOException {
+        long to = end != null ? end : System.currentTimeMillis();
+        long from = start != null ? start : to - DEFAULT_RANGE_MS;
+        boolean json = "json".equalsIgnoreCase(format);
+        if (to <= from || (!json && !"csv".equalsIgnoreCase(format))) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(to <= from ? "{\"error\":\"结束时间必须晚于开始时间\"}"
+                    : "{\"error\":\"format 只支持 csv 或 json\"}");
+            return;
+        }
+        if (!metricStorageService.tryAcquireExport()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(EXPORT_RETRY_AFTER_SECONDS));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"error\":\"同时进行的导出过多，请稍后重试\"}");
+            return;
+        }
+        try {
+            streamExport(from, to, json, component, metric, response);
+        } finally {
+            metricStorageService.releaseExport();
+        }
+    }
+
+    private void streamExport(long from, long to, boolean json, String component, String metric,
+                              HttpServletResponse response) throws IOException {
+        Predicate<MetricSeries> filter = series -> (component == null || component.equals(series.getComponentName()))
+                && (metric == null || metric.equals(series.getMetricName()));
+
+        String fileName = "metrics-" + from + "-" + to + (json ? ".json" : ".csv");
+        response.setContentType(json ? MediaType.APPLICATION_JSON_VALUE : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setBufferSize(EXPORT_BUFFER_SIZE);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8),
+                EXPORT_BUFFER_SIZE);
+        try {
+            if (json) {
+                exportJson(from, to, filter, writer);
+            } else {
+                exportCsv(from, to, filter, writer);
+            }
+        } catch (IOException e) {
+            // 通常是客户端中途断开，响应头已经发出，无法再返回错误
+            System.err.println("导出中断: " + e.getMessage());
+        }
+    }
+
+    private void exportCsv(long from, long to, Predicate<MetricSeries> filter, Writer writer) throws IOException {
+        writer.write("component,metric,ts,value\n");
+        // 先发出表头，首字节时间与结果大小无关
+        writer.flush();
+        metricStorageService.streamSamples(from, to, filter, (series, ts, value) -> {
+            writer.write(csvField(series.getComponentName()));
+            writer.write(',');
+            writer.write(csvField(series.getMetricName()));
+            writer.write(',');
+            writer.write(Long.toString(ts));
+            writer.write(',');
+            writer.write(Double.toString(value));
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    private void exportJson(long from, long to, Predicate<MetricSeries> filter, Writer writer) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartArray();
+            generator.flush();
+            metricStorageService.streamSamples(from, to, filter, (series, ts, value) -> {
+                generator.writeStartObject();
+                generator.writeStringField("component", series.getComponentName());
+                generator.writeStringField("metric", series.getMetricName());
+                generator.writeNumberField("ts", ts);
+                generator.writeNumberField("value", value);
+                generator.writeEndObject();
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
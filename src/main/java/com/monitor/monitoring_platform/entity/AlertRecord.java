@@ -0,0 +1,60 @@
+//告警记录：检测时同步生成，AI 建议由后台任务异步补充
+package com.monitor.monitoring_platform.entity;
+
+import java.time.LocalDateTime;
+
+public class AlertRecord {
+
+    public static final String SUGGESTION_PENDING = "PENDING";
+    public static final String SUGGESTION_READY = "READY";
+    public static final String SUGGESTION_SKIPPED = "SKIPPED";
+    public static final String SUGGESTION_FAILED = "FAILED";
+
+    private final long id;
+    private final String componentName;   // 组件名称
+    private final String alertType;       // 告警类型（超标的指标，如 cpu,response）
+    private final String alertLevel;      // 告警级别
+    private final String message;         // 告警内容
+    private final LocalDateTime createdAt;
+
+    private volatile String suggestions;       // AI 建议
+    private volatile String suggestionStatus;  // PENDING / READY / SKIPPED / FAILED
+    private volatile LocalDateTime suggestedAt;
+
+    public AlertRecord(long id, String componentName, String alertType, String alertLevel, String message) {
+        this.id = id;
+        this.componentName = componentName;
+        this.alertType = alertType;
+        this.alertLevel = alertLevel;
+        this.message = message;
+        this.createdAt = LocalDateTime.now();
+        this.suggestionStatus = SUGGESTION_PENDING;
+    }
+
+    /**
+     * 补充 AI 建议
+     */
+    public void attachSuggestion(String suggestions, String status) {
+        this.suggestions = suggestions;
+        this.suggestedAt = LocalDateTime.now();
+        this.suggestionStatus = status;
+    }
+
+    public long getId() { return id; }
+
+    public String getComponentName() { return componentName; }
+
+    public String getAlertType() { return alertType; }
+
+    public String getAlertLevel() { return alertLevel; }
+
+    public String getMessage() { return message; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public String getSuggestions() { return suggestions; }
+
+    public String getSuggestionStatus() { return suggestionStatus; }
+
+    public LocalDateTime getSuggestedAt() { return suggestedAt; }
+}
@@ -0,0 +1,71 @@
+//SystemMetrics 中各指标列与外部指标名之间的映射，供各种上报协议统一使用
+package com.monitor.monitoring_platform.entity;
+
+public enum MetricField {
+
+    CPU_USAGE("cpu_usage"),
+    MEM_USAGE("mem_usage"),
+    DISK_USAGE("disk_usage"),
+    NETWORK_RATE("network_rate"),
+    PROCESS_COUNT("process_count"),
+    RESPONSE_TIME_MS("response_time_ms");
+
+    private static final MetricField[] VALUES = values();
+
+    private final String metricName;
+
+    MetricField(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * 对外的指标名（与数据库列名一致）
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * 把数值写入 SystemMetrics 对应的字段
+     */
+    public void apply(SystemMetrics metrics, double value) {
+        switch (this) {
+            case CPU_USAGE -> metrics.setCpuUsage(value);
+            case MEM_USAGE -> metrics.setMemUsage(value);
+            case DISK_USAGE -> metrics.setDiskUsage(Math.round(value));
+            case NETWORK_RATE -> metrics.setNetworkRate(value);
+            case PROCESS_COUNT -> metrics.setProcessCount((int) Math.round(value));
+            case RESPONSE_TIME_MS -> metrics.setResponseTimeMS((int) Math.round(value));
+        }
+    }
+
+    /**
+     * 读取 SystemMetrics 中对应字段，未设置时返回 null
+     */
+    public Double read(SystemMetrics metrics) {
+        return switch (this) {
+            case CPU_USAGE -> metrics.getCpuUsage();
+            case MEM_USAGE -> metrics.getMemUsage();
+            case DISK_USAGE -> metrics.getDiskUsage() != null ? metrics.getDiskUsage().doubleValue() : null;
+            case NETWORK_RATE -> metrics.getNetworkRate();
+            case PROCESS_COUNT -> metrics.getProcessCount() != null ? metrics.getProcessCount().doubleValue() : null;
+            case RESPONSE_TIME_MS -> metrics.getResponseTimeMs() != null ? metrics.getResponseTimeMs().doubleValue() : null;
+        };
+    }
+
+    /**
+     * 按指标名查找，找不到返回 null
+     */
+    public static MetricField fromName(String name) {
+        for (MetricField field : VALUES) {
+            if (field.metricName.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    public static MetricField fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+}
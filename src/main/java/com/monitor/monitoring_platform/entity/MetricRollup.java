@@ -0,0 +1,54 @@
+//降采样聚合点，对应数据库表 metric_rollup_1m / 5m / 1h：一个序列在一个时间桶内的 min/max/sum/count/last
+package com.monitor.monitoring_platform.entity;
+
+import java.time.LocalDateTime;
+
+public class MetricRollup {
+    private int seriesId;
+    private LocalDateTime bucket;       // 桶起始时间
+    private double minValue;
+    private double maxValue;
+    private double sumValue;
+    private long sampleCount;
+    private double lastValue;
+    private LocalDateTime lastTs;       // 桶内最后一个样本的时间，合并时据此决定 last
+
+    public MetricRollup() {
+    }
+
+    public MetricRollup(int seriesId, LocalDateTime bucket, double minValue, double maxValue, double sumValue,
+                        long sampleCount, double lastValue, LocalDateTime lastTs) {
+        this.seriesId = seriesId;
+        this.bucket = bucket;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.sumValue = sumValue;
+        this.sampleCount = sampleCount;
+        this.lastValue = lastValue;
+        this.lastTs = lastTs;
+    }
+
+    public int getSeriesId() { return seriesId; }
+    public void setSeriesId(int seriesId) { this.seriesId = seriesId; }
+
+    public LocalDateTime getBucket() { return bucket; }
+    public void setBucket(LocalDateTime bucket) { this.bucket = bucket; }
+
+    public double getMinValue() { return minValue; }
+    public void setMinValue(double minValue) { this.minValue = minValue; }
+
+    public double getMaxValue() { return maxValue; }
+    public void setMaxValue(double maxValue) { this.maxValue = maxValue; }
+
+    public double getSumValue() { return sumValue; }
+    public void setSumValue(double sumValue) { this.sumValue = sumValue; }
+
+    public long getSampleCount() { return sampleCount; }
+    public void setSampleCount(long sampleCount) { this.sampleCount = sampleCount; }
+
+    public double getLastValue() { return lastValue; }
+    public void setLastValue(double lastValue) { this.lastValue = lastValue; }
+
+    public LocalDateTime getLastTs() { return lastTs; }
+    public void setLastTs(LocalDateTime lastTs) { this.lastTs = lastTs; }
+}
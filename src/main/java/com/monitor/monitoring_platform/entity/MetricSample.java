@@ -0,0 +1,22 @@
+//单个样本，对应数据库表 metric_samples：(序列ID, 时间, 值)
+package com.monitor.monitoring_platform.entity;
+
+import java.time.LocalDateTime;
+
+public class MetricSample {
+    private final int seriesId;
+    private final LocalDateTime timestamp;
+    private final double value;
+
+    public MetricSample(int seriesId, LocalDateTime timestamp, double value) {
+        this.seriesId = seriesId;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    public int getSeriesId() { return seriesId; }
+
+    public LocalDateTime getTimestamp() { return timestamp; }
+
+    public double getValue() { return value; }
+}
@@ -0,0 +1,29 @@
+//序列字典实体，对应数据库表 metric_series：一个组件的一个指标（加一组标签）
+package com.monitor.monitoring_platform.entity;
+
+public class MetricSeries {
+    private Integer id;
+    private String componentName; // 组件名称 (CPU, Memory, Disk-C 等)
+    private String metricName;    // 指标名 (cpu_usage, mem_usage 等，见 MetricField)
+    private String tags;          // 附加标签，规范化后的 k=v,k=v；没有时为空串
+
+    public MetricSeries() {}
+
+    public MetricSeries(String componentName, String metricName, String tags) {
+        this.componentName = componentName;
+        this.metricName = metricName;
+        this.tags = tags;
+    }
+
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public String getComponentName() { return componentName; }
+    public void setComponentName(String componentName) { this.componentName = componentName; }
+
+    public String getMetricName() { return metricName; }
+    public void setMetricName(String metricName) { this.metricName = metricName; }
+
+    public String getTags() { return tags; }
+    public void setTags(String tags) { this.tags = tags; }
+}
@@ -0,0 +1,28 @@
+//分位数草图，对应数据库表 metric_sketch_1m / 5m / 1h：一个序列在一个时间桶内的 DDSketch 序列化结果
+package com.monitor.monitoring_platform.entity;
+
+import java.time.LocalDateTime;
+
+public class MetricSketch {
+    private int seriesId;
+    private LocalDateTime bucket;       // 桶起始时间，与聚合表一致
+    private byte[] sketch;              // DDSketch.encode()
+
+    public MetricSketch() {
+    }
+
+    public MetricSketch(int seriesId, LocalDateTime bucket, byte[] sketch) {
+        this.seriesId = seriesId;
+        this.bucket = bucket;
+        this.sketch = sketch;
+    }
+
+    public int getSeriesId() { return seriesId; }
+    public void setSeriesId(int seriesId) { this.seriesId = seriesId; }
+
+    public LocalDateTime getBucket() { return bucket; }
+    public void setBucket(LocalDateTime bucket) { this.bucket = bucket; }
+
+    public byte[] getSketch() { return sketch; }
+    public void setSketch(byte[] sketch) { this.sketch = sketch; }
+}
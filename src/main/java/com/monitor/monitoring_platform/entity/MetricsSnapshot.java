@@ -0,0 +1,126 @@
+//一次完整采集的只读快照，由后台采样器发布，所有实时接口共享同一份
+package com.monitor.monitoring_platform.entity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MetricsSnapshot {
+
+    private static final MetricsSnapshot EMPTY =
+            new MetricsSnapshot(0.0, 0.0, 0.0, 0, List.of(), null);
+
+    private final double cpuUsage;        // CPU使用率
+    private final double memUsage;        // 内存使用率
+    private final double networkRate;     // 网络速率(MB/s)
+    private final int processCount;       // 进程数量
+    private final List<DiskInfo> disks;   // 磁盘分区（不可变列表）
+    private final LocalDateTime collectedAt; // 采集时间，为 null 表示尚未采集
+
+    public MetricsSnapshot(double cpuUsage, double memUsage, double networkRate, int processCount,
+                           List<DiskInfo> disks, LocalDateTime collectedAt) {
+        this.cpuUsage = cpuUsage;
+        this.memUsage = memUsage;
+        this.networkRate = networkRate;
+        this.processCount = processCount;
+        this.disks = List.copyOf(disks);
+        this.collectedAt = collectedAt;
+    }
+
+    /**
+     * 采样器第一次采集完成前使用的空快照
+     */
+    public static MetricsSnapshot empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return collectedAt == null;
+    }
+
+    public double getCpuUsage() { return cpuUsage; }
+
+    public double getMemUsage() { return memUsage; }
+
+    public double getNetworkRate() { return networkRate; }
+
+    public int getProcessCount() { return processCount; }
+
+    public List<DiskInfo> getDisks() { return disks; }
+
+    public LocalDateTime getCollectedAt() { return collectedAt; }
+
+    // ===== 按组件更新，返回新快照（原快照不变） =====
+
+    public MetricsSnapshot withCpuUsage(double value, LocalDateTime at) {
+        return new MetricsSnapshot(value, memUsage, networkRate, processCount, disks, at);
+    }
+
+    public MetricsSnapshot withMemUsage(double value, LocalDateTime at) {
+        return new MetricsSnapshot(cpuUsage, value, networkRate, processCount, disks, at);
+    }
+
+    public MetricsSnapshot withNetworkRate(double value, LocalDateTime at) {
+        return new MetricsSnapshot(cpuUsage, memUsage, value, processCount, disks, at);
+    }
+
+    public MetricsSnapshot withProcessCount(int value, LocalDateTime at) {
+        return new MetricsSnapshot(cpuUsage, memUsage, networkRate, value, disks, at);
+    }
+
+    public MetricsSnapshot withDisks(List<DiskInfo> value, LocalDateTime at) {
+        return new MetricsSnapshot(cpuUsage, memUsage, networkRate, processCount, value, at);
+    }
+
+    /**
+     * 所有磁盘的总使用量(GB)
+     */
+    public long getTotalDiskUsage() {
+        long totalUsed = 0;
+        for (DiskInfo disk : disks) {
+            totalUsed += disk.getUsedSpace();
+        }
+        return totalUsed;
+    }
+
+    /**
+     * 展开成按组件划分的入库记录（CPU、Memory、Network、Processes、Disk-*）
+     */
+    public List<SystemMetrics> toMetrics() {
+        List<SystemMetrics> metrics = new ArrayList<>(4 + disks.size());
+
+        SystemMetrics cpuMetric = new SystemMetrics();
+        cpuMetric.setComponentName("CPU");
+        cpuMetric.setCpuUsage(cpuUsage);
+        cpuMetric.setTimestamp(collectedAt);
+        metrics.add(cpuMetric);
+
+        SystemMetrics memoryMetric = new SystemMetrics();
+        memoryMetric.setComponentName("Memory");
+        memoryMetric.setMemUsage(memUsage);
+        memoryMetric.setTimestamp(collectedAt);
+        metrics.add(memoryMetric);
+
+        SystemMetrics networkMetric = new SystemMetrics();
+        networkMetric.setComponentName("Network");
+        networkMetric.setNetworkRate(networkRate);
+        networkMetric.setTimestamp(collectedAt);
+        metrics.add(networkMetric);
+
+        SystemMetrics processMetric = new SystemMetrics();
+        processMetric.setComponentName("Processes");
+        processMetric.setProcessCount(processCount);
+        processMetric.setTimestamp(collectedAt);
+        metrics.add(processMetric);
+
+        for (DiskInfo disk : disks) {
+            SystemMetrics diskMetric = new SystemMetrics();
+            diskMetric.setComponentName("Disk-" + disk.getMountPoint().replace(":", "").replace("/", ""));
+            diskMetric.setDiskUsage(disk.getUsedSpace());
+            diskMetric.setTimestamp(collectedAt);
+            metrics.add(diskMetric);
+        }
+
+        return metrics;
+    }
+}
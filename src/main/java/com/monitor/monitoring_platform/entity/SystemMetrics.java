@@ -1,15 +1,9 @@
-//系统指标实体，对应数据库表 system_metrics，用来存储每一次采集的监控数据
+//系统指标行：一个组件在某一时刻的各项指标。入库时拆成 metric_samples 样本，查询时再按 (组件, 时间) 透视回来
 package com.monitor.monitoring_platform.entity;
 
-import com.baomidou.mybatisplus.annotation.IdType;
-import com.baomidou.mybatisplus.annotation.TableId;
-import com.baomidou.mybatisplus.annotation.TableName;
-
 import java.time.LocalDateTime;
 
-@TableName("system_metrics")
 public class SystemMetrics {
-    @TableId(type = IdType.AUTO)
     private Long id;
 
     // 改为监控电脑组件
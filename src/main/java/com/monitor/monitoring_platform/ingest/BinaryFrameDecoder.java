@@ -0,0 +1,173 @@
+//二进制上报协议解码器：每个连接（或 UDP 来源）一个实例，按帧解码，逐条回调不创建对象
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 帧格式（大端）：
+ * <pre>
+ * frame   = u32 长度（不含自身） + u8 类型 + 负载
+ * 类型 1 定义序列：重复 [varint 序列ID][u16 名称长度][UTF-8 "组件/指标名"]，如 "CPU/cpu_usage"
+ * 类型 2 样本：    i64 基准时间戳(ms) + varint 样本数 + 重复 [varint 序列ID][zigzag varint 时间增量(ms)][f64 值]
+ * </pre>
+ * 时间增量相对于同一帧中上一条样本（第一条相对于基准时间戳）。
+ * 序列定义只在当前连接内有效，先定义后使用；未定义的序列ID直接跳过。
+ */
+public class BinaryFrameDecoder {
+
+    public static final byte TYPE_DEFINE = 1;
+    public static final byte TYPE_SAMPLES = 2;
+
+    private static final int MAX_SERIES_ID = 65535;
+
+    // 序列字典：序列ID -> 组件名 / 指标
+    private String[] componentNames = new String[64];
+    private MetricField[] fields = new MetricField[64];
+
+    // 单帧上限，不能超过连接读缓冲区的大小，否则永远凑不齐一帧
+    private final int maxFrameLength;
+
+    private long decodedSamples;
+
+    public BinaryFrameDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 解码缓冲区中所有完整的帧，不完整的帧留在缓冲区中等待更多数据。
+     * 调用前 buffer 处于读模式，返回后 position 指向第一个未消费的字节。
+     *
+     * @return 本次解码的样本数
+     * @throws IllegalStateException 帧格式错误（连接应关闭）
+     */
+    public int decode(ByteBuffer buffer, MetricSampleSink sink) {
+        int samples = 0;
+        while (buffer.remaining() >= 4) {
+            int frameStart = buffer.position();
+            int length = buffer.getInt(frameStart);
+            if (length <= 0 || length > maxFrameLength - 4) {
+                throw new IllegalStateException("非法帧长度: " + length);
+            }
+            if (buffer.remaining() < 4 + length) {
+                break;
+            }
+
+            int frameEnd = frameStart + 4 + length;
+            buffer.position(frameStart + 4);
+            byte type = buffer.get();
+            if (type == TYPE_DEFINE) {
+                decodeDefinitions(buffer, frameEnd);
+            } else if (type == TYPE_SAMPLES) {
+                samples += decodeSamples(buffer, frameEnd, sink);
+            }
+            // 未知类型整帧跳过，便于协议扩展
+            buffer.position(frameEnd);
+        }
+        decodedSamples += samples;
+        return samples;
+    }
+
+    public long getDecodedSamples() {
+        return decodedSamples;
+    }
+
+    private void decodeDefinitions(ByteBuffer buffer, int frameEnd) {
+        while (buffer.position() < frameEnd) {
+            int seriesId = readSeriesId(buffer);
+            int nameLength = buffer.getShort() & 0xFFFF;
+            if (buffer.position() + nameLength > frameEnd) {
+                throw new IllegalStateException("非法序列定义: " + seriesId);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            int slash = name.lastIndexOf('/');
+            MetricField field = slash > 0 ? MetricField.fromName(name.substring(slash + 1)) : null;
+            ensureCapacity(seriesId);
+            componentNames[seriesId] = field != null ? name.substring(0, slash).intern() : null;
+            fields[seriesId] = field;
+        }
+    }
+
+    private int decodeSamples(ByteBuffer buffer, int frameEnd, MetricSampleSink sink) {
+        long timestamp = buffer.getLong();
+        long count = readVarLong(buffer);
+        int decoded = 0;
+        for (long i = 0; i < count && buffer.position() < frameEnd; i++) {
+            int seriesId = readSeriesId(buffer);
+            long delta = readVarLong(buffer);
+            timestamp += (delta >>> 1) ^ -(delta & 1);  // zigzag 解码
+            double value = buffer.getDouble();
+
+            if (seriesId < fields.length && fields[seriesId] != null) {
+                sink.accept(componentNames[seriesId], fields[seriesId], timestamp, value);
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * 序列ID 先按 long 检查范围再转 int，过大的 varint 截断后可能变成负数
+     */
+    private static int readSeriesId(ByteBuffer buffer) {
+        long seriesId = readVarLong(buffer);
+        if (seriesId < 0 || seriesId > MAX_SERIES_ID) {
+            throw new IllegalStateException("非法序列ID: " + seriesId);
+        }
+        return (int) seriesId;
+    }
+
+    private void ensureCapacity(int seriesId) {
+        if (seriesId < fields.length) {
+            return;
+        }
+        int size = fields.length;
+        while (size <= seriesId) {
+            size <<= 1;
+        }
+        String[] newNames = new String[size];
+        MetricField[] newFields = new MetricField[size];
+        System.arraycopy(componentNames, 0, newNames, 0, componentNames.length);
+        System.arraycopy(fields, 0, newFields, 0, fields.length);
+        componentNames = newNames;
+        fields = newFields;
+    }
+
+    /**
+     * 读取无符号 varint（每字节 7 位，最高位表示后面还有）
+     */
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("varint 过长");
+            }
+        }
+    }
+
+    // ===== 编码（供客户端、测试和压测使用） =====
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
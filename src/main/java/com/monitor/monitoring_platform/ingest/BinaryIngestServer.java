@@ -0,0 +1,279 @@
+//二进制上报监听：单个 NIO selector 线程同时处理 TCP 和 UDP，解码后走与 REST 相同的入库流程
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.service.MetricService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 协议见 {@link BinaryFrameDecoder}。TCP 每个连接一份序列字典，UDP 按来源地址各一份；
+ * 每个数据报必须包含完整的帧。
+ * 读缓冲区是池化的直接内存，连接关闭后归还；样本解码时不创建对象，
+ * 由 MetricRowAssembler 合并成 SystemMetrics 行后按批交给 MetricService.ingestAll。
+ * 写入缓冲区满时样本直接丢弃并计数（二进制协议没有应答通道，不做重试）。
+ */
+@Component
+@ConditionalOnProperty(prefix = "monitor.ingest.binary", name = "enabled", havingValue = "true")
+public class BinaryIngestServer {
+
+    private static final String PROTOCOL_TCP = "binary-tcp";
+    private static final String PROTOCOL_UDP = "binary-udp";
+
+    // 最多记住的 UDP 来源数，超过后淘汰最久未发送的来源
+    private static final int MAX_UDP_SOURCES = 1024;
+
+    @Autowired
+    private MetricService metricService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.ingest.binary.bind-address:0.0.0.0}")
+    private String bindAddress;
+
+    @Value("${monitor.ingest.binary.tcp-port:9100}")
+    private int tcpPort;
+
+    @Value("${monitor.ingest.binary.udp-port:9101}")
+    private int udpPort;
+
+    @Value("${monitor.ingest.binary.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${monitor.ingest.binary.max-connections:1024}")
+    private int maxConnections;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private DatagramChannel datagramChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    // 以下状态只在 selector 线程中访问
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private ByteBuffer datagramBuffer;
+    private final Map<SocketAddress, BinaryFrameDecoder> udpDecoders =
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SocketAddress, BinaryFrameDecoder> eldest) {
+                    return size() > MAX_UDP_SOURCES;
+                }
+            };
+    private int connectionCount;
+
+    private MetricRowAssembler tcpAssembler;
+    private MetricRowAssembler udpAssembler;
+    private Counter tcpBytes;
+    private Counter udpBytes;
+    private Counter udpMalformed;
+
+    @PostConstruct
+    public void start() throws IOException {
+        tcpAssembler = new MetricRowAssembler(metricService, meterRegistry, PROTOCOL_TCP);
+        udpAssembler = new MetricRowAssembler(metricService, meterRegistry, PROTOCOL_UDP);
+        tcpBytes = Counter.builder("monitor.ingest.bytes").tag("protocol", PROTOCOL_TCP).register(meterRegistry);
+        udpBytes = Counter.builder("monitor.ingest.bytes").tag("protocol", PROTOCOL_UDP).register(meterRegistry);
+        udpMalformed = Counter.builder("monitor.ingest.malformed").tag("protocol", PROTOCOL_UDP).register(meterRegistry);
+        datagramBuffer = ByteBuffer.allocateDirect(bufferSize);
+
+        selector = Selector.open();
+        if (tcpPort > 0) {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(bindAddress, tcpPort));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        if (udpPort > 0) {
+            datagramChannel = DatagramChannel.open();
+            datagramChannel.bind(new InetSocketAddress(bindAddress, udpPort));
+            datagramChannel.configureBlocking(false);
+            datagramChannel.register(selector, SelectionKey.OP_READ);
+        }
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "binary-ingest");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        System.out.println("二进制上报监听已启动 TCP:" + tcpPort + " UDP:" + udpPort);
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select(1000);
+            } catch (IOException e) {
+                System.err.println("二进制上报 select 失败: " + e.getMessage());
+                continue;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                } else if (key.channel() == datagramChannel) {
+                    receiveDatagrams();
+                } else if (key.isReadable()) {
+                    readConnection(key);
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                if (connectionCount >= maxConnections) {
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(acquireBuffer(), bufferSize));
+                connectionCount++;
+            }
+        } catch (IOException e) {
+            System.err.println("接受二进制上报连接失败: " + e.getMessage());
+        }
+    }
+
+    private void readConnection(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+        try {
+            int n = ((SocketChannel) key.channel()).read(buffer);
+            if (n < 0) {
+                close(key);
+                return;
+            }
+            tcpBytes.increment(n);
+
+            buffer.flip();
+            try {
+                connection.decoder.decode(buffer, tcpAssembler);
+            } finally {
+                tcpAssembler.flush();
+            }
+            buffer.compact();
+        } catch (IOException | IllegalStateException | BufferUnderflowException e) {
+            System.err.println("二进制上报连接异常，已关闭: " + e.getMessage());
+            close(key);
+        } catch (RuntimeException e) {
+            // 解码或入库的意外错误只关闭这个连接，不能让唯一的 select 线程退出
+            System.err.println("处理二进制上报连接出错，已关闭: " + e);
+            close(key);
+        }
+    }
+
+    private void receiveDatagrams() {
+        try {
+            SocketAddress source;
+            while ((source = datagramChannel.receive(datagramBuffer)) != null) {
+                datagramBuffer.flip();
+                udpBytes.increment(datagramBuffer.remaining());
+                try {
+                    decodeDatagram(source);
+                } catch (RuntimeException e) {
+                    // 意外错误只丢弃这个数据报，不能让唯一的 select 线程退出
+                    udpMalformed.increment();
+                    System.err.println("处理二进制上报数据报出错，已丢弃: " + e);
+                } finally {
+                    datagramBuffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("接收二进制上报数据报失败: " + e.getMessage());
+        }
+    }
+
+    private void decodeDatagram(SocketAddress source) {
+        BinaryFrameDecoder decoder = udpDecoders.computeIfAbsent(source, s -> new BinaryFrameDecoder(bufferSize));
+        try {
+            decoder.decode(datagramBuffer, udpAssembler);
+        } catch (IllegalStateException | BufferUnderflowException e) {
+            // 格式错误的数据报整个丢弃
+            udpMalformed.increment();
+        } finally {
+            udpAssembler.flush();
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+        Connection connection = (Connection) key.attachment();
+        if (connection != null) {
+            releaseBuffer(connection.buffer);
+        }
+        connectionCount--;
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.push(buffer);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (selectorThread != null) {
+            selectorThread.join(5000);
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("关闭二进制上报监听失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一个 TCP 连接的读缓冲区和序列字典
+     */
+    private static final class Connection {
+        private final ByteBuffer buffer;
+        private final BinaryFrameDecoder decoder;
+
+        private Connection(ByteBuffer buffer, int maxFrameLength) {
+            this.buffer = buffer;
+            this.decoder = new BinaryFrameDecoder(maxFrameLength);
+        }
+    }
+}
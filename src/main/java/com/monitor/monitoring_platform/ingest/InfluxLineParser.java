@@ -0,0 +1,198 @@
+//Influx 行协议解析：measurement[,tag=v...] field=v[,field=v...] [timestamp]
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 映射规则：
+ * <ul>
+ *   <li>组件：component 标签，没有时用 measurement 名</li>
+ *   <li>指标：字段名与平台指标名一致（cpu_usage、mem_usage 等）；
+ *       字段名为 value 时用 measurement 名作为指标名，如 {@code cpu_usage,component=CPU value=12.5}</li>
+ *   <li>字符串、布尔字段以及其他未知字段计入 unmapped</li>
+ * </ul>
+ * 其他标签只跳过，不创建字符串。时间戳精度由请求参数指定，缺省时使用请求到达时间。
+ */
+public class InfluxLineParser extends TextLineParser {
+
+    private static final byte[] COMPONENT_TAG = "component".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_FIELD = "value".getBytes(StandardCharsets.US_ASCII);
+
+    private final TimeUnit precision;
+    private final long defaultTimestampMs;
+
+    public InfluxLineParser(NameInterner interner, MetricSampleSink sink, TimeUnit precision, long defaultTimestampMs) {
+        super(interner, sink);
+        this.precision = precision;
+        this.defaultTimestampMs = defaultTimestampMs;
+    }
+
+    /**
+     * 解析 Influx 的 precision 参数（ns/us/ms/s），缺省为 ns
+     */
+    public static TimeUnit parsePrecision(String precision) {
+        if (precision == null || precision.isEmpty()) {
+            return TimeUnit.NANOSECONDS;
+        }
+        switch (precision) {
+            case "ns":
+                return TimeUnit.NANOSECONDS;
+            case "us":
+            case "u":
+                return TimeUnit.MICROSECONDS;
+            case "ms":
+                return TimeUnit.MILLISECONDS;
+            case "s":
+                return TimeUnit.SECONDS;
+            default:
+                throw new IllegalArgumentException("不支持的时间精度: " + precision);
+        }
+    }
+
+    @Override
+    protected void parseLine(byte[] bytes, int start, int end) {
+        // measurement
+        int pos = start;
+        boolean escaped = false;
+        while (pos < end && bytes[pos] != ',' && bytes[pos] != ' ') {
+            if (bytes[pos] == '\\') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        int measurementStart = start;
+        int measurementEnd = Math.min(pos, end);
+        boolean measurementEscaped = escaped;
+        if (measurementEnd == measurementStart) {
+            throw new IllegalArgumentException("缺少 measurement");
+        }
+
+        // 标签：只关心 component
+        String componentName = null;
+        while (pos < end && bytes[pos] == ',') {
+            int keyStart = ++pos;
+            pos = scanUntil(bytes, pos, end, (byte) '=');
+            int keyEnd = pos++;
+            int valueStart = pos;
+            escaped = false;
+            while (pos < end && bytes[pos] != ',' && bytes[pos] != ' ') {
+                if (bytes[pos] == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+                pos++;
+            }
+            if (pos > end || valueStart == pos) {
+                throw new IllegalArgumentException("非法标签");
+            }
+            if (regionEquals(bytes, keyStart, keyEnd, COMPONENT_TAG)) {
+                componentName = internName(bytes, valueStart, pos, escaped);
+            }
+        }
+        if (pos >= end || bytes[pos] != ' ') {
+            throw new IllegalArgumentException("缺少字段");
+        }
+        pos++;
+
+        // 先找到字段区的结尾，才能拿到行尾的时间戳
+        int fieldsStart = pos;
+        boolean inString = false;
+        while (pos < end && (inString || bytes[pos] != ' ')) {
+            if (bytes[pos] == '\\') {
+                pos++;
+            } else if (bytes[pos] == '"') {
+                inString = !inString;
+            }
+            pos++;
+        }
+        int fieldsEnd = Math.min(pos, end);
+        if (fieldsEnd == fieldsStart) {
+            throw new IllegalArgumentException("缺少字段");
+        }
+
+        long timestampMs = defaultTimestampMs;
+        while (pos < end && bytes[pos] == ' ') {
+            pos++;
+        }
+        if (pos < end) {
+            timestampMs = precision.toMillis(parseLong(bytes, pos, end));
+        }
+
+        if (componentName == null) {
+            componentName = internName(bytes, measurementStart, measurementEnd, measurementEscaped);
+        }
+
+        // 逐个字段
+        pos = fieldsStart;
+        while (pos < fieldsEnd) {
+            int keyStart = pos;
+            pos = scanUntil(bytes, pos, fieldsEnd, (byte) '=');
+            int keyEnd = pos++;
+            if (pos >= fieldsEnd) {
+                throw new IllegalArgumentException("非法字段");
+            }
+
+            if (bytes[pos] == '"') {
+                // 字符串字段跳到闭合引号之后
+                pos++;
+                while (pos < fieldsEnd && bytes[pos] != '"') {
+                    pos += bytes[pos] == '\\' ? 2 : 1;
+                }
+                pos++;
+                skipUnmapped();
+            } else {
+                int valueStart = pos;
+                pos = scanUntil(bytes, pos, fieldsEnd, (byte) ',');
+                emitField(bytes, keyStart, keyEnd, valueStart, pos,
+                        measurementStart, measurementEnd, componentName, timestampMs);
+            }
+            if (pos < fieldsEnd && bytes[pos] != ',') {
+                throw new IllegalArgumentException("非法字段");
+            }
+            pos++;
+        }
+    }
+
+    private void emitField(byte[] bytes, int keyStart, int keyEnd, int valueStart, int valueEnd,
+                           int measurementStart, int measurementEnd, String componentName, long timestampMs) {
+        if (valueEnd == valueStart) {
+            throw new IllegalArgumentException("字段缺少值");
+        }
+        MetricField field = matchField(bytes, keyStart, keyEnd);
+        if (field == null && regionEquals(bytes, keyStart, keyEnd, VALUE_FIELD)) {
+            field = matchField(bytes, measurementStart, measurementEnd);
+        }
+
+        byte last = bytes[valueEnd - 1];
+        double value;
+        if (last == 'i' || last == 'u') {
+            value = parseLong(bytes, valueStart, valueEnd - 1);
+        } else if ((last >= '0' && last <= '9') || last == '.') {
+            value = parseDouble(bytes, valueStart, valueEnd);
+        } else {
+            // 布尔字段 t/true/f/false
+            skipUnmapped();
+            return;
+        }
+
+        if (field == null || !Double.isFinite(value)) {
+            skipUnmapped();
+            return;
+        }
+        emit(componentName, field, timestampMs, value);
+    }
+
+    /**
+     * 跳过反斜杠转义，找到第一个 stop 的位置（找不到返回 end）
+     */
+    private static int scanUntil(byte[] bytes, int pos, int end, byte stop) {
+        while (pos < end && bytes[pos] != stop) {
+            pos += bytes[pos] == '\\' ? 2 : 1;
+        }
+        return Math.min(pos, end);
+    }
+}
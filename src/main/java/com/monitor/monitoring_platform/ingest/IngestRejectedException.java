@@ -0,0 +1,16 @@
+//写入缓冲区已满时抛出，接口据此返回 429 和重试时间
+package com.monitor.monitoring_platform.ingest;
+
+public class IngestRejectedException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public IngestRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
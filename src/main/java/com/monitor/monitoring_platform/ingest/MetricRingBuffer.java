@@ -0,0 +1,93 @@
+//有界无锁环形缓冲区：多个生产者并发写入，单个写入线程批量取出
+package com.monitor.monitoring_platform.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 基于序号槽位的环形队列（Vyukov bounded queue）：
+ * 每个槽位带一个序号，生产者 CAS 抢占写位置，消费者按序号判断槽位是否已写好，全程无锁。
+ * 队列满时 offer 直接返回 false，由调用方决定拒绝还是重试，不会阻塞请求线程。
+ */
+public class MetricRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();  // 下一个写位置
+    private final AtomicLong head = new AtomicLong();  // 下一个读位置
+
+    public MetricRingBuffer(int requestedCapacity) {
+        int size = 1;
+        while (size < requestedCapacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 写入一个元素，队列已满返回 false
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            long diff = sequence - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 槽位还没被消费，队列已满
+                return false;
+            }
+            // diff > 0：其他生产者已占用该位置，重读 tail
+        }
+    }
+
+    /**
+     * 取出最多 maxElements 个元素追加到 target，返回实际取出的数量（仅限单个消费者调用）
+     */
+    public int drainTo(List<E> target, int maxElements) {
+        int drained = 0;
+        long position = head.get();
+        while (drained < maxElements) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                // 槽位尚未写好（或队列为空）
+                break;
+            }
+            target.add(elements.get(index));
+            elements.set(index, null);
+            sequences.set(index, position + capacity);
+            position++;
+            drained++;
+        }
+        head.set(position);
+        return drained;
+    }
+
+    /**
+     * 当前排队的元素数量（近似值）
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
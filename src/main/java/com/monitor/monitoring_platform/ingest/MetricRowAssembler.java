@@ -0,0 +1,130 @@
+//把逐条样本合并成 SystemMetrics 行，交给 MetricService 走与 REST 相同的校验、缓冲和告警流程
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.service.MetricService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 连续的、同组件同时间戳的样本合并成一行，组件或时间戳变化时上一行完成。
+ * 完成的行攒够 BATCH_ROWS 行或调用 {@link #flush()} 时一次提交（开启预写日志时一次追加、一次刷盘）。
+ * 调用方在一批数据结束后必须调用 {@link #flush()}。非线程安全，每个连接或请求一个实例。
+ */
+public class MetricRowAssembler implements MetricSampleSink {
+
+    private static final int BATCH_ROWS = 256;
+
+    private final MetricService metricService;
+    private final Counter samplesCounter;
+    private final Counter droppedCounter;
+
+    private SystemMetrics pending;
+    private String pendingComponent;
+    private long pendingTimestamp;
+    private int pendingSamples;
+
+    // 已完成、尚未提交的行和每行的样本数
+    private final List<SystemMetrics> rows = new ArrayList<>();
+    private final List<Integer> rowSamples = new ArrayList<>();
+
+    private long accepted;
+    private long dropped;
+    private long rejected;
+
+    public MetricRowAssembler(MetricService metricService, MeterRegistry meterRegistry, String protocol) {
+        this.metricService = metricService;
+        this.samplesCounter = Counter.builder("monitor.ingest.samples").tag("protocol", protocol).register(meterRegistry);
+        this.droppedCounter = Counter.builder("monitor.ingest.dropped").tag("protocol", protocol).register(meterRegistry);
+    }
+
+    @Override
+    public void accept(String componentName, MetricField field, long timestampMs, double value) {
+        // 组件名通常已驻留，先比较引用
+        if (pending != null && (timestampMs != pendingTimestamp
+                || (componentName != pendingComponent && !componentName.equals(pendingComponent)))) {
+            completeRow();
+            if (rows.size() >= BATCH_ROWS) {
+                submit();
+            }
+        }
+        if (pending == null) {
+            pending = new SystemMetrics();
+            pending.setComponentName(componentName);
+            pending.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneId.systemDefault()));
+            pendingComponent = componentName;
+            pendingTimestamp = timestampMs;
+        }
+        field.apply(pending, value);
+        pendingSamples++;
+    }
+
+    /**
+     * 提交当前未完成的行和所有未提交的行
+     */
+    public void flush() {
+        completeRow();
+        submit();
+    }
+
+    private void completeRow() {
+        if (pending == null) {
+            return;
+        }
+        rows.add(pending);
+        rowSamples.add(pendingSamples);
+        pending = null;
+        pendingComponent = null;
+        pendingSamples = 0;
+    }
+
+    private void submit() {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> statuses = metricService.ingestAll(rows, null);
+        for (int i = 0; i < statuses.size(); i++) {
+            String status = statuses.get(i);
+            int samples = rowSamples.get(i);
+            if ("ok".equals(status)) {
+                accepted += samples;
+                samplesCounter.increment(samples);
+            } else if (MetricService.STATUS_BUFFER_FULL.equals(status)) {
+                dropped += samples;
+                droppedCounter.increment(samples);
+            } else {
+                rejected += samples;
+            }
+        }
+        rows.clear();
+        rowSamples.clear();
+    }
+
+    /**
+     * 已进入写入缓冲区的样本数
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * 因写入缓冲区已满被丢弃的样本数
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * 校验失败的样本数
+     */
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,12 @@
+//上报协议解码后的单条样本回调，各种协议（二进制、Influx 行协议、Prometheus 文本）共用
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+
+/**
+ * 参数都是基本类型或已缓存的对象，解码器逐条回调时不需要创建对象
+ */
+public interface MetricSampleSink {
+
+    void accept(String componentName, MetricField field, long timestampMs, double value);
+}
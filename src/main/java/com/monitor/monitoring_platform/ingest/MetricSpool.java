@@ -0,0 +1,284 @@
+//本地磁盘暂存：数据库不可用时写入线程把数据写到本地文件，恢复后按限速补写，避免丢数据和恢复瞬间的写入洪峰
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 状态：
+ * <ul>
+ *   <li>正常：数据直接写入存储</li>
+ *   <li>暂存：某批写入因数据库不可用失败后进入，之后的批次直接写本地文件，不再逐批等待连接超时；
+ *       每隔 retry-interval-ms 用一小批暂存数据试探一次</li>
+ *   <li>补写：试探成功后回到正常写入，暂存数据按 drain-rate 行/秒限速写入存储，补写期间新数据照常直接写入</li>
+ * </ul>
+ * 文件格式与预写日志相同（一个 WriteAheadLog 实例，目录 monitor.ingest.spool.dir），
+ * 每批暂存后立即刷盘，写入线程随即把这批记为已写入，预写日志可以正常截断。
+ * 补写按整段读入内存，整段写完后删除；补写中途重启时该段从头再写一次（样本表按主键覆盖）。
+ * 只由写入线程调用（健康检查和指标除外），不需要额外加锁。
+ */
+@Component
+public class MetricSpool implements HealthIndicator {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.ingest.spool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.ingest.spool.dir:data/spool}")
+    private String directory;
+
+    @Value("${monitor.ingest.spool.segment-bytes:8388608}")
+    private long segmentBytes;
+
+    @Value("${monitor.ingest.spool.drain-rate:2000}")
+    private int drainRate;
+
+    @Value("${monitor.ingest.spool.retry-interval-ms:5000}")
+    private long retryIntervalMs;
+
+    private WriteAheadLog log;
+
+    // 数据库不可用，新数据写入暂存
+    private volatile boolean spooling;
+    private volatile long spoolingSince;
+    private volatile String lastError;
+    private long nextRetryAt;
+
+    // 暂存写入失败（磁盘问题），这批数据已丢失
+    private volatile String spoolError;
+
+    // 已读入内存、待补写的一段：loaded[loadedIndex..] 未写，写完后下一段从 loadedEnd 开始
+    private List<SystemMetrics> loaded = new ArrayList<>();
+    private int loadedIndex;
+    private long loadedStart;
+    private long loadedEnd;
+    private volatile long drainedSequence;
+
+    // 令牌桶限速
+    private double tokens;
+    private long tokensUpdatedAt;
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        WriteAheadLog spoolLog = new WriteAheadLog(Paths.get(directory), segmentBytes, WriteAheadLog.FsyncPolicy.NONE);
+        try {
+            spoolLog.open();
+        } catch (IOException e) {
+            System.err.println("打开本地暂存失败，数据库不可用时数据将丢失: " + e.getMessage());
+            return;
+        }
+        log = spoolLog;
+        drainedSequence = spoolLog.getReplayFrom();
+        loadedStart = drainedSequence;
+        loadedEnd = drainedSequence;
+
+        Gauge.builder("monitor.ingest.spool.rows", this, MetricSpool::getBacklog)
+                .description("本地暂存中待补写的行数")
+                .register(meterRegistry);
+        Gauge.builder("monitor.ingest.spool.bytes", spoolLog, WriteAheadLog::getSizeBytes).register(meterRegistry);
+        if (getBacklog() > 0) {
+            System.out.println("本地暂存中有 " + getBacklog() + " 行待补写");
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.println("关闭本地暂存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return log != null;
+    }
+
+    /**
+     * 当前是否处于暂存状态（数据库不可用）
+     */
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    /**
+     * 异常是否表示数据库暂时不可用（连接失败、超时、死锁等），其他错误（如数据本身有问题）重试也不会成功
+     */
+    public static boolean isUnavailable(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof DataAccessResourceFailureException || e instanceof TransientDataAccessException
+                    || e instanceof RecoverableDataAccessException || e instanceof SQLTransientException
+                    || e instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 进入暂存状态
+     */
+    public void markUnavailable(Exception error) {
+        if (!spooling) {
+            spooling = true;
+            spoolingSince = System.currentTimeMillis();
+            System.err.println("数据库不可用，数据写入本地暂存: " + error.getMessage());
+        }
+        lastError = error.getMessage();
+        nextRetryAt = System.currentTimeMillis() + retryIntervalMs;
+    }
+
+    /**
+     * 把一批数据写入暂存并刷盘，失败返回 false（数据丢失）
+     */
+    public boolean spool(List<SystemMetrics> batch) {
+        try {
+            for (SystemMetrics row : batch) {
+                if (row.getComponentName() != null && row.getTimestamp() != null) {
+                    log.append(row);
+                }
+            }
+            log.sync();
+            spoolError = null;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            spoolError = e.getMessage();
+            System.err.println("写入本地暂存失败（" + batch.size() + " 条）: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 待补写的下一批（不超过 maxRows 和限速允许的行数），不该补写时返回空列表。
+     * 返回的数据写入成功后调用 drained，失败时不调用，下次返回同一批
+     */
+    public List<SystemMetrics> nextDrainBatch(int maxRows) throws IOException {
+        if (log == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        if (spooling && now < nextRetryAt) {
+            return List.of();
+        }
+        if (loadedIndex >= loaded.size() && !loadNextSegment()) {
+            return List.of();
+        }
+        int limit = Math.min(maxRows, loaded.size() - loadedIndex);
+        if (spooling) {
+            // 试探时只写一小批
+            limit = Math.min(limit, 10);
+        } else {
+            refillTokens(now);
+            limit = Math.min(limit, (int) tokens);
+        }
+        return limit > 0 ? loaded.subList(loadedIndex, loadedIndex + limit) : List.of();
+    }
+
+    /**
+     * 上一次 nextDrainBatch 返回的前 count 行已写入存储（或确认无法写入、放弃），同时表示数据库可用
+     */
+    public void drained(int count) throws IOException {
+        if (spooling) {
+            spooling = false;
+            System.out.println("数据库已恢复，开始补写本地暂存的 " + getBacklog() + " 行");
+            tokensUpdatedAt = System.currentTimeMillis();
+            tokens = 0;
+        } else {
+            tokens -= count;
+        }
+        loadedIndex += count;
+        drainedSequence = loadedStart + loadedIndex;
+        if (loadedIndex >= loaded.size()) {
+            finishSegment();
+            if (getBacklog() == 0) {
+                System.out.println("本地暂存已全部补写");
+            }
+        }
+    }
+
+    /**
+     * 待补写的行数（含尚未读入内存的段）
+     */
+    public long getBacklog() {
+        return log != null ? Math.max(0, log.getNextSequence() - drainedSequence) : 0;
+    }
+
+    @Override
+    public Health health() {
+        if (log == null) {
+            return enabled ? Health.unknown().withDetail("error", "本地暂存未能打开").build()
+                    : Health.unknown().withDetail("enabled", false).build();
+        }
+        Health.Builder builder = spoolError != null ? Health.down().withDetail("spoolError", spoolError) : Health.up();
+        builder.withDetail("state", spooling ? "spooling" : getBacklog() > 0 ? "draining" : "normal")
+                .withDetail("backlogRows", getBacklog())
+                .withDetail("spoolBytes", log.getSizeBytes());
+        if (spooling) {
+            builder.withDetail("since", Instant.ofEpochMilli(spoolingSince).toString());
+        }
+        if (lastError != null) {
+            builder.withDetail("lastError", lastError);
+        }
+        return builder.build();
+    }
+
+    private boolean loadNextSegment() throws IOException {
+        List<SystemMetrics> rows = new ArrayList<>();
+        long end = log.readSealed(loadedEnd, rows::add);
+        if (end == loadedEnd) {
+            return false;
+        }
+        loadedStart = loadedEnd;
+        loadedEnd = end;
+        loaded = rows;
+        loadedIndex = 0;
+        if (rows.isEmpty()) {
+            // 段里没有完整记录，直接删除
+            finishSegment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 当前段已全部写入存储，删除段文件
+     */
+    private void finishSegment() throws IOException {
+        drainedSequence = loadedEnd;
+        log.truncate(loadedEnd, Long.MAX_VALUE);
+    }
+
+    private void refillTokens(long now) {
+        if (tokensUpdatedAt == 0) {
+            tokensUpdatedAt = now;
+        }
+        tokens = Math.min(drainRate, tokens + (now - tokensUpdatedAt) * drainRate / 1000.0);
+        tokensUpdatedAt = now;
+    }
+}
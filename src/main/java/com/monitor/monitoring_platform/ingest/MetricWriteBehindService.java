@@ -0,0 +1,503 @@
+//异步写入服务：接口只把数据放进环形缓冲区，由专门的写入线程批量写库
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 数据库延迟不再传导到上报方：请求线程只做一次无锁入队，
+ * 写入线程攒够 batch-size 条或距第一条待写数据超过 flush-interval-ms 时执行一次多行 INSERT。
+ * 缓冲区满时入队失败，接口返回 429 并带 Retry-After，而不是堆积请求线程。
+ * <p>
+ * 开启预写日志（monitor.ingest.wal.enabled）后，入队的同时追加到 WriteAheadLog，一批数据一次追加、一次等待刷盘，
+ * 启动时写入线程先把上次未持久化的记录重放进存储，再处理新数据。
+ * 日志的截断以“已写入存储”和“存储已持久化”两者为准：MySQL 写入返回即可截断，
+ * 时序存储要等头块写成段文件。重放是至少一次的：样本表和时序存储会去重，
+ * 已写入聚合表的桶中重放的样本会再计一次。
+ * <p>
+ * 数据库不可用时写入失败的批次及之后的批次写入本地暂存（MetricSpool），恢复后由写入线程限速补写。
+ */
+@Service
+public class MetricWriteBehindService {
+
+    @Autowired
+    private MetricStorageService metricStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MetricSpool metricSpool;
+
+    @Value("${monitor.ingest.buffer-capacity:65536}")
+    private int bufferCapacity;
+
+    @Value("${monitor.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${monitor.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${monitor.ingest.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Value("${monitor.ingest.wal.enabled:true}")
+    private boolean walEnabled;
+
+    @Value("${monitor.ingest.wal.dir:data/wal}")
+    private String walDir;
+
+    @Value("${monitor.ingest.wal.fsync:interval}")
+    private String walFsync;
+
+    @Value("${monitor.ingest.wal.fsync-interval-ms:1000}")
+    private long walFsyncIntervalMs;
+
+    @Value("${monitor.ingest.wal.segment-bytes:67108864}")
+    private long walSegmentBytes;
+
+    @Value("${monitor.ingest.wal.checkpoint-interval-ms:10000}")
+    private long walCheckpointIntervalMs;
+
+    private MetricRingBuffer<SystemMetrics> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private WriteAheadLog wal;
+    private ScheduledExecutorService walExecutor;
+
+    // 此序号之前的日志记录都已写入存储（只由写入线程修改）
+    private volatile long appliedSequence;
+
+    // 有批次因数据库不可用（且无法暂存）写入失败后不再推进 appliedSequence，失败的记录留在日志中，下次启动时重放；
+    // 数据本身有问题的批次重放也不会成功，丢弃后照常推进
+    private volatile boolean walStalled;
+
+    // 追加日志失败后本次运行不再记录日志
+    private volatile boolean walFailed;
+
+    private Counter rejectedCounter;
+    private Counter flushFailureCounter;
+    private Counter discardedCounter;
+    private Counter walFailureCounter;
+    private DistributionSummary batchSizeSummary;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        buffer = new MetricRingBuffer<>(bufferCapacity);
+
+        Gauge.builder("monitor.ingest.queue.depth", buffer, MetricRingBuffer::size)
+                .description("等待写库的样本数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("monitor.ingest.rejected")
+                .description("缓冲区已满被拒绝的样本数")
+                .register(meterRegistry);
+        flushFailureCounter = Counter.builder("monitor.ingest.flush.failures")
+                .register(meterRegistry);
+        discardedCounter = Counter.builder("monitor.ingest.discarded")
+                .description("数据本身有问题、写库失败后丢弃的行数")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("monitor.ingest.batch.size")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("monitor.ingest.flush.latency")
+                .register(meterRegistry);
+        walFailureCounter = Counter.builder("monitor.ingest.wal.failures")
+                .description("预写日志追加或刷盘失败次数")
+                .register(meterRegistry);
+        if (walEnabled) {
+            openWal();
+        }
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "metric-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 放入一条样本，缓冲区已满返回 false
+     */
+    public boolean offer(SystemMetrics metrics) {
+        return offerAll(List.of(metrics)) == 1;
+    }
+
+    /**
+     * 放入一批样本，返回从头开始连续放入的条数：缓冲区放不下时其后的行都不放入（调用方按缓冲区已满处理）。
+     * 开启预写日志时整批一次追加、一次等待刷盘，而不是每条一次
+     */
+    public int offerAll(List<SystemMetrics> rows) {
+        if (wal == null || walFailed) {
+            return offerToBuffer(rows);
+        }
+        // 存储会丢弃没有组件名或时间戳的行，不必入队和记日志
+        List<SystemMetrics> logged = new ArrayList<>(rows.size());
+        for (SystemMetrics row : rows) {
+            if (row.getComponentName() != null && row.getTimestamp() != null) {
+                logged.add(row);
+            }
+        }
+        List<SystemMetrics> batch;
+        long sequence;
+        synchronized (wal) {
+            if (walFailed) {
+                return offerToBuffer(rows);
+            }
+            // 开启日志时入队都在这把锁内：先按剩余容量截取再追加，追加后入队一定成功，
+            // 不会有记了日志却不在缓冲区的行；缓冲区中的顺序与日志序号一致
+            batch = logged.subList(0, Math.min(logged.size(), buffer.capacity() - buffer.size()));
+            try {
+                sequence = wal.appendAll(batch);
+            } catch (IllegalArgumentException e) {
+                // 数据本身无法编码，日志没有写入
+                walFailureCounter.increment();
+                rejectedCounter.increment(rows.size());
+                System.err.println("追加预写日志失败: " + e.getMessage());
+                return 0;
+            } catch (IOException | RuntimeException e) {
+                // 日志末尾可能留下不完整的记录：本次运行不再追加，也不再截断，已有的记录下次启动时重放。
+                // 数据照常入队，只是失去了崩溃保护
+                walFailed = true;
+                walStalled = true;
+                walFailureCounter.increment();
+                System.err.println("追加预写日志失败，本次运行不再记录日志，从序号 " + appliedSequence + " 起不再截断: "
+                        + e.getMessage());
+                return offerToBuffer(rows);
+            }
+            for (SystemMetrics row : batch) {
+                buffer.offer(row);
+            }
+        }
+        if (sequence >= 0) {
+            try {
+                wal.awaitDurable(sequence);
+            } catch (IOException e) {
+                walFailureCounter.increment();
+                System.err.println("预写日志刷盘失败: " + e.getMessage());
+            }
+        }
+        if (batch.size() == logged.size()) {
+            return rows.size();
+        }
+        rejectedCounter.increment(logged.size() - batch.size());
+        // 第一条没有放入的行之前的都算放入（包括跳过的行）
+        SystemMetrics firstRejected = logged.get(batch.size());
+        int index = 0;
+        while (rows.get(index) != firstRejected) {
+            index++;
+        }
+        return index;
+    }
+
+    private int offerToBuffer(List<SystemMetrics> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (!buffer.offer(rows.get(i))) {
+                rejectedCounter.increment(rows.size() - i);
+                return i;
+            }
+        }
+        return rows.size();
+    }
+
+    /**
+     * 放入一条样本，缓冲区已满抛出 IngestRejectedException
+     */
+    public void enqueue(SystemMetrics metrics) {
+        if (!offer(metrics)) {
+            throw new IngestRejectedException("写入缓冲区已满，请稍后重试", retryAfterSeconds);
+        }
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * 写入线程主循环：按数量或时间触发批量写入
+     */
+    private void writeLoop() {
+        if (wal != null) {
+            replayWal();
+        }
+        List<SystemMetrics> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        long firstPendingAt = 0;
+
+        while (running || buffer.size() > 0) {
+            drainSpool();
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            if (drained > 0 && firstPendingAt == 0) {
+                firstPendingAt = System.nanoTime();
+            }
+
+            boolean full = batch.size() >= batchSize;
+            boolean due = !batch.isEmpty() && System.nanoTime() - firstPendingAt >= flushIntervalNanos;
+            if (full || due || (!running && !batch.isEmpty())) {
+                flush(batch);
+                batch.clear();
+                firstPendingAt = 0;
+            } else if (drained == 0) {
+                // 没有新数据，短暂休眠，避免空转
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<SystemMetrics> batch) {
+        long start = System.nanoTime();
+        try {
+            if (metricSpool.isSpooling()) {
+                // 数据库不可用期间不再逐批等待连接超时
+                markApplied(batch.size(), spoolBatch(batch));
+                return;
+            }
+            metricStorageService.write(batch);
+            batchSizeSummary.record(batch.size());
+            markApplied(batch.size(), true);
+        } catch (Exception e) {
+            if (metricSpool.isEnabled() && MetricSpool.isUnavailable(e)) {
+                metricSpool.markUnavailable(e);
+                markApplied(batch.size(), spoolBatch(batch));
+                return;
+            }
+            markApplied(batch.size(), discardFailed("批量写库失败", batch.size(), e));
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // ===== 本地暂存 =====
+
+    private boolean spoolBatch(List<SystemMetrics> batch) {
+        if (metricSpool.spool(batch)) {
+            return true;
+        }
+        flushFailureCounter.increment();
+        return false;
+    }
+
+    /**
+     * 补写一批暂存数据（限速，数据库仍不可用时按重试间隔试探）
+     */
+    private void drainSpool() {
+        if (!metricSpool.isEnabled() || metricSpool.getBacklog() == 0) {
+            return;
+        }
+        List<SystemMetrics> rows;
+        try {
+            rows = metricSpool.nextDrainBatch(batchSize);
+        } catch (IOException e) {
+            System.err.println("读取本地暂存失败: " + e.getMessage());
+            return;
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        int count = rows.size();
+        try {
+            metricStorageService.write(rows);
+        } catch (Exception e) {
+            if (MetricSpool.isUnavailable(e)) {
+                metricSpool.markUnavailable(e);
+                return;
+            }
+            // 数据本身的问题，重试也不会成功
+            flushFailureCounter.increment();
+            System.err.println("补写暂存数据失败，已丢弃（" + count + " 条）: " + e.getMessage());
+        }
+        try {
+            metricSpool.drained(count);
+        } catch (IOException e) {
+            System.err.println("删除已补写的暂存文件失败: " + e.getMessage());
+        }
+    }
+
+    // ===== 预写日志 =====
+
+    private void openWal() {
+        WriteAheadLog.FsyncPolicy policy = WriteAheadLog.FsyncPolicy.valueOf(walFsync.toUpperCase(Locale.ROOT));
+        WriteAheadLog log = new WriteAheadLog(Paths.get(walDir), walSegmentBytes, policy);
+        try {
+            log.open();
+        } catch (IOException e) {
+            // 不影响写入，只是没有崩溃保护
+            System.err.println("打开预写日志失败，本次运行不记录日志: " + e.getMessage());
+            return;
+        }
+        wal = log;
+        appliedSequence = log.getReplayFrom();
+
+        Gauge.builder("monitor.ingest.wal.segments", log, WriteAheadLog::getSegmentCount).register(meterRegistry);
+        Gauge.builder("monitor.ingest.wal.bytes", log, WriteAheadLog::getSizeBytes).register(meterRegistry);
+
+        walExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metric-wal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == WriteAheadLog.FsyncPolicy.INTERVAL) {
+            walExecutor.scheduleWithFixedDelay(this::syncWal, walFsyncIntervalMs, walFsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        walExecutor.scheduleWithFixedDelay(this::checkpointWal,
+                walCheckpointIntervalMs, walCheckpointIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("预写日志已打开: " + Paths.get(walDir).toAbsolutePath() + "，刷盘策略 " + policy
+                + "，待重放 " + (log.getReplayTo() - log.getReplayFrom()) + " 条");
+    }
+
+    /**
+     * 在写入线程上把上次未持久化的记录按批写入存储，已写入段文件的样本跳过
+     */
+    private void replayWal() {
+        long total = wal.getReplayTo() - wal.getReplayFrom();
+        if (total == 0) {
+            return;
+        }
+        Map<Integer, Long> persistedUpTo = metricStorageService.getPersistedUpTo();
+        List<SystemMetrics> batch = new ArrayList<>(batchSize);
+        boolean[] failed = {false};
+        try {
+            long replayed = wal.replay(row -> {
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    failed[0] |= !writeReplayed(batch, persistedUpTo);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                failed[0] |= !writeReplayed(batch, persistedUpTo);
+            }
+            System.out.println("预写日志重放完成: " + replayed + " 条");
+        } catch (IOException e) {
+            failed[0] = true;
+            System.err.println("读取预写日志失败: " + e.getMessage());
+        }
+        if (failed[0]) {
+            stallWal();
+        } else {
+            // 段文件末尾损坏时重放的条数可能少于序号范围，以序号范围为准
+            appliedSequence = wal.getReplayTo();
+        }
+    }
+
+    private boolean writeReplayed(List<SystemMetrics> batch, Map<Integer, Long> persistedUpTo) {
+        try {
+            if (metricSpool.isSpooling()) {
+                return spoolBatch(batch);
+            }
+            metricStorageService.write(batch, persistedUpTo);
+            return true;
+        } catch (Exception e) {
+            if (metricSpool.isEnabled() && MetricSpool.isUnavailable(e)) {
+                metricSpool.markUnavailable(e);
+                return spoolBatch(batch);
+            }
+            return discardFailed("重放预写日志写库失败", batch.size(), e);
+        }
+    }
+
+    /**
+     * 记录一次写库失败，返回这批数据是否已丢弃（视同已写入，日志照常截断）：
+     * 约束冲突、数据格式等错误重放也会同样失败，与补写暂存数据一样丢弃；
+     * 数据库不可用（未启用暂存）时返回 false，记录留在日志中等重启后重放
+     */
+    private boolean discardFailed(String message, int count, Exception e) {
+        flushFailureCounter.increment();
+        if (MetricSpool.isUnavailable(e)) {
+            System.err.println(message + "（" + count + " 条）: " + e.getMessage());
+            return false;
+        }
+        discardedCounter.increment(count);
+        System.err.println(message + "，已丢弃（" + count + " 条）: " + e.getMessage());
+        return true;
+    }
+
+    private void markApplied(int count, boolean success) {
+        if (wal == null) {
+            return;
+        }
+        if (!success) {
+            stallWal();
+        } else if (!walStalled) {
+            appliedSequence += count;
+        }
+    }
+
+    private void stallWal() {
+        if (!walStalled) {
+            walStalled = true;
+            System.err.println("有数据未能写入存储，预写日志从序号 " + appliedSequence + " 起不再截断，下次启动时重放");
+        }
+    }
+
+    private void syncWal() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            walFailureCounter.increment();
+            System.err.println("预写日志刷盘失败: " + e.getMessage());
+        }
+    }
+
+    private void checkpointWal() {
+        try {
+            // 先读已写入的序号再读持久化时间，这两个值之间写入的数据只会让截断更保守
+            long applied = appliedSequence;
+            long unpersistedFrom = metricStorageService.getUnpersistedFrom();
+            int removed = wal.truncate(applied, unpersistedFrom);
+            if (removed > 0) {
+                System.out.println("预写日志已截断 " + removed + " 个段文件");
+            }
+        } catch (Exception e) {
+            walFailureCounter.increment();
+            System.err.println("预写日志截断失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止时把缓冲区里剩余的数据写完
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (wal != null) {
+            walExecutor.shutdownNow();
+            checkpointWal();
+            try {
+                wal.close();
+            } catch (IOException e) {
+                System.err.println("关闭预写日志失败: " + e.getMessage());
+            }
+        }
+    }
+}
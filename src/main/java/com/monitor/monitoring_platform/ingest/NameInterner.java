@@ -0,0 +1,83 @@
+//字节区间 -> 字符串的驻留表：相同的指标名、标签名只创建一次 String
+package com.monitor.monitoring_platform.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 开放寻址、容量固定的无锁表，多个请求线程可以同时查找和插入。
+ * 命中时只比较字节，不创建对象；表满或探测过长时直接返回新字符串（不缓存），
+ * 所以大量一次性名称（如带随机后缀的标签值）不会让表无限增长。
+ */
+public class NameInterner {
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+
+    /**
+     * @param capacity 表容量，向上取整为 2 的幂
+     */
+    public NameInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 返回 bytes[start, end) 对应的字符串（UTF-8）
+     */
+    public String intern(byte[] bytes, int start, int end) {
+        int hash = hash(bytes, start, end);
+        int index = hash & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            Entry entry = table.get(index);
+            if (entry == null) {
+                Entry created = new Entry(hash, bytes, start, end);
+                if (table.compareAndSet(index, null, created)) {
+                    return created.value;
+                }
+                entry = table.get(index);
+            }
+            if (entry.matches(hash, bytes, start, end)) {
+                return entry.value;
+            }
+            index = (index + 1) & mask;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] key;
+        private final String value;
+
+        private Entry(int hash, byte[] bytes, int start, int end) {
+            this.hash = hash;
+            this.key = new byte[end - start];
+            System.arraycopy(bytes, start, key, 0, key.length);
+            this.value = new String(key, StandardCharsets.UTF_8).intern();
+        }
+
+        private boolean matches(int hash, byte[] bytes, int start, int end) {
+            if (this.hash != hash || key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != bytes[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
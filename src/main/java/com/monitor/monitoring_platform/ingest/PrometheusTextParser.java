@@ -0,0 +1,113 @@
+//Prometheus 文本格式解析：metric_name{label="v",...} value [timestamp_ms]
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 映射规则：
+ * <ul>
+ *   <li>指标：指标名与平台指标名一致（cpu_usage、mem_usage 等），其他指标计入 unmapped</li>
+ *   <li>组件：component 标签，没有时用请求指定的默认组件；两者都没有时计入 unmapped</li>
+ *   <li>NaN/Inf 样本计入 unmapped</li>
+ * </ul>
+ * # HELP / # TYPE 等注释行直接跳过；时间戳单位为毫秒，缺省时使用请求到达时间。
+ */
+public class PrometheusTextParser extends TextLineParser {
+
+    private static final byte[] COMPONENT_LABEL = "component".getBytes(StandardCharsets.US_ASCII);
+
+    private final String defaultComponent;
+    private final long defaultTimestampMs;
+
+    public PrometheusTextParser(NameInterner interner, MetricSampleSink sink,
+                                String defaultComponent, long defaultTimestampMs) {
+        super(interner, sink);
+        this.defaultComponent = defaultComponent;
+        this.defaultTimestampMs = defaultTimestampMs;
+    }
+
+    @Override
+    protected void parseLine(byte[] bytes, int start, int end) {
+        int pos = start;
+        while (pos < end && bytes[pos] != '{' && bytes[pos] != ' ' && bytes[pos] != '\t') {
+            pos++;
+        }
+        int nameEnd = pos;
+        if (nameEnd == start) {
+            throw new IllegalArgumentException("缺少指标名");
+        }
+
+        String componentName = defaultComponent;
+        if (pos < end && bytes[pos] == '{') {
+            pos++;
+            while (true) {
+                while (pos < end && (bytes[pos] == ' ' || bytes[pos] == ',')) {
+                    pos++;
+                }
+                if (pos >= end) {
+                    throw new IllegalArgumentException("标签未闭合");
+                }
+                if (bytes[pos] == '}') {
+                    pos++;
+                    break;
+                }
+
+                int keyStart = pos;
+                while (pos < end && bytes[pos] != '=' && bytes[pos] != ' ') {
+                    pos++;
+                }
+                int keyEnd = pos;
+                while (pos < end && bytes[pos] == ' ') {
+                    pos++;
+                }
+                if (pos + 1 >= end || bytes[pos] != '=' || bytes[pos + 1] != '"') {
+                    throw new IllegalArgumentException("非法标签");
+                }
+                pos += 2;
+
+                int valueStart = pos;
+                boolean escaped = false;
+                while (pos < end && bytes[pos] != '"') {
+                    if (bytes[pos] == '\\') {
+                        escaped = true;
+                        pos++;
+                    }
+                    pos++;
+                }
+                if (pos >= end) {
+                    throw new IllegalArgumentException("标签值未闭合");
+                }
+                if (regionEquals(bytes, keyStart, keyEnd, COMPONENT_LABEL) && pos > valueStart) {
+                    componentName = internName(bytes, valueStart, pos, escaped);
+                }
+                pos++;
+            }
+        }
+
+        // 值
+        while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+            pos++;
+        }
+        int valueStart = pos;
+        while (pos < end && bytes[pos] != ' ' && bytes[pos] != '\t') {
+            pos++;
+        }
+        int valueEnd = pos;
+
+        // 可选的时间戳
+        while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+            pos++;
+        }
+        long timestampMs = pos < end ? parseLong(bytes, pos, end) : defaultTimestampMs;
+
+        MetricField field = matchField(bytes, start, nameEnd);
+        double value = parseDouble(bytes, valueStart, valueEnd);
+        if (field == null || componentName == null || !Double.isFinite(value)) {
+            skipUnmapped();
+            return;
+        }
+        emit(componentName, field, timestampMs, value);
+    }
+}
@@ -0,0 +1,84 @@
+//文本协议上报：Influx 行协议和 Prometheus 文本格式，现有采集器（Telegraf、各种 exporter）可以直接推送
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.service.MetricService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求体按流读取、逐行解析，解析结果经 MetricRowAssembler 进入与 REST 相同的写入流程。
+ * 名称驻留表在所有请求间共享，常见的组件名在整个进程中只有一份。
+ */
+@Service
+public class TextIngestService {
+
+    public static final String PROTOCOL_INFLUX = "influx";
+    public static final String PROTOCOL_PROMETHEUS = "prometheus";
+
+    @Autowired
+    private MetricService metricService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final NameInterner nameInterner;
+
+    public TextIngestService(@Value("${monitor.ingest.text.intern-capacity:4096}") int internCapacity) {
+        this.nameInterner = new NameInterner(internCapacity);
+    }
+
+    /**
+     * 解析 Influx 行协议
+     *
+     * @param precision 时间戳精度 ns/us/ms/s，缺省为 ns
+     */
+    public Map<String, Object> ingestInflux(InputStream in, String precision) throws IOException {
+        TimeUnit unit = InfluxLineParser.parsePrecision(precision);
+        MetricRowAssembler assembler = new MetricRowAssembler(metricService, meterRegistry, PROTOCOL_INFLUX);
+        InfluxLineParser parser = new InfluxLineParser(nameInterner, assembler, unit, System.currentTimeMillis());
+        return run(parser, assembler, in, PROTOCOL_INFLUX);
+    }
+
+    /**
+     * 解析 Prometheus 文本格式
+     *
+     * @param defaultComponent 样本没有 component 标签时使用的组件名，可为 null
+     */
+    public Map<String, Object> ingestPrometheus(InputStream in, String defaultComponent) throws IOException {
+        MetricRowAssembler assembler = new MetricRowAssembler(metricService, meterRegistry, PROTOCOL_PROMETHEUS);
+        String component = defaultComponent == null || defaultComponent.isBlank() ? null : defaultComponent;
+        PrometheusTextParser parser = new PrometheusTextParser(nameInterner, assembler, component, System.currentTimeMillis());
+        return run(parser, assembler, in, PROTOCOL_PROMETHEUS);
+    }
+
+    private Map<String, Object> run(TextLineParser parser, MetricRowAssembler assembler,
+                                    InputStream in, String protocol) throws IOException {
+        try {
+            parser.parse(in);
+        } finally {
+            assembler.flush();
+            Counter.builder("monitor.ingest.bytes").tag("protocol", protocol)
+                    .register(meterRegistry).increment(parser.getBytesRead());
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("lines", parser.getLines());
+        response.put("samples", parser.getSamples());
+        response.put("accepted", assembler.getAccepted());
+        response.put("dropped", assembler.getDropped());
+        response.put("rejected", assembler.getRejected());
+        response.put("unmapped", parser.getUnmapped());
+        response.put("malformed", parser.getMalformed());
+        response.put("errors", parser.getErrors());
+        return response;
+    }
+}
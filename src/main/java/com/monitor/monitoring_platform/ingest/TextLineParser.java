@@ -0,0 +1,317 @@
+//文本行协议解析的公共部分：流式读入复用的字节缓冲区，按行在字节上解析，不为每行创建字符串
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 子类只实现 {@link #parseLine}，在 buffer[start, end) 上直接解析一行。
+ * 名称经 NameInterner 驻留，数值直接从字节解析；只有出错时才创建描述字符串。
+ * 每个请求一个实例，非线程安全。
+ */
+public abstract class TextLineParser {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+    private static final int MAX_ERRORS = 10;
+
+    private static final MetricField[] FIELDS = MetricField.values();
+    private static final byte[][] FIELD_NAMES = new byte[FIELDS.length][];
+
+    static {
+        for (int i = 0; i < FIELDS.length; i++) {
+            FIELD_NAMES[i] = FIELDS[i].getMetricName().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // 10 的幂，用于快速路径的精确浮点换算
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final NameInterner interner;
+    private final MetricSampleSink sink;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    // 反转义用的临时缓冲区
+    private byte[] scratch = new byte[256];
+
+    private long lineNumber;
+    private long lines;
+    private long samples;
+    private long unmapped;
+    private long malformed;
+    private long bytesRead;
+    private final List<String> errors = new ArrayList<>();
+
+    protected TextLineParser(NameInterner interner, MetricSampleSink sink) {
+        this.interner = interner;
+        this.sink = sink;
+    }
+
+    /**
+     * 解析一行（不含换行符），格式错误时抛出 IllegalArgumentException
+     */
+    protected abstract void parseLine(byte[] bytes, int start, int end);
+
+    /**
+     * 读完整个输入流，逐行解析
+     */
+    public void parse(InputStream in) throws IOException {
+        int length = 0;      // 缓冲区中的有效字节数
+        int scanFrom = 0;    // 尚未检查换行符的位置
+        boolean skipping = false; // 当前行超长，丢弃到下一个换行
+
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += n;
+            bytesRead += n;
+
+            int lineStart = 0;
+            for (int i = scanFrom; i < length; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                if (skipping) {
+                    skipping = false;
+                } else {
+                    handleLine(lineStart, i);
+                }
+                lineStart = i + 1;
+            }
+
+            // 把未完成的行移到缓冲区开头
+            int remaining = length - lineStart;
+            if (lineStart > 0) {
+                System.arraycopy(buffer, lineStart, buffer, 0, remaining);
+            }
+            length = remaining;
+            scanFrom = remaining;
+
+            if (length == buffer.length) {
+                if (buffer.length < MAX_LINE_LENGTH) {
+                    byte[] bigger = new byte[Math.min(buffer.length * 2, MAX_LINE_LENGTH)];
+                    System.arraycopy(buffer, 0, bigger, 0, length);
+                    buffer = bigger;
+                } else {
+                    lineNumber++;
+                    malformed++;
+                    addError("行长度超过 " + MAX_LINE_LENGTH + " 字节，已丢弃");
+                    skipping = true;
+                    length = 0;
+                    scanFrom = 0;
+                }
+            }
+        }
+        if (length > 0 && !skipping) {
+            handleLine(0, length);
+        }
+    }
+
+    private void handleLine(int start, int end) {
+        lineNumber++;
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        while (start < end && (buffer[start] == ' ' || buffer[start] == '\t')) {
+            start++;
+        }
+        if (start == end || buffer[start] == '#') {
+            return;
+        }
+        lines++;
+        try {
+            parseLine(buffer, start, end);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            malformed++;
+            addError(e.getMessage() != null ? e.getMessage() : "格式错误");
+        }
+    }
+
+    private void addError(String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("第 " + lineNumber + " 行: " + message);
+        }
+    }
+
+    // ===== 子类使用的工具方法 =====
+
+    protected void emit(String componentName, MetricField field, long timestampMs, double value) {
+        samples++;
+        sink.accept(componentName, field, timestampMs, value);
+    }
+
+    /**
+     * 记录一个无法映射到平台指标的样本（未知指标名、非数值字段、缺少组件等）
+     */
+    protected void skipUnmapped() {
+        unmapped++;
+    }
+
+    /**
+     * 驻留一个名称，unescape 为 true 时先去掉反斜杠转义（转义只在少数名称中出现，此时才用临时缓冲区）
+     */
+    protected String internName(byte[] bytes, int start, int end, boolean unescape) {
+        if (unescape) {
+            int length = 0;
+            if (scratch.length < end - start) {
+                scratch = new byte[end - start];
+            }
+            for (int i = start; i < end; i++) {
+                byte b = bytes[i];
+                if (b == '\\' && i + 1 < end) {
+                    b = bytes[++i];
+                    if (b == 'n') {
+                        b = '\n';
+                    }
+                }
+                scratch[length++] = b;
+            }
+            return interner.intern(scratch, 0, length);
+        }
+        return interner.intern(bytes, start, end);
+    }
+
+    /**
+     * 按字节匹配平台指标名，不创建字符串
+     */
+    protected static MetricField matchField(byte[] bytes, int start, int end) {
+        int length = end - start;
+        for (int f = 0; f < FIELD_NAMES.length; f++) {
+            byte[] name = FIELD_NAMES[f];
+            if (name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && name[i] == bytes[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return FIELDS[f];
+            }
+        }
+        return null;
+    }
+
+    protected static boolean regionEquals(byte[] bytes, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析带符号整数
+     */
+    protected static long parseLong(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("缺少数值");
+        }
+        boolean negative = bytes[start] == '-';
+        int i = negative || bytes[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw new IllegalArgumentException("非法整数");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("非法整数");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 解析浮点数。有效数字不超过 15 位、指数不超过 22 时直接用 long 和 10 的幂换算（结果与 Double.parseDouble 一致），
+     * 其他情况（以及 NaN/Inf）才回退到 Double.parseDouble。
+     */
+    protected static double parseDouble(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("缺少数值");
+        }
+        int i = start;
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            seenDigit = true;
+            if (mantissa != 0 || bytes[i] != '0') {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                digits++;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                seenDigit = true;
+                if (mantissa != 0 || bytes[i] != '0') {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (seenDigit && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            exponent += (int) parseLong(bytes, i + 1, end);
+            i = end;
+        }
+
+        if (!seenDigit || i != end || digits > 15 || exponent < -22 || exponent > 22) {
+            return slowParseDouble(bytes, start, end);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(byte[] bytes, int start, int end) {
+        String text = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        switch (text) {
+            case "NaN":
+                return Double.NaN;
+            case "+Inf":
+            case "Inf":
+                return Double.POSITIVE_INFINITY;
+            case "-Inf":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("非法数值: " + text);
+                }
+        }
+    }
+
+    // ===== 统计 =====
+
+    public long getLines() { return lines; }
+
+    public long getSamples() { return samples; }
+
+    public long getUnmapped() { return unmapped; }
+
+    public long getMalformed() { return malformed; }
+
+    public long getBytesRead() { return bytesRead; }
+
+    public List<String> getErrors() { return errors; }
+}
@@ -0,0 +1,512 @@
+//预写日志：进入写入缓冲区的数据先追加到日志文件，进程崩溃后重启时重放，数据持久化后按段文件截断
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 记录格式（大端）：[i32 载荷长度][i32 CRC32][载荷]，载荷为
+ * [i64 时间][u16 组件名长度][组件名 UTF-8][u8 字段位图][f64 × 位图中的字段数]，只记录 MetricField 中的指标列。
+ * <p>
+ * 每条记录有一个序号，按进入写入缓冲区的顺序分配（MetricWriteBehindService 在同一把锁内入队和追加），
+ * 写入线程据此报告“此序号之前的记录都已写入存储”。
+ * 日志按大小切分为段文件 wal-{第一条记录的序号}.log，启动时总是新开一个段文件；
+ * 末尾写了一半的记录在读取时因长度或校验和不符被丢弃。
+ * <p>
+ * 刷盘策略只影响操作系统崩溃 / 断电，进程崩溃时已 write 的数据都在页缓存中：
+ * <ul>
+ *   <li>ALWAYS：组提交，调用方等到自己的记录刷盘后返回；同一时刻只有一个线程 fsync，期间到达的记录由下一次一起刷盘</li>
+ *   <li>INTERVAL：由调用方定时调用 sync，最多丢失一个间隔内的数据</li>
+ *   <li>NONE：由操作系统决定何时写回</li>
+ * </ul>
+ */
+public class WriteAheadLog {
+
+    public enum FsyncPolicy {
+        ALWAYS, INTERVAL, NONE
+    }
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int RECORD_HEADER = 4 + 4;
+    public static final int MAX_NAME_BYTES = 0xFFFF;
+    private static final MetricField[] FIELDS = MetricField.values();
+    private static final int MAX_PAYLOAD = 8 + 2 + MAX_NAME_BYTES + 1 + 8 * FIELDS.length;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final FsyncPolicy policy;
+
+    // 按序号升序，最后一个是正在写的段
+    private final List<WalSegment> segments = new ArrayList<>();
+    private FileChannel channel;
+    private long channelBytes;
+    private long nextSequence;
+
+    // 启动时已有的记录序号范围 [replayFrom, replayTo)
+    private long replayFrom;
+    private long replayTo;
+
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_HEADER + MAX_PAYLOAD);
+    // 批量追加时拼接多条记录，按需扩容
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    // 组提交状态：syncedSequence 之前的记录都已刷盘
+    private final Object syncMonitor = new Object();
+    private long syncedSequence;
+    private boolean syncing;
+
+    public WriteAheadLog(Path dir, long segmentBytes, FsyncPolicy policy) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * 扫描已有的段文件得到需要重放的范围，然后新开一个段文件用于追加
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                if (parseSequence(path) >= 0) {
+                    files.add(path);
+                }
+            }
+        }
+        files.sort((a, b) -> Long.compare(parseSequence(a), parseSequence(b)));
+
+        long sequence = files.isEmpty() ? 0 : parseSequence(files.get(0));
+        replayFrom = sequence;
+        for (Path path : files) {
+            // 中间的段末尾损坏时后面的序号会和文件名对不上，以文件名为准
+            sequence = Math.max(sequence, parseSequence(path));
+            WalSegment segment = new WalSegment(path, sequence);
+            long[] maxTimestamp = {Long.MIN_VALUE};
+            long count = read(path, row -> maxTimestamp[0] = Math.max(maxTimestamp[0],
+                    MetricStorageService.toEpochMillis(row.getTimestamp())));
+            if (count == 0) {
+                // 没有完整记录（通常是上次刚切换出来的段），文件名可能和新开的段相同
+                Files.deleteIfExists(path);
+                continue;
+            }
+            segment.maxTimestamp = maxTimestamp[0];
+            segments.add(segment);
+            sequence += count;
+        }
+        replayTo = sequence;
+        nextSequence = sequence;
+        syncedSequence = sequence;
+        openSegment();
+    }
+
+    public long getReplayFrom() {
+        return replayFrom;
+    }
+
+    public long getReplayTo() {
+        return replayTo;
+    }
+
+    /**
+     * 按序号顺序回调启动时已有的记录，返回记录数
+     */
+    public long replay(Consumer<SystemMetrics> consumer) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        synchronized (this) {
+            for (WalSegment segment : segments) {
+                if (segment.firstSequence < replayTo) {
+                    paths.add(segment.path);
+                }
+            }
+        }
+        long count = 0;
+        for (Path path : paths) {
+            count += read(path, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * 读取 fromSequence 所在的段中从该序号起的记录，只读已关闭的段：
+     * fromSequence 落在正在写的段且其中有记录时先切换段。
+     *
+     * @return 该段之后的第一个序号（下次读取的起点），没有可读的记录时返回 fromSequence
+     */
+    public long readSealed(long fromSequence, Consumer<SystemMetrics> consumer) throws IOException {
+        WalSegment segment = null;
+        long end = fromSequence;
+        synchronized (this) {
+            WalSegment current = segments.get(segments.size() - 1);
+            if (fromSequence >= current.firstSequence) {
+                if (nextSequence <= Math.max(fromSequence, current.firstSequence)) {
+                    return fromSequence;
+                }
+                rotate();
+            }
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                long next = segments.get(i + 1).firstSequence;
+                if (fromSequence < next) {
+                    segment = segments.get(i);
+                    end = next;
+                    break;
+                }
+            }
+        }
+        if (segment == null) {
+            return fromSequence;
+        }
+        long skip = Math.max(0, fromSequence - segment.firstSequence);
+        long[] index = {0};
+        read(segment.path, row -> {
+            if (index[0]++ >= skip) {
+                consumer.accept(row);
+            }
+        });
+        return end;
+    }
+
+    /**
+     * 下一条记录的序号
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * 追加一条记录（写入页缓存，不等待刷盘），返回它的序号
+     */
+    public synchronized long append(SystemMetrics row) throws IOException {
+        if (channelBytes >= segmentBytes) {
+            rotate();
+        }
+        ByteBuffer buffer = encode(row);
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channelBytes += length;
+        WalSegment current = segments.get(segments.size() - 1);
+        current.maxTimestamp = Math.max(current.maxTimestamp, MetricStorageService.toEpochMillis(row.getTimestamp()));
+        return nextSequence++;
+    }
+
+    /**
+     * 追加一批记录，拼接后一次写入，返回最后一条的序号（rows 为空时返回 -1）。
+     * 编码失败（如组件名过长）时抛出 IllegalArgumentException，整批都不写入；
+     * 抛出 IOException 时最后一条记录可能只写了一部分，之后不应再追加
+     */
+    public synchronized long appendAll(List<SystemMetrics> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return -1;
+        }
+        ByteBuffer batch = batchBuffer;
+        batch.clear();
+        long maxTimestamp = Long.MIN_VALUE;
+        for (SystemMetrics row : rows) {
+            ByteBuffer record = encode(row);
+            if (batch.remaining() < record.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + record.remaining()));
+                batch.flip();
+                larger.put(batch);
+                batch = larger;
+                batchBuffer = larger;
+            }
+            batch.put(record);
+            maxTimestamp = Math.max(maxTimestamp, MetricStorageService.toEpochMillis(row.getTimestamp()));
+        }
+        batch.flip();
+
+        if (channelBytes >= segmentBytes) {
+            rotate();
+        }
+        int length = batch.remaining();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channelBytes += length;
+        WalSegment current = segments.get(segments.size() - 1);
+        current.maxTimestamp = Math.max(current.maxTimestamp, maxTimestamp);
+        nextSequence += rows.size();
+        return nextSequence - 1;
+    }
+
+    /**
+     * ALWAYS 策略下等待该记录刷盘，其他策略立即返回
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        if (policy == FsyncPolicy.ALWAYS) {
+            syncThrough(sequence + 1);
+        }
+    }
+
+    /**
+     * 把目前已追加的记录刷盘（INTERVAL 策略的定时任务调用）
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = nextSequence;
+        }
+        syncThrough(target);
+    }
+
+    /**
+     * 删除所有记录都已写入存储并持久化的段文件
+     *
+     * @param appliedSequence   此序号之前的记录都已写入存储
+     * @param unpersistedFromMs 存储中尚未持久化的最早样本时间（见 MetricStorageService.getUnpersistedFrom），
+     *                          须在 appliedSequence 之后读取
+     * @return 删除的段文件数
+     */
+    public int truncate(long appliedSequence, long unpersistedFromMs) throws IOException {
+        List<WalSegment> removable = new ArrayList<>();
+        synchronized (this) {
+            WalSegment current = segments.get(segments.size() - 1);
+            // 写入量小时当前段可能长时间写不满，里面的记录都已持久化时先切换，避免重启后重放
+            if (nextSequence > current.firstSequence && nextSequence <= appliedSequence
+                    && current.maxTimestamp < unpersistedFromMs) {
+                rotate();
+            }
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                WalSegment segment = segments.get(i);
+                long end = segments.get(i + 1).firstSequence;
+                if (end > appliedSequence || segment.maxTimestamp >= unpersistedFromMs) {
+                    break;
+                }
+                removable.add(segment);
+            }
+            segments.subList(0, removable.size()).clear();
+        }
+        for (WalSegment segment : removable) {
+            Files.deleteIfExists(segment.path);
+        }
+        return removable.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        long bytes = 0;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            bytes += sizeOf(segments.get(i).path);
+        }
+        return bytes + channelBytes;
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    // ===== 刷盘 =====
+
+    private void syncThrough(long sequence) throws IOException {
+        synchronized (syncMonitor) {
+            while (true) {
+                if (syncedSequence >= sequence) {
+                    return;
+                }
+                if (!syncing) {
+                    break;
+                }
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待预写日志刷盘时被中断");
+                }
+            }
+            syncing = true;
+        }
+
+        // 由当前线程刷盘，覆盖到目前为止追加的所有记录
+        long target;
+        FileChannel current;
+        synchronized (this) {
+            target = nextSequence;
+            current = channel;
+        }
+        boolean done = false;
+        try {
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // 段已切换，切换时已经刷盘
+            }
+            done = true;
+        } finally {
+            synchronized (syncMonitor) {
+                syncing = false;
+                if (done) {
+                    syncedSequence = Math.max(syncedSequence, target);
+                }
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    // ===== 段文件 =====
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", PREFIX, nextSequence, SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channelBytes = 0;
+        segments.add(new WalSegment(path, nextSequence));
+        syncDirectory();
+    }
+
+    /**
+     * 新建的文件要刷目录项才能在断电后保留，部分平台不支持对目录 fsync，忽略失败
+     */
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ===== 编解码 =====
+
+    private ByteBuffer encode(SystemMetrics row) {
+        byte[] name = row.getComponentName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("组件名过长: " + name.length + " 字节");
+        }
+        ByteBuffer buffer = recordBuffer;
+        buffer.clear();
+        buffer.position(RECORD_HEADER);
+        buffer.putLong(MetricStorageService.toEpochMillis(row.getTimestamp()));
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        int maskPosition = buffer.position();
+        buffer.put((byte) 0);
+        int mask = 0;
+        for (MetricField field : FIELDS) {
+            Double value = field.read(row);
+            if (value != null) {
+                mask |= 1 << field.ordinal();
+                buffer.putDouble(value);
+            }
+        }
+        buffer.put(maskPosition, (byte) mask);
+
+        int payloadLength = buffer.position() - RECORD_HEADER;
+        crc.reset();
+        crc.update(buffer.array(), RECORD_HEADER, payloadLength);
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 依次解码段文件中的完整记录，遇到截断或校验失败的记录时停止，返回解码的记录数
+     */
+    private static long read(Path path, Consumer<SystemMetrics> consumer) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+        CRC32 checksum = new CRC32();
+        long count = 0;
+        while (data.remaining() >= RECORD_HEADER) {
+            int start = data.position();
+            int length = data.getInt();
+            int expected = data.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD || data.remaining() < length) {
+                break;
+            }
+            checksum.reset();
+            checksum.update(data.slice(start + RECORD_HEADER, length));
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            consumer.accept(decode(data.slice(start + RECORD_HEADER, length)));
+            data.position(start + RECORD_HEADER + length);
+            count++;
+        }
+        if (data.hasRemaining()) {
+            System.err.println("预写日志 " + path.getFileName() + " 末尾有 " + data.remaining() + " 字节不完整，已忽略");
+        }
+        return count;
+    }
+
+    private static SystemMetrics decode(ByteBuffer payload) {
+        SystemMetrics row = new SystemMetrics();
+        row.setTimestamp(MetricStorageService.toLocalDateTime(payload.getLong()));
+        byte[] name = new byte[payload.getShort() & 0xFFFF];
+        payload.get(name);
+        row.setComponentName(new String(name, StandardCharsets.UTF_8));
+        int mask = payload.get() & 0xFF;
+        for (MetricField field : FIELDS) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                field.apply(row, payload.getDouble());
+            }
+        }
+        return row;
+    }
+
+    private static final class WalSegment {
+        private final Path path;
+        private final long firstSequence;
+        // 段内记录的最大样本时间，只在持有日志锁时访问
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private WalSegment(Path path, long firstSequence) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.monitor.monitoring_platform.mapper;
+
+import com.monitor.monitoring_platform.entity.MetricSample;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface MetricLatestMapper {
+
+    // 启动时加载每个序列的最新值，SQL 见 MetricLatestMapper.xml
+    List<MetricSample> selectAll();
+
+    // 批量更新最新值：只有时间不早于表中已有值时才覆盖
+    int upsertBatch(@Param("list") List<MetricSample> samples);
+}
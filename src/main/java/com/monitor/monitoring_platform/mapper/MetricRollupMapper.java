@@ -0,0 +1,22 @@
+package com.monitor.monitoring_platform.mapper;
+
+import com.monitor.monitoring_platform.entity.MetricRollup;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface MetricRollupMapper {
+
+    // 批量合并聚合桶：桶已存在时与原有数据合并（min/max 取极值，sum/count 累加，last 取时间较晚者），SQL 见 MetricRollupMapper.xml
+    // table 只能传 RollupTier.getTable()，不接受外部输入
+    int upsertBatch(@Param("table") String table, @Param("list") List<MetricRollup> rollups);
+
+    // 某序列 [start, end) 内的聚合桶，按时间升序
+    List<MetricRollup> selectRange(@Param("table") String table,
+                                   @Param("seriesId") int seriesId,
+                                   @Param("start") LocalDateTime start,
+                                   @Param("end") LocalDateTime end);
+}
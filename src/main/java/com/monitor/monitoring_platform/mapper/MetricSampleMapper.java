@@ -0,0 +1,28 @@
+package com.monitor.monitoring_platform.mapper;
+
+import com.monitor.monitoring_platform.entity.MetricSample;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface MetricSampleMapper {
+
+    // 批量写入样本（多行 INSERT，同一序列同一时刻重复写入时覆盖），SQL 见 MetricSampleMapper.xml
+    int insertBatch(@Param("list") List<MetricSample> samples);
+
+    // 某序列 [start, end] 内的原始样本，按时间升序逐行回调（流式读取，不在内存中汇总），handler 可调用 stop 提前结束
+    void selectRange(@Param("seriesId") int seriesId,
+                     @Param("start") LocalDateTime start,
+                     @Param("end") LocalDateTime end,
+                     ResultHandler<MetricSample> handler);
+
+    // [start, end) 内的样本，逐行从服务端流式读取，seriesIds 为 null 时不限序列。须在事务内遍历并关闭
+    Cursor<MetricSample> cursorRange(@Param("seriesIds") List<Integer> seriesIds,
+                                     @Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end);
+}
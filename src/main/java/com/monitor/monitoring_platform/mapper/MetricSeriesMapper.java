@@ -0,0 +1,24 @@
+package com.monitor.monitoring_platform.mapper;
+
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface MetricSeriesMapper {
+
+    // 启动时加载全部序列到内存字典
+    @Select("SELECT id, component_name, metric_name, tags FROM metric_series")
+    List<MetricSeries> selectAll();
+
+    // 注册序列：已存在时通过 LAST_INSERT_ID(id) 取回原有ID，多个实例并发注册也只有一条
+    @Insert("INSERT INTO metric_series (component_name, metric_name, tags) " +
+            "VALUES (#{componentName}, #{metricName}, #{tags}) " +
+            "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int upsert(MetricSeries series);
+}
@@ -0,0 +1,25 @@
+package com.monitor.monitoring_platform.mapper;
+
+import com.monitor.monitoring_platform.entity.MetricSketch;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface MetricSketchMapper {
+
+    // 批量写入草图，桶已存在时覆盖：SQL 无法合并草图，调用方先读出已有的草图合并后再写（见 RollupService）
+    // table 只能传 RollupTier.getSketchTable()，不接受外部输入
+    int upsertBatch(@Param("table") String table, @Param("list") List<MetricSketch> sketches);
+
+    // 指定的 (series_id, bucket) 中已存在的草图
+    List<MetricSketch> selectBuckets(@Param("table") String table, @Param("list") List<MetricSketch> keys);
+
+    // 某序列 [start, end) 内的草图，按时间升序
+    List<MetricSketch> selectRange(@Param("table") String table,
+                                   @Param("seriesId") int seriesId,
+                                   @Param("start") LocalDateTime start,
+                                   @Param("end") LocalDateTime end);
+}
@@ -0,0 +1,35 @@
+package com.monitor.monitoring_platform.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+// 按天分区的维护语句，table 和分区名都由 RetentionService 生成，不接受外部输入
+@Mapper
+public interface PartitionMapper {
+
+    // 表的分区名（按分区顺序），未分区的表返回空列表
+    @Select("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{table} AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION")
+    List<String> selectPartitionNames(@Param("table") String table);
+
+    // 拆分兜底分区 p_future，新增按天的分区（p_future 为空时只改元数据）
+    @Update("ALTER TABLE ${table} REORGANIZE PARTITION p_future INTO " +
+            "(${partitions}, PARTITION p_future VALUES LESS THAN (MAXVALUE))")
+    void addPartitions(@Param("table") String table, @Param("partitions") String partitions);
+
+    // 整个分区删除，不逐行 DELETE
+    @Update("ALTER TABLE ${table} DROP PARTITION ${partitions}")
+    void dropPartitions(@Param("table") String table, @Param("partitions") String partitions);
+
+    // DDL 等待元数据锁的超时：等待中的 DDL 会挡住之后所有对该表的写入，宁可放弃本轮
+    @Update("SET SESSION lock_wait_timeout = ${seconds}")
+    void setLockWaitTimeout(@Param("seconds") int seconds);
+
+    @Update("SET SESSION lock_wait_timeout = DEFAULT")
+    void resetLockWaitTimeout();
+}
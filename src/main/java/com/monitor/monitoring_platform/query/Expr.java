@@ -0,0 +1,95 @@
+//查询表达式的语法树节点
+package com.monitor.monitoring_platform.query;
+
+import java.util.List;
+
+abstract class Expr {
+
+    /**
+     * 数字常量
+     */
+    static final class NumberLiteral extends Expr {
+        final double value;
+
+        NumberLiteral(double value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 序列选择器：cpu_usage{component="CPU"}，带 [时长] 时为区间选择器
+     */
+    static final class Selector extends Expr {
+        final List<LabelMatcher> matchers;
+        // 区间长度，0 表示瞬时选择器
+        final long rangeMs;
+
+        Selector(List<LabelMatcher> matchers, long rangeMs) {
+            this.matchers = matchers;
+            this.rangeMs = rangeMs;
+        }
+    }
+
+    /**
+     * 函数调用：rate(x[5m])、quantile_over_time(0.9, x[1h])、abs(x)
+     */
+    static final class Call extends Expr {
+        final String name;
+        final List<Expr> args;
+
+        Call(String name, List<Expr> args) {
+            this.name = name;
+            this.args = args;
+        }
+    }
+
+    /**
+     * 聚合：sum by (component) (x)，without 为 true 时按 grouping 以外的标签分组
+     */
+    static final class Aggregate extends Expr {
+        final String op;
+        final List<String> grouping;
+        final boolean without;
+        final Expr inner;
+
+        Aggregate(String op, List<String> grouping, boolean without, Expr inner) {
+            this.op = op;
+            this.grouping = grouping;
+            this.without = without;
+            this.inner = inner;
+        }
+    }
+
+    /**
+     * 二元运算：算术（+ - * / %）和比较（== != > < >= <=，结果只保留满足条件的点）
+     */
+    static final class Binary extends Expr {
+        final QueryLexer.Type op;
+        final Expr lhs;
+        final Expr rhs;
+
+        Binary(QueryLexer.Type op, Expr lhs, Expr rhs) {
+            this.op = op;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        boolean isComparison() {
+            return switch (op) {
+                case EQL, NEQ, GTR, LSS, GTE, LTE -> true;
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * 取负
+     */
+    static final class Negate extends Expr {
+        final Expr inner;
+
+        Negate(Expr inner) {
+            this.inner = inner;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+//内存中的一组行作为查询数据来源，供已经拿到历史行的分析逻辑使用同一套表达式
+package com.monitor.monitoring_platform.query;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 每个 组件 + 指标 一个序列，只遍历一次行就转成基本类型数组。
+ * 没有时间的行（如测试数据）按在列表中的位置编号，作为毫秒时间戳。
+ */
+public final class InMemorySeriesSource implements SeriesSource {
+
+    private final List<SampleSeries> series;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+
+    private InMemorySeriesSource(List<SampleSeries> series, long minTimestamp, long maxTimestamp) {
+        this.series = series;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    public static InMemorySeriesSource fromRows(List<SystemMetrics> rows) {
+        long[] timestamps = new long[rows.size()];
+        Integer[] order = new Integer[rows.size()];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < rows.size(); i++) {
+            SystemMetrics row = rows.get(i);
+            timestamps[i] = row.getTimestamp() != null ? MetricStorageService.toEpochMillis(row.getTimestamp()) : i;
+            order[i] = i;
+            min = Math.min(min, timestamps[i]);
+            max = Math.max(max, timestamps[i]);
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+
+        Map<String, SampleSeries> byKey = new LinkedHashMap<>();
+        for (int index : order) {
+            SystemMetrics row = rows.get(index);
+            String component = row.getComponentName() != null ? row.getComponentName() : "";
+            for (MetricField field : MetricField.values()) {
+                Double value = field.read(row);
+                if (value == null) {
+                    continue;
+                }
+                byKey.computeIfAbsent(component + '\0' + field.getMetricName(), k -> {
+                    Map<String, String> labels = new TreeMap<>();
+                    labels.put(QueryEvaluator.NAME_LABEL, field.getMetricName());
+                    if (!component.isEmpty()) {
+                        labels.put(QueryEvaluator.COMPONENT_LABEL, component);
+                    }
+                    return new SampleSeries(labels, rows.size());
+                }).accept(timestamps[index], value);
+            }
+        }
+        return new InMemorySeriesSource(new ArrayList<>(byKey.values()), min, max);
+    }
+
+    /**
+     * 最早的样本时间，没有行时为 Long.MAX_VALUE
+     */
+    public long getMinTimestamp() { return minTimestamp; }
+
+    /**
+     * 最晚的样本时间，没有行时为 Long.MIN_VALUE
+     */
+    public long getMaxTimestamp() { return maxTimestamp; }
+
+    @Override
+    public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs) {
+        // 数据已经在内存中，直接返回整个序列，区间函数按窗口取用
+        List<SampleSeries> result = new ArrayList<>();
+        for (SampleSeries s : series) {
+            if (LabelMatcher.matchesAll(matchers, s.getLabels())) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+//标签匹配条件：label="v"、label!="v"、label=~"正则"、label!~"正则"
+package com.monitor.monitoring_platform.query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 缺少的标签按空串匹配；正则需要匹配整个值
+ */
+public final class LabelMatcher {
+
+    public enum Op { EQ, NEQ, RE, NRE }
+
+    private final String name;
+    private final Op op;
+    private final String value;
+    private final Pattern pattern;
+
+    public LabelMatcher(String name, Op op, String value) {
+        this.name = name;
+        this.op = op;
+        this.value = value;
+        if (op == Op.RE || op == Op.NRE) {
+            try {
+                this.pattern = Pattern.compile(value);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("标签 " + name + " 的正则无效: " + e.getDescription());
+            }
+        } else {
+            this.pattern = null;
+        }
+    }
+
+    public String getName() { return name; }
+
+    public Op getOp() { return op; }
+
+    public String getValue() { return value; }
+
+    public boolean matches(Map<String, String> labels) {
+        String actual = labels.getOrDefault(name, "");
+        return switch (op) {
+            case EQ -> actual.equals(value);
+            case NEQ -> !actual.equals(value);
+            case RE -> pattern.matcher(actual).matches();
+            case NRE -> !pattern.matcher(actual).matches();
+        };
+    }
+
+    public static boolean matchesAll(List<LabelMatcher> matchers, Map<String, String> labels) {
+        for (LabelMatcher matcher : matchers) {
+            if (!matcher.matches(labels)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        String symbol = switch (op) {
+            case EQ -> "=";
+            case NEQ -> "!=";
+            case RE -> "=~";
+            case NRE -> "!~";
+        };
+        return name + symbol + "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
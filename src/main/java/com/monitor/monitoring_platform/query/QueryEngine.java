@@ -0,0 +1,203 @@
+//查询表达式服务：在存储中的序列上求值，图表、根因分析等派生视图共用这一个求值器
+package com.monitor.monitoring_platform.query;
+
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import com.monitor.monitoring_platform.storage.RangeQueryService;
+import com.monitor.monitoring_platform.storage.SeriesQueryExecutor;
+import com.monitor.monitoring_platform.storage.SeriesRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 例：
+ * <pre>
+ * avg_over_time(cpu_usage{component="CPU"}[5m])
+ * max by (component) (max_over_time(disk_usage[1h]))
+ * rate(network_bytes_total[5m]) / 1024
+ * mem_usage > 90
+ * </pre>
+ * 序列的标签：__name__（指标名）、component（组件名）以及序列的附加标签。
+ * 样本按序列从存储读取原始数据（热数据层、时序存储或样本表），每个序列只读一次，匹配的各序列并行读取。
+ * 步长不小于 1 分钟时瞬时选择器改读聚合档位，每个桶取桶内最后一个样本（经范围查询缓存），
+ * 长时间范围的图表不扫描原始数据，原始数据过了保留期也能查询。
+ */
+@Service
+public class QueryEngine {
+
+    @Autowired
+    private SeriesRegistry seriesRegistry;
+
+    @Autowired
+    private MetricStorageService metricStorageService;
+
+    @Autowired
+    private SeriesQueryExecutor seriesQueryExecutor;
+
+    @Autowired
+    private RangeQueryService rangeQueryService;
+
+    @Value("${monitor.query.lookback-ms:300000}")
+    private long lookbackMs;
+
+    @Value("${monitor.query.max-samples:20000000}")
+    private long maxSamples;
+
+    private final SeriesSource storageSource = new SeriesSource() {
+        @Override
+        public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs) {
+            return selectFromStorage(matchers, fromMs, toMs, 0, 0, null);
+        }
+
+        @Override
+        public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs,
+                                         long stepMs, long lookbackMs, SampleBudget budget) {
+            return selectFromStorage(matchers, fromMs, toMs, stepMs, lookbackMs, budget);
+        }
+    };
+
+    /**
+     * 在 [start, end] 内每隔 step 毫秒求值一次
+     */
+    public QueryResult evaluate(String query, long start, long end, long step) {
+        if (end >= start && step > 0 && (end - start) / step >= RangeQueryService.MAX_POINTS) {
+            throw new IllegalArgumentException("点数超过上限 " + RangeQueryService.MAX_POINTS + "，请增大步长");
+        }
+        return QueryEvaluator.evaluate(query, storageSource, start, end, step, lookbackMs, maxSamples);
+    }
+
+    /**
+     * 在给定的数据来源上求值（如分析逻辑已经持有的历史行）
+     */
+    public QueryResult evaluate(String query, SeriesSource source, long start, long end, long step) {
+        return QueryEvaluator.evaluate(query, source, start, end, step, lookbackMs, maxSamples);
+    }
+
+    /**
+     * 表达式的范围查询结果，供接口直接返回
+     *
+     * @return resultType（scalar 或 series）、start、end、step，
+     *         标量为 values，序列为 series（每个含 labels 和 points，每点 ts/value，跳过缺失的点）
+     */
+    public Map<String, Object> queryRange(String query, long start, long end, long step) {
+        QueryResult result = evaluate(query, start, end, step);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("query", query);
+        response.put("resultType", result.isScalar() ? "scalar" : "series");
+        response.put("start", start);
+        response.put("end", end);
+        response.put("step", step);
+        if (result.isScalar()) {
+            response.put("values", points(result, result.getScalar()));
+        } else {
+            List<Map<String, Object>> series = new ArrayList<>();
+            for (QueryResult.ResultSeries s : result.getSeries()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("labels", s.getLabels());
+                item.put("points", points(result, s.getValues()));
+                series.add(item);
+            }
+            response.put("series", series);
+        }
+        return response;
+    }
+
+    /**
+     * 序列的全部标签
+     */
+    public static Map<String, String> labelsOf(MetricSeries series) {
+        Map<String, String> labels = new TreeMap<>();
+        String tags = series.getTags();
+        if (tags != null && !tags.isEmpty()) {
+            for (String pair : tags.split(",")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    labels.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        labels.put(QueryEvaluator.NAME_LABEL, series.getMetricName());
+        labels.put(QueryEvaluator.COMPONENT_LABEL, series.getComponentName());
+        return labels;
+    }
+
+    /**
+     * 匹配全部选择器之一的序列的标签，按序列注册顺序
+     *
+     * @param selectors 瞬时选择器，如 cpu_usage{component=~"Disk-.*"}；为空时返回全部序列
+     */
+    public List<Map<String, String>> selectSeries(List<String> selectors) {
+        List<List<LabelMatcher>> matcherSets = new ArrayList<>();
+        for (String selector : selectors) {
+            matcherSets.add(QueryParser.parseSelector(selector));
+        }
+        List<Map<String, String>> result = new ArrayList<>();
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            Map<String, String> labels = labelsOf(series);
+            boolean matched = matcherSets.isEmpty();
+            for (int i = 0; i < matcherSets.size() && !matched; i++) {
+                matched = LabelMatcher.matchesAll(matcherSets.get(i), labels);
+            }
+            if (matched) {
+                result.add(labels);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析时长，如 15s、1m30s、500ms
+     */
+    public static long parseDuration(String text) {
+        return QueryLexer.parseDuration(text);
+    }
+
+    private List<SampleSeries> selectFromStorage(List<LabelMatcher> matchers, long fromMs, long toMs,
+                                                 long stepMs, long lookbackMs, SampleBudget budget) {
+        List<Integer> seriesIds = new ArrayList<>();
+        List<SampleSeries> matched = new ArrayList<>();
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            Map<String, String> labels = labelsOf(series);
+            if (LabelMatcher.matchesAll(matchers, labels)) {
+                seriesIds.add(series.getId());
+                matched.add(new SampleSeries(labels, budget));
+            }
+        }
+        // 每个任务只追加自己的 SampleSeries
+        List<Integer> indexes = new ArrayList<>(matched.size());
+        for (int i = 0; i < matched.size(); i++) {
+            indexes.add(i);
+        }
+        seriesQueryExecutor.map(indexes, i -> stepMs > 0
+                ? rangeQueryService.scanLastPerBucket(seriesIds.get(i), fromMs, toMs, stepMs, lookbackMs, matched.get(i))
+                : metricStorageService.scanSamples(seriesIds.get(i), fromMs, toMs, matched.get(i)));
+
+        List<SampleSeries> result = new ArrayList<>(matched.size());
+        for (SampleSeries samples : matched) {
+            if (samples.size() > 0) {
+                result.add(samples);
+            }
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> points(QueryResult result, double[] values) {
+        List<Map<String, Object>> points = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                Map<String, Object> point = new LinkedHashMap<>();
+                point.put("ts", result.getTimestamp(i));
+                point.put("value", values[i]);
+                points.add(point);
+            }
+        }
+        return points;
+    }
+}
@@ -0,0 +1,422 @@
+//查询表达式求值：对 [start, end] 内每隔 step 的各个时刻一次性求值，中间结果都是基本类型数组
+package com.monitor.monitoring_platform.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 整个查询按“列”计算：每个节点一次算出所有步的结果（每个序列一个 double[]），
+ * 而不是逐个时刻遍历语法树；选择器的数据每个序列只读取一次。
+ * <ul>
+ *   <li>瞬时选择器：每步取 lookback 内的最后一个样本（数据来源可按步长返回稀疏样本，见 SeriesSource）</li>
+ *   <li>区间函数：见 RangeFunctions</li>
+ *   <li>逐点函数：abs、ceil、floor、round、sqrt、ln、exp、clamp_min、clamp_max；time() 返回各步的秒数</li>
+ *   <li>聚合：sum、avg、min、max、count、stddev，支持 by / without</li>
+ *   <li>二元运算：算术运算去掉指标名；比较运算只保留满足条件的点（两个标量比较时结果为 1 或 0）。
+ *       两个序列集合之间按除指标名以外的全部标签一对一匹配</li>
+ * </ul>
+ * 结果中全部为 NaN 的序列会被去掉。
+ */
+public final class QueryEvaluator {
+
+    public static final String NAME_LABEL = "__name__";
+    public static final String COMPONENT_LABEL = "component";
+
+    private static final Set<String> POINTWISE = Set.of("abs", "ceil", "floor", "round", "sqrt", "ln", "exp");
+
+    private final SeriesSource source;
+    private final long start;
+    private final long step;
+    private final int steps;
+    private final long lookbackMs;
+    private final long maxSamples;
+    private final SampleBudget budget;
+    private long loadedSamples;
+
+    private QueryEvaluator(SeriesSource source, long start, long end, long step, long lookbackMs, long maxSamples) {
+        this.source = source;
+        this.start = start;
+        this.step = step;
+        this.steps = (int) ((end - start) / step) + 1;
+        this.lookbackMs = lookbackMs;
+        this.maxSamples = maxSamples;
+        this.budget = new SampleBudget(maxSamples);
+    }
+
+    /**
+     * 解析并求值
+     *
+     * @param lookbackMs 瞬时选择器向前查找样本的时长
+     * @param maxSamples 读取的样本总数上限，超出时抛出 IllegalArgumentException
+     */
+    public static QueryResult evaluate(String query, SeriesSource source, long start, long end, long step,
+                                       long lookbackMs, long maxSamples) {
+        if (end < start) {
+            throw new IllegalArgumentException("结束时间不能早于开始时间");
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("步长必须大于 0");
+        }
+        Expr expr = QueryParser.parse(query);
+        QueryEvaluator evaluator = new QueryEvaluator(source, start, end, step, lookbackMs, maxSamples);
+        QueryResult result = evaluator.eval(expr);
+        if (!result.isScalar()) {
+            return new QueryResult(start, step, evaluator.steps, null, dropEmpty(result.getSeries()));
+        }
+        return result;
+    }
+
+    private QueryResult eval(Expr expr) {
+        if (expr instanceof Expr.NumberLiteral number) {
+            double[] values = new double[steps];
+            Arrays.fill(values, number.value);
+            return scalar(values);
+        }
+        if (expr instanceof Expr.Selector selector) {
+            if (selector.rangeMs > 0) {
+                throw new IllegalArgumentException("区间选择器只能作为区间函数（如 rate、avg_over_time）的参数");
+            }
+            return instantSelector(selector);
+        }
+        if (expr instanceof Expr.Call call) {
+            return call(call);
+        }
+        if (expr instanceof Expr.Aggregate aggregate) {
+            return aggregate(aggregate);
+        }
+        if (expr instanceof Expr.Binary binary) {
+            return binary(binary);
+        }
+        if (expr instanceof Expr.Negate negate) {
+            QueryResult inner = eval(negate.inner);
+            if (inner.isScalar()) {
+                return scalar(map(inner.getScalar(), v -> -v));
+            }
+            List<QueryResult.ResultSeries> out = new ArrayList<>();
+            for (QueryResult.ResultSeries s : inner.getSeries()) {
+                out.add(new QueryResult.ResultSeries(withoutName(s.getLabels()), map(s.getValues(), v -> -v)));
+            }
+            return vector(out);
+        }
+        throw new IllegalStateException("未知的表达式节点: " + expr.getClass().getSimpleName());
+    }
+
+    // ===== 选择器和函数 =====
+
+    private QueryResult instantSelector(Expr.Selector selector) {
+        List<QueryResult.ResultSeries> out = new ArrayList<>();
+        // 每步只取 lookback 内的最后一个样本，有多步时允许来源按步长返回稀疏的样本
+        for (SampleSeries series : load(selector.matchers, lookbackMs, steps > 1)) {
+            out.add(new QueryResult.ResultSeries(series.getLabels(),
+                    RangeFunctions.apply("last_over_time", series, start, step, steps, lookbackMs, 0)));
+        }
+        return vector(out);
+    }
+
+    private QueryResult call(Expr.Call call) {
+        String name = call.name;
+        if (RangeFunctions.NAMES.contains(name)) {
+            boolean quantile = "quantile_over_time".equals(name);
+            int expected = quantile ? 2 : 1;
+            if (call.args.size() != expected) {
+                throw new IllegalArgumentException(name + " 需要 " + expected + " 个参数");
+            }
+            double q = 0;
+            if (quantile) {
+                if (!(call.args.get(0) instanceof Expr.NumberLiteral number)) {
+                    throw new IllegalArgumentException("quantile_over_time 的第一个参数必须是数字");
+                }
+                q = number.value;
+            }
+            Expr arg = call.args.get(expected - 1);
+            if (!(arg instanceof Expr.Selector selector) || selector.rangeMs == 0) {
+                throw new IllegalArgumentException(name + " 的参数必须是区间选择器，如 cpu_usage[5m]");
+            }
+            List<QueryResult.ResultSeries> out = new ArrayList<>();
+            for (SampleSeries series : load(selector.matchers, selector.rangeMs, false)) {
+                out.add(new QueryResult.ResultSeries(withoutName(series.getLabels()),
+                        RangeFunctions.apply(name, series, start, step, steps, selector.rangeMs, q)));
+            }
+            return vector(out);
+        }
+        if ("time".equals(name)) {
+            if (!call.args.isEmpty()) {
+                throw new IllegalArgumentException("time 没有参数");
+            }
+            double[] values = new double[steps];
+            for (int i = 0; i < steps; i++) {
+                values[i] = (start + i * step) / 1000.0;
+            }
+            return scalar(values);
+        }
+        if (POINTWISE.contains(name) || "clamp_min".equals(name) || "clamp_max".equals(name)) {
+            boolean clamp = name.startsWith("clamp");
+            if (call.args.size() != (clamp ? 2 : 1)) {
+                throw new IllegalArgumentException(name + " 需要 " + (clamp ? 2 : 1) + " 个参数");
+            }
+            QueryResult inner = eval(call.args.get(0));
+            if (inner.isScalar()) {
+                throw new IllegalArgumentException(name + " 的参数必须是序列");
+            }
+            double[] bound = clamp ? scalarArg(name, call.args.get(1)) : null;
+            List<QueryResult.ResultSeries> out = new ArrayList<>();
+            for (QueryResult.ResultSeries s : inner.getSeries()) {
+                double[] values = s.getValues();
+                double[] result = new double[steps];
+                for (int i = 0; i < steps; i++) {
+                    double v = values[i];
+                    result[i] = switch (name) {
+                        case "abs" -> Math.abs(v);
+                        case "ceil" -> Math.ceil(v);
+                        case "floor" -> Math.floor(v);
+                        case "round" -> Math.rint(v);
+                        case "sqrt" -> Math.sqrt(v);
+                        case "ln" -> Math.log(v);
+                        case "exp" -> Math.exp(v);
+                        case "clamp_min" -> Double.isNaN(v) ? v : Math.max(v, bound[i]);
+                        default -> Double.isNaN(v) ? v : Math.min(v, bound[i]);
+                    };
+                }
+                out.add(new QueryResult.ResultSeries(withoutName(s.getLabels()), result));
+            }
+            return vector(out);
+        }
+        throw new IllegalArgumentException("未知函数: " + name);
+    }
+
+    private double[] scalarArg(String function, Expr arg) {
+        QueryResult value = eval(arg);
+        if (!value.isScalar()) {
+            throw new IllegalArgumentException(function + " 的第二个参数必须是标量");
+        }
+        return value.getScalar();
+    }
+
+    /**
+     * 读取选择器匹配的序列，范围覆盖第一步的窗口到最后一步
+     *
+     * @param sparse 每步只需要窗口内的最后一个样本
+     */
+    private List<SampleSeries> load(List<LabelMatcher> matchers, long windowMs, boolean sparse) {
+        long end = start + (steps - 1) * step;
+        List<SampleSeries> series = source.select(matchers, start - windowMs + 1, end,
+                sparse ? step : 0, windowMs, budget);
+        for (SampleSeries s : series) {
+            loadedSamples += s.size();
+        }
+        // 读取过程中按 SampleBudget 的记账粒度检查，这里按准确的样本数再检查一次
+        if (loadedSamples > maxSamples) {
+            throw SampleBudget.exceeded(maxSamples);
+        }
+        return series;
+    }
+
+    // ===== 聚合 =====
+
+    private QueryResult aggregate(Expr.Aggregate aggregate) {
+        QueryResult inner = eval(aggregate.inner);
+        if (inner.isScalar()) {
+            throw new IllegalArgumentException(aggregate.op + " 的参数必须是序列");
+        }
+        Map<Map<String, String>, List<double[]>> groups = new LinkedHashMap<>();
+        for (QueryResult.ResultSeries s : inner.getSeries()) {
+            Map<String, String> key = new TreeMap<>();
+            if (aggregate.without) {
+                key.putAll(s.getLabels());
+                key.remove(NAME_LABEL);
+                aggregate.grouping.forEach(key::remove);
+            } else {
+                for (String label : aggregate.grouping) {
+                    String value = s.getLabels().get(label);
+                    if (value != null) {
+                        key.put(label, value);
+                    }
+                }
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(s.getValues());
+        }
+
+        List<QueryResult.ResultSeries> out = new ArrayList<>();
+        for (Map.Entry<Map<String, String>, List<double[]>> group : groups.entrySet()) {
+            out.add(new QueryResult.ResultSeries(group.getKey(), combine(aggregate.op, group.getValue())));
+        }
+        return vector(out);
+    }
+
+    /**
+     * 同一组的序列逐步合并，跳过 NaN
+     */
+    private double[] combine(String op, List<double[]> members) {
+        double[] out = new double[steps];
+        for (int i = 0; i < steps; i++) {
+            int count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] values : members) {
+                double v = values[i];
+                if (Double.isNaN(v)) {
+                    continue;
+                }
+                count++;
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (count == 0) {
+                out[i] = Double.NaN;
+                continue;
+            }
+            double mean = sum / count;
+            switch (op) {
+                case "sum" -> out[i] = sum;
+                case "avg" -> out[i] = mean;
+                case "min" -> out[i] = min;
+                case "max" -> out[i] = max;
+                case "count" -> out[i] = count;
+                default -> {
+                    double squares = 0;
+                    for (double[] values : members) {
+                        double v = values[i];
+                        if (!Double.isNaN(v)) {
+                            squares += (v - mean) * (v - mean);
+                        }
+                    }
+                    out[i] = Math.sqrt(squares / count);
+                }
+            }
+        }
+        return out;
+    }
+
+    // ===== 二元运算 =====
+
+    private QueryResult binary(Expr.Binary binary) {
+        QueryResult lhs = eval(binary.lhs);
+        QueryResult rhs = eval(binary.rhs);
+        boolean comparison = binary.isComparison();
+
+        if (lhs.isScalar() && rhs.isScalar()) {
+            double[] out = new double[steps];
+            for (int i = 0; i < steps; i++) {
+                out[i] = comparison ? (compare(binary.op, lhs.getScalar()[i], rhs.getScalar()[i]) ? 1 : 0)
+                        : arithmetic(binary.op, lhs.getScalar()[i], rhs.getScalar()[i]);
+            }
+            return scalar(out);
+        }
+
+        List<QueryResult.ResultSeries> out = new ArrayList<>();
+        if (lhs.isScalar() || rhs.isScalar()) {
+            boolean scalarLeft = lhs.isScalar();
+            double[] scalar = scalarLeft ? lhs.getScalar() : rhs.getScalar();
+            for (QueryResult.ResultSeries s : (scalarLeft ? rhs : lhs).getSeries()) {
+                double[] values = s.getValues();
+                double[] result = new double[steps];
+                for (int i = 0; i < steps; i++) {
+                    double a = scalarLeft ? scalar[i] : values[i];
+                    double b = scalarLeft ? values[i] : scalar[i];
+                    result[i] = comparison ? (compare(binary.op, a, b) ? values[i] : Double.NaN)
+                            : arithmetic(binary.op, a, b);
+                }
+                out.add(new QueryResult.ResultSeries(comparison ? s.getLabels() : withoutName(s.getLabels()), result));
+            }
+            return vector(out);
+        }
+
+        Map<Map<String, String>, QueryResult.ResultSeries> right = new LinkedHashMap<>();
+        for (QueryResult.ResultSeries s : rhs.getSeries()) {
+            if (right.put(withoutName(s.getLabels()), s) != null) {
+                throw new IllegalArgumentException("右侧有多个序列的标签相同（去掉指标名后），无法一对一匹配");
+            }
+        }
+        Map<Map<String, String>, Boolean> matched = new LinkedHashMap<>();
+        for (QueryResult.ResultSeries s : lhs.getSeries()) {
+            Map<String, String> signature = withoutName(s.getLabels());
+            QueryResult.ResultSeries other = right.get(signature);
+            if (other == null) {
+                continue;
+            }
+            if (matched.put(signature, Boolean.TRUE) != null) {
+                throw new IllegalArgumentException("左侧有多个序列的标签相同（去掉指标名后），无法一对一匹配");
+            }
+            double[] a = s.getValues();
+            double[] b = other.getValues();
+            double[] result = new double[steps];
+            for (int i = 0; i < steps; i++) {
+                result[i] = comparison ? (compare(binary.op, a[i], b[i]) ? a[i] : Double.NaN)
+                        : arithmetic(binary.op, a[i], b[i]);
+            }
+            out.add(new QueryResult.ResultSeries(comparison ? s.getLabels() : signature, result));
+        }
+        return vector(out);
+    }
+
+    private static double arithmetic(QueryLexer.Type op, double a, double b) {
+        return switch (op) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            case DIV -> a / b;
+            case MOD -> a % b;
+            default -> throw new IllegalStateException("不是算术运算: " + op);
+        };
+    }
+
+    private static boolean compare(QueryLexer.Type op, double a, double b) {
+        return switch (op) {
+            case EQL -> a == b;
+            case NEQ -> a != b && !Double.isNaN(a) && !Double.isNaN(b);
+            case GTR -> a > b;
+            case LSS -> a < b;
+            case GTE -> a >= b;
+            case LTE -> a <= b;
+            default -> throw new IllegalStateException("不是比较运算: " + op);
+        };
+    }
+
+    // ===== 工具 =====
+
+    private QueryResult scalar(double[] values) {
+        return new QueryResult(start, step, steps, values, null);
+    }
+
+    private QueryResult vector(List<QueryResult.ResultSeries> series) {
+        return new QueryResult(start, step, steps, null, series);
+    }
+
+    private static double[] map(double[] values, DoubleUnaryOperator f) {
+        double[] out = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = f.applyAsDouble(values[i]);
+        }
+        return out;
+    }
+
+    private static Map<String, String> withoutName(Map<String, String> labels) {
+        if (!labels.containsKey(NAME_LABEL)) {
+            return labels;
+        }
+        Map<String, String> copy = new TreeMap<>(labels);
+        copy.remove(NAME_LABEL);
+        return copy;
+    }
+
+    private static List<QueryResult.ResultSeries> dropEmpty(List<QueryResult.ResultSeries> series) {
+        List<QueryResult.ResultSeries> out = new ArrayList<>(series.size());
+        for (QueryResult.ResultSeries s : series) {
+            for (double v : s.getValues()) {
+                if (!Double.isNaN(v)) {
+                    out.add(s);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,242 @@
+//查询表达式的词法分析：把表达式切成标识符、数字、时长、字符串和运算符
+package com.monitor.monitoring_platform.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 时长写作数字加单位（ms、s、m、h、d、w），可以连写，如 1h30m；字符串用单引号或双引号，支持反斜杠转义。
+ * 出错时抛出 IllegalArgumentException，消息中带出错位置。
+ */
+final class QueryLexer {
+
+    enum Type {
+        IDENT, NUMBER, DURATION, STRING,
+        LPAREN, RPAREN, LBRACE, RBRACE, LBRACKET, RBRACKET, COMMA,
+        ADD, SUB, MUL, DIV, MOD,
+        EQL, NEQ, GTR, LSS, GTE, LTE,
+        ASSIGN, EQL_REGEX, NEQ_REGEX,
+        EOF
+    }
+
+    static final class Token {
+        final Type type;
+        final String text;
+        final int position;
+        // NUMBER 的数值、DURATION 的毫秒数
+        final double number;
+
+        Token(Type type, String text, int position, double number) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+            this.number = number;
+        }
+
+        @Override
+        public String toString() {
+            return type == Type.EOF ? "表达式结尾" : "'" + text + "'";
+        }
+    }
+
+    private final String input;
+    private int pos;
+
+    private QueryLexer(String input) {
+        this.input = input;
+    }
+
+    static List<Token> tokenize(String input) {
+        QueryLexer lexer = new QueryLexer(input);
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = lexer.next();
+            tokens.add(token);
+        } while (token.type != Type.EOF);
+        return tokens;
+    }
+
+    /**
+     * 单独的时长（如 15s、1h30m），返回毫秒数
+     */
+    static long parseDuration(String text) {
+        List<Token> tokens = tokenize(text);
+        if (tokens.size() != 2 || tokens.get(0).type != Type.DURATION) {
+            throw new IllegalArgumentException("无效的时长: " + text);
+        }
+        return (long) tokens.get(0).number;
+    }
+
+    private Token next() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+        int start = pos;
+        if (pos >= input.length()) {
+            return new Token(Type.EOF, "", start, 0);
+        }
+        char c = input.charAt(pos);
+        if (Character.isDigit(c) || (c == '.' && pos + 1 < input.length() && Character.isDigit(input.charAt(pos + 1)))) {
+            return number(start);
+        }
+        if (Character.isLetter(c) || c == '_' || c == ':') {
+            while (pos < input.length() && isIdentPart(input.charAt(pos))) {
+                pos++;
+            }
+            return new Token(Type.IDENT, input.substring(start, pos), start, 0);
+        }
+        if (c == '"' || c == '\'') {
+            return string(start, c);
+        }
+        pos++;
+        char n = pos < input.length() ? input.charAt(pos) : 0;
+        switch (c) {
+            case '(': return simple(Type.LPAREN, start);
+            case ')': return simple(Type.RPAREN, start);
+            case '{': return simple(Type.LBRACE, start);
+            case '}': return simple(Type.RBRACE, start);
+            case '[': return simple(Type.LBRACKET, start);
+            case ']': return simple(Type.RBRACKET, start);
+            case ',': return simple(Type.COMMA, start);
+            case '+': return simple(Type.ADD, start);
+            case '-': return simple(Type.SUB, start);
+            case '*': return simple(Type.MUL, start);
+            case '/': return simple(Type.DIV, start);
+            case '%': return simple(Type.MOD, start);
+            case '=':
+                if (n == '=') {
+                    pos++;
+                    return simple(Type.EQL, start);
+                }
+                if (n == '~') {
+                    pos++;
+                    return simple(Type.EQL_REGEX, start);
+                }
+                return simple(Type.ASSIGN, start);
+            case '!':
+                if (n == '=') {
+                    pos++;
+                    return simple(Type.NEQ, start);
+                }
+                if (n == '~') {
+                    pos++;
+                    return simple(Type.NEQ_REGEX, start);
+                }
+                break;
+            case '>':
+                if (n == '=') {
+                    pos++;
+                    return simple(Type.GTE, start);
+                }
+                return simple(Type.GTR, start);
+            case '<':
+                if (n == '=') {
+                    pos++;
+                    return simple(Type.LTE, start);
+                }
+                return simple(Type.LSS, start);
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("位置 " + start + " 处无法识别的字符 '" + c + "'");
+    }
+
+    private Token simple(Type type, int start) {
+        return new Token(type, input.substring(start, pos), start, 0);
+    }
+
+    /**
+     * 数字，紧跟时长单位时整体作为时长
+     */
+    private Token number(int start) {
+        long durationMs = 0;
+        boolean duration = false;
+        while (true) {
+            int numberStart = pos;
+            while (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+                pos++;
+            }
+            // 科学计数法
+            if (!duration && pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')
+                    && pos + 1 < input.length() && (Character.isDigit(input.charAt(pos + 1))
+                    || ((input.charAt(pos + 1) == '-' || input.charAt(pos + 1) == '+') && pos + 2 < input.length()
+                    && Character.isDigit(input.charAt(pos + 2))))) {
+                pos += 2;
+                while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+                    pos++;
+                }
+            }
+            String digits = input.substring(numberStart, pos);
+            long unitMs = unit();
+            if (unitMs == 0) {
+                if (duration) {
+                    throw new IllegalArgumentException("位置 " + numberStart + " 处的时长缺少单位");
+                }
+                double value;
+                try {
+                    value = Double.parseDouble(digits);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("位置 " + start + " 处的数字无效: " + digits);
+                }
+                return new Token(Type.NUMBER, digits, start, value);
+            }
+            if (!digits.chars().allMatch(Character::isDigit)) {
+                throw new IllegalArgumentException("位置 " + numberStart + " 处的时长必须是整数: " + digits);
+            }
+            duration = true;
+            durationMs += Long.parseLong(digits) * unitMs;
+            if (pos >= input.length() || !Character.isDigit(input.charAt(pos))) {
+                return new Token(Type.DURATION, input.substring(start, pos), start, durationMs);
+            }
+        }
+    }
+
+    /**
+     * 读取时长单位，返回毫秒数；后面不是单位时返回 0 且不移动位置
+     */
+    private long unit() {
+        int end = pos;
+        while (end < input.length() && Character.isLetter(input.charAt(end))) {
+            end++;
+        }
+        long unitMs;
+        switch (input.substring(pos, end)) {
+            case "ms": unitMs = 1; break;
+            case "s": unitMs = 1000; break;
+            case "m": unitMs = 60_000; break;
+            case "h": unitMs = 3600_000; break;
+            case "d": unitMs = 86400_000; break;
+            case "w": unitMs = 7 * 86400_000L; break;
+            default: return 0;
+        }
+        pos = end;
+        return unitMs;
+    }
+
+    private Token string(int start, char quote) {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (pos < input.length()) {
+            char c = input.charAt(pos++);
+            if (c == quote) {
+                return new Token(Type.STRING, sb.toString(), start, 0);
+            }
+            if (c == '\\' && pos < input.length()) {
+                char escaped = input.charAt(pos++);
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    default: sb.append(escaped); break;
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        throw new IllegalArgumentException("位置 " + start + " 处的字符串没有结束");
+    }
+
+    private static boolean isIdentPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':';
+    }
+}
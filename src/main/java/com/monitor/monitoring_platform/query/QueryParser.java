@@ -0,0 +1,251 @@
+//查询表达式的语法分析（递归下降）
+package com.monitor.monitoring_platform.query;
+
+import com.monitor.monitoring_platform.query.QueryLexer.Token;
+import com.monitor.monitoring_platform.query.QueryLexer.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 语法（优先级从低到高）：
+ * <pre>
+ * expr       = comparison
+ * comparison = additive (("==" | "!=" | ">" | "<" | ">=" | "<=") additive)*
+ * additive   = term (("+" | "-") term)*
+ * term       = unary (("*" | "/" | "%") unary)*
+ * unary      = "-" unary | primary
+ * primary    = NUMBER | "(" expr ")" | aggregate | call | selector
+ * aggregate  = AGG_OP [("by" | "without") labels] "(" expr ")" [("by" | "without") labels]
+ * call       = IDENT "(" [expr ("," expr)*] ")"
+ * selector   = [IDENT] ["{" [matcher ("," matcher)*] "}"] ["[" DURATION "]"]
+ * </pre>
+ * 指标名作为 __name__ 标签参与匹配，组件名是 component 标签。
+ */
+final class QueryParser {
+
+    static final Set<String> AGGREGATIONS = Set.of("sum", "avg", "min", "max", "count", "stddev");
+
+    private final List<Token> tokens;
+    private int index;
+
+    private QueryParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    static Expr parse(String query) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("查询表达式不能为空");
+        }
+        QueryParser parser = new QueryParser(QueryLexer.tokenize(query));
+        Expr expr = parser.comparison();
+        parser.expect(Type.EOF);
+        return expr;
+    }
+
+    /**
+     * 解析单独的瞬时选择器（如 cpu_usage{component="CPU"}），返回其匹配条件
+     */
+    static List<LabelMatcher> parseSelector(String selector) {
+        Expr expr = parse(selector);
+        if (!(expr instanceof Expr.Selector parsed) || parsed.rangeMs != 0) {
+            throw new IllegalArgumentException("需要瞬时选择器: " + selector);
+        }
+        return parsed.matchers;
+    }
+
+    private Expr comparison() {
+        Expr lhs = additive();
+        while (true) {
+            Type type = peek().type;
+            if (type != Type.EQL && type != Type.NEQ && type != Type.GTR && type != Type.LSS
+                    && type != Type.GTE && type != Type.LTE) {
+                return lhs;
+            }
+            index++;
+            lhs = new Expr.Binary(type, lhs, additive());
+        }
+    }
+
+    private Expr additive() {
+        Expr lhs = term();
+        while (peek().type == Type.ADD || peek().type == Type.SUB) {
+            Type type = tokens.get(index++).type;
+            lhs = new Expr.Binary(type, lhs, term());
+        }
+        return lhs;
+    }
+
+    private Expr term() {
+        Expr lhs = unary();
+        while (peek().type == Type.MUL || peek().type == Type.DIV || peek().type == Type.MOD) {
+            Type type = tokens.get(index++).type;
+            lhs = new Expr.Binary(type, lhs, unary());
+        }
+        return lhs;
+    }
+
+    private Expr unary() {
+        if (peek().type == Type.SUB) {
+            index++;
+            Expr inner = unary();
+            if (inner instanceof Expr.NumberLiteral number) {
+                return new Expr.NumberLiteral(-number.value);
+            }
+            return new Expr.Negate(inner);
+        }
+        if (peek().type == Type.ADD) {
+            index++;
+            return unary();
+        }
+        return primary();
+    }
+
+    private Expr primary() {
+        Token token = peek();
+        switch (token.type) {
+            case NUMBER:
+                index++;
+                return new Expr.NumberLiteral(token.number);
+            case LPAREN:
+                index++;
+                Expr inner = comparison();
+                expect(Type.RPAREN);
+                return inner;
+            case LBRACE:
+                return selector(null);
+            case IDENT:
+                index++;
+                if (AGGREGATIONS.contains(token.text) && (peek().type == Type.LPAREN || isGroupingKeyword(peek()))) {
+                    return aggregate(token.text);
+                }
+                if (peek().type == Type.LPAREN) {
+                    return call(token.text);
+                }
+                return selector(token.text);
+            default:
+                throw unexpected(token);
+        }
+    }
+
+    private Expr aggregate(String op) {
+        List<String> grouping = List.of();
+        boolean without = false;
+        boolean grouped = false;
+        if (isGroupingKeyword(peek())) {
+            without = "without".equals(tokens.get(index++).text);
+            grouping = labelList();
+            grouped = true;
+        }
+        expect(Type.LPAREN);
+        Expr inner = comparison();
+        expect(Type.RPAREN);
+        if (!grouped && isGroupingKeyword(peek())) {
+            without = "without".equals(tokens.get(index++).text);
+            grouping = labelList();
+        }
+        return new Expr.Aggregate(op, grouping, without, inner);
+    }
+
+    private List<String> labelList() {
+        expect(Type.LPAREN);
+        List<String> labels = new ArrayList<>();
+        if (peek().type != Type.RPAREN) {
+            do {
+                labels.add(expect(Type.IDENT).text);
+            } while (accept(Type.COMMA));
+        }
+        expect(Type.RPAREN);
+        return labels;
+    }
+
+    private Expr call(String name) {
+        expect(Type.LPAREN);
+        List<Expr> args = new ArrayList<>();
+        if (peek().type != Type.RPAREN) {
+            do {
+                args.add(comparison());
+            } while (accept(Type.COMMA));
+        }
+        expect(Type.RPAREN);
+        return new Expr.Call(name, args);
+    }
+
+    private Expr selector(String metricName) {
+        List<LabelMatcher> matchers = new ArrayList<>();
+        if (metricName != null) {
+            matchers.add(new LabelMatcher(QueryEvaluator.NAME_LABEL, LabelMatcher.Op.EQ, metricName));
+        }
+        if (accept(Type.LBRACE)) {
+            if (peek().type != Type.RBRACE) {
+                do {
+                    matchers.add(matcher());
+                } while (accept(Type.COMMA) && peek().type != Type.RBRACE);
+            }
+            expect(Type.RBRACE);
+        }
+        boolean selective = false;
+        for (LabelMatcher matcher : matchers) {
+            if (!matcher.matches(Map.of())) {
+                selective = true;
+            }
+        }
+        if (!selective) {
+            throw new IllegalArgumentException("选择器至少需要一个不匹配空值的条件，例如指标名");
+        }
+        long rangeMs = 0;
+        if (accept(Type.LBRACKET)) {
+            Token duration = expect(Type.DURATION);
+            rangeMs = (long) duration.number;
+            if (rangeMs <= 0) {
+                throw new IllegalArgumentException("位置 " + duration.position + " 处的区间长度必须大于 0");
+            }
+            expect(Type.RBRACKET);
+        }
+        return new Expr.Selector(matchers, rangeMs);
+    }
+
+    private LabelMatcher matcher() {
+        String name = expect(Type.IDENT).text;
+        Token op = tokens.get(index++);
+        LabelMatcher.Op matchOp = switch (op.type) {
+            case ASSIGN -> LabelMatcher.Op.EQ;
+            case NEQ -> LabelMatcher.Op.NEQ;
+            case EQL_REGEX -> LabelMatcher.Op.RE;
+            case NEQ_REGEX -> LabelMatcher.Op.NRE;
+            default -> throw unexpected(op);
+        };
+        return new LabelMatcher(name, matchOp, expect(Type.STRING).text);
+    }
+
+    private boolean isGroupingKeyword(Token token) {
+        return token.type == Type.IDENT && ("by".equals(token.text) || "without".equals(token.text));
+    }
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+    private boolean accept(Type type) {
+        if (peek().type == type) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(Type type) {
+        Token token = peek();
+        if (token.type != type) {
+            throw unexpected(token);
+        }
+        index++;
+        return token;
+    }
+
+    private static IllegalArgumentException unexpected(Token token) {
+        return new IllegalArgumentException("位置 " + token.position + " 处不应出现 " + token);
+    }
+}
@@ -0,0 +1,54 @@
+//查询表达式的求值结果：标量（每步一个值）或一组序列（每个序列每步一个值），缺失的点为 NaN
+package com.monitor.monitoring_platform.query;
+
+import java.util.List;
+import java.util.Map;
+
+public final class QueryResult {
+
+    private final long start;
+    private final long step;
+    private final int steps;
+    // 标量结果时非 null
+    private final double[] scalar;
+    private final List<ResultSeries> series;
+
+    QueryResult(long start, long step, int steps, double[] scalar, List<ResultSeries> series) {
+        this.start = start;
+        this.step = step;
+        this.steps = steps;
+        this.scalar = scalar;
+        this.series = series;
+    }
+
+    public boolean isScalar() { return scalar != null; }
+
+    public long getStart() { return start; }
+
+    public long getStep() { return step; }
+
+    public int getSteps() { return steps; }
+
+    public long getTimestamp(int index) { return start + index * step; }
+
+    public double[] getScalar() { return scalar; }
+
+    public List<ResultSeries> getSeries() { return series; }
+
+    /**
+     * 结果中的一个序列
+     */
+    public static final class ResultSeries {
+        private final Map<String, String> labels;
+        private final double[] values;
+
+        ResultSeries(Map<String, String> labels, double[] values) {
+            this.labels = labels;
+            this.values = values;
+        }
+
+        public Map<String, String> getLabels() { return labels; }
+
+        public double[] getValues() { return values; }
+    }
+}
@@ -0,0 +1,191 @@
+//区间函数（xxx_over_time、rate 等）的批量计算：一次遍历算出所有步的窗口，再按前缀和、单调队列求值
+package com.monitor.monitoring_platform.query;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * 第 i 步的窗口是 (t_i - range, t_i]，t_i = start + i * step。
+ * 窗口两端都随步单调右移，所以先用双指针求出每步的样本下标区间 [lo, hi)，
+ * 之后 sum/avg/count/stddev 用前缀和 O(1) 求值，min/max 用单调队列，整个序列只遍历常数次；
+ * 没有样本的步结果为 NaN。
+ * <p>
+ * rate/increase 把数值下降视为计数器重置；与 Prometheus 不同，不外推到窗口边界，
+ * rate 按窗口内首末样本的时间差计算。delta 用于仪表值，是窗口内末样本减首样本。
+ */
+final class RangeFunctions {
+
+    static final Set<String> NAMES = Set.of("rate", "increase", "delta", "avg_over_time", "sum_over_time",
+            "count_over_time", "min_over_time", "max_over_time", "stddev_over_time", "last_over_time",
+            "quantile_over_time");
+
+    private RangeFunctions() {
+    }
+
+    /**
+     * 计算一个序列上的区间函数
+     *
+     * @param quantile 只用于 quantile_over_time
+     */
+    static double[] apply(String name, SampleSeries series, long start, long step, int steps, long rangeMs,
+                          double quantile) {
+        long[] ts = series.getTimestamps();
+        int n = series.size();
+        int[] lo = new int[steps];
+        int[] hi = new int[steps];
+        int l = 0;
+        int h = 0;
+        for (int i = 0; i < steps; i++) {
+            long t = start + i * step;
+            while (h < n && ts[h] <= t) {
+                h++;
+            }
+            while (l < h && ts[l] <= t - rangeMs) {
+                l++;
+            }
+            lo[i] = l;
+            hi[i] = h;
+        }
+
+        return switch (name) {
+            case "sum_over_time", "avg_over_time", "count_over_time", "stddev_over_time" ->
+                    moments(name, series.getValues(), n, lo, hi);
+            case "min_over_time" -> extreme(series.getValues(), lo, hi, true);
+            case "max_over_time" -> extreme(series.getValues(), lo, hi, false);
+            case "last_over_time" -> last(series.getValues(), lo, hi);
+            case "delta" -> delta(series.getValues(), lo, hi);
+            case "increase", "rate" -> increase(ts, series.getValues(), n, lo, hi, "rate".equals(name));
+            case "quantile_over_time" -> quantile(series.getValues(), lo, hi, quantile);
+            default -> throw new IllegalArgumentException("未知函数: " + name);
+        };
+    }
+
+    private static double[] moments(String name, double[] values, int n, int[] lo, int[] hi) {
+        // 减去一个参考值再累加平方，减少大数值、小方差时的相消误差
+        double shift = n > 0 ? values[0] : 0;
+        double[] sum = new double[n + 1];
+        double[] sumSquares = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            double v = values[i] - shift;
+            sum[i + 1] = sum[i] + v;
+            sumSquares[i + 1] = sumSquares[i] + v * v;
+        }
+        double[] out = new double[lo.length];
+        for (int i = 0; i < lo.length; i++) {
+            int count = hi[i] - lo[i];
+            if (count == 0) {
+                out[i] = Double.NaN;
+                continue;
+            }
+            double s = sum[hi[i]] - sum[lo[i]];
+            double mean = s / count;
+            out[i] = switch (name) {
+                case "sum_over_time" -> s + shift * count;
+                case "avg_over_time" -> mean + shift;
+                case "count_over_time" -> count;
+                default -> Math.sqrt(Math.max(0, (sumSquares[hi[i]] - sumSquares[lo[i]]) / count - mean * mean));
+            };
+        }
+        return out;
+    }
+
+    /**
+     * 滑动窗口最小（最大）值：队列里保存下标，对应的值单调递增（递减），队首即窗口的极值
+     */
+    private static double[] extreme(double[] values, int[] lo, int[] hi, boolean min) {
+        double[] out = new double[lo.length];
+        int[] deque = new int[Math.max(1, hi.length > 0 ? hi[hi.length - 1] : 1)];
+        int head = 0;
+        int tail = 0;
+        int next = 0;
+        for (int i = 0; i < lo.length; i++) {
+            for (; next < hi[i]; next++) {
+                double v = values[next];
+                while (tail > head && (min ? values[deque[tail - 1]] >= v : values[deque[tail - 1]] <= v)) {
+                    tail--;
+                }
+                deque[tail++] = next;
+            }
+            while (tail > head && deque[head] < lo[i]) {
+                head++;
+            }
+            out[i] = tail > head ? values[deque[head]] : Double.NaN;
+        }
+        return out;
+    }
+
+    private static double[] last(double[] values, int[] lo, int[] hi) {
+        double[] out = new double[lo.length];
+        for (int i = 0; i < lo.length; i++) {
+            out[i] = hi[i] > lo[i] ? values[hi[i] - 1] : Double.NaN;
+        }
+        return out;
+    }
+
+    private static double[] delta(double[] values, int[] lo, int[] hi) {
+        double[] out = new double[lo.length];
+        for (int i = 0; i < lo.length; i++) {
+            out[i] = hi[i] - lo[i] >= 2 ? values[hi[i] - 1] - values[lo[i]] : Double.NaN;
+        }
+        return out;
+    }
+
+    private static double[] increase(long[] ts, double[] values, int n, int[] lo, int[] hi, boolean perSecond) {
+        // resets[i + 1] - resets[j + 1]：样本 j..i 之间因计数器重置损失的量
+        double[] resets = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            resets[i + 1] = resets[i] + (i > 0 && values[i] < values[i - 1] ? values[i - 1] : 0);
+        }
+        double[] out = new double[lo.length];
+        for (int i = 0; i < lo.length; i++) {
+            int first = lo[i];
+            int last = hi[i] - 1;
+            if (last - first < 1) {
+                out[i] = Double.NaN;
+                continue;
+            }
+            double increase = values[last] - values[first] + resets[last + 1] - resets[first + 1];
+            out[i] = perSecond ? increase * 1000.0 / (ts[last] - ts[first]) : increase;
+        }
+        return out;
+    }
+
+    private static double[] quantile(double[] values, int[] lo, int[] hi, double q) {
+        double[] out = new double[lo.length];
+        double[] scratch = new double[0];
+        for (int i = 0; i < lo.length; i++) {
+            int count = hi[i] - lo[i];
+            if (count == 0) {
+                out[i] = Double.NaN;
+                continue;
+            }
+            if (scratch.length < count) {
+                scratch = new double[Math.max(count, scratch.length * 2)];
+            }
+            System.arraycopy(values, lo[i], scratch, 0, count);
+            Arrays.sort(scratch, 0, count);
+            out[i] = quantileOfSorted(scratch, count, q);
+        }
+        return out;
+    }
+
+    /**
+     * 已排序数组前 count 个元素的 q 分位数，排名之间线性插值
+     */
+    static double quantileOfSorted(double[] sorted, int count, double q) {
+        if (Double.isNaN(q)) {
+            return Double.NaN;
+        }
+        if (q < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (q > 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double rank = q * (count - 1);
+        int below = (int) Math.floor(rank);
+        int above = Math.min(below + 1, count - 1);
+        double weight = rank - below;
+        return sorted[below] * (1 - weight) + sorted[above] * weight;
+    }
+}
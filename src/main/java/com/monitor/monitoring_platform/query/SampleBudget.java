@@ -0,0 +1,31 @@
+//一次查询读取样本数的上限，多个序列并行读取时共用，读取过程中超出即中止
+package com.monitor.monitoring_platform.query;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SampleSeries 每追加 CHARGE_SAMPLES 个样本记一次账，不为每个样本更新共享计数；
+ * 超出上限时在读取线程上抛出 IllegalArgumentException，存储扫描随之中止，不会先把全部样本读进内存。
+ */
+public final class SampleBudget {
+
+    // 记账粒度，超出上限后每个序列最多再多读这么多样本
+    static final int CHARGE_SAMPLES = 1024;
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    public SampleBudget(long limit) {
+        this.limit = limit;
+    }
+
+    void charge(long samples) {
+        if (used.addAndGet(samples) > limit) {
+            throw exceeded(limit);
+        }
+    }
+
+    static IllegalArgumentException exceeded(long limit) {
+        return new IllegalArgumentException("查询读取的样本数超过上限 " + limit + "，请缩小时间范围或区间");
+    }
+}
@@ -0,0 +1,61 @@
+//一个序列的标签和一段样本，时间和数值分别放在基本类型数组里，供区间函数批量计算
+package com.monitor.monitoring_platform.query;
+
+import com.monitor.monitoring_platform.storage.SampleConsumer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 同时是 SampleConsumer，读取存储时直接追加，不为每个样本创建对象。样本需按时间升序追加。
+ * 带 SampleBudget 时追加过程中按查询的样本上限记账，超出时抛出 IllegalArgumentException。
+ */
+public final class SampleSeries implements SampleConsumer {
+
+    private final Map<String, String> labels;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+    private final SampleBudget budget;
+
+    public SampleSeries(Map<String, String> labels) {
+        this(labels, 64);
+    }
+
+    public SampleSeries(Map<String, String> labels, int capacity) {
+        this(labels, capacity, null);
+    }
+
+    public SampleSeries(Map<String, String> labels, SampleBudget budget) {
+        this(labels, 64, budget);
+    }
+
+    private SampleSeries(Map<String, String> labels, int capacity, SampleBudget budget) {
+        this.labels = labels;
+        this.timestamps = new long[Math.max(capacity, 1)];
+        this.values = new double[Math.max(capacity, 1)];
+        this.budget = budget;
+    }
+
+    @Override
+    public void accept(long timestampMs, double value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestampMs;
+        values[size] = value;
+        size++;
+        if (budget != null && size % SampleBudget.CHARGE_SAMPLES == 0) {
+            budget.charge(SampleBudget.CHARGE_SAMPLES);
+        }
+    }
+
+    public Map<String, String> getLabels() { return labels; }
+
+    public long[] getTimestamps() { return timestamps; }
+
+    public double[] getValues() { return values; }
+
+    public int size() { return size; }
+}
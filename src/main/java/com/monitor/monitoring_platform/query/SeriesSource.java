@@ -0,0 +1,23 @@
+//查询表达式的数据来源：按标签条件选出序列，并读取序列在时间范围内的样本
+package com.monitor.monitoring_platform.query;
+
+import java.util.List;
+
+public interface SeriesSource {
+
+    /**
+     * 满足全部条件的序列，样本为 [fromMs, toMs] 内的数据，按时间升序
+     */
+    List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs);
+
+    /**
+     * 调用方只在 toMs、toMs - stepMs、toMs - 2 * stepMs ... 这些时刻各取之前 lookbackMs 内的最后一个样本时
+     * （瞬时选择器按步长求值），来源可以返回稀疏的样本，如每个聚合桶内的最后一个样本；
+     * stepMs 为 0 表示需要全部原始样本。
+     * 从存储读取时，新建的 SampleSeries 应带上 budget，读取的样本超出查询上限时立即中止
+     */
+    default List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs,
+                                      long stepMs, long lookbackMs, SampleBudget budget) {
+        return select(matchers, fromMs, toMs);
+    }
+}
@@ -10,10 +10,20 @@ public class AiSmartService {
     @Resource
     private ChatClient.Builder chatClientBuilder;
 
+    public static final String UNAVAILABLE = "AI服务暂时不可用，请稍后再试。";
+
     /**
      * 问 AI 任何问题，返回清理后的答案
      */
     public String askAi(String prompt) {
+        String answer = tryAskAi(prompt);
+        return answer != null ? answer : UNAVAILABLE;
+    }
+
+    /**
+     * 与 askAi 相同，但调用失败或没有返回内容时返回 null，供需要区分失败的调用方（如告警建议缓存）使用
+     */
+    public String tryAskAi(String prompt) {
         try {
             ChatClient chatClient = chatClientBuilder.build();
             String rawResponse = chatClient.prompt()
@@ -21,9 +31,11 @@ public class AiSmartService {
                     .user(prompt)
                     .call()
                     .content();
-            return cleanMarkdown(rawResponse);
+            String answer = cleanMarkdown(rawResponse);
+            return answer.isEmpty() ? null : answer;
         } catch (Exception e) {
-            return "AI服务暂时不可用，请稍后再试。";
+            System.err.println("AI 调用失败: " + e.getMessage());
+            return null;
         }
     }
 
@@ -0,0 +1,184 @@
+//告警 AI 建议的异步补充服务：告警检测只入队，大模型调用在后台单线程执行
+package com.monitor.monitoring_platform.service;
+
+import com.monitor.monitoring_platform.entity.AlertRecord;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同一组件、同一告警类型的告警合并成一次 AI 调用：
+ * 正在生成时新告警挂到同一个任务上，生成完成后 cooldown 时间内直接复用结果；
+ * AI 调用失败时告警标记为 FAILED，失败结果不复用。
+ * 一批异常样本因此不会变成一批阻塞的大模型调用。
+ */
+@Service
+public class AlertEnrichmentService {
+
+    // 缓存的建议数上限：键中的组件名来自各种上报协议，不能无限增长
+    private static final int MAX_CACHED_SUGGESTIONS = 1000;
+
+    @Resource
+    private AiSmartService aiSmartService;
+
+    @Value("${monitor.alert.enrichment.cooldown-seconds:600}")
+    private long cooldownSeconds;
+
+    @Value("${monitor.alert.recent-size:200}")
+    private int recentSize;
+
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    // 最近的告警记录，最新的在前
+    private final Deque<AlertRecord> recentAlerts = new ConcurrentLinkedDeque<>();
+
+    // 正在生成建议的任务：组件|告警类型 -> 等待结果的告警
+    private final Map<String, PendingSuggestion> inFlight = new ConcurrentHashMap<>();
+
+    // 最近生成的建议：组件|告警类型 -> 建议，按访问顺序淘汰，过期的在读到时删除
+    private final Map<String, CachedSuggestion> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSuggestion> eldest) {
+                    return size() > MAX_CACHED_SUGGESTIONS;
+                }
+            });
+
+    // 单线程 + 有界队列，队列满时直接跳过，不影响告警本身
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(100), runnable -> {
+        Thread thread = new Thread(runnable, "alert-enrichment");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 创建告警记录并安排 AI 建议生成，立即返回
+     */
+    public AlertRecord record(String componentName, String alertType, String alertLevel, String message, String prompt) {
+        AlertRecord alert = new AlertRecord(idGenerator.incrementAndGet(), componentName, alertType, alertLevel, message);
+        remember(alert);
+
+        String key = componentName + "|" + alertType;
+        CachedSuggestion cached = cache.get(key);
+        if (cached != null) {
+            if (System.currentTimeMillis() - cached.createdAt < cooldownSeconds * 1000) {
+                alert.attachSuggestion(cached.suggestions, AlertRecord.SUGGESTION_READY);
+                return alert;
+            }
+            cache.remove(key, cached);
+        }
+
+        boolean[] created = new boolean[1];
+        PendingSuggestion pending = inFlight.compute(key, (k, existing) -> {
+            if (existing != null && existing.addWaiter(alert)) {
+                return existing;
+            }
+            created[0] = true;
+            PendingSuggestion fresh = new PendingSuggestion();
+            fresh.addWaiter(alert);
+            return fresh;
+        });
+
+        if (created[0]) {
+            try {
+                executor.execute(() -> generate(key, pending, prompt));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, pending);
+                pending.complete("AI 建议队列繁忙，本次未生成", AlertRecord.SUGGESTION_SKIPPED);
+            }
+        }
+        return alert;
+    }
+
+    private void generate(String key, PendingSuggestion pending, String prompt) {
+        String suggestions = aiSmartService.tryAskAi(prompt);
+        if (suggestions == null) {
+            // 失败不进缓存，同类的下一次告警重新生成
+            inFlight.remove(key, pending);
+            pending.complete(AiSmartService.UNAVAILABLE, AlertRecord.SUGGESTION_FAILED);
+            System.err.println("AI 建议生成失败 [" + key + "]");
+            return;
+        }
+        cache.put(key, new CachedSuggestion(suggestions));
+        inFlight.remove(key, pending);
+        pending.complete(suggestions, AlertRecord.SUGGESTION_READY);
+        System.out.println("🤖 AI 建议已生成 [" + key + "]: " + suggestions);
+    }
+
+    private void remember(AlertRecord alert) {
+        recentAlerts.addFirst(alert);
+        while (recentAlerts.size() > recentSize) {
+            recentAlerts.pollLast();
+        }
+    }
+
+    /**
+     * 最近的告警记录（最新的在前）
+     */
+    public List<AlertRecord> getRecentAlerts() {
+        return new ArrayList<>(recentAlerts);
+    }
+
+    public AlertRecord getAlert(long id) {
+        for (AlertRecord alert : recentAlerts) {
+            if (alert.getId() == id) {
+                return alert;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一个正在生成的建议及等待它的告警
+     */
+    private static final class PendingSuggestion {
+        private final List<AlertRecord> waiters = new ArrayList<>();
+        private boolean completed;
+
+        synchronized boolean addWaiter(AlertRecord alert) {
+            if (completed) {
+                return false;
+            }
+            waiters.add(alert);
+            return true;
+        }
+
+        synchronized void complete(String suggestions, String status) {
+            completed = true;
+            for (AlertRecord alert : waiters) {
+                alert.attachSuggestion(suggestions, status);
+            }
+            waiters.clear();
+        }
+    }
+
+    private static final class CachedSuggestion {
+        private final String suggestions;
+        private final long createdAt = System.currentTimeMillis();
+
+        private CachedSuggestion(String suggestions) {
+            this.suggestions = suggestions;
+        }
+    }
+}
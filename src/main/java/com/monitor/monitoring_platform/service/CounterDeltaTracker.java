@@ -0,0 +1,123 @@
+//单调计数器差值跟踪器：保存上一次的计数器读数，计算两次采样之间的增量
+package com.monitor.monitoring_platform.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 每个使用方（采样器、接口默认实例）各持有一个，互不干扰。
+ * 内部通过 CAS 推进基线，多线程并发调用时每个增量都对应相邻的两次读数，不会互相破坏；
+ * 计数器回绕（32位网卡计数器）和重置（网卡重建、重启）都按增量处理，不会得到负值。
+ */
+public final class CounterDeltaTracker {
+
+    private static final long UINT32_RANGE = 1L << 32;
+
+    // 两次采样间隔小于该值时不推进基线，直接复用上一次的增量，避免极短间隔带来的抖动
+    private final long minIntervalNanos;
+
+    private final AtomicReference<Sample> previous = new AtomicReference<>();
+
+    public CounterDeltaTracker() {
+        this(200_000_000L);
+    }
+
+    public CounterDeltaTracker(long minIntervalNanos) {
+        this.minIntervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * 记录一次读数并返回与上一次读数之间的增量
+     *
+     * @param key      计数器来源（如网卡名），与上一次不同时重新建立基线
+     * @param counters 当前计数器读数
+     * @param nanoTime 读取时刻（System.nanoTime）
+     * @return 增量；首次调用或来源切换后返回 null
+     */
+    public Delta update(String key, long[] counters, long nanoTime) {
+        while (true) {
+            Sample prev = previous.get();
+
+            if (prev != null && sameKey(prev.key, key) && nanoTime - prev.nanoTime < minIntervalNanos) {
+                // 距上次太近（或是更早读到的旧值），沿用上一次的结果
+                return prev.delta;
+            }
+
+            Delta delta = null;
+            if (prev != null && sameKey(prev.key, key) && prev.counters.length == counters.length) {
+                long[] deltas = new long[counters.length];
+                for (int i = 0; i < counters.length; i++) {
+                    deltas[i] = counterDelta(prev.counters[i], counters[i]);
+                }
+                delta = new Delta(deltas, nanoTime - prev.nanoTime);
+            }
+
+            Sample next = new Sample(key, counters.clone(), nanoTime, delta);
+            if (previous.compareAndSet(prev, next)) {
+                return delta;
+            }
+            // 其他线程抢先推进了基线，基于新基线重算
+        }
+    }
+
+    /**
+     * 两次读数之间的增量，处理回绕和重置
+     */
+    static long counterDelta(long prev, long current) {
+        if (Long.compareUnsigned(current, prev) >= 0) {
+            return current - prev;
+        }
+        if (prev >= 0 && prev < UINT32_RANGE && current >= 0) {
+            // 32位计数器回绕
+            return current + UINT32_RANGE - prev;
+        }
+        // 计数器被重置，从0重新开始计数
+        return current;
+    }
+
+    private static boolean sameKey(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static final class Sample {
+        private final String key;
+        private final long[] counters;
+        private final long nanoTime;
+        private final Delta delta;
+
+        private Sample(String key, long[] counters, long nanoTime, Delta delta) {
+            this.key = key;
+            this.counters = counters;
+            this.nanoTime = nanoTime;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * 一次增量结果
+     */
+    public static final class Delta {
+        private final long[] deltas;
+        private final long elapsedNanos;
+
+        Delta(long[] deltas, long elapsedNanos) {
+            this.deltas = deltas;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long get(int index) {
+            return deltas[index];
+        }
+
+        public long sum() {
+            long total = 0;
+            for (long d : deltas) {
+                total += d;
+            }
+            return total;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+    }
+}
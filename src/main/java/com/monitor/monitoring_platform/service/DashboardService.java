@@ -2,7 +2,8 @@ package com.monitor.monitoring_platform.service;
 
 import com.monitor.monitoring_platform.entity.SmartAnalysisResult;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
-import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import com.monitor.monitoring_platform.storage.RangeQueryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -11,8 +12,14 @@ import java.util.*;
 @Service
 public class DashboardService {
 
+    // 历史页面每个组件显示的行数上限，时间范围越长每行代表的时间越长
+    public static final int HISTORY_ROWS_PER_COMPONENT = 288;
+
+    @Autowired
+    private MetricStorageService metricStorageService;
+
     @Autowired
-    private SystemMetricsMapper systemMetricsMapper;
+    private RangeQueryService rangeQueryService;
 
     @Autowired
     private SmartRootCauseService smartRootCauseService;
@@ -22,7 +29,7 @@ public class DashboardService {
      */
     public SmartAnalysisResult getSmartAnalysis() {
         // 从数据库获取最近的真实数据
-        List<SystemMetrics> recentMetrics = systemMetricsMapper.selectRecentMetrics(10);
+        List<SystemMetrics> recentMetrics = metricStorageService.selectRecentMetrics(10);
 
         if (recentMetrics == null || recentMetrics.isEmpty()) {
             // 如果没有真实数据，才用测试数据
@@ -40,7 +47,7 @@ public class DashboardService {
     public Map<String, Object> getDynamicTopology() {
         Map<String, Object> topology = new HashMap<>();
 
-        List<SystemMetrics> recentDisks = systemMetricsMapper.selectRecentDisks();
+        List<SystemMetrics> recentDisks = metricStorageService.selectRecentDisks();
 
         List<Map<String, Object>> nodes = new ArrayList<>();
         List<Map<String, Object>> links = new ArrayList<>();
@@ -118,10 +125,21 @@ public class DashboardService {
     }*/
 
     /**
-     * 获取历史数据
+     * 获取历史数据：按时间范围降采样，每行是一个时间段内的平均值（读聚合表，不再拉取全部原始行）
      */
     public List<SystemMetrics> getHistoryData(java.time.LocalDateTime startTime, java.time.LocalDateTime endTime) {
-        return systemMetricsMapper.selectByTimeRange(startTime, endTime);
+        return rangeQueryService.selectRows(toEpochMillis(startTime), toEpochMillis(endTime), HISTORY_ROWS_PER_COMPONENT);
+    }
+
+    /**
+     * 历史数据每行代表的时间长度（毫秒）
+     */
+    public long getHistoryStepMs(java.time.LocalDateTime startTime, java.time.LocalDateTime endTime) {
+        return rangeQueryService.resolveStep(toEpochMillis(startTime), toEpochMillis(endTime), null, HISTORY_ROWS_PER_COMPONENT);
+    }
+
+    private static long toEpochMillis(java.time.LocalDateTime time) {
+        return time.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /**
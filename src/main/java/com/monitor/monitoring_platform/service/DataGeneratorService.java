@@ -3,7 +3,8 @@ package com.monitor.monitoring_platform.service;
 
 import com.monitor.monitoring_platform.entity.SystemMetrics;
 import com.monitor.monitoring_platform.entity.DiskInfo;
-import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import com.monitor.monitoring_platform.ingest.MetricWriteBehindService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -14,21 +15,28 @@ import java.util.List;
 public class DataGeneratorService {
 
     @Autowired
-    private SystemMetricsMapper systemMetricsMapper;
+    private MetricWriteBehindService metricWriteBehindService;
 
     @Autowired
-    private RealSystemDataService realSystemDataService;
+    private MetricsSamplerService metricsSamplerService;
 
     @Scheduled(fixedRate = 30000) // 每30秒生成一次
     public void generateRealSystemMetrics() {
         System.out.println("=== 开始生成真实监控数据 ===");
 
         try {
+            // 直接使用后台采样器的快照，不再单独采集
+            MetricsSnapshot snapshot = metricsSamplerService.getSnapshot();
+            if (snapshot.isEmpty()) {
+                System.out.println("采样器尚未完成首次采集，跳过本次入库");
+                return;
+            }
+
             // 生成核心组件的真实数据
-            generateCoreComponents();
+            generateCoreComponents(snapshot);
 
             // 生成磁盘数据
-            generateDiskMetrics();
+            generateDiskMetrics(snapshot);
 
             System.out.println("=== 真实数据生成完成 ===");
 
@@ -41,24 +49,23 @@ public class DataGeneratorService {
     /**
      * 生成核心组件数据
      */
-    private void generateCoreComponents() {
+    private void generateCoreComponents(MetricsSnapshot snapshot) {
         String[] coreComponents = {"CPU", "Memory", "Network", "Processes"};
+        List<SystemMetrics> rows = snapshot.toMetrics();
 
-        for (String component : coreComponents) {
-            SystemMetrics metrics = realSystemDataService.getCompleteRealMetrics(component);
-            if (metrics != null) {
-                systemMetricsMapper.insert(metrics);
-                logComponentData(component, metrics);
-            }
+        for (int i = 0; i < coreComponents.length; i++) {
+            SystemMetrics metrics = rows.get(i);
+            write(metrics);
+            logComponentData(coreComponents[i], metrics);
         }
     }
 
     /**
      * 生成磁盘监控数据
      */
-    private void generateDiskMetrics() {
+    private void generateDiskMetrics(MetricsSnapshot snapshot) {
         try {
-            List<DiskInfo> disks = realSystemDataService.getAllDiskUsage();
+            List<DiskInfo> disks = snapshot.getDisks();
 
             if (disks.isEmpty()) {
                 System.out.println(" 未检测到磁盘信息");
@@ -67,16 +74,12 @@ public class DataGeneratorService {
 
             System.out.println("检测到 " + disks.size() + " 个磁盘分区:");
 
+            List<SystemMetrics> rows = snapshot.toMetrics();
             for (int i = 0; i < disks.size(); i++) {
                 DiskInfo disk = disks.get(i);
 
-                // 为每个磁盘创建监控记录
-                SystemMetrics diskMetrics = new SystemMetrics();
-                diskMetrics.setComponentName("Disk-" + disk.getMountPoint().replace(":", "").replace("/", ""));
-                diskMetrics.setDiskUsage(disk.getUsedSpace());
-                diskMetrics.setTimestamp(java.time.LocalDateTime.now());
-
-                systemMetricsMapper.insert(diskMetrics);
+                // 快照中磁盘记录排在四个核心组件之后
+                write(rows.get(4 + i));
 
                 // 打印真实的磁盘信息
                 System.out.println("   " + disk.getMountPoint() + ": " +
@@ -91,6 +94,15 @@ public class DataGeneratorService {
         }
     }
 
+    /**
+     * 交给写入线程批量写库
+     */
+    private void write(SystemMetrics metrics) {
+        if (!metricWriteBehindService.offer(metrics)) {
+            System.err.println("写入缓冲区已满，丢弃 " + metrics.getComponentName() + " 数据");
+        }
+    }
+
     /**
      * 记录组件数据日志
      */
@@ -0,0 +1,423 @@
+//实时指标推送：每个新快照只序列化一次，经 SSE 推送给所有打开的页面，慢客户端丢弃最旧的消息，不影响其他订阅者
+package com.monitor.monitoring_platform.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推送线程每隔 tick-ms 检查采样快照，快照有变化时按 /api/metrics/components 的格式序列化一次，
+ * 放入每个订阅者的有界队列；一个节拍内的多次快照更新合并为一条消息。
+ * 写网络由发送线程池完成，每个订阅者同一时刻最多一个发送任务，推送线程从不等待网络。
+ * 一次发送超过 send-timeout-ms 仍未返回（客户端不读、网络卡住）时，推送线程断开该订阅者并中断发送线程，
+ * 同时给线程池临时补一个线程（最多补 sender-threads 个），卡住的线程不会拖慢其他订阅者，返回后再收回。
+ * 订阅者的队列满时丢弃最旧的消息（页面只需要最新值），连续丢弃超过 max-drops 条的客户端被断开，
+ * 浏览器的 EventSource 会自动重连。没有订阅者时不做序列化；长时间没有新快照时发送注释行保持连接。
+ */
+@Service
+public class LiveMetricsBroadcaster {
+
+    public static final String EVENT_NAME = "components";
+
+    private static final long HEARTBEAT_MS = 15_000;
+
+    // 心跳：发送 SSE 注释行
+    private static final Payload HEARTBEAT = new Payload(-1, null, null);
+
+    @Autowired
+    private MetricsSamplerService metricsSamplerService;
+
+    @Autowired
+    private MetricService metricService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.live.tick-ms:250}")
+    private long tickMs;
+
+    @Value("${monitor.live.client-queue:4}")
+    private int clientQueue;
+
+    @Value("${monitor.live.max-drops:20}")
+    private int maxDrops;
+
+    @Value("${monitor.live.max-subscribers:500}")
+    private int maxSubscribers;
+
+    @Value("${monitor.live.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${monitor.live.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${monitor.live.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService ticker;
+    private ThreadPoolExecutor sender;
+
+    // 因发送卡住临时补充的线程数
+    private int extraSenders;
+
+    // 最近一次序列化的快照，订阅时直接发给新页面
+    private volatile Payload latest;
+    private long sequence;
+    private long lastBroadcastId;
+    private long lastBroadcastAt;
+
+    private Counter sentCounter;
+    private Counter droppedCounter;
+    private Counter evictedCounter;
+
+    @PostConstruct
+    public void start() {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-metrics-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, senderThreads);
+        this.sender = new ThreadPoolExecutor(threads, threads * 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxSubscribers)), runnable -> {
+            Thread thread = new Thread(runnable, "live-metrics-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.sentCounter = Counter.builder("monitor.live.messages")
+                .description("实时推送的消息数")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("monitor.live.messages")
+                .description("实时推送的消息数")
+                .tag("result", "dropped")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("monitor.live.evicted")
+                .description("因消费过慢被断开的订阅者")
+                .register(meterRegistry);
+        Gauge.builder("monitor.live.subscribers", subscribers, List::size)
+                .description("当前的实时推送订阅者")
+                .register(meterRegistry);
+
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 新的订阅：立即发送当前快照，之后每个新快照推送一次
+     *
+     * @throws IllegalStateException 订阅数已达上限
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, Math.max(1, clientQueue));
+        // 检查数量和加入在同一把锁内，并发订阅不会超过上限；移除不加锁，只会让数量变少
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxSubscribers) {
+                throw new IllegalStateException("实时推送订阅数已达上限 " + maxSubscribers);
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        MetricsSnapshot snapshot = metricsSamplerService.getSnapshot();
+        if (!snapshot.isEmpty()) {
+            enqueue(subscriber, payload(snapshot));
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            abandonStuckSends(now);
+            MetricsSnapshot snapshot = metricsSamplerService.getSnapshot();
+            if (!snapshot.isEmpty()) {
+                Payload payload = payload(snapshot);
+                if (payload.id != lastBroadcastId) {
+                    lastBroadcastId = payload.id;
+                    lastBroadcastAt = now;
+                    broadcast(payload);
+                    return;
+                }
+            }
+            if (now - lastBroadcastAt >= HEARTBEAT_MS) {
+                lastBroadcastAt = now;
+                broadcast(HEARTBEAT);
+            }
+        } catch (Exception e) {
+            // 异常不能抛出，否则定时任务会停止
+            System.err.println("实时指标推送失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 快照对应的消息，同一个快照只序列化一次
+     */
+    private synchronized Payload payload(MetricsSnapshot snapshot) {
+        Payload current = latest;
+        if (current != null && current.snapshot == snapshot) {
+            return current;
+        }
+        try {
+            current = new Payload(++sequence, snapshot,
+                    objectMapper.writeValueAsString(metricService.getComponentStatus(snapshot)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化指标快照失败: " + e.getMessage(), e);
+        }
+        latest = current;
+        return current;
+    }
+
+    private void broadcast(Payload payload) {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, payload);
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Payload payload) {
+        if (subscriber.closed) {
+            return;
+        }
+        synchronized (subscriber) {
+            if (payload != HEARTBEAT) {
+                // 订阅时已经发过的快照，推送线程随后广播时跳过
+                if (payload.id <= subscriber.lastId) {
+                    return;
+                }
+                subscriber.lastId = payload.id;
+            }
+            while (!subscriber.queue.offer(payload)) {
+                // 队列满：丢弃最旧的一条
+                if (subscriber.queue.poll() != null) {
+                    droppedCounter.increment();
+                    if (subscriber.drops.incrementAndGet() > maxDrops) {
+                        evict(subscriber);
+                        return;
+                    }
+                }
+            }
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // 发送线程都在忙：消息留在队列里，下一次入队时再安排
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * 发送订阅者队列中的全部消息；断开的订阅者在这里结束连接，不在推送线程里等待
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            try {
+                Payload payload;
+                while (!subscriber.closed && (payload = subscriber.queue.poll()) != null) {
+                    beginSend(subscriber);
+                    try {
+                        if (payload == HEARTBEAT) {
+                            subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+                        } else {
+                            subscriber.emitter.send(SseEmitter.event()
+                                    .id(String.valueOf(payload.id))
+                                    .name(EVENT_NAME)
+                                    .data(payload.json));
+                            sentCounter.increment();
+                        }
+                    } finally {
+                        endSend(subscriber);
+                    }
+                    subscriber.drops.set(0);
+                }
+                if (subscriber.closed) {
+                    subscriber.queue.clear();
+                    subscriber.emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开（容器随后回调 onError / onCompletion）
+                subscriber.closed = true;
+                subscriber.queue.clear();
+                subscribers.remove(subscriber);
+                if (subscriber.stuck) {
+                    // 被中断的写入不会由容器回调，这里结束连接
+                    subscriber.emitter.completeWithError(e);
+                }
+            } finally {
+                subscriber.draining.set(false);
+                if (subscriber.stuck && !subscriber.released) {
+                    // 卡住的发送已经返回，收回临时补充的线程
+                    subscriber.released = true;
+                    releaseSender();
+                }
+            }
+        } while (!subscriber.closed && !subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void beginSend(Subscriber subscriber) {
+        synchronized (subscriber.sendLock) {
+            subscriber.sendingThread = Thread.currentThread();
+            subscriber.sendStartedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 清除发送登记后，超时中断不会再指向这个线程；发送恰好在中断前返回时标记还留着，
+     * 在这里清掉，不影响线程接下来发送的其他订阅者
+     */
+    private void endSend(Subscriber subscriber) {
+        synchronized (subscriber.sendLock) {
+            subscriber.sendStartedAt = 0;
+            subscriber.sendingThread = null;
+        }
+        Thread.interrupted();
+    }
+
+    /**
+     * 断开发送超时的订阅者（在推送线程上执行）：不能在这里结束连接，SseEmitter 的结束与发送互斥，
+     * 会跟着卡住；只中断发送线程，由它返回后结束连接
+     */
+    private void abandonStuckSends(long now) {
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt == 0 || now - startedAt <= sendTimeoutMs || subscriber.stuck) {
+                continue;
+            }
+            subscriber.stuck = true;
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+            evictedCounter.increment();
+            System.err.println("实时推送订阅者发送超时（" + (now - startedAt) + "ms），已断开");
+            // 与发送线程登记、清除发送在同一把锁内确认仍是同一次发送，线程可能已经转去发送别的订阅者
+            synchronized (subscriber.sendLock) {
+                Thread thread = subscriber.sendingThread;
+                if (thread != null && subscriber.sendStartedAt == startedAt) {
+                    thread.interrupt();
+                }
+            }
+            addSender();
+        }
+    }
+
+    private synchronized void addSender() {
+        int threads = Math.max(1, senderThreads);
+        if (extraSenders < threads) {
+            extraSenders++;
+            sender.setCorePoolSize(threads + extraSenders);
+        }
+    }
+
+    private synchronized void releaseSender() {
+        if (extraSenders > 0) {
+            extraSenders--;
+            sender.setCorePoolSize(Math.max(1, senderThreads) + extraSenders);
+        }
+    }
+
+    /**
+     * 断开消费过慢的订阅者：不再入队，由发送线程结束连接
+     */
+    private void evict(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        evictedCounter.increment();
+        System.err.println("实时推送订阅者消费过慢，已断开");
+        scheduleDrain(subscriber);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        sender.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * 一条序列化好的消息
+     */
+    private static final class Payload {
+        private final long id;
+        private final MetricsSnapshot snapshot;
+        private final String json;
+
+        private Payload(long id, MetricsSnapshot snapshot, String json) {
+            this.id = id;
+            this.snapshot = snapshot;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 一个订阅者：SSE 连接、待发送的消息和发送状态
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Payload> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // 上次成功发送以来丢弃的消息数
+        private final AtomicInteger drops = new AtomicInteger();
+        private volatile boolean closed;
+        // 正在进行的发送的开始时间和线程，没有发送时为 0 / null；登记、清除和超时中断都持有 sendLock
+        private final Object sendLock = new Object();
+        private volatile long sendStartedAt;
+        private volatile Thread sendingThread;
+        // 发送超时被断开；released 表示卡住的发送已返回、补充的线程已收回
+        private volatile boolean stuck;
+        private volatile boolean released;
+        // 最近入队的消息编号
+        private long lastId;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.monitor.monitoring_platform.service;
 
 import com.monitor.monitoring_platform.entity.DiskInfo;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
-import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import com.monitor.monitoring_platform.ingest.MetricWriteBehindService;
+import com.monitor.monitoring_platform.ingest.WriteAheadLog;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -13,22 +21,145 @@ import java.util.*;
 public class MetricService {
 
     @Autowired
-    private SystemMetricsMapper systemMetricsMapper;
+    private MetricStorageService metricStorageService;
 
     @Autowired
-    private RealSystemDataService realSystemDataService;
+    private MetricsSamplerService metricsSamplerService;
 
     @Autowired
     private SmartAlertService smartAlertService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MetricWriteBehindService metricWriteBehindService;
+
+    // 写入缓冲区已满时的逐条状态
+    public static final String STATUS_BUFFER_FULL = "写入缓冲区已满，请稍后重试";
+
+    // NDJSON 每解析这么多行入队一次
+    private static final int INGEST_CHUNK_ROWS = 500;
+
     /**
      * 保存指标并检测告警
      */
     public String saveMetrics(SystemMetrics metricsData) {
         metricsData.setTimestamp(LocalDateTime.now());
-        systemMetricsMapper.insert(metricsData);
+        // 只入队，不在请求线程上写库；缓冲区已满时抛出 IngestRejectedException
+        metricWriteBehindService.enqueue(metricsData);
+
+        SmartAlertService.AlertResult alertResult = checkAlert(metricsData);
 
-        SmartAlertService.AlertResult alertResult = smartAlertService.checkWithSmartAlert(
+        if (alertResult.isNeedAlert()) {
+            return "数据保存成功！但检测到异常：" + alertResult.getMessage() + " | 处理建议：" + alertResult.getSuggestions();
+        } else {
+            return "数据保存成功！当前组件状态正常。";
+        }
+    }
+
+    /**
+     * 批量保存指标：逐条校验后放入写入缓冲区，由写入线程批量写库
+     *
+     * @return 与输入顺序一致的逐条状态："ok"、校验失败原因或 STATUS_BUFFER_FULL
+     */
+    public List<String> saveMetricsBatch(List<SystemMetrics> metricsList) {
+        return ingestAll(metricsList, LocalDateTime.now());
+    }
+
+    /**
+     * 流式保存 NDJSON（每行一个 JSON 对象），边读边入队，不把整个请求体读进内存
+     *
+     * @return 与行顺序一致的逐条状态（空行忽略）
+     */
+    public List<String> saveMetricsNdjson(BufferedReader reader) throws IOException {
+        List<String> statuses = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        // 解析成功的行攒成一批入队，状态稍后按行号回填
+        List<SystemMetrics> chunk = new ArrayList<>(INGEST_CHUNK_ROWS);
+        List<Integer> chunkLines = new ArrayList<>(INGEST_CHUNK_ROWS);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(objectMapper.readValue(line, SystemMetrics.class));
+                chunkLines.add(statuses.size());
+                statuses.add(null);
+            } catch (JsonProcessingException e) {
+                statuses.add("解析失败: " + e.getOriginalMessage());
+            }
+            if (chunk.size() >= INGEST_CHUNK_ROWS) {
+                ingestChunk(chunk, chunkLines, statuses, now);
+            }
+        }
+        ingestChunk(chunk, chunkLines, statuses, now);
+        return statuses;
+    }
+
+    private void ingestChunk(List<SystemMetrics> chunk, List<Integer> chunkLines, List<String> statuses,
+                             LocalDateTime now) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<String> results = ingestAll(chunk, now);
+        for (int i = 0; i < results.size(); i++) {
+            statuses.set(chunkLines.get(i), results.get(i));
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    /**
+     * 校验并入队一条数据，返回该条的状态。REST 和二进制上报共用这一入口
+     *
+     * @param now 数据没有自带时间戳时使用的时间
+     */
+    public String ingest(SystemMetrics metrics, LocalDateTime now) {
+        return ingestAll(Collections.singletonList(metrics), now).get(0);
+    }
+
+    /**
+     * 校验并入队一批数据，合法的行一次放入写入缓冲区（开启预写日志时一次追加、一次刷盘）。
+     * 批量、NDJSON、文本和二进制上报共用这一入口
+     *
+     * @param now 数据没有自带时间戳时使用的时间
+     * @return 与输入顺序一致的逐条状态
+     */
+    public List<String> ingestAll(List<SystemMetrics> metricsList, LocalDateTime now) {
+        List<String> statuses = new ArrayList<>(metricsList.size());
+        List<SystemMetrics> valid = new ArrayList<>(metricsList.size());
+        for (SystemMetrics metrics : metricsList) {
+            String invalid = validate(metrics);
+            statuses.add(invalid);
+            if (invalid == null) {
+                if (metrics.getTimestamp() == null) {
+                    metrics.setTimestamp(now);
+                }
+                valid.add(metrics);
+            }
+        }
+        int accepted = valid.isEmpty() ? 0 : metricWriteBehindService.offerAll(valid);
+        int index = 0;
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i) != null) {
+                continue;
+            }
+            if (index++ < accepted) {
+                statuses.set(i, "ok");
+                // 告警检测是同步的轻量计算，AI 建议在后台生成
+                checkAlert(metricsList.get(i));
+            } else {
+                statuses.set(i, STATUS_BUFFER_FULL);
+            }
+        }
+        return statuses;
+    }
+
+    private SmartAlertService.AlertResult checkAlert(SystemMetrics metricsData) {
+        return smartAlertService.checkWithSmartAlert(
                 metricsData.getComponentName(),
                 metricsData.getCpuUsage(),
                 metricsData.getMemUsage(),
@@ -37,24 +168,35 @@ public class MetricService {
                 metricsData.getProcessCount(),
                 metricsData.getResponseTimeMs()
         );
+    }
 
-        if (alertResult.isNeedAlert()) {
-            return "数据保存成功！但检测到异常：" + alertResult.getMessage() + " | 处理建议：" + alertResult.getSuggestions();
-        } else {
-            return "数据保存成功！当前组件状态正常。";
+    /**
+     * 校验单条数据，合法返回 null
+     */
+    private String validate(SystemMetrics metrics) {
+        if (metrics == null) {
+            return "数据为空";
+        }
+        if (metrics.getComponentName() == null || metrics.getComponentName().isBlank()) {
+            return "componentName 不能为空";
+        }
+        if (metrics.getComponentName().length() > WriteAheadLog.MAX_NAME_BYTES / 3
+                && metrics.getComponentName().getBytes(StandardCharsets.UTF_8).length > WriteAheadLog.MAX_NAME_BYTES) {
+            return "componentName 过长";
         }
+        return null;
     }
 
     /**
      * 获取最新指标
      */
     public List<SystemMetrics> getLatestMetrics() {
-        List<SystemMetrics> latestMetrics = systemMetricsMapper.selectLatestMetricsForAllComponents();
+        List<SystemMetrics> latestMetrics = metricStorageService.selectLatestMetricsForAllComponents();
 
         if (latestMetrics == null || latestMetrics.isEmpty()) {
             latestMetrics = generateRealComputerMetrics();
             for (SystemMetrics metric : latestMetrics) {
-                systemMetricsMapper.insert(metric);
+                metricWriteBehindService.offer(metric);
             }
         }
 
@@ -62,52 +204,15 @@ public class MetricService {
     }
 
     /**
-     * 生成真实的电脑指标数据
+     * 生成真实的电脑指标数据（来自后台采样快照）
      */
     public List<SystemMetrics> generateRealComputerMetrics() {
-        List<SystemMetrics> metrics = new ArrayList<>();
-        LocalDateTime now = LocalDateTime.now();
-
-        try {
-            SystemMetrics cpuMetric = new SystemMetrics();
-            cpuMetric.setComponentName("CPU");
-            cpuMetric.setCpuUsage(realSystemDataService.getRealCpuUsage());
-            cpuMetric.setTimestamp(now);
-            metrics.add(cpuMetric);
-
-            SystemMetrics memoryMetric = new SystemMetrics();
-            memoryMetric.setComponentName("Memory");
-            memoryMetric.setMemUsage(realSystemDataService.getRealMemoryUsage());
-            memoryMetric.setTimestamp(now);
-            metrics.add(memoryMetric);
-
-            SystemMetrics networkMetric = new SystemMetrics();
-            networkMetric.setComponentName("Network");
-            networkMetric.setNetworkRate(realSystemDataService.getRealNetworkRate());
-            networkMetric.setTimestamp(now);
-            metrics.add(networkMetric);
-
-            SystemMetrics processMetric = new SystemMetrics();
-            processMetric.setComponentName("Processes");
-            processMetric.setProcessCount(realSystemDataService.getRealProcessCount());
-            processMetric.setTimestamp(now);
-            metrics.add(processMetric);
-
-            List<DiskInfo> disks = realSystemDataService.getAllDiskUsage();
-            for (DiskInfo disk : disks) {
-                SystemMetrics diskMetric = new SystemMetrics();
-                diskMetric.setComponentName("Disk-" + disk.getMountPoint().replace(":", "").replace("/", ""));
-                diskMetric.setDiskUsage(disk.getUsedSpace());
-                diskMetric.setTimestamp(now);
-                metrics.add(diskMetric);
-            }
-
-        } catch (Exception e) {
-            System.err.println("生成真实数据失败，使用备用数据: " + e.getMessage());
+        MetricsSnapshot snapshot = metricsSamplerService.getSnapshot();
+        if (snapshot.isEmpty()) {
+            System.err.println("采样器尚未完成首次采集，使用备用数据");
             return generateFallbackMetrics();
         }
-
-        return metrics;
+        return snapshot.toMetrics();
     }
 
     /**
@@ -154,13 +259,22 @@ public class MetricService {
      * 获取组件状态
      */
     public Map<String, Object> getComponentStatus() {
+        Map<String, Object> components = getComponentStatus(metricsSamplerService.getSnapshot());
+        System.out.println("组件监控API被调用，返回 " + ((List<?>) components.get("Disks")).size() + " 个磁盘");
+        return components;
+    }
+
+    /**
+     * 快照中各组件的状态（实时推送和轮询接口使用同一格式）
+     */
+    public Map<String, Object> getComponentStatus(MetricsSnapshot snapshot) {
         Map<String, Object> components = new HashMap<>();
 
-        double cpuUsage = realSystemDataService.getRealCpuUsage();
-        double memoryUsage = realSystemDataService.getRealMemoryUsage();
-        List<DiskInfo> disks = realSystemDataService.getAllDiskUsage();
-        double networkRate = realSystemDataService.getRealNetworkRate();
-        int processCount = realSystemDataService.getRealProcessCount();
+        double cpuUsage = snapshot.getCpuUsage();
+        double memoryUsage = snapshot.getMemUsage();
+        List<DiskInfo> disks = snapshot.getDisks();
+        double networkRate = snapshot.getNetworkRate();
+        int processCount = snapshot.getProcessCount();
 
         Map<String, Object> cpuMetrics = new HashMap<>();
         cpuMetrics.put("cpuUsage", cpuUsage);
@@ -179,7 +293,6 @@ public class MetricService {
         Map<String, Object> processMetrics = new HashMap<>();
         processMetrics.put("processCount", processCount);
         components.put("Processes", processMetrics);
-        System.out.println("组件监控API被调用，返回 " + disks.size() + " 个磁盘");
         return components;
     }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+//后台采样服务：并行调度各采集器，发布不可变快照，所有实时接口读取同一份快照
+package com.monitor.monitoring_platform.service;
+
+import com.monitor.monitoring_platform.collector.MetricCollector;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+@Service
+public class MetricsSamplerService {
+
+    // 当前快照，读取无锁
+    private final AtomicReference<MetricsSnapshot> currentSnapshot = new AtomicReference<>(MetricsSnapshot.empty());
+
+    private final List<CollectorState> collectors = new ArrayList<>();
+
+    // 有界线程池：核心线程数等于采集器数量。超时被放弃的采集仍卡在线程里时不再提交新的，
+    // 每个采集器最多占一个线程，卡住的采集器不会耗尽线程池、拖垮其他采集器
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public MetricsSamplerService(List<MetricCollector> metricCollectors, MeterRegistry meterRegistry) {
+        for (MetricCollector collector : metricCollectors) {
+            collectors.add(new CollectorState(collector, meterRegistry));
+        }
+
+        int poolSize = Math.max(1, collectors.size());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize * 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize), runnable -> {
+            Thread thread = new Thread(runnable, "metric-collector-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 调度节拍：启动到期的采集器，并检查正在执行的采集是否超时。
+     * 本方法只提交任务，不等待采集完成，一个慢采集器不会拖住其他采集器。
+     */
+    @Scheduled(fixedRateString = "${monitor.sampler.tick-ms:1000}")
+    public void sample() {
+        long now = System.currentTimeMillis();
+        for (CollectorState state : collectors) {
+            if (state.inFlight) {
+                if (now - state.startedAt <= state.collector.getTimeoutMs()) {
+                    // 上一次采集还没结束
+                    continue;
+                }
+                // 超时：放弃这次采集（中断线程，结果不再发布），到下一个周期再提交
+                abandon(state);
+            }
+            if (now >= state.nextRunAt) {
+                if (state.executing) {
+                    // 被放弃的采集还没退出（如卡在不可中断的本地调用里），跳过这个周期，按超时计
+                    skip(state, now);
+                    continue;
+                }
+                state.stuckReported = false;
+                submit(state, now);
+            }
+        }
+    }
+
+    private void abandon(CollectorState state) {
+        Future<?> running = state.running;
+        state.runId++;
+        state.inFlight = false;
+        if (running != null) {
+            running.cancel(true);
+        }
+        state.timeoutCounter.increment();
+        System.err.println("采集器 " + state.collector.getName() + " 超时（"
+                + state.collector.getTimeoutMs() + "ms），本次结果丢弃");
+    }
+
+    private void skip(CollectorState state, long now) {
+        state.nextRunAt = now + state.collector.getIntervalMs();
+        state.timeoutCounter.increment();
+        if (!state.stuckReported) {
+            state.stuckReported = true;
+            System.err.println("采集器 " + state.collector.getName() + " 上次超时的采集仍未退出，暂停提交直到它结束");
+        }
+    }
+
+    private void submit(CollectorState state, long now) {
+        state.startedAt = now;
+        state.nextRunAt = now + state.collector.getIntervalMs();
+        state.inFlight = true;
+        long runId = ++state.runId;
+        try {
+            state.running = executor.submit(() -> runCollector(state, runId));
+        } catch (RejectedExecutionException e) {
+            state.inFlight = false;
+            state.errorCounter.increment();
+            System.err.println("采集器 " + state.collector.getName() + " 提交失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一次采集；runId 已不是当前编号（超时被放弃）时结果不再发布，也不改动调度状态
+     */
+    private void runCollector(CollectorState state, long runId) {
+        state.executing = true;
+        Timer.Sample sample = Timer.start();
+        try {
+            UnaryOperator<MetricsSnapshot> update = state.collector.collect();
+            // 已超时的结果不再发布，避免旧数据覆盖
+            if (state.runId == runId && update != null) {
+                currentSnapshot.updateAndGet(update);
+            }
+        } catch (Exception e) {
+            if (state.runId == runId) {
+                state.errorCounter.increment();
+                System.err.println("采集器 " + state.collector.getName() + " 采集失败: " + e.getMessage());
+            }
+        } finally {
+            sample.stop(state.durationTimer);
+            if (state.runId == runId) {
+                state.inFlight = false;
+            }
+            state.executing = false;
+        }
+    }
+
+    /**
+     * 获取最新快照
+     */
+    public MetricsSnapshot getSnapshot() {
+        return currentSnapshot.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 单个采集器的调度状态
+     */
+    private static final class CollectorState {
+        private final MetricCollector collector;
+        private final Counter timeoutCounter;
+        private final Counter errorCounter;
+        private final Timer durationTimer;
+
+        private volatile long nextRunAt;
+        private volatile long startedAt;
+        // 当前有效的一次采集的编号，只在调度线程上修改
+        private volatile long runId;
+        private volatile boolean inFlight;
+        private volatile Future<?> running;
+        // 采集任务正在线程上执行（包括超时被放弃、还没退出的）；Future 取消后 isDone 立即为 true，不能用来判断
+        private volatile boolean executing;
+        // 已报告过卡住，只在调度线程上访问
+        private boolean stuckReported;
+
+        private CollectorState(MetricCollector collector, MeterRegistry meterRegistry) {
+            this.collector = collector;
+            this.timeoutCounter = Counter.builder("monitor.collector.failures")
+                    .tag("collector", collector.getName())
+                    .tag("reason", "timeout")
+                    .register(meterRegistry);
+            this.errorCounter = Counter.builder("monitor.collector.failures")
+                    .tag("collector", collector.getName())
+                    .tag("reason", "error")
+                    .register(meterRegistry);
+            this.durationTimer = Timer.builder("monitor.collector.duration")
+                    .tag("collector", collector.getName())
+                    .register(meterRegistry);
+        }
+    }
+}
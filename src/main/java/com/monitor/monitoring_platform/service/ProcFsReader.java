@@ -0,0 +1,346 @@
+//Linux /proc 快速采集：直接读取内核伪文件，复用缓冲区，数字解析不创建字符串
+package com.monitor.monitoring_platform.service;
+
+import com.monitor.monitoring_platform.entity.DiskInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 只在 Linux 上启用，其他平台（或读取失败时）由 RealSystemDataService 回退到 OSHI。
+ * 每个 /proc 文件只打开一次，之后用 pread(offset=0) 让内核重新生成内容；
+ * 读取 /proc 文件的方法串行执行，共用同一块字节缓冲区；
+ * 磁盘的 statvfs 在锁外执行，网络文件系统卡住时不会挡住 CPU、内存、网络的采集。
+ */
+@Component
+public class ProcFsReader {
+
+    private static final String PROC_STAT = "/proc/stat";
+    private static final String PROC_MEMINFO = "/proc/meminfo";
+    private static final String PROC_NET_DEV = "/proc/net/dev";
+    private static final String PROC_MOUNTS = "/proc/self/mounts";
+
+    private static final byte[] MEM_TOTAL = "MemTotal:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEM_AVAILABLE = "MemAvailable:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOOPBACK = "lo".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private final boolean available;
+
+    private final FileChannel statChannel;
+    private final FileChannel meminfoChannel;
+    private final FileChannel netDevChannel;
+
+    // 复用的读取缓冲区，内容超出时自动扩容
+    private byte[] buffer = new byte[16 * 1024];
+    private int length;
+    private int pos;
+
+    // 网卡名缓存，避免每次都创建字符串
+    private final List<byte[]> interfaceNameBytes = new ArrayList<>();
+    private final List<String> interfaceNames = new ArrayList<>();
+
+    // 已解析的磁盘分区，/proc/self/mounts 内容不变时直接复用挂载列表
+    private byte[] cachedMounts = new byte[0];
+    private List<String[]> cachedMountEntries = List.of();
+
+    public ProcFsReader(@Value("${monitor.collector.procfs.enabled:true}") boolean enabled) {
+        FileChannel stat = null;
+        FileChannel meminfo = null;
+        FileChannel netDev = null;
+        boolean ok = false;
+        if (enabled && System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            try {
+                stat = open(PROC_STAT);
+                meminfo = open(PROC_MEMINFO);
+                netDev = open(PROC_NET_DEV);
+                ok = true;
+            } catch (IOException e) {
+                System.err.println("无法打开 /proc，回退到 OSHI 采集: " + e.getMessage());
+            }
+        }
+        this.statChannel = stat;
+        this.meminfoChannel = meminfo;
+        this.netDevChannel = netDev;
+        this.available = ok;
+    }
+
+    private static FileChannel open(String path) throws IOException {
+        return FileChannel.open(Path.of(path), StandardOpenOption.READ);
+    }
+
+    /**
+     * 是否可以使用 /proc 快速路径
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * 读取 /proc/stat 第一行的累计 CPU 节拍，顺序与 OSHI TickType 一致
+     * (user nice system idle iowait irq softirq steal)
+     */
+    public synchronized long[] readCpuTicks() throws IOException {
+        load(statChannel);
+        // 第一行形如 "cpu  4705 356 584 3699 23 23 0 0 0 0"
+        pos = 3;
+        long[] ticks = new long[8];
+        for (int i = 0; i < ticks.length; i++) {
+            ticks[i] = nextLong();
+        }
+        return ticks;
+    }
+
+    /**
+     * 读取 /proc/meminfo，返回内存使用率（与 OSHI 一样按 MemAvailable 计算）
+     */
+    public synchronized double readMemoryUsage() throws IOException {
+        load(meminfoChannel);
+        long total = -1;
+        long memAvailable = -1;
+        pos = 0;
+        while (pos < length && (total < 0 || memAvailable < 0)) {
+            if (startsWith(MEM_TOTAL)) {
+                pos += MEM_TOTAL.length;
+                total = nextLong();
+            } else if (startsWith(MEM_AVAILABLE)) {
+                pos += MEM_AVAILABLE.length;
+                memAvailable = nextLong();
+            }
+            skipLine();
+        }
+        if (total <= 0 || memAvailable < 0) {
+            throw new IOException("/proc/meminfo 缺少 MemTotal/MemAvailable");
+        }
+        return (total - memAvailable) * 100.0 / total;
+    }
+
+    /**
+     * 读取 /proc/net/dev，找出接收字节最多的非回环网卡
+     *
+     * @param out 输出 [接收字节, 发送字节]
+     * @return 网卡名；没有可用网卡时返回 null
+     */
+    public synchronized String readBusiestInterface(long[] out) throws IOException {
+        load(netDevChannel);
+        String busiest = null;
+        long maxRecv = -1;
+
+        // 跳过两行表头
+        pos = 0;
+        skipLine();
+        skipLine();
+        while (pos < length) {
+            skipSpaces();
+            int nameStart = pos;
+            while (pos < length && buffer[pos] != ':') {
+                pos++;
+            }
+            int nameEnd = pos;
+            pos++;
+
+            // 字段：rx_bytes packets errs drop fifo frame compressed multicast tx_bytes ...
+            long recv = nextLong();
+            for (int i = 0; i < 7; i++) {
+                nextLong();
+            }
+            long sent = nextLong();
+            skipLine();
+
+            if (regionEquals(nameStart, nameEnd, LOOPBACK)) {
+                continue;
+            }
+            if (recv > maxRecv) {
+                maxRecv = recv;
+                out[0] = recv;
+                out[1] = sent;
+                busiest = internInterfaceName(nameStart, nameEnd);
+            }
+        }
+        return busiest;
+    }
+
+    /**
+     * 统计 /proc 下的数字目录数量，与 OSHI 在 Linux 上的进程数口径一致
+     */
+    public int countProcesses() {
+        String[] entries = new File("/proc").list();
+        if (entries == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String entry : entries) {
+            if (!entry.isEmpty() && Character.isDigit(entry.charAt(0))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 根据 /proc/self/mounts 和 statvfs 得到磁盘分区，过滤规则与 OSHI 路径一致。
+     * 只有读挂载表时持有锁，statvfs 可能阻塞（如不可达的 NFS），在锁外逐个执行
+     */
+    public List<DiskInfo> readDisks() throws IOException {
+        List<String[]> mounts;
+        synchronized (this) {
+            mounts = readMountEntries();
+        }
+        List<DiskInfo> diskList = new ArrayList<>(mounts.size());
+
+        for (String[] mount : mounts) {
+            // 先按类型和挂载点过滤，/proc、/sys、tmpfs 等不做 statvfs
+            if (RealSystemDataService.shouldSkipMount(mount[2], mount[1])) {
+                continue;
+            }
+            File root = new File(mount[1]);
+            long totalBytes = root.getTotalSpace();
+            if (RealSystemDataService.isTooSmall(totalBytes)) {
+                continue;
+            }
+            long freeBytes = root.getUsableSpace();
+            long usedBytes = totalBytes - freeBytes;
+
+            long totalGB = totalBytes / GB;
+            long freeGB = freeBytes / GB;
+            long usedGB = usedBytes / GB;
+            double usagePercent = totalGB > 0 ? (double) usedGB / totalGB * 100 : 0.0;
+
+            diskList.add(new DiskInfo(mount[0], mount[1], totalGB, usedGB, freeGB, usagePercent, mount[2]));
+        }
+
+        diskList.sort(Comparator.comparing(DiskInfo::getMountPoint));
+        return diskList;
+    }
+
+    /**
+     * 挂载表很少变化，内容与上次相同时直接复用已解析的结果
+     */
+    private List<String[]> readMountEntries() throws IOException {
+        try (FileChannel channel = open(PROC_MOUNTS)) {
+            load(channel);
+        }
+        if (length == cachedMounts.length && regionEquals(0, length, cachedMounts)) {
+            return cachedMountEntries;
+        }
+
+        List<String[]> entries = new ArrayList<>();
+        pos = 0;
+        while (pos < length) {
+            String device = nextToken();
+            String mountPoint = nextToken().replace("\\040", " ");
+            String type = nextToken();
+            skipLine();
+            if (!device.isEmpty() && !mountPoint.isEmpty()) {
+                entries.add(new String[]{device, mountPoint, type});
+            }
+        }
+
+        byte[] copy = new byte[length];
+        System.arraycopy(buffer, 0, copy, 0, length);
+        cachedMounts = copy;
+        cachedMountEntries = entries;
+        return entries;
+    }
+
+    // ===== 缓冲区读取与解析 =====
+
+    /**
+     * 从头读取整个文件到复用缓冲区
+     */
+    private void load(FileChannel channel) throws IOException {
+        length = 0;
+        while (true) {
+            ByteBuffer view = ByteBuffer.wrap(buffer, length, buffer.length - length);
+            int n = channel.read(view, length);
+            if (n <= 0) {
+                break;
+            }
+            length += n;
+            if (length == buffer.length) {
+                byte[] bigger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, bigger, 0, length);
+                buffer = bigger;
+            }
+        }
+        pos = 0;
+    }
+
+    /**
+     * 跳过空白后解析一个非负整数，直接在字节上累加
+     */
+    private long nextLong() {
+        while (pos < length && (buffer[pos] < '0' || buffer[pos] > '9') && buffer[pos] != '\n') {
+            pos++;
+        }
+        long value = 0;
+        while (pos < length && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            value = value * 10 + (buffer[pos] - '0');
+            pos++;
+        }
+        return value;
+    }
+
+    private String nextToken() {
+        skipSpaces();
+        int start = pos;
+        while (pos < length && buffer[pos] != ' ' && buffer[pos] != '\n') {
+            pos++;
+        }
+        return new String(buffer, start, pos - start, StandardCharsets.UTF_8);
+    }
+
+    private void skipSpaces() {
+        while (pos < length && buffer[pos] == ' ') {
+            pos++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < length && buffer[pos] != '\n') {
+            pos++;
+        }
+        pos++;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        return pos + prefix.length <= length && regionEquals(pos, pos + prefix.length, prefix);
+    }
+
+    private boolean regionEquals(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String internInterfaceName(int start, int end) {
+        for (int i = 0; i < interfaceNameBytes.size(); i++) {
+            if (regionEquals(start, end, interfaceNameBytes.get(i))) {
+                return interfaceNames.get(i);
+            }
+        }
+        byte[] nameBytes = new byte[end - start];
+        System.arraycopy(buffer, start, nameBytes, 0, nameBytes.length);
+        String name = new String(nameBytes, StandardCharsets.US_ASCII);
+        interfaceNameBytes.add(nameBytes);
+        interfaceNames.add(name);
+        return name;
+    }
+}
@@ -3,6 +3,7 @@ package com.monitor.monitoring_platform.service;
 
 import com.monitor.monitoring_platform.entity.DiskInfo;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import oshi.SystemInfo;
 import oshi.hardware.CentralProcessor;
@@ -14,7 +15,7 @@ import oshi.software.os.OSFileStore;
 import oshi.software.os.OperatingSystem;
 
 import java.io.File;
-import java.text.DecimalFormat;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -33,37 +34,61 @@ public class RealSystemDataService {
     //从硬件层获取操作系统对象，利用它获取进程、文件系统信息
     private final OperatingSystem os = systemInfo.getOperatingSystem();
 
-    // 用于CPU使用率计算
-    private long[] previousTicks;
-    private long previousTime;
+    // Linux 下优先走 /proc 快速路径，其他平台回退 OSHI
+    @Autowired
+    private ProcFsReader procFsReader;
 
-    // 用于网络速率计算
-    private long previousBytesReceived = 0;
-    private long previousBytesSent = 0;
-    private long previousNetworkTime = 0;
+    // 接口默认使用的差值跟踪器；后台采样器等使用方应持有自己的跟踪器
+    private final CounterDeltaTracker defaultCpuTracker = new CounterDeltaTracker();
+    private final CounterDeltaTracker defaultNetworkTracker = new CounterDeltaTracker();
+
+    private static final int IDLE_TICK = CentralProcessor.TickType.IDLE.getIndex();
+    private static final int IOWAIT_TICK = CentralProcessor.TickType.IOWAIT.getIndex();
 
     /**
      * 获取真实的CPU使用率
      */
     public double getRealCpuUsage() {
+        return getRealCpuUsage(defaultCpuTracker);
+    }
+
+    /**
+     * 使用调用方自己的跟踪器计算CPU使用率，不会阻塞等待
+     */
+    public double getRealCpuUsage(CounterDeltaTracker tracker) {
         try {
-            if (previousTicks == null) {
-                // 第一次调用，初始化
-                previousTicks = processor.getSystemCpuLoadTicks();
-                previousTime = System.currentTimeMillis();
-                Thread.sleep(500); //0.5s刷新一次
+            long[] currentTicks = null;
+            String source = "procfs";
+            if (procFsReader.isAvailable()) {
+                try {
+                    currentTicks = procFsReader.readCpuTicks();
+                } catch (IOException e) {
+                    System.err.println("/proc 读取CPU失败，回退到 OSHI: " + e.getMessage());
+                }
+            }
+            if (currentTicks == null) {
+                currentTicks = processor.getSystemCpuLoadTicks();
+                source = "oshi";
+            }
+            // 两种读数的单位不同（节拍 / 毫秒），切换来源时跟踪器重新建立基线
+            CounterDeltaTracker.Delta delta = tracker.update(source, currentTicks, System.nanoTime());
+
+            long total;
+            long idle;
+            if (delta != null) {
+                total = delta.sum();
+                idle = delta.get(IDLE_TICK) + delta.get(IOWAIT_TICK);
+            } else {
+                // 第一次调用没有上一次读数，用开机以来的累计值估算，不再 sleep 等待
+                total = 0;
+                for (long tick : currentTicks) {
+                    total += tick;
+                }
+                idle = currentTicks[IDLE_TICK] + currentTicks[IOWAIT_TICK];
             }
 
-            long[] currentTicks = processor.getSystemCpuLoadTicks();
-            long currentTime = System.currentTimeMillis();
-
-            // 计算CPU使用率
-            double cpuUsage = processor.getSystemCpuLoadBetweenTicks(previousTicks) * 100;
-            // 更新前一次的值
-            previousTicks = currentTicks;
-            previousTime = currentTime;
-
-            return Double.parseDouble(new DecimalFormat("#.##").format(cpuUsage));
+            double cpuUsage = total > 0 ? (double) (total - idle) / total * 100 : 0.0;
+            return round2(cpuUsage);
 
         } catch (Exception e) {
             System.err.println("获取CPU使用率失败: " + e.getMessage());
@@ -71,17 +96,31 @@ public class RealSystemDataService {
         }
     }
 
+    /**
+     * 保留两位小数
+     */
+    static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
     /**
      * 获取真实的内存使用率
      */
     public double getRealMemoryUsage() {
+        if (procFsReader.isAvailable()) {
+            try {
+                return round2(procFsReader.readMemoryUsage());
+            } catch (IOException e) {
+                System.err.println("/proc 读取内存失败，回退到 OSHI: " + e.getMessage());
+            }
+        }
         try {
             long totalMemory = memory.getTotal();
             long availableMemory = memory.getAvailable();
             long usedMemory = totalMemory - availableMemory;
             double memoryUsage = (usedMemory * 100.0) / totalMemory;
 
-            return Double.parseDouble(new DecimalFormat("#.##").format(memoryUsage));
+            return round2(memoryUsage);
         } catch (Exception e) {
             System.err.println("获取内存使用率失败: " + e.getMessage());
             return 0.0;
@@ -92,6 +131,14 @@ public class RealSystemDataService {
      * 获取所有磁盘分区的真实使用情况
      */
     public List<DiskInfo> getAllDiskUsage() {
+        if (procFsReader.isAvailable()) {
+            try {
+                return procFsReader.readDisks();
+            } catch (Exception e) {
+                System.err.println("/proc 读取磁盘失败，回退到 OSHI: " + e.getMessage());
+            }
+        }
+
         List<DiskInfo> diskList = new ArrayList<>();
         //OSHI库获取所有磁盘分区
         try {
@@ -155,9 +202,22 @@ public class RealSystemDataService {
      * 判断是否应该跳过该磁盘
      */
     private boolean shouldSkipDisk(OSFileStore fs) {
-        String type = fs.getType().toLowerCase();
-        String mount = fs.getMount().toLowerCase();
-        long totalSpace = fs.getTotalSpace();
+        return shouldSkipDisk(fs.getType(), fs.getMount(), fs.getTotalSpace());
+    }
+
+    /**
+     * 按文件系统类型、挂载点和容量判断是否跳过（OSHI 和 /proc 两条路径共用）
+     */
+    static boolean shouldSkipDisk(String fsType, String mountPoint, long totalSpace) {
+        return shouldSkipMount(fsType, mountPoint) || isTooSmall(totalSpace);
+    }
+
+    /**
+     * 只按文件系统类型和挂载点判断，不需要容量；/proc 路径在 statvfs 之前先用它过滤
+     */
+    static boolean shouldSkipMount(String fsType, String mountPoint) {
+        String type = fsType.toLowerCase();
+        String mount = mountPoint.toLowerCase();
 
         // 跳过以下类型的磁盘
         return type.contains("tmpfs") ||          // 临时文件系统
@@ -166,8 +226,14 @@ public class RealSystemDataService {
                 mount.contains("/proc") ||         // 进程文件系统
                 mount.contains("/sys") ||          // 系统文件系统
                 mount.contains("/dev") ||          // 设备文件系统
-                mount.contains("/snap") ||         // Snap包系统
-                totalSpace == 0 ||                 // 总空间为0
+                mount.contains("/snap");           // Snap包系统
+    }
+
+    /**
+     * 容量为 0 或过小的磁盘
+     */
+    static boolean isTooSmall(long totalSpace) {
+        return totalSpace == 0 ||                  // 总空间为0
                 totalSpace < (100 * 1024 * 1024);  // 小于100MB的磁盘
     }
 
@@ -229,7 +295,28 @@ public class RealSystemDataService {
      * 获取实时网络速率（MB/s）
      */
     public Double getRealNetworkRate() {
+        return getRealNetworkRate(defaultNetworkTracker);
+    }
+
+    /**
+     * 使用调用方自己的跟踪器计算网络速率（MB/s）
+     */
+    public Double getRealNetworkRate(CounterDeltaTracker tracker) {
         try {
+            if (procFsReader.isAvailable()) {
+                try {
+                    long[] counters = new long[2];
+                    String name = procFsReader.readBusiestInterface(counters);
+                    if (name == null) {
+                        return 0.1;
+                    }
+                    return networkRate(tracker, name, counters);
+                } catch (IOException e) {
+                    // 两条路径都是网卡的累计字节数，同一网卡切换来源时差值仍然有效
+                    System.err.println("/proc 读取网络失败，回退到 OSHI: " + e.getMessage());
+                }
+            }
+
             List<NetworkIF> networks = hardware.getNetworkIFs();
             if (networks.isEmpty()) {
                 return 0.1;
@@ -254,36 +341,8 @@ public class RealSystemDataService {
                 activeNetwork = networks.get(0); // 如果没有活动的，用第一个
             }
 
-            activeNetwork.updateAttributes();
-
-            long currentBytesRecv = activeNetwork.getBytesRecv();
-            long currentBytesSent = activeNetwork.getBytesSent();
-            long currentTime = System.currentTimeMillis();
-
-            if (previousNetworkTime == 0) {
-                // 第一次调用，初始化
-                previousBytesReceived = currentBytesRecv;
-                previousBytesSent = currentBytesSent;
-                previousNetworkTime = currentTime;
-                return 0.1; // 第一次返回默认值
-            }
-
-            long timeInterval = currentTime - previousNetworkTime;
-            if (timeInterval < 1000) {
-                timeInterval = 1000; // 最小1秒间隔
-            }
-
-            // 计算速率 (字节/秒 → MB/秒)
-            double recvRate = (currentBytesRecv - previousBytesReceived) / (timeInterval / 1000.0) / (1024 * 1024);
-            double sentRate = (currentBytesSent - previousBytesSent) / (timeInterval / 1000.0) / (1024 * 1024);
-
-            // 更新前一次的值
-            previousBytesReceived = currentBytesRecv;
-            previousBytesSent = currentBytesSent;
-            previousNetworkTime = currentTime;
-
-            double totalRate = recvRate + sentRate;
-            return Double.parseDouble(new DecimalFormat("#.##").format(Math.max(totalRate, 0.01)));
+            long[] counters = {activeNetwork.getBytesRecv(), activeNetwork.getBytesSent()};
+            return networkRate(tracker, activeNetwork.getName(), counters);
 
         } catch (Exception e) {
             System.err.println("获取网络速率失败: " + e.getMessage());
@@ -291,13 +350,36 @@ public class RealSystemDataService {
         }
     }
 
+    /**
+     * 根据收发字节计数器的增量计算速率（MB/s）
+     */
+    private double networkRate(CounterDeltaTracker tracker, String interfaceName, long[] counters) {
+        CounterDeltaTracker.Delta delta = tracker.update(interfaceName, counters, System.nanoTime());
+        if (delta == null) {
+            return 0.1; // 第一次返回默认值
+        }
+
+        // 计算速率 (字节/秒 → MB/秒)
+        double totalRate = delta.sum() / delta.getElapsedSeconds() / (1024 * 1024);
+        return round2(Math.max(totalRate, 0.01));
+    }
+
     /**
      * 获取进程数量
      */
     public int getRealProcessCount() {
         try {
+            if (procFsReader.isAvailable()) {
+                int count = procFsReader.countProcesses();
+                if (count > 0) {
+                    return count;
+                }
+                // 列不出 /proc 目录时 countProcesses 返回 0
+                System.err.println("/proc 读取进程数失败，回退到 OSHI");
+            }
             return os.getProcessCount();
         } catch (Exception e) {
+            System.err.println("获取进程数失败: " + e.getMessage());
             return 150;
         }
     }
@@ -1,8 +1,8 @@
 package com.monitor.monitoring_platform.service;
 
-import com.monitor.monitoring_platform.entity.DiskInfo;
+import com.monitor.monitoring_platform.entity.MetricsSnapshot;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
-import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -15,43 +15,34 @@ import java.util.Random;
 @Service
 public class RealSystemMonitorService {
 
+    // 仪表盘展示的组件
+    private static final List<String> DASHBOARD_COMPONENTS = List.of("CPU", "Memory", "Disk-C", "Network", "Processes");
+
     @Autowired
-    private RealSystemDataService realSystemDataService;
+    private MetricsSamplerService metricsSamplerService;
 
     @Autowired
-    private SystemMetricsMapper systemMetricsMapper;
+    private MetricStorageService metricStorageService;
 
     private final Random random = new Random();
 
     /**
-     * 获取真实的系统指标
+     * 获取真实的系统指标（读取后台采样快照）
      */
     public Map<String, Object> getRealSystemMetrics() {
         Map<String, Object> metrics = new HashMap<>();
 
-        // 调用真实的采集服务
-        metrics.put("cpuUsage", realSystemDataService.getRealCpuUsage());
-        metrics.put("memoryUsage", realSystemDataService.getRealMemoryUsage());
-        metrics.put("diskUsage", getTotalDiskUsage());  // 总磁盘使用量
-        metrics.put("networkRate", realSystemDataService.getRealNetworkRate());
-        metrics.put("processCount", realSystemDataService.getRealProcessCount());
-        metrics.put("timestamp", LocalDateTime.now());
+        MetricsSnapshot snapshot = metricsSamplerService.getSnapshot();
+        metrics.put("cpuUsage", snapshot.getCpuUsage());
+        metrics.put("memoryUsage", snapshot.getMemUsage());
+        metrics.put("diskUsage", snapshot.getTotalDiskUsage());  // 总磁盘使用量
+        metrics.put("networkRate", snapshot.getNetworkRate());
+        metrics.put("processCount", snapshot.getProcessCount());
+        metrics.put("timestamp", snapshot.isEmpty() ? LocalDateTime.now() : snapshot.getCollectedAt());
 
         return metrics;
     }
 
-    /**
-     * 获取所有磁盘的总使用量
-     */
-    private long getTotalDiskUsage() {
-        List<DiskInfo> disks = realSystemDataService.getAllDiskUsage();
-        long totalUsed = 0;
-        for (DiskInfo disk : disks) {
-            totalUsed += disk.getUsedSpace();
-        }
-        return totalUsed;
-    }
-
     /**
      * 获取仪表盘数据
      */
@@ -59,19 +50,22 @@ public class RealSystemMonitorService {
         Map<String, Object> dashboardData = new HashMap<>();
 
         try {
-            SystemMetrics cpuMetrics = systemMetricsMapper.selectLatestByComponentName("CPU");
+            // 各组件的最新值一次取回，不再逐个组件查询
+            Map<String, SystemMetrics> latest = metricStorageService.selectLatestByComponentNames(DASHBOARD_COMPONENTS);
+
+            SystemMetrics cpuMetrics = latest.get("CPU");
             dashboardData.put("cpuUsage", cpuMetrics != null ? cpuMetrics.getCpuUsage() : 30.0);
 
-            SystemMetrics memoryMetrics = systemMetricsMapper.selectLatestByComponentName("Memory");
+            SystemMetrics memoryMetrics = latest.get("Memory");
             dashboardData.put("memoryUsage", memoryMetrics != null ? memoryMetrics.getMemUsage() : 50.0);
 
-            SystemMetrics diskMetrics = systemMetricsMapper.selectLatestByComponentName("Disk-C");
+            SystemMetrics diskMetrics = latest.get("Disk-C");
             dashboardData.put("diskUsage", diskMetrics != null ? diskMetrics.getDiskUsage() : 150L);
 
-            SystemMetrics networkMetrics = systemMetricsMapper.selectLatestByComponentName("Network");
+            SystemMetrics networkMetrics = latest.get("Network");
             dashboardData.put("networkRate", networkMetrics != null ? networkMetrics.getNetworkRate() : 1.5);
 
-            SystemMetrics processMetrics = systemMetricsMapper.selectLatestByComponentName("Processes");
+            SystemMetrics processMetrics = latest.get("Processes");
             dashboardData.put("processCount", processMetrics != null ? processMetrics.getProcessCount() : 150);
 
             dashboardData.put("status", "success");
@@ -98,8 +92,9 @@ public class RealSystemMonitorService {
         Map<String, Object> health = new HashMap<>();
 
         try {
-            SystemMetrics cpu = systemMetricsMapper.selectLatestByComponentName("CPU");
-            SystemMetrics memory = systemMetricsMapper.selectLatestByComponentName("Memory");
+            Map<String, SystemMetrics> latest = metricStorageService.selectLatestByComponentNames(List.of("CPU", "Memory"));
+            SystemMetrics cpu = latest.get("CPU");
+            SystemMetrics memory = latest.get("Memory");
 
             boolean cpuHealthy = cpu != null && cpu.getCpuUsage() < 90;
             boolean memoryHealthy = memory != null && memory.getMemUsage() < 95;
@@ -1,17 +1,19 @@
 package com.monitor.monitoring_platform.service;
 
+import com.monitor.monitoring_platform.entity.AlertRecord;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class SmartAlertService {
 
     @Resource
-    private AiSmartService aiSmartService;
+    private AlertEnrichmentService alertEnrichmentService;
 
-    private Map<String, ServiceBaseline> componentBaselines = new HashMap<>();
+    // 会被多个上报线程同时访问
+    private Map<String, ServiceBaseline> componentBaselines = new ConcurrentHashMap<>();
 
     public SmartAlertService() {
         initializeBaselines();
@@ -60,12 +62,8 @@ public class SmartAlertService {
 
         AlertResult result = new AlertResult();
 
-        ServiceBaseline baseline = componentBaselines.get(componentName);
-        if (baseline == null) {
-            // 未知组件，创建默认基线
-            baseline = new ServiceBaseline();
-            componentBaselines.put(componentName, baseline);
-        }
+        // 未知组件，创建默认基线
+        ServiceBaseline baseline = componentBaselines.computeIfAbsent(componentName, k -> new ServiceBaseline());
 
         boolean isCpuAlert = false;
         boolean isMemAlert = false;
@@ -99,7 +97,7 @@ public class SmartAlertService {
             result.setAlertLevel("WARNING");
             result.setMessage(generateAlertMessage(componentName, isCpuAlert, isMemAlert, isDiskAlert, isNetworkAlert, isProcessAlert, isResponseAlert));
 
-            // AI 建议
+            // AI 建议交给后台异步生成，检测本身不等待大模型
             String prompt = String.format(
                     "你是系统运维专家。组件：%s，CPU使用率：%.1f%%，内存使用率：%.1f%%，磁盘使用：%dGB，网络速率：%.1fMB/s，进程数：%d个，响应时间：%dms。请给出简洁的优化建议。",
                     componentName,
@@ -110,11 +108,15 @@ public class SmartAlertService {
                     processCount != null ? processCount : 0,
                     responseTimeMs != null ? responseTimeMs : 0
             );
-            String aiSuggestion = aiSmartService.askAi(prompt);
-            result.setSuggestions(aiSuggestion);
+            String alertType = generateAlertType(isCpuAlert, isMemAlert, isDiskAlert, isNetworkAlert, isProcessAlert, isResponseAlert);
+            AlertRecord alert = alertEnrichmentService.record(
+                    componentName, alertType, result.getAlertLevel(), result.getMessage(), prompt);
+            result.setAlertId(alert.getId());
+            result.setSuggestions(alert.getSuggestions() != null
+                    ? alert.getSuggestions()
+                    : "AI 建议生成中，可通过 /api/alerts/" + alert.getId() + " 查看");
 
             System.out.println("🚨 智能告警触发: " + result.getMessage());
-            System.out.println("🤖 AI 建议: " + aiSuggestion);
         } else {
             result.setNeedAlert(false);
             result.setAlertLevel("NORMAL");
@@ -136,6 +138,17 @@ public class SmartAlertService {
         return isAlert;
     }
 
+    private String generateAlertType(boolean cpuAlert, boolean memAlert, boolean diskAlert, boolean networkAlert, boolean processAlert, boolean responseAlert) {
+        StringBuilder type = new StringBuilder();
+        if (cpuAlert) type.append("cpu,");
+        if (memAlert) type.append("memory,");
+        if (diskAlert) type.append("disk,");
+        if (networkAlert) type.append("network,");
+        if (processAlert) type.append("process,");
+        if (responseAlert) type.append("response,");
+        return type.substring(0, type.length() - 1);
+    }
+
     private String generateAlertMessage(String componentName, boolean cpuAlert, boolean memAlert, boolean diskAlert, boolean networkAlert, boolean processAlert, boolean responseAlert) {
         StringBuilder message = new StringBuilder();
         message.append("组件【").append(componentName).append("】检测到异常：");
@@ -189,6 +202,7 @@ public class SmartAlertService {
         private String alertLevel;
         private String message;
         private String suggestions;
+        private Long alertId;
         public boolean isNeedAlert() { return needAlert; }
         public void setNeedAlert(boolean needAlert) { this.needAlert = needAlert; }
         public String getAlertLevel() { return alertLevel; }
@@ -197,5 +211,7 @@ public class SmartAlertService {
         public void setMessage(String message) { this.message = message; }
         public String getSuggestions() { return suggestions; }
         public void setSuggestions(String suggestions) { this.suggestions = suggestions; }
+        public Long getAlertId() { return alertId; }
+        public void setAlertId(Long alertId) { this.alertId = alertId; }
     }
 }
\ No newline at end of file
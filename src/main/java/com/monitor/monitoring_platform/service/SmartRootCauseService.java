@@ -3,6 +3,9 @@ package com.monitor.monitoring_platform.service;
 import com.monitor.monitoring_platform.entity.SystemMetrics;
 import com.monitor.monitoring_platform.entity.Diagnosis;
 import com.monitor.monitoring_platform.entity.SmartAnalysisResult;
+import com.monitor.monitoring_platform.query.InMemorySeriesSource;
+import com.monitor.monitoring_platform.query.QueryEngine;
+import com.monitor.monitoring_platform.query.QueryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,31 +24,37 @@ public class SmartRootCauseService {
     @Autowired
     private AiSmartService aiSmartService;  // 注入 AI 服务
 
+    @Autowired
+    private QueryEngine queryEngine;  // 均值、增长、波动都用查询表达式在历史数据上求值
+
     public SmartAnalysisResult analyze(SystemMetrics current, List<SystemMetrics> recentHistory) {
         List<Diagnosis> diagnoses = new ArrayList<>();
 
         log.info("开始智能根因分析，当前数据点：{}", recentHistory.size());
 
+        // 历史行只转换一次，之后的统计都在这份数据上求值
+        InMemorySeriesSource history = InMemorySeriesSource.fromRows(recentHistory);
+
         // 1. 内存泄漏检测
-        Diagnosis memoryLeak = detectMemoryLeak(current, recentHistory);
+        Diagnosis memoryLeak = detectMemoryLeak(current, recentHistory, history);
         if (memoryLeak.getConfidence() > 40) {
             diagnoses.add(memoryLeak);
         }
 
         // 2. CPU问题检测
-        Diagnosis cpuIssue = detectCPUIssue(current, recentHistory);
+        Diagnosis cpuIssue = detectCPUIssue(current, history);
         if (cpuIssue.getConfidence() > 40) {
             diagnoses.add(cpuIssue);
         }
 
         // 3. 磁盘问题检测
-        Diagnosis diskIssue = detectDiskIssue(current, recentHistory);
+        Diagnosis diskIssue = detectDiskIssue(current, history);
         if (diskIssue.getConfidence() > 40) {
             diagnoses.add(diskIssue);
         }
 
         // ==========  4. 调用 AI 进行深度根因分析 ==========
-        String aiRootCauseAnalysis = callAiForRootCauseAnalysis(current, recentHistory, diagnoses);
+        String aiRootCauseAnalysis = callAiForRootCauseAnalysis(current, recentHistory, history, diagnoses);
 
         log.info("智能分析完成，发现 {} 个潜在问题", diagnoses.size());
 
@@ -58,16 +67,17 @@ public class SmartRootCauseService {
     /**
      * 调用 AI 进行深度根因分析
      */
-    private String callAiForRootCauseAnalysis(SystemMetrics current, List<SystemMetrics> history, List<Diagnosis> diagnoses) {
+    private String callAiForRootCauseAnalysis(SystemMetrics current, List<SystemMetrics> history,
+                                              InMemorySeriesSource source, List<Diagnosis> diagnoses) {
         try {
             // 1. 计算最近数据的趋势
-            double avgCpu = calculateAverageCPU(history);
-            double avgMem = calculateAverageMemory(history);
-            double avgDisk = calculateAverageDisk(history);
+            double avgCpu = historyStat(source, "avg_over_time", "cpu_usage");
+            double avgMem = historyStat(source, "avg_over_time", "mem_usage");
+            double avgDisk = historyStat(source, "avg_over_time", "disk_usage");
 
             // 2. 计算增长率
-            double cpuGrowthRate = calculateCPUGrowthRate(history);
-            double memGrowthRate = calculateMemoryGrowthRate(history);
+            double cpuGrowthRate = historyStat(source, "delta", "cpu_usage");
+            double memGrowthRate = historyStat(source, "delta", "mem_usage");
 
             // 3. 获取当前值
             double currentCpu = current.getCpuUsage() != null ? current.getCpuUsage() : 0;
@@ -115,39 +125,30 @@ public class SmartRootCauseService {
         }
     }
 
-    // 计算 CPU 增长率
-    private double calculateCPUGrowthRate(List<SystemMetrics> history) {
-        if (history.size() < 2) return 0;
-        double first = history.get(0).getCpuUsage();
-        double last = history.get(history.size() - 1).getCpuUsage();
-        return last - first;
-    }
-
-    private double calculateMemoryGrowthRate(List<SystemMetrics> history) {
-        if (history.size() < 2) return 0;
-        double first = history.get(0).getMemUsage();
-        double last = history.get(history.size() - 1).getMemUsage();
-        return last - first;
-    }
-
-    private double calculateAverageMemory(List<SystemMetrics> history) {
-        return history.stream().mapToDouble(m -> m.getMemUsage() != null ? m.getMemUsage() : 0).average().orElse(0);
-    }
-
-    private double calculateAverageCPU(List<SystemMetrics> history) {
-        return history.stream().mapToDouble(m -> m.getCpuUsage() != null ? m.getCpuUsage() : 0).average().orElse(0);
-    }
-
-    private double calculateAverageDisk(List<SystemMetrics> history) {
-        return history.stream().mapToDouble(m -> m.getDiskUsage() != null ? m.getDiskUsage() : 0).average().orElse(0);
+    /**
+     * 在整段历史上求区间函数，多个组件有同一指标时取平均；没有数据（或 delta 不足两个点）时返回 0
+     */
+    private double historyStat(InMemorySeriesSource history, String function, String metric) {
+        if (history.getMaxTimestamp() < history.getMinTimestamp()) {
+            return 0;
+        }
+        long at = history.getMaxTimestamp();
+        long window = at - history.getMinTimestamp() + 1;
+        QueryResult result = queryEngine.evaluate(
+                String.format("avg(%s(%s[%dms]))", function, metric, window), history, at, at, 1);
+        if (result.getSeries().isEmpty()) {
+            return 0;
+        }
+        double value = result.getSeries().get(0).getValues()[0];
+        return Double.isNaN(value) ? 0 : value;
     }
 
-    private Diagnosis detectMemoryLeak(SystemMetrics current, List<SystemMetrics> history) {
-        if (history.size() < 3) {
+    private Diagnosis detectMemoryLeak(SystemMetrics current, List<SystemMetrics> rows, InMemorySeriesSource history) {
+        if (rows.size() < 3) {
             return new Diagnosis("内存分析", 0, "历史数据不足");
         }
-        double growthRate = calculateMemoryGrowthRate(history);
-        double avgMemory = calculateAverageMemory(history);
+        double growthRate = historyStat(history, "delta", "mem_usage");
+        double avgMemory = historyStat(history, "avg_over_time", "mem_usage");
         int confidence = 0;
         String evidence = "";
         if (growthRate > 1.5 && avgMemory > 80) {
@@ -166,9 +167,9 @@ public class SmartRootCauseService {
         return new Diagnosis("内存泄漏风险", confidence, evidence);
     }
 
-    private Diagnosis detectCPUIssue(SystemMetrics current, List<SystemMetrics> history) {
-        double avgCpu = calculateAverageCPU(history);
-        double cpuVolatility = calculateCPUVolatility(history);
+    private Diagnosis detectCPUIssue(SystemMetrics current, InMemorySeriesSource history) {
+        double avgCpu = historyStat(history, "avg_over_time", "cpu_usage");
+        double cpuVolatility = historyStat(history, "stddev_over_time", "cpu_usage");
         int confidence = 0;
         String evidence = "";
         if (current.getCpuUsage() != null && current.getCpuUsage() > 95) {
@@ -187,8 +188,8 @@ public class SmartRootCauseService {
         return new Diagnosis("CPU性能问题", confidence, evidence);
     }
 
-    private Diagnosis detectDiskIssue(SystemMetrics current, List<SystemMetrics> history) {
-        double avgDisk = calculateAverageDisk(history);
+    private Diagnosis detectDiskIssue(SystemMetrics current, InMemorySeriesSource history) {
+        double avgDisk = historyStat(history, "avg_over_time", "disk_usage");
         int confidence = 0;
         String evidence = "";
         if (current.getDiskUsage() != null && current.getDiskUsage() > 95) {
@@ -206,13 +207,4 @@ public class SmartRootCauseService {
         }
         return new Diagnosis("磁盘空间风险", confidence, evidence);
     }
-
-    private double calculateCPUVolatility(List<SystemMetrics> history) {
-        double avg = calculateAverageCPU(history);
-        double variance = history.stream()
-                .mapToDouble(m -> Math.pow((m.getCpuUsage() != null ? m.getCpuUsage() : 0) - avg, 2))
-                .average()
-                .orElse(0);
-        return Math.sqrt(variance);
-    }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.monitor.monitoring_platform.service;
 
 import com.monitor.monitoring_platform.entity.SystemMetrics;
-import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -11,7 +11,7 @@ import java.util.List;
 public class SystemMetricsService {
 
     @Autowired
-    private SystemMetricsMapper systemMetricsMapper;
+    private MetricStorageService metricStorageService;
 
     public List<SystemMetrics> getRecentMetrics(int count) {
         // 获取最近的数据点，这里假设您有相应的方法
@@ -22,6 +22,6 @@ public class SystemMetricsService {
     private List<SystemMetrics> getRecentMetricsFromDB(int count) {
         // 这里实现从数据库获取最近的数据
         // 暂时可以先返回空列表或模拟数据
-        return systemMetricsMapper.selectRecentMetrics(count);
+        return metricStorageService.selectRecentMetrics(count);
     }
 }
\ No newline at end of file
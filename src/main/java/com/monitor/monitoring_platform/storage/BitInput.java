@@ -0,0 +1,85 @@
+//按位读取 ByteBuffer 中的一段数据（高位在前），使用绝对位置读取，不修改缓冲区状态
+package com.monitor.monitoring_platform.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 每次从缓冲区取 8 字节放进 64 位窗口，按位读取都在窗口里做移位，
+ * 避免逐字节访问（内存映射缓冲区的单字节读取有边界检查开销）。
+ */
+class BitInput {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int nextByte;
+
+    // 尚未读取的位，左对齐存放
+    private long window;
+    private int windowBits;
+
+    /**
+     * @param buffer 数据所在缓冲区（可以是内存映射文件）
+     * @param offset 数据起始字节
+     * @param length 数据字节数
+     */
+    BitInput(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.nextByte = offset;
+        this.limit = offset + length;
+    }
+
+    boolean readBit() {
+        if (windowBits == 0) {
+            refill();
+        }
+        boolean bit = window < 0;
+        window <<= 1;
+        windowBits--;
+        return bit;
+    }
+
+    /**
+     * 读取 n 位（n 为 0 到 64），作为无符号数返回
+     */
+    long readBits(int n) {
+        if (n == 0) {
+            return 0;
+        }
+        if (n <= windowBits) {
+            long result = window >>> (64 - n);
+            window = n == 64 ? 0 : window << n;
+            windowBits -= n;
+            return result;
+        }
+        // 窗口不够：先取完剩余的位，再补充
+        int high = windowBits;
+        long result = high == 0 ? 0 : window >>> (64 - high);
+        int low = n - high;
+        refill();
+        if (low > windowBits) {
+            throw new IllegalStateException("块数据不完整");
+        }
+        result = (high == 0 ? 0 : result << low) | (window >>> (64 - low));
+        window = low == 64 ? 0 : window << low;
+        windowBits -= low;
+        return result;
+    }
+
+    private void refill() {
+        if (nextByte + 8 <= limit) {
+            window = buffer.getLong(nextByte);
+            windowBits = 64;
+            nextByte += 8;
+            return;
+        }
+        window = 0;
+        windowBits = 0;
+        while (nextByte < limit) {
+            window |= (buffer.get(nextByte++) & 0xFFL) << (56 - windowBits);
+            windowBits += 8;
+        }
+        if (windowBits == 0) {
+            throw new IllegalStateException("块数据不完整");
+        }
+    }
+}
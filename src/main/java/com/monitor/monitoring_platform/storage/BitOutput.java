@@ -0,0 +1,65 @@
+//按位写入的可增长缓冲区（高位在前）
+package com.monitor.monitoring_platform.storage;
+
+import java.util.Arrays;
+
+class BitOutput {
+
+    private byte[] buffer;
+    private long bitPosition;
+
+    BitOutput(int initialBytes) {
+        this.buffer = new byte[Math.max(16, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            int byteIndex = (int) (bitPosition >>> 3);
+            buffer[byteIndex] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+    }
+
+    /**
+     * 写入 value 的低 n 位（n 为 0 到 64）
+     */
+    void writeBits(long value, int n) {
+        ensureCapacity(n);
+        while (n > 0) {
+            int byteIndex = (int) (bitPosition >>> 3);
+            int free = 8 - (int) (bitPosition & 7);
+            int take = Math.min(free, n);
+            int bits = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+            buffer[byteIndex] |= (byte) (bits << (free - take));
+            n -= take;
+            bitPosition += take;
+        }
+    }
+
+    long getBitLength() {
+        return bitPosition;
+    }
+
+    int getByteLength() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    /**
+     * 内部缓冲区（长度可能大于 getByteLength），只在持有写入方锁时读取
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, getByteLength());
+    }
+
+    private void ensureCapacity(int bits) {
+        long needed = (bitPosition + bits + 7) >>> 3;
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.max(needed, buffer.length * 2L));
+        }
+    }
+}
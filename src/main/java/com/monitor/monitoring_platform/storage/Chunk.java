@@ -0,0 +1,75 @@
+//封存后的不可变数据块：一个序列一段时间内的压缩样本，数据在堆内存（待落盘）或内存映射的段文件中
+package com.monitor.monitoring_platform.storage;
+
+import java.nio.ByteBuffer;
+
+final class Chunk {
+
+    private final int seriesId;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final long lastTimestamp;
+    private final double lastValue;
+    private final int count;
+
+    private final ByteBuffer data;
+    private final int offset;
+    private final int length;
+
+    private Chunk(int seriesId, long minTimestamp, long maxTimestamp, long lastTimestamp, double lastValue,
+                  int count, ByteBuffer data, int offset, int length) {
+        this.seriesId = seriesId;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.lastValue = lastValue;
+        this.count = count;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    static Chunk inMemory(int seriesId, long minTimestamp, long maxTimestamp, long lastTimestamp, double lastValue,
+                          int count, byte[] bytes) {
+        return new Chunk(seriesId, minTimestamp, maxTimestamp, lastTimestamp, lastValue,
+                count, ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * 指向段文件映射区域中的一段
+     */
+    static Chunk mapped(int seriesId, long minTimestamp, long maxTimestamp, long lastTimestamp, double lastValue,
+                        int count, ByteBuffer segment, int offset, int length) {
+        return new Chunk(seriesId, minTimestamp, maxTimestamp, lastTimestamp, lastValue,
+                count, segment, offset, length);
+    }
+
+    boolean overlaps(long fromMs, long toMs) {
+        return maxTimestamp >= fromMs && minTimestamp <= toMs;
+    }
+
+    int scan(long fromMs, long toMs, SampleConsumer consumer) {
+        return ChunkDecoder.decode(data, offset, length, count, fromMs, toMs, consumer);
+    }
+
+    /**
+     * 把压缩数据复制到 target 的当前位置（写段文件时使用）
+     */
+    void copyTo(ByteBuffer target) {
+        target.put(data.slice(offset, length));
+    }
+
+    int getSeriesId() { return seriesId; }
+
+    long getMinTimestamp() { return minTimestamp; }
+
+    long getMaxTimestamp() { return maxTimestamp; }
+
+    long getLastTimestamp() { return lastTimestamp; }
+
+    double getLastValue() { return lastValue; }
+
+    int getCount() { return count; }
+
+    int getLength() { return length; }
+}
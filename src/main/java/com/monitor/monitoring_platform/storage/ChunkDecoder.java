@@ -0,0 +1,95 @@
+//块解码：与 ChunkEncoder 的格式对应，按时间范围过滤后逐条回调
+package com.monitor.monitoring_platform.storage;
+
+import java.nio.ByteBuffer;
+
+final class ChunkDecoder {
+
+    private ChunkDecoder() {
+    }
+
+    /**
+     * 解码 buffer[offset, offset+length) 中的 count 个样本，只回调 [fromMs, toMs] 内的样本
+     *
+     * @return 回调的样本数
+     */
+    static int decode(ByteBuffer buffer, int offset, int length, int count,
+                      long fromMs, long toMs, SampleConsumer consumer) {
+        if (count == 0) {
+            return 0;
+        }
+        BitInput in = new BitInput(buffer, offset, length);
+        long timestamp = in.readBits(64);
+        long valueBits = in.readBits(64);
+        int emitted = 0;
+        if (timestamp >= fromMs && timestamp <= toMs) {
+            consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+            emitted++;
+        }
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            timestamp += delta;
+
+            if (in.readBit()) {
+                if (!in.readBit()) {
+                    // 两位小数差值：编码时上一个值必然也是两位小数，乘 100 取整即其整数形式
+                    long previous = Math.round(Double.longBitsToDouble(valueBits) * 100);
+                    valueBits = Double.doubleToRawLongBits((previous + readDecimalDelta(in)) / 100.0);
+                } else {
+                    if (in.readBit()) {
+                        leading = (int) in.readBits(5);
+                        int significant = (int) in.readBits(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    int significant = 64 - leading - trailing;
+                    valueBits ^= in.readBits(significant) << trailing;
+                }
+            }
+
+            if (timestamp >= fromMs && timestamp <= toMs) {
+                consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+                emitted++;
+            }
+        }
+        return emitted;
+    }
+
+    private static long readDeltaOfDelta(BitInput in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(7), 7);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(9), 9);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(12), 12);
+        }
+        return in.readBits(64);
+    }
+
+    private static long readDecimalDelta(BitInput in) {
+        if (!in.readBit()) {
+            return signExtend(in.readBits(7), 7);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(12), 12);
+        }
+        return signExtend(in.readBits(20), 20);
+    }
+
+    /**
+     * n 位补码还原成 long。编码范围是 [-(2^(n-1)-1), 2^(n-1)]，
+     * 所以 2^(n-1) 本身按正数处理
+     */
+    private static long signExtend(long bits, int n) {
+        long half = 1L << (n - 1);
+        return bits > half ? bits - (1L << n) : bits;
+    }
+}
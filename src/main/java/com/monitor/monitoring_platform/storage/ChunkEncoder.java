@@ -0,0 +1,165 @@
+//单个序列的块编码器：时间戳用差值的差值（delta-of-delta），数值用两位小数差值或 Gorilla 的 XOR 压缩
+package com.monitor.monitoring_platform.storage;
+
+/**
+ * 编码格式（按位，高位在前）：
+ * <pre>
+ * 第一个样本：64 位时间戳(ms) + 64 位数值
+ * 之后每个样本：
+ *   时间戳 dod = (t - t1) - (t1 - t2)
+ *     0                    -> '0'
+ *     [-63, 64]            -> '10'   + 7 位
+ *     [-255, 256]          -> '110'  + 9 位
+ *     [-2047, 2048]        -> '1110' + 12 位
+ *     其他                 -> '1111' + 64 位
+ *   数值
+ *     与上一个值相同        -> '0'
+ *     两位小数差值 d = v*100 - 上一个值*100（两个值都恰好是两位小数时）
+ *       [-63, 64]          -> '10' + '0'  + 7 位
+ *       [-2047, 2048]      -> '10' + '10' + 12 位
+ *       [-524287, 524288]  -> '10' + '11' + 20 位
+ *     其他，xor = v ^ 上一个值
+ *       有效位落在上次的窗口内 -> '11' + '0' + 有效位
+ *       其他               -> '11' + '1' + 5 位前导零数 + 6 位(有效位数-1) + 有效位
+ * </pre>
+ * 固定间隔采集时时间戳每个样本约 1 位，不变的数值每个样本 1 位。
+ * 平台采集的数值都四舍五入到两位小数，这类值的尾数几乎每位都在变，XOR 压缩每个样本要 50 位左右，
+ * 换成整数差值后波动不大的序列一般 10 位左右。非线程安全，由 SegmentStore 按序列加锁。
+ */
+class ChunkEncoder {
+
+    private final BitOutput out;
+
+    private int count;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeading = -1;
+    private int lastTrailing;
+    private long lastScaled = NOT_DECIMAL;
+
+    static final long NOT_DECIMAL = Long.MIN_VALUE;
+
+    ChunkEncoder(int expectedSamples) {
+        this.out = new BitOutput(expectedSamples * 2);
+    }
+
+    void append(long timestampMs, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        long scaled = toScaled(value, valueBits);
+        if (count == 0) {
+            out.writeBits(timestampMs, 64);
+            out.writeBits(valueBits, 64);
+        } else {
+            long delta = timestampMs - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            writeValue(valueBits, scaled);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestampMs;
+        lastValueBits = valueBits;
+        lastScaled = scaled;
+        minTimestamp = Math.min(minTimestamp, timestampMs);
+        maxTimestamp = Math.max(maxTimestamp, timestampMs);
+        count++;
+    }
+
+    private void writeTimestamp(long dod) {
+        if (dod == 0) {
+            out.writeBit(false);
+        } else if (dod >= -63 && dod <= 64) {
+            out.writeBits(0b10, 2);
+            out.writeBits(dod, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            out.writeBits(0b110, 3);
+            out.writeBits(dod, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(dod, 12);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(long valueBits, long scaled) {
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        if (scaled != NOT_DECIMAL && lastScaled != NOT_DECIMAL) {
+            long d = scaled - lastScaled;
+            if (d >= -63 && d <= 64) {
+                out.writeBits(0b100, 3);
+                out.writeBits(d, 7);
+                return;
+            }
+            if (d >= -2047 && d <= 2048) {
+                out.writeBits(0b1010, 4);
+                out.writeBits(d, 12);
+                return;
+            }
+            if (d >= -524287 && d <= 524288) {
+                out.writeBits(0b1011, 4);
+                out.writeBits(d, 20);
+                return;
+            }
+        }
+        out.writeBits(0b11, 2);
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            out.writeBit(false);
+            out.writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            out.writeBits(significant - 1, 6);
+            out.writeBits(xor >>> trailing, significant);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    /**
+     * 恰好是两位小数的值返回 value*100 的整数，否则返回 NOT_DECIMAL。
+     * 按位比较 scaled / 100.0 与原值，解码时同样的除法能还原出完全相同的 double（包括 -0.0 的区分）
+     */
+    static long toScaled(double value, long valueBits) {
+        if (!(Math.abs(value) < 1e13)) {
+            return NOT_DECIMAL;
+        }
+        long scaled = Math.round(value * 100);
+        return Double.doubleToRawLongBits(scaled / 100.0) == valueBits ? scaled : NOT_DECIMAL;
+    }
+
+    int getCount() { return count; }
+
+    long getMinTimestamp() { return minTimestamp; }
+
+    long getMaxTimestamp() { return maxTimestamp; }
+
+    long getLastTimestamp() { return lastTimestamp; }
+
+    double getLastValue() { return Double.longBitsToDouble(lastValueBits); }
+
+    int getByteLength() { return out.getByteLength(); }
+
+    /**
+     * 编码中的数据（只在持有序列锁时读取）
+     */
+    byte[] buffer() { return out.buffer(); }
+
+    /**
+     * 封存为不可变的块
+     */
+    Chunk seal(int seriesId) {
+        return Chunk.inMemory(seriesId, minTimestamp, maxTimestamp, lastTimestamp, getLastValue(),
+                count, out.toByteArray());
+    }
+}
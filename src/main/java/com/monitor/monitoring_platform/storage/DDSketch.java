@@ -0,0 +1,260 @@
+//DDSketch 分位数草图：按对数划分的桶计数，分位数的相对误差不超过给定精度，两个草图可以直接相加合并
+package com.monitor.monitoring_platform.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 值 v 落入下标为 ceil(log_γ(v)) 的桶，γ = (1 + α) / (1 - α)，用桶的代表值 2γ^i / (γ + 1) 估计分位数，
+ * 相对误差不超过 α。桶计数存放在连续的 long 数组里（offset 为第一个元素对应的下标）。
+ * 桶数超过 maxBins 时把最小的若干桶并入保留的最低桶，内存有上限，只影响最低端的分位数。
+ * <p>
+ * 只用于延迟这类非负的指标：不大于 MIN_INDEXABLE 的值（包括负数）计入零桶，估计为 0。
+ * 另外记录精确的最小、最大值，估计结果不会超出这个范围。
+ * 精度不同的草图也能合并（按代表值重新分桶，误差会叠加）。不是线程安全的。
+ */
+public final class DDSketch {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final double MIN_INDEXABLE = 1e-9;
+    private static final int INITIAL_BINS = 32;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+    private final int maxBins;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public DDSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("精度必须在 (0, 1) 之间: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        this.maxBins = Math.max(maxBins, 2);
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double value, long n) {
+        if (Double.isNaN(value) || n <= 0) {
+            return;
+        }
+        count += n;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        bin(value, n);
+    }
+
+    /**
+     * 只加桶计数，不动总数和最小、最大值
+     */
+    private void bin(double value, long n) {
+        if (value <= MIN_INDEXABLE) {
+            zeroCount += n;
+        } else {
+            increment((int) Math.ceil(Math.log(value) * multiplier), n);
+        }
+    }
+
+    /**
+     * 把另一个草图的计数加进来，另一个草图不变
+     */
+    public void merge(DDSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        // 精度不同时按对方每个桶的代表值重新分桶；代表值不是真实样本，最小、最大值只取双方的精确值
+        boolean rebin = other.gamma != gamma;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                if (rebin) {
+                    bin(other.valueOf(other.offset + i), other.counts[i]);
+                } else {
+                    increment(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * q 分位数（0 ≤ q ≤ 1），没有数据时返回 NaN
+     */
+    public double quantile(double q) {
+        if (count == 0 || Double.isNaN(q) || q < 0 || q > 1) {
+            return Double.NaN;
+        }
+        double rank = q * (count - 1);
+        if (rank < zeroCount) {
+            return Math.max(min, Math.min(max, 0));
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return Math.max(min, Math.min(max, valueOf(offset + i)));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() { return count; }
+
+    public double getMin() { return min; }
+
+    public double getMax() { return max; }
+
+    public double getRelativeAccuracy() { return relativeAccuracy; }
+
+    public DDSketch copy() {
+        DDSketch copy = new DDSketch(relativeAccuracy, maxBins);
+        copy.counts = counts.clone();
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    /**
+     * 序列化：版本、精度、最小最大值、零桶计数、起始下标和各桶计数（变长整数，去掉两端的空桶）
+     */
+    public byte[] encode() {
+        int first = 0;
+        int last = counts.length - 1;
+        while (first <= last && counts[first] == 0) {
+            first++;
+        }
+        while (last >= first && counts[last] == 0) {
+            last--;
+        }
+        int bins = last - first + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 * 3 + 10 * 3 + 10 * bins);
+        buffer.put(FORMAT_VERSION);
+        buffer.putDouble(relativeAccuracy);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        putVarLong(buffer, zeroCount);
+        putVarLong(buffer, zigZag(offset + first));
+        putVarLong(buffer, bins);
+        for (int i = first; i <= last; i++) {
+            putVarLong(buffer, counts[i]);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * 反序列化，桶数上限取 maxBins
+     */
+    public static DDSketch decode(byte[] bytes, int maxBins) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的草图格式版本: " + version);
+        }
+        DDSketch sketch = new DDSketch(buffer.getDouble(), maxBins);
+        sketch.min = buffer.getDouble();
+        sketch.max = buffer.getDouble();
+        sketch.zeroCount = getVarLong(buffer);
+        sketch.count = sketch.zeroCount;
+        int start = unZigZag(getVarLong(buffer));
+        int bins = (int) getVarLong(buffer);
+        for (int i = 0; i < bins; i++) {
+            long n = getVarLong(buffer);
+            if (n != 0) {
+                sketch.increment(start + i, n);
+                sketch.count += n;
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * 下标为 index 的桶的代表值
+     */
+    private double valueOf(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private void increment(int index, long n) {
+        if (counts.length == 0) {
+            counts = new long[Math.min(INITIAL_BINS, maxBins)];
+            offset = index - counts.length / 2;
+        }
+        if (index < offset || index >= offset + counts.length) {
+            grow(index);
+        }
+        // 超出上限后最低的下标被并入 offset
+        counts[Math.max(index, offset) - offset] += n;
+    }
+
+    /**
+     * 扩展数组以容纳 index，向扩展的方向留出余量；总跨度超过 maxBins 时只保留最高的 maxBins 个下标，
+     * 更低的计数并入保留的最低桶
+     */
+    private void grow(int index) {
+        int low = Math.min(index, offset);
+        int high = Math.max(index, offset + counts.length - 1);
+        long[] resized;
+        int newOffset;
+        if (high - low + 1 > maxBins) {
+            newOffset = high - maxBins + 1;
+            resized = new long[maxBins];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    resized[Math.max(offset + i, newOffset) - newOffset] += counts[i];
+                }
+            }
+        } else {
+            int length = Math.min(maxBins, Math.max(high - low + 1, counts.length * 2));
+            newOffset = index < offset ? high - length + 1 : low;
+            resized = new long[length];
+            System.arraycopy(counts, 0, resized, offset - newOffset, counts.length);
+        }
+        counts = resized;
+        offset = newOffset;
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+//图表降采样：把时间有序的样本流压缩到最多 maxPoints 个点，只做一次遍历，内存与输入长度无关
+package com.monitor.monitoring_platform.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 输入按时间顺序逐点传入（accept），全部传入后调用 finish，再取 getPoints。
+ * 输出桶按时间等分 [fromMs, toMs)，不按点数等分，数据有空洞时空洞处不占用输出点。
+ */
+abstract class Downsampler implements SampleConsumer {
+
+    static final String LTTB = "lttb";
+    static final String MIN_MAX = "minmax";
+
+    protected final long fromMs;
+    protected final long toMs;
+
+    private long[] outTimestamps = new long[64];
+    private double[] outValues = new double[64];
+    private int outSize;
+
+    protected Downsampler(long fromMs, long toMs) {
+        this.fromMs = fromMs;
+        this.toMs = toMs;
+    }
+
+    /**
+     * @param mode lttb（Largest-Triangle-Three-Buckets，保留视觉形状）或 minmax（每桶保留最小值和最大值，不丢尖峰）
+     */
+    static Downsampler create(String mode, long fromMs, long toMs, int maxPoints) {
+        if (mode == null || LTTB.equalsIgnoreCase(mode)) {
+            return new LttbDownsampler(fromMs, toMs, maxPoints);
+        }
+        if (MIN_MAX.equalsIgnoreCase(mode)) {
+            return new MinMaxDownsampler(fromMs, toMs, maxPoints);
+        }
+        throw new IllegalArgumentException("未知的降采样方式: " + mode + "（可选 lttb、minmax）");
+    }
+
+    /**
+     * 输入结束，输出剩余的点
+     */
+    abstract void finish();
+
+    /**
+     * 时间对应的输出桶，早于当前桶的迟到样本由调用方并入当前桶
+     */
+    protected static int bucketOf(long timestampMs, long fromMs, long toMs, int buckets) {
+        if (timestampMs <= fromMs) {
+            return 0;
+        }
+        if (timestampMs >= toMs) {
+            return buckets - 1;
+        }
+        return (int) ((timestampMs - fromMs) * buckets / (toMs - fromMs));
+    }
+
+    protected void emit(long timestampMs, double value) {
+        if (outSize == outTimestamps.length) {
+            outTimestamps = Arrays.copyOf(outTimestamps, outSize * 2);
+            outValues = Arrays.copyOf(outValues, outSize * 2);
+        }
+        outTimestamps[outSize] = timestampMs;
+        outValues[outSize] = value;
+        outSize++;
+    }
+
+    int size() {
+        return outSize;
+    }
+
+    /**
+     * 输出的点，每点 ts/value
+     */
+    List<Map<String, Object>> getPoints() {
+        List<Map<String, Object>> points = new ArrayList<>(outSize);
+        for (int i = 0; i < outSize; i++) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("ts", outTimestamps[i]);
+            point.put("value", outValues[i]);
+            points.add(point);
+        }
+        return points;
+    }
+}
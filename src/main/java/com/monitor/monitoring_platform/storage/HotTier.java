@@ -0,0 +1,364 @@
+//热数据层：每个序列最近几小时的样本放在堆外环形缓冲区中，最近时间窗口的查询不访问数据库
+package com.monitor.monitoring_platform.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 内存布局：堆外内存按 slab（最大 64MB 的直接缓冲区）分配，每个序列占一个固定大小的区域：
+ * <pre>
+ * [i32 样本数][i32 下一个写入位置][i32 是否丢弃过旧数据][4 字节保留]
+ * 容量 × [i64 时间戳(ms)][f64 值]
+ * </pre>
+ * 容量 = hours / min-interval-ms，总内存不超过 max-bytes，超出预算的新序列不进入热数据层（查询回退到存储）。
+ * 写入时不创建对象；堆上只有序列ID到区域下标的 int 数组和少量 slab 对象，与序列数量无关的 GC 压力。
+ *
+ * 并发：按序列ID分段的 StampedLock，写入持写锁；读取先乐观读把数据复制出来，校验失败再加读锁。
+ *
+ * 覆盖范围：启动后写入的样本都在环中，直到环写满开始覆盖最旧的样本。
+ * 所以序列在 [coveredFrom, 现在] 内的数据是完整的，查询起点早于它时由调用方回退到 MySQL 或时序存储。
+ */
+@Service
+@ConditionalOnProperty(prefix = "monitor.storage.hot", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HotTier {
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 16;
+    private static final int MAX_SLAB_BYTES = 64 << 20;
+    private static final int LOCK_STRIPES = 64;
+
+    // 区域头中的字段偏移
+    private static final int COUNT = 0;
+    private static final int HEAD = 4;
+    private static final int WRAPPED = 8;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.storage.hot.hours:6}")
+    private int hours;
+
+    @Value("${monitor.storage.hot.min-interval-ms:5000}")
+    private long minIntervalMs;
+
+    @Value("${monitor.storage.hot.max-bytes:268435456}")
+    private long maxBytes;
+
+    private int capacity;
+    private int regionBytes;
+    private int regionsPerSlab;
+    private int maxRegions;
+
+    // 启动时间：此后写入的样本都进入了热数据层
+    private final long startedAt = System.currentTimeMillis();
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private volatile ByteBuffer[] slabArray = new ByteBuffer[0];
+
+    // 序列ID -> 区域下标 + 1（0 表示尚未分配，-1 表示超出预算）
+    private volatile int[] regionBySeries = new int[1024];
+    private int allocatedRegions;
+    private final AtomicInteger untrackedSeries = new AtomicInteger();
+
+    private final StampedLock[] locks = new StampedLock[LOCK_STRIPES];
+
+    @PostConstruct
+    public void init() {
+        long slots = Math.max(16, hours * 3_600_000L / Math.max(1, minIntervalMs));
+        capacity = (int) Math.min(slots, (MAX_SLAB_BYTES - HEADER_BYTES) / SLOT_BYTES);
+        regionBytes = HEADER_BYTES + capacity * SLOT_BYTES;
+        regionsPerSlab = Math.max(1, MAX_SLAB_BYTES / regionBytes);
+        maxRegions = (int) Math.min(Integer.MAX_VALUE, maxBytes / regionBytes);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+
+        Gauge.builder("monitor.storage.hot.series", this, HotTier::getTrackedSeries).register(meterRegistry);
+        Gauge.builder("monitor.storage.hot.untracked.series", untrackedSeries, AtomicInteger::get)
+                .description("超出内存预算、未进入热数据层的序列数").register(meterRegistry);
+        Gauge.builder("monitor.storage.hot.bytes", this, HotTier::getAllocatedBytes).register(meterRegistry);
+        System.out.println("热数据层: 每序列 " + capacity + " 个样本（" + regionBytes + " 字节），最多 "
+                + maxRegions + " 个序列");
+    }
+
+    /**
+     * 追加样本。时间早于环中最后一个样本时按时间插入，与已有样本同一时刻时覆盖
+     */
+    public void append(int seriesId, long timestampMs, double value) {
+        int region = regionFor(seriesId);
+        if (region < 0) {
+            return;
+        }
+        ByteBuffer slab = slabArray[region / regionsPerSlab];
+        int base = (region % regionsPerSlab) * regionBytes;
+
+        StampedLock lock = locks[seriesId & (LOCK_STRIPES - 1)];
+        long stamp = lock.writeLock();
+        try {
+            int count = slab.getInt(base + COUNT);
+            int head = slab.getInt(base + HEAD);
+            if (count == 0 || timestampMs > timestampAt(slab, base, physical(head, count, count - 1))) {
+                put(slab, base, head, timestampMs, value);
+                slab.putInt(base + HEAD, (head + 1) % capacity);
+                if (count < capacity) {
+                    slab.putInt(base + COUNT, count + 1);
+                } else {
+                    slab.putInt(base + WRAPPED, 1);
+                }
+                return;
+            }
+            insertLate(slab, base, count, head, timestampMs, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 按时间顺序回调序列在 [fromMs, toMs] 内的样本
+     *
+     * @return 回调的样本数；热数据层不能完整覆盖 fromMs 起的数据时返回 -1，调用方应改查存储
+     */
+    public int scan(int seriesId, long fromMs, long toMs, SampleConsumer consumer) {
+        if (fromMs < coveredFrom(seriesId)) {
+            return -1;
+        }
+        int region = regionOf(seriesId);
+        if (region < 0) {
+            // 启动后没有写入过，覆盖范围内没有数据
+            return 0;
+        }
+        ByteBuffer slab = slabArray[region / regionsPerSlab];
+        int base = (region % regionsPerSlab) * regionBytes;
+
+        StampedLock lock = locks[seriesId & (LOCK_STRIPES - 1)];
+        long[] timestamps = null;
+        double[] values = null;
+        int n = 0;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                RangeCopy copy = copyRange(slab, base, fromMs, toMs);
+                timestamps = copy.timestamps;
+                values = copy.values;
+                n = copy.length;
+            } catch (RuntimeException e) {
+                // 读到了写入中途的数据，下面加锁重读
+                stamp = 0;
+            }
+        }
+        if (stamp == 0 || !lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                RangeCopy copy = copyRange(slab, base, fromMs, toMs);
+                timestamps = copy.timestamps;
+                values = copy.values;
+                n = copy.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (fromMs < coveredFrom(seriesId)) {
+            // 复制期间环写满覆盖了范围内的旧样本
+            return -1;
+        }
+        for (int i = 0; i < n; i++) {
+            consumer.accept(timestamps[i], values[i]);
+        }
+        return n;
+    }
+
+    /**
+     * 热数据层对该序列完整覆盖的起始时间，超出预算的序列返回 Long.MAX_VALUE
+     */
+    public long coveredFrom(int seriesId) {
+        int[] regions = regionBySeries;
+        int entry = seriesId >= 0 && seriesId < regions.length ? regions[seriesId] : 0;
+        if (entry < 0) {
+            return Long.MAX_VALUE;
+        }
+        if (entry == 0) {
+            return startedAt;
+        }
+        int region = entry - 1;
+        ByteBuffer slab = slabArray[region / regionsPerSlab];
+        int base = (region % regionsPerSlab) * regionBytes;
+        StampedLock lock = locks[seriesId & (LOCK_STRIPES - 1)];
+        long stamp = lock.readLock();
+        try {
+            if (slab.getInt(base + WRAPPED) == 0) {
+                return startedAt;
+            }
+            // 环已经覆盖过旧样本，完整的部分从当前最旧的样本开始
+            int count = slab.getInt(base + COUNT);
+            return timestampAt(slab, base, physical(slab.getInt(base + HEAD), count, 0));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getTrackedSeries() {
+        return allocatedRegions;
+    }
+
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (ByteBuffer slab : slabArray) {
+            bytes += slab.capacity();
+        }
+        return bytes;
+    }
+
+    // ===== 环形缓冲区操作（调用方持有锁，乐观读时可能读到不一致的数据，下标都取模避免越界） =====
+
+    private void insertLate(ByteBuffer slab, int base, int count, int head, long timestampMs, double value) {
+        int pos = lowerBound(slab, base, head, count, timestampMs);
+        if (pos < count && timestampAt(slab, base, physical(head, count, pos)) == timestampMs) {
+            slab.putDouble(slotOffset(base, physical(head, count, pos)) + 8, value);
+            return;
+        }
+        boolean full = count == capacity;
+        if (pos == 0 && (full || slab.getInt(base + WRAPPED) != 0)) {
+            // 比环中最旧的样本还早且之前的数据已丢弃：不在覆盖范围内，忽略
+            return;
+        }
+        if (full) {
+            // 丢弃最旧的样本腾出位置，逻辑下标整体前移一位
+            count--;
+            pos--;
+            slab.putInt(base + WRAPPED, 1);
+        }
+        // 把 [pos, count) 后移一位，写入 pos
+        for (int i = count; i > pos; i--) {
+            int to = physical(head, count, i);
+            int from = physical(head, count, i - 1);
+            put(slab, base, to, timestampAt(slab, base, from), slab.getDouble(slotOffset(base, from) + 8));
+        }
+        put(slab, base, physical(head, count, pos), timestampMs, value);
+        slab.putInt(base + HEAD, (head + 1) % capacity);
+        slab.putInt(base + COUNT, count + 1);
+    }
+
+    private RangeCopy copyRange(ByteBuffer slab, int base, long fromMs, long toMs) {
+        int count = Math.min(Math.max(slab.getInt(base + COUNT), 0), capacity);
+        int head = Math.floorMod(slab.getInt(base + HEAD), capacity);
+        int start = lowerBound(slab, base, head, count, fromMs);
+        int end = start;
+        while (end < count && timestampAt(slab, base, physical(head, count, end)) <= toMs) {
+            end++;
+        }
+        RangeCopy copy = new RangeCopy(end - start);
+        for (int i = start; i < end; i++) {
+            int slot = physical(head, count, i);
+            copy.timestamps[i - start] = timestampAt(slab, base, slot);
+            copy.values[i - start] = slab.getDouble(slotOffset(base, slot) + 8);
+        }
+        return copy;
+    }
+
+    /**
+     * 第一个时间不早于 timestampMs 的逻辑下标（0 为最旧的样本）
+     */
+    private int lowerBound(ByteBuffer slab, int base, int head, int count, long timestampMs) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(slab, base, physical(head, count, mid)) < timestampMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 逻辑下标（0 为最旧）对应的物理槽位
+     */
+    private int physical(int head, int count, int index) {
+        return Math.floorMod(head - count + index, capacity);
+    }
+
+    private int slotOffset(int base, int slot) {
+        return base + HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private long timestampAt(ByteBuffer slab, int base, int slot) {
+        return slab.getLong(slotOffset(base, slot));
+    }
+
+    private void put(ByteBuffer slab, int base, int slot, long timestampMs, double value) {
+        int offset = slotOffset(base, slot);
+        slab.putLong(offset, timestampMs);
+        slab.putDouble(offset + 8, value);
+    }
+
+    // ===== 区域分配 =====
+
+    private int regionOf(int seriesId) {
+        int[] regions = regionBySeries;
+        return seriesId >= 0 && seriesId < regions.length ? regions[seriesId] - 1 : -1;
+    }
+
+    private int regionFor(int seriesId) {
+        int[] regions = regionBySeries;
+        if (seriesId >= 0 && seriesId < regions.length && regions[seriesId] != 0) {
+            return regions[seriesId] - 1;
+        }
+        return allocate(seriesId);
+    }
+
+    private synchronized int allocate(int seriesId) {
+        if (seriesId < 0) {
+            return -1;
+        }
+        int[] regions = regionBySeries;
+        if (seriesId >= regions.length) {
+            regions = Arrays.copyOf(regions, Math.max(seriesId + 1, regions.length * 2));
+        }
+        if (regions[seriesId] != 0) {
+            return regions[seriesId] - 1;
+        }
+        if (allocatedRegions >= maxRegions) {
+            regions[seriesId] = -1;
+            regionBySeries = regions;
+            untrackedSeries.incrementAndGet();
+            return -1;
+        }
+        int region = allocatedRegions;
+        if (region / regionsPerSlab >= slabs.size()) {
+            int remaining = Math.min(regionsPerSlab, maxRegions - region);
+            // 新分配的直接缓冲区内容为 0，即样本数为 0 的空环
+            slabs.add(ByteBuffer.allocateDirect(remaining * regionBytes));
+            slabArray = slabs.toArray(new ByteBuffer[0]);
+        }
+        allocatedRegions++;
+        regions[seriesId] = region + 1;
+        regionBySeries = regions;
+        return region;
+    }
+
+    private static final class RangeCopy {
+        private final long[] timestamps;
+        private final double[] values;
+        private final int length;
+
+        private RangeCopy(int length) {
+            this.timestamps = new long[length];
+            this.values = new double[length];
+            this.length = length;
+        }
+    }
+}
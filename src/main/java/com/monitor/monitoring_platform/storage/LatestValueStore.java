@@ -0,0 +1,154 @@
+//最新值存储：每个组件各指标的最新值常驻内存，每次写入时更新，metric_latest 表只用于重启后恢复
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.MetricSample;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.mapper.MetricLatestMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * “当前状态”类查询（大屏、健康检查、最新指标接口）只读这里，不查样本表。
+ * 每个组件保存一个不可变的 ComponentLatest，更新时整体替换，读取不加锁，
+ * 查询所有组件的最新行是 O(组件数) 的内存遍历。
+ * 与原来的 SQL 语义一致：组件的最新行只包含时间等于该组件最新时间的那些指标。
+ */
+@Service
+public class LatestValueStore {
+
+    private static final MetricField[] FIELDS = MetricField.values();
+
+    @Autowired
+    private MetricLatestMapper metricLatestMapper;
+
+    @Autowired
+    private SeriesRegistry seriesRegistry;
+
+    private final Map<String, ComponentLatest> byComponent = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        try {
+            List<MetricSample> rows = metricLatestMapper.selectAll();
+            for (MetricSample row : rows) {
+                apply(row.getSeriesId(), MetricStorageService.toEpochMillis(row.getTimestamp()), row.getValue());
+            }
+            System.out.println("已加载 " + rows.size() + " 个序列的最新值");
+        } catch (Exception e) {
+            // 数据库暂不可用时从空开始，收到新数据后恢复
+            System.err.println("加载最新值失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 用一批刚写入的样本更新最新值，并把每个序列在这批中的最新样本写回 metric_latest
+     */
+    public void update(List<MetricSample> samples) {
+        Map<Integer, MetricSample> newest = new HashMap<>();
+        for (MetricSample sample : samples) {
+            apply(sample.getSeriesId(), MetricStorageService.toEpochMillis(sample.getTimestamp()), sample.getValue());
+            newest.merge(sample.getSeriesId(), sample,
+                    (a, b) -> b.getTimestamp().isBefore(a.getTimestamp()) ? a : b);
+        }
+        if (newest.isEmpty()) {
+            return;
+        }
+        try {
+            metricLatestMapper.upsertBatch(new ArrayList<>(newest.values()));
+        } catch (Exception e) {
+            // 内存中的值已经更新，表只影响重启后的恢复，下一批会再次写入
+            System.err.println("写入最新值失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 组件的最新一行，没有数据时返回 null
+     */
+    public SystemMetrics getLatest(String componentName) {
+        ComponentLatest latest = byComponent.get(componentName);
+        return latest != null ? latest.toRow(componentName) : null;
+    }
+
+    /**
+     * 每个组件的最新一行
+     */
+    public List<SystemMetrics> getLatestAll() {
+        List<SystemMetrics> rows = new ArrayList<>(byComponent.size());
+        for (Map.Entry<String, ComponentLatest> entry : byComponent.entrySet()) {
+            rows.add(entry.getValue().toRow(entry.getKey()));
+        }
+        return rows;
+    }
+
+    private void apply(int seriesId, long timestampMs, double value) {
+        MetricSeries series = seriesRegistry.get(seriesId);
+        MetricField field = series != null ? MetricField.fromName(series.getMetricName()) : null;
+        if (field == null) {
+            return;
+        }
+        byComponent.compute(series.getComponentName(), (name, current) ->
+                (current != null ? current : ComponentLatest.EMPTY).with(field.ordinal(), timestampMs, value));
+    }
+
+    /**
+     * 一个组件各指标的最新时间和值（按 MetricField 下标），不可变
+     */
+    private static final class ComponentLatest {
+
+        private static final ComponentLatest EMPTY = new ComponentLatest(emptyTimestamps(), new double[FIELDS.length]);
+
+        private final long[] timestamps;
+        private final double[] values;
+        private final long latestTimestamp;
+
+        private ComponentLatest(long[] timestamps, double[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+            long latest = Long.MIN_VALUE;
+            for (long ts : timestamps) {
+                latest = Math.max(latest, ts);
+            }
+            this.latestTimestamp = latest;
+        }
+
+        private ComponentLatest with(int index, long timestampMs, double value) {
+            if (timestampMs < timestamps[index]) {
+                // 迟到的样本
+                return this;
+            }
+            long[] newTimestamps = timestamps.clone();
+            double[] newValues = values.clone();
+            newTimestamps[index] = timestampMs;
+            newValues[index] = value;
+            return new ComponentLatest(newTimestamps, newValues);
+        }
+
+        private SystemMetrics toRow(String componentName) {
+            SystemMetrics row = new SystemMetrics();
+            row.setComponentName(componentName);
+            row.setTimestamp(MetricStorageService.toLocalDateTime(latestTimestamp));
+            for (int i = 0; i < FIELDS.length; i++) {
+                if (timestamps[i] == latestTimestamp) {
+                    FIELDS[i].apply(row, values[i]);
+                }
+            }
+            return row;
+        }
+
+        private static long[] emptyTimestamps() {
+            long[] timestamps = new long[FIELDS.length];
+            Arrays.fill(timestamps, Long.MIN_VALUE);
+            return timestamps;
+        }
+    }
+}
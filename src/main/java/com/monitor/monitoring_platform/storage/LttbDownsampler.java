@@ -0,0 +1,170 @@
+//Largest-Triangle-Three-Buckets 降采样的流式实现：每个桶保留与前一个选中点、后一个桶均值组成的三角形面积最大的点
+package com.monitor.monitoring_platform.storage;
+
+import java.util.Arrays;
+
+/**
+ * 首点和末点总是保留，中间按时间等分为 maxPoints - 2 个桶，每桶选一个点。
+ * 选择一个桶的点需要下一个桶的均值，所以只缓存两个桶：当前桶（待选）和下一个桶（累加均值），
+ * 第三个桶的第一个点到达时下一个桶已完整，当前桶即可输出。
+ */
+final class LttbDownsampler extends Downsampler {
+
+    private final int buckets;
+
+    private boolean started;
+    // 首点之后最新的一个点，最后单独输出，不参与桶内选择
+    private boolean hasLast;
+    private long lastTimestamp;
+    private double lastValue;
+
+    // 上一个选中的点（三角形的顶点 A）
+    private long selectedTimestamp;
+    private double selectedValue;
+
+    private final PointBuffer current = new PointBuffer();
+    private final PointBuffer next = new PointBuffer();
+
+    LttbDownsampler(long fromMs, long toMs, int maxPoints) {
+        super(fromMs, toMs);
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints 至少为 3");
+        }
+        this.buckets = maxPoints - 2;
+    }
+
+    @Override
+    public void accept(long timestampMs, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            emit(timestampMs, value);
+            selectedTimestamp = timestampMs;
+            selectedValue = value;
+            return;
+        }
+        if (hasLast) {
+            addToBuckets(lastTimestamp, lastValue);
+        }
+        hasLast = true;
+        lastTimestamp = timestampMs;
+        lastValue = value;
+    }
+
+    @Override
+    void finish() {
+        if (!hasLast) {
+            return;
+        }
+        if (!current.isEmpty()) {
+            if (!next.isEmpty()) {
+                select(current, next.averageTimestamp(), next.averageValue());
+                select(next, lastTimestamp, lastValue);
+            } else {
+                select(current, lastTimestamp, lastValue);
+            }
+        }
+        emit(lastTimestamp, lastValue);
+        hasLast = false;
+    }
+
+    private void addToBuckets(long timestampMs, double value) {
+        int bucket = bucketOf(timestampMs, fromMs, toMs, buckets);
+        if (current.isEmpty() || bucket <= current.bucket) {
+            current.add(Math.max(bucket, current.bucket), timestampMs, value);
+        } else if (next.isEmpty() || bucket <= next.bucket) {
+            next.add(Math.max(bucket, next.bucket), timestampMs, value);
+        } else {
+            // 下一个桶已完整，当前桶可以选点
+            select(current, next.averageTimestamp(), next.averageValue());
+            current.moveFrom(next);
+            next.add(bucket, timestampMs, value);
+        }
+    }
+
+    /**
+     * 在桶内选与 A（上一个选中点）、C 组成的三角形面积最大的点并输出，清空桶
+     */
+    private void select(PointBuffer bucket, double cTimestamp, double cValue) {
+        double ax = selectedTimestamp;
+        double ay = selectedValue;
+        int best = 0;
+        double bestArea = -1;
+        for (int i = 0; i < bucket.size; i++) {
+            // 面积的两倍，只用于比较
+            double area = Math.abs((ax - cTimestamp) * (bucket.values[i] - ay)
+                    - (ax - bucket.timestamps[i]) * (cValue - ay));
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        selectedTimestamp = bucket.timestamps[best];
+        selectedValue = bucket.values[best];
+        emit(selectedTimestamp, selectedValue);
+        bucket.clear();
+    }
+
+    /**
+     * 一个桶内的点，数组复用
+     */
+    private static final class PointBuffer {
+        private int bucket = -1;
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+        private double timestampSum;
+        private double valueSum;
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void add(int bucketIndex, long timestampMs, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            bucket = bucketIndex;
+            timestamps[size] = timestampMs;
+            values[size] = value;
+            size++;
+            timestampSum += timestampMs;
+            valueSum += value;
+        }
+
+        private double averageTimestamp() {
+            return timestampSum / size;
+        }
+
+        private double averageValue() {
+            return valueSum / size;
+        }
+
+        private void clear() {
+            size = 0;
+            bucket = -1;
+            timestampSum = 0;
+            valueSum = 0;
+        }
+
+        /**
+         * 接管 other 的内容（交换数组），other 被清空
+         */
+        private void moveFrom(PointBuffer other) {
+            long[] swapTimestamps = timestamps;
+            double[] swapValues = values;
+            timestamps = other.timestamps;
+            values = other.values;
+            size = other.size;
+            bucket = other.bucket;
+            timestampSum = other.timestampSum;
+            valueSum = other.valueSum;
+            other.timestamps = swapTimestamps;
+            other.values = swapValues;
+            other.clear();
+        }
+    }
+}
@@ -0,0 +1,415 @@
+//指标存储入口：写入时把 SystemMetrics 行拆成 (序列, 时间, 值) 样本，查询时再按行返回
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.MetricSample;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.mapper.MetricSampleMapper;
+import com.monitor.monitoring_platform.mapper.SystemMetricsMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+/**
+ * 样本存在两处之一：
+ * <ul>
+ *   <li>默认写 MySQL 窄表 metric_samples，查询由 SystemMetricsMapper 透视</li>
+ *   <li>开启 monitor.storage.tsdb.enabled 后写内嵌的 SegmentStore，MySQL 只保存序列字典</li>
+ * </ul>
+ * 只有非空的指标列才会生成样本，一行 CPU 数据只写一个 cpu_usage 样本。
+ * 两种存储下降采样聚合（RollupService）都维护在 MySQL 中，最新值由 LatestValueStore 在内存中维护。
+ * 最近几小时的样本同时写入堆外的热数据层（HotTier），查询窗口在其覆盖范围内时不访问 MySQL 和段文件。
+ * 业务代码统一通过这里读写，不直接依赖具体存储。
+ */
+@Service
+public class MetricStorageService {
+
+    private static final MetricField[] FIELDS = MetricField.values();
+
+    // 逐步放宽的时间窗口，用于在热数据层或时序存储中查找最近 N 行
+    private static final long[] RECENT_WINDOWS_MINUTES = {1, 10, 60, 24 * 60, 30 * 24 * 60};
+
+    private static final Predicate<MetricSeries> ALL_SERIES = series -> true;
+
+    @Autowired
+    private SeriesRegistry seriesRegistry;
+
+    @Autowired
+    private MetricSampleMapper metricSampleMapper;
+
+    @Autowired
+    private SystemMetricsMapper systemMetricsMapper;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private LatestValueStore latestValueStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private SegmentStore segmentStore;
+
+    @Autowired(required = false)
+    private HotTier hotTier;
+
+    @Autowired
+    private RangeQueryCache rangeQueryCache;
+
+    @Autowired
+    private SeriesQueryExecutor seriesQueryExecutor;
+
+    // 同时进行的导出数上限：每个导出长时间占用一个请求线程，MySQL 游标导出还占用一个数据库连接
+    private final Semaphore exportPermits;
+
+    @Autowired
+    public MetricStorageService(@Value("${monitor.query.export.max-concurrent:2}") int maxConcurrentExports) {
+        this.exportPermits = new Semaphore(Math.max(1, maxConcurrentExports));
+    }
+
+    // ===== 写入 =====
+
+    /**
+     * 写入一批行，返回写入的样本数
+     */
+    public int write(List<SystemMetrics> rows) {
+        return write(rows, Map.of());
+    }
+
+    /**
+     * 写入一批行，跳过时间不晚于 skipUpTo 中对应序列时间的样本（重放预写日志时去掉已持久化的样本）
+     */
+    public int write(List<SystemMetrics> rows, Map<Integer, Long> skipUpTo) {
+        List<MetricSample> samples = toSamples(rows);
+        if (!skipUpTo.isEmpty()) {
+            samples.removeIf(sample -> toEpochMillis(sample.getTimestamp())
+                    <= skipUpTo.getOrDefault(sample.getSeriesId(), Long.MIN_VALUE));
+        }
+        if (samples.isEmpty()) {
+            return 0;
+        }
+        if (segmentStore != null) {
+            for (MetricSample sample : samples) {
+                segmentStore.append(sample.getSeriesId(), toEpochMillis(sample.getTimestamp()), sample.getValue());
+            }
+        } else {
+            metricSampleMapper.insertBatch(samples);
+        }
+        if (hotTier != null) {
+            // 持久化成功后再进入热数据层，保证热数据层里的样本在存储中都有
+            for (MetricSample sample : samples) {
+                hotTier.append(sample.getSeriesId(), toEpochMillis(sample.getTimestamp()), sample.getValue());
+            }
+        }
+        latestValueStore.update(samples);
+        rollupService.accept(samples);
+        // 聚合桶更新之后再使缓存失效，之后开始的查询一定能读到这批迟到的样本
+        rangeQueryCache.onWrite(samples);
+        return samples.size();
+    }
+
+    /**
+     * 每个序列已持久化的最大样本时间。MySQL 写入按主键覆盖，重复写入无影响，返回空
+     */
+    public Map<Integer, Long> getPersistedUpTo() {
+        return segmentStore != null ? segmentStore.getPersistedUpTo() : Map.of();
+    }
+
+    /**
+     * 已写入但尚未持久化的样本中最早的时间，全部已持久化时返回 Long.MAX_VALUE。
+     * MySQL 写入返回即已提交；时序存储的头块和待落盘的块写成段文件后才算持久化
+     */
+    public long getUnpersistedFrom() {
+        return segmentStore != null ? segmentStore.getUnpersistedFrom() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 拆行：每个非空指标列对应一个样本
+     */
+    public List<MetricSample> toSamples(List<SystemMetrics> rows) {
+        List<MetricSample> samples = new ArrayList<>(rows.size());
+        for (SystemMetrics row : rows) {
+            if (row.getComponentName() == null || row.getTimestamp() == null) {
+                continue;
+            }
+            for (MetricField field : FIELDS) {
+                Double value = field.read(row);
+                if (value == null || value.isNaN() || value.isInfinite()) {
+                    continue;
+                }
+                int seriesId = seriesRegistry.resolve(row.getComponentName(), field);
+                samples.add(new MetricSample(seriesId, row.getTimestamp(), value));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 按时间顺序回调序列在 [fromMs, toMs] 内的原始样本，回调抛出的运行时异常中止扫描并原样抛出
+     *
+     * @return 回调的样本数
+     */
+    public int scanSamples(int seriesId, long fromMs, long toMs, SampleConsumer consumer) {
+        if (hotTier != null) {
+            int emitted = hotTier.scan(seriesId, fromMs, toMs, consumer);
+            if (emitted >= 0) {
+                return emitted;
+            }
+        }
+        if (segmentStore != null) {
+            return segmentStore.scan(seriesId, fromMs, toMs, consumer);
+        }
+        int[] count = {0};
+        RuntimeException[] aborted = {null};
+        metricSampleMapper.selectRange(seriesId, toLocalDateTime(fromMs), toLocalDateTime(toMs), context -> {
+            MetricSample sample = context.getResultObject();
+            try {
+                consumer.accept(toEpochMillis(sample.getTimestamp()), sample.getValue());
+                count[0]++;
+            } catch (RuntimeException e) {
+                // 回调中止读取（如超出查询的样本数上限）：停止取行，异常在下面原样抛出，
+                // 不经 MyBatis 包装成 PersistenceException，调用方照常按参数错误处理
+                aborted[0] = e;
+                context.stop();
+            }
+        });
+        if (aborted[0] != null) {
+            throw aborted[0];
+        }
+        return count[0];
+    }
+
+    /**
+     * 占用一个导出名额，已达 monitor.query.export.max-concurrent 时立即返回 false。
+     * 成功后调用方在导出结束时（包括失败）必须调用 releaseExport
+     */
+    public boolean tryAcquireExport() {
+        return exportPermits.tryAcquire();
+    }
+
+    public void releaseExport() {
+        exportPermits.release();
+    }
+
+    /**
+     * 流式读取匹配序列在 [fromMs, toMs) 内的样本，内存占用与结果大小无关（导出使用）。
+     * 热数据层或时序存储覆盖时逐序列扫描，按序列、时间顺序回调；
+     * 否则用一个 MySQL 游标读取，按索引顺序（通常为时间顺序）回调，回调期间占用一个数据库连接
+     *
+     * @return 回调的样本数
+     */
+    public long streamSamples(long fromMs, long toMs, Predicate<MetricSeries> filter,
+                              SeriesSampleConsumer consumer) throws IOException {
+        List<MetricSeries> matched = new ArrayList<>();
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            if (filter.test(series)) {
+                matched.add(series);
+            }
+        }
+        if (matched.isEmpty()) {
+            return 0;
+        }
+        long[] count = {0};
+        try {
+            if (canAssembleRows(fromMs, filter)) {
+                for (MetricSeries series : matched) {
+                    count[0] += scanSamples(series.getId(), fromMs, toMs - 1, (ts, value) -> {
+                        try {
+                            consumer.accept(series, ts, value);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+                return count[0];
+            }
+            List<Integer> seriesIds = null;
+            if (matched.size() < seriesRegistry.getAllSeries().size()) {
+                seriesIds = new ArrayList<>(matched.size());
+                for (MetricSeries series : matched) {
+                    seriesIds.add(series.getId());
+                }
+            }
+            List<Integer> ids = seriesIds;
+            // 游标只在打开它的会话内有效，整个遍历放在一个事务里
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<MetricSample> cursor = metricSampleMapper.cursorRange(ids,
+                        toLocalDateTime(fromMs), toLocalDateTime(toMs))) {
+                    for (MetricSample sample : cursor) {
+                        MetricSeries series = seriesRegistry.get(sample.getSeriesId());
+                        if (series != null) {
+                            consumer.accept(series, toEpochMillis(sample.getTimestamp()), sample.getValue());
+                            count[0]++;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return count[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ===== 按行查询 =====
+
+    /**
+     * 组件的最新一行（内存读取，不查表）
+     */
+    public SystemMetrics selectLatestByComponentName(String componentName) {
+        return latestValueStore.getLatest(componentName);
+    }
+
+    /**
+     * 多个组件的最新一行，按组件名返回，没有数据的组件不在结果中（内存读取，一次取完，不查表）
+     */
+    public Map<String, SystemMetrics> selectLatestByComponentNames(Collection<String> componentNames) {
+        Map<String, SystemMetrics> latest = new LinkedHashMap<>();
+        for (String componentName : componentNames) {
+            SystemMetrics row = latestValueStore.getLatest(componentName);
+            if (row != null) {
+                latest.put(componentName, row);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 每个组件的最新一行（内存读取，不查表）
+     */
+    public List<SystemMetrics> selectLatestMetricsForAllComponents() {
+        return latestValueStore.getLatestAll();
+    }
+
+    /**
+     * 时间范围内的所有行，按时间倒序
+     */
+    public List<SystemMetrics> selectByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
+        long fromMs = toEpochMillis(startTime);
+        if (!canAssembleRows(fromMs, ALL_SERIES)) {
+            return systemMetricsMapper.selectByTimeRange(startTime, endTime);
+        }
+        return rangeRows(fromMs, toEpochMillis(endTime), ALL_SERIES);
+    }
+
+    /**
+     * 最近一小时的磁盘行
+     */
+    public List<SystemMetrics> selectRecentDisks() {
+        long now = System.currentTimeMillis();
+        Predicate<MetricSeries> disks = series -> series.getComponentName().startsWith("Disk-")
+                && MetricField.DISK_USAGE.getMetricName().equals(series.getMetricName());
+        if (!canAssembleRows(now - 3600_000L, disks)) {
+            return systemMetricsMapper.selectRecentDisks();
+        }
+        return rangeRows(now - 3600_000L, now, disks);
+    }
+
+    /**
+     * 最近的 count 行，按时间倒序
+     */
+    public List<SystemMetrics> selectRecentMetrics(int count) {
+        long now = System.currentTimeMillis();
+        List<SystemMetrics> rows = List.of();
+        for (long minutes : RECENT_WINDOWS_MINUTES) {
+            long fromMs = now - minutes * 60_000L;
+            if (!canAssembleRows(fromMs, ALL_SERIES)) {
+                // 窗口超出了热数据层的覆盖范围
+                return systemMetricsMapper.selectRecentMetrics(count);
+            }
+            rows = rangeRows(fromMs, now, ALL_SERIES);
+            if (rows.size() >= count) {
+                break;
+            }
+        }
+        return rows.size() > count ? new ArrayList<>(rows.subList(0, count)) : rows;
+    }
+
+    // ===== 热数据层 / 时序存储上的行组装 =====
+
+    /**
+     * 是否可以逐序列扫描后组装行：开启时序存储时总是可以；
+     * 否则要求热数据层完整覆盖所有相关序列从 fromMs 起的数据，不满足时由 SQL 透视
+     */
+    private boolean canAssembleRows(long fromMs, Predicate<MetricSeries> filter) {
+        if (segmentStore != null) {
+            return true;
+        }
+        if (hotTier == null) {
+            return false;
+        }
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            if (filter.test(series) && fromMs < hotTier.coveredFrom(series.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按组件并行扫描：同一组件的各序列写入同一组行，由一个任务顺序处理，不同组件之间互不共享
+     */
+    private List<SystemMetrics> rangeRows(long fromMs, long toMs, Predicate<MetricSeries> filter) {
+        Map<String, List<MetricSeries>> seriesByComponent = new LinkedHashMap<>();
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            if (MetricField.fromName(series.getMetricName()) != null && filter.test(series)) {
+                seriesByComponent.computeIfAbsent(series.getComponentName(), c -> new ArrayList<>()).add(series);
+            }
+        }
+
+        List<Collection<SystemMetrics>> componentRows = seriesQueryExecutor.map(
+                new ArrayList<>(seriesByComponent.entrySet()), entry -> {
+            String componentName = entry.getKey();
+            Map<Long, SystemMetrics> rows = new HashMap<>();
+            for (MetricSeries series : entry.getValue()) {
+                MetricField field = MetricField.fromName(series.getMetricName());
+                scanSamples(series.getId(), fromMs, toMs, (ts, value) ->
+                        field.apply(rows.computeIfAbsent(ts, t -> newRow(componentName, t)), value));
+            }
+            return rows.values();
+        });
+
+        List<SystemMetrics> result = new ArrayList<>();
+        for (Collection<SystemMetrics> rows : componentRows) {
+            result.addAll(rows);
+        }
+        result.sort(Comparator.comparing(SystemMetrics::getTimestamp).reversed());
+        return result;
+    }
+
+    private static SystemMetrics newRow(String componentName, long timestampMs) {
+        SystemMetrics row = new SystemMetrics();
+        row.setComponentName(componentName);
+        row.setTimestamp(toLocalDateTime(timestampMs));
+        return row;
+    }
+
+    public static LocalDateTime toLocalDateTime(long timestampMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneId.systemDefault());
+    }
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
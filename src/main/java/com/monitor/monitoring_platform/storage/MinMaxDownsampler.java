@@ -0,0 +1,67 @@
+//最小/最大值降采样：每个时间桶保留最小值和最大值两个点（按时间先后输出），尖峰和低谷不会被平均掉
+package com.monitor.monitoring_platform.storage;
+
+final class MinMaxDownsampler extends Downsampler {
+
+    private final int buckets;
+
+    private int bucket = -1;
+    private long minTimestamp;
+    private double min;
+    private long maxTimestamp;
+    private double max;
+
+    MinMaxDownsampler(long fromMs, long toMs, int maxPoints) {
+        super(fromMs, toMs);
+        if (maxPoints < 2) {
+            throw new IllegalArgumentException("maxPoints 至少为 2");
+        }
+        this.buckets = maxPoints / 2;
+    }
+
+    @Override
+    public void accept(long timestampMs, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        int index = bucketOf(timestampMs, fromMs, toMs, buckets);
+        if (bucket >= 0 && index > bucket) {
+            flushBucket();
+        }
+        if (bucket < 0) {
+            bucket = index;
+            minTimestamp = maxTimestamp = timestampMs;
+            min = max = value;
+            return;
+        }
+        // 迟到的样本并入当前桶
+        if (value < min) {
+            min = value;
+            minTimestamp = timestampMs;
+        }
+        if (value > max) {
+            max = value;
+            maxTimestamp = timestampMs;
+        }
+    }
+
+    @Override
+    void finish() {
+        if (bucket >= 0) {
+            flushBucket();
+        }
+    }
+
+    private void flushBucket() {
+        if (min == max) {
+            emit(minTimestamp, min);
+        } else if (minTimestamp <= maxTimestamp) {
+            emit(minTimestamp, min);
+            emit(maxTimestamp, max);
+        } else {
+            emit(maxTimestamp, max);
+            emit(minTimestamp, min);
+        }
+        bucket = -1;
+    }
+}
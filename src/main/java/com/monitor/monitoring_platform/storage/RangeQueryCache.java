@@ -0,0 +1,311 @@
+//范围查询结果缓存：按步长对齐的桶缓存已经关闭的历史部分，重复查询只重新计算尾部未关闭的桶
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricSample;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存单位是 (序列, 档位, 步长) 下的一段连续的输出桶 [coveredFrom, coveredTo)，段内没有数据的桶也算已缓存。
+ * 只缓存已关闭的桶：桶的结束时间早于 now - late-grace-ms（给上报和写入留出延迟）。
+ * 查询窗口向前滑动时，已缓存部分直接复用，只计算两端缺少的桶和尚未关闭的尾部，并把新关闭的桶并入缓存。
+ * <p>
+ * 迟于 late-grace-ms 到达的样本（例如暂存补写、预写日志重放）由写入路径调用 onWrite，
+ * 丢弃该序列从样本时间起的缓存；迟到的桶写入聚合表后 RollupService 同样丢弃一次，
+ * 按保留期删除数据后整个清空。计算期间发生过丢弃的结果不写入缓存，避免把旧数据放回去。
+ * 总桶数超过 max-buckets 时按最近最少使用淘汰整段。
+ */
+@Service
+public class RangeQueryCache {
+
+    /**
+     * 计算 [fromMs, toMs) 内的输出桶，按起始时间升序
+     */
+    interface BucketLoader {
+        List<RollupAccumulator> load(long fromMs, long toMs);
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.query.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.query.cache.max-buckets:200000}")
+    private long maxBuckets;
+
+    @Value("${monitor.query.cache.late-grace-ms:60000}")
+    private long lateGraceMs;
+
+    // 访问顺序，最久未用的在前
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBuckets;
+
+    // 每次丢弃缓存时加一
+    private final AtomicLong generation = new AtomicLong();
+
+    private Counter hitCounter;
+    private Counter partialCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("monitor.query.cache.requests").tag("result", "hit")
+                .description("历史部分全部来自缓存的查询").register(meterRegistry);
+        partialCounter = Counter.builder("monitor.query.cache.requests").tag("result", "partial")
+                .description("部分历史桶需要重新计算的查询").register(meterRegistry);
+        missCounter = Counter.builder("monitor.query.cache.requests").tag("result", "miss")
+                .description("没有可用缓存的查询").register(meterRegistry);
+        Gauge.builder("monitor.query.cache.buckets", this, RangeQueryCache::getBucketCount)
+                .description("缓存的桶数").register(meterRegistry);
+    }
+
+    /**
+     * 通过缓存取序列在 [fromMs, toMs) 内按 stepMs 对齐的桶
+     *
+     * @param tier   数据来源档位，null 表示原始样本
+     * @param loader 计算缓存中缺少的部分
+     */
+    List<RollupAccumulator> aggregate(int seriesId, RollupTier tier, long stepMs, long fromMs, long toMs,
+                                      BucketLoader loader) {
+        // 只缓存完整的桶：起点向上对齐，终点取查询终点和关闭时间中较早的一个向下对齐
+        long cacheFrom = Math.floorDiv(fromMs + stepMs - 1, stepMs) * stepMs;
+        long closedBefore = System.currentTimeMillis() - lateGraceMs;
+        long cacheTo = Math.floorDiv(Math.min(toMs, closedBefore), stepMs) * stepMs;
+        if (!enabled || cacheTo <= cacheFrom) {
+            return loader.load(fromMs, toMs);
+        }
+
+        Key key = new Key(seriesId, tier, stepMs);
+        long startGeneration = generation.get();
+        List<RollupAccumulator> result = new ArrayList<>();
+        if (fromMs < cacheFrom) {
+            result.addAll(loader.load(fromMs, cacheFrom));
+        }
+
+        List<RollupAccumulator> cached = null;
+        long hitFrom = cacheTo;
+        long hitTo = cacheTo;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.coveredFrom < cacheTo && entry.coveredTo > cacheFrom) {
+                hitFrom = Math.max(cacheFrom, entry.coveredFrom);
+                hitTo = Math.min(cacheTo, entry.coveredTo);
+                cached = new ArrayList<>(entry.buckets.subMap(hitFrom, hitTo).values());
+            }
+        }
+
+        List<RollupAccumulator> left = cached == null ? loader.load(cacheFrom, cacheTo) : List.of();
+        List<RollupAccumulator> right = List.of();
+        if (cached != null) {
+            if (cacheFrom < hitFrom) {
+                left = loader.load(cacheFrom, hitFrom);
+            }
+            if (hitTo < cacheTo) {
+                right = loader.load(hitTo, cacheTo);
+            }
+        }
+        result.addAll(left);
+        if (cached != null) {
+            result.addAll(cached);
+        }
+        result.addAll(right);
+        if (cacheTo < toMs) {
+            result.addAll(loader.load(cacheTo, toMs));
+        }
+
+        if (cached == null) {
+            missCounter.increment();
+        } else if (cacheFrom < hitFrom || hitTo < cacheTo) {
+            partialCounter.increment();
+        } else {
+            hitCounter.increment();
+        }
+
+        if (cached == null || cacheFrom < hitFrom || hitTo < cacheTo) {
+            store(key, startGeneration, cacheFrom, cacheTo, cached == null ? left : concat(left, right));
+        }
+        return result;
+    }
+
+    /**
+     * 写入路径调用：迟到的样本使该序列从样本时间起的缓存失效
+     */
+    public void onWrite(List<MetricSample> samples) {
+        if (!enabled) {
+            return;
+        }
+        long closedBefore = System.currentTimeMillis() - lateGraceMs;
+        Map<Integer, Long> earliestLate = null;
+        for (MetricSample sample : samples) {
+            long ts = MetricStorageService.toEpochMillis(sample.getTimestamp());
+            if (ts < closedBefore) {
+                if (earliestLate == null) {
+                    earliestLate = new HashMap<>();
+                }
+                earliestLate.merge(sample.getSeriesId(), ts, Math::min);
+            }
+        }
+        if (earliestLate != null) {
+            invalidate(earliestLate);
+        }
+    }
+
+    /**
+     * 丢弃各序列从给定时间起的缓存（迟到样本写入、迟到的桶写入聚合表时调用）
+     *
+     * @param earliestBySeries 序列ID -> 最早受影响的时间
+     */
+    void invalidate(Map<Integer, Long> earliestBySeries) {
+        if (!enabled || earliestBySeries.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        synchronized (this) {
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Entry> item = iterator.next();
+                Long ts = earliestBySeries.get(item.getKey().seriesId);
+                if (ts == null) {
+                    continue;
+                }
+                Entry entry = item.getValue();
+                long cut = Math.floorDiv(ts, item.getKey().stepMs) * item.getKey().stepMs;
+                if (cut <= entry.coveredFrom) {
+                    totalBuckets -= entry.buckets.size();
+                    iterator.remove();
+                } else if (cut < entry.coveredTo) {
+                    Map<Long, RollupAccumulator> dropped = entry.buckets.tailMap(cut);
+                    totalBuckets -= dropped.size();
+                    dropped.clear();
+                    entry.coveredTo = cut;
+                }
+            }
+        }
+    }
+
+    public synchronized long getBucketCount() {
+        return totalBuckets;
+    }
+
+    /**
+     * 清空缓存（按保留期删除分区或段文件等情况）
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+            totalBuckets = 0;
+        }
+    }
+
+    /**
+     * 把 [from, to) 的计算结果（只含缺少的部分）并入缓存段；与已有段不相连时替换已有段
+     */
+    private synchronized void store(Key key, long startGeneration, long from, long to,
+                                    List<RollupAccumulator> loaded) {
+        if (generation.get() != startGeneration) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null || entry.coveredFrom > to || entry.coveredTo < from) {
+            if (entry != null) {
+                totalBuckets -= entry.buckets.size();
+            }
+            entry = new Entry(from, to);
+            entries.put(key, entry);
+        } else {
+            entry.coveredFrom = Math.min(entry.coveredFrom, from);
+            entry.coveredTo = Math.max(entry.coveredTo, to);
+        }
+        for (RollupAccumulator bucket : loaded) {
+            if (bucket.getStart() >= from && bucket.getStart() < to
+                    && entry.buckets.put(bucket.getStart(), bucket) == null) {
+                totalBuckets++;
+            }
+        }
+
+        // 单个段最多保留一次查询上限的点数，窗口滑动时丢掉最早的桶
+        long maxCovered = RangeQueryService.MAX_POINTS * key.stepMs;
+        if (entry.coveredTo - entry.coveredFrom > maxCovered) {
+            entry.coveredFrom = entry.coveredTo - maxCovered;
+            Map<Long, RollupAccumulator> dropped = entry.buckets.headMap(entry.coveredFrom);
+            totalBuckets -= dropped.size();
+            dropped.clear();
+        }
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBuckets > maxBuckets && eldest.hasNext()) {
+            Map.Entry<Key, Entry> item = eldest.next();
+            if (item.getValue() == entry) {
+                continue;
+            }
+            totalBuckets -= item.getValue().buckets.size();
+            eldest.remove();
+        }
+    }
+
+    private static List<RollupAccumulator> concat(List<RollupAccumulator> a, List<RollupAccumulator> b) {
+        if (b.isEmpty()) {
+            return a;
+        }
+        List<RollupAccumulator> all = new ArrayList<>(a.size() + b.size());
+        all.addAll(a);
+        all.addAll(b);
+        return all;
+    }
+
+    private static final class Key {
+        private final int seriesId;
+        private final RollupTier tier;
+        private final long stepMs;
+
+        private Key(int seriesId, RollupTier tier, long stepMs) {
+            this.seriesId = seriesId;
+            this.tier = tier;
+            this.stepMs = stepMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return seriesId == other.seriesId && tier == other.tier && stepMs == other.stepMs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(seriesId, tier, stepMs);
+        }
+    }
+
+    /**
+     * 一段连续的已缓存桶，只在持有缓存锁时访问
+     */
+    private static final class Entry {
+        private final TreeMap<Long, RollupAccumulator> buckets = new TreeMap<>();
+        private long coveredFrom;
+        private long coveredTo;
+
+        private Entry(long coveredFrom, long coveredTo) {
+            this.coveredFrom = coveredFrom;
+            this.coveredTo = coveredTo;
+        }
+    }
+}
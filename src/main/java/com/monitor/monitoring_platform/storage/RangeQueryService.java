@@ -0,0 +1,481 @@
+//时间范围查询：按请求的步长选择聚合档位（原始 / 1m / 5m / 1h），把数据合并成每个步长一个点
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.MetricRollup;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.entity.MetricSketch;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.mapper.MetricRollupMapper;
+import com.monitor.monitoring_platform.mapper.MetricSketchMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 档位选择：桶宽度不超过步长的最粗一档，步长向上取整为桶宽度的整数倍，
+ * 这样每个聚合桶完整地落在一个输出点里。30 天按 1500 个点查询时步长约 30 分钟，读 5m 档约 8640 个桶。
+ * 尚未写入聚合表的桶（当前打开的桶和待写的桶）取 RollupService 的内存数据，与表中同一个桶的部分相加
+ * （聚合表的写入是合并，表中和内存中的部分互不重叠，如迟到样本单独成桶、重启后继续累加的桶）。
+ * 查询起点已超出某档的保留期时改用更粗的一档（例如 10 天前的原始数据已删除，改读 1m 档）。
+ * 图表查询可以改为指定 maxPoints：先按 maxPoints 的几倍选数据源（原始样本或某一档），
+ * 再用 LTTB 或 min/max 在一次遍历中压缩到 maxPoints 个点，返回的点数与时间范围长短无关。
+ * 延迟类序列的每个点另有 p50/p95/p99：由落在该点的各聚合桶的草图合并得到（原始档位时由样本现建草图），
+ * 相对误差不超过草图精度；草图功能开启之前的桶没有草图，不计入分位数。
+ * 多序列查询（仪表盘、历史页面）按序列或组件分发到 SeriesQueryExecutor 并行读取。
+ */
+@Service
+public class RangeQueryService {
+
+    // 未指定步长时的目标点数
+    public static final int DEFAULT_POINTS = 1500;
+
+    // 单次查询的最大点数，超过时要求调大步长
+    public static final int MAX_POINTS = 11000;
+
+    private static final long MIN_STEP_MS = 1000;
+
+    // 降采样时数据源的点数为 maxPoints 的几倍，太少会丢失形状，太多则多读数据
+    private static final int DOWNSAMPLE_SOURCE_FACTOR = 4;
+
+    @Autowired
+    private SeriesRegistry seriesRegistry;
+
+    @Autowired
+    private MetricStorageService metricStorageService;
+
+    @Autowired
+    private MetricRollupMapper metricRollupMapper;
+
+    @Autowired
+    private MetricSketchMapper metricSketchMapper;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private RangeQueryCache rangeQueryCache;
+
+    @Autowired
+    private SeriesQueryExecutor seriesQueryExecutor;
+
+    /**
+     * 单个序列的范围查询
+     *
+     * @param stepMs 期望的点间隔，null 时按 DEFAULT_POINTS 计算
+     * @return 包含 tier、step 和 points（每点 ts/min/max/avg/count/last）的结果
+     */
+    public Map<String, Object> queryRange(String componentName, String metricName,
+                                          long fromMs, long toMs, Long stepMs) {
+        MetricField field = MetricField.fromName(metricName);
+        if (field == null) {
+            throw new IllegalArgumentException("未知指标: " + metricName);
+        }
+        long step = resolveStep(fromMs, toMs, stepMs, DEFAULT_POINTS);
+        RollupTier tier = RollupTier.forStep(step);
+
+        MetricSeries series = findSeries(componentName, metricName);
+        List<Map<String, Object>> points = series != null
+                ? toPoints(aggregate(series.getId(), fromMs, toMs, step, tier))
+                : new ArrayList<>();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("component", componentName);
+        response.put("metric", metricName);
+        response.put("start", fromMs);
+        response.put("end", toMs);
+        response.put("step", step);
+        response.put("tier", tier != null ? tier.getName() : "raw");
+        response.put("points", points);
+        return response;
+    }
+
+    /**
+     * 多个序列的范围查询：各序列的读取并行执行，结果按选择器顺序合并，步长和档位对所有序列相同
+     *
+     * @param selectors 每项为 组件名:指标名，组件名以 * 结尾时按前缀匹配（如 Disk-*:disk_usage）
+     * @return 包含 tier、step 和 series（每个含 component、metric、points）的结果
+     */
+    public Map<String, Object> queryRanges(List<String> selectors, long fromMs, long toMs, Long stepMs) {
+        Map<Integer, MetricSeries> matched = new LinkedHashMap<>();
+        for (String selector : selectors) {
+            int colon = selector.indexOf(':');
+            if (colon <= 0 || colon == selector.length() - 1) {
+                throw new IllegalArgumentException("序列选择器应为 组件名:指标名: " + selector);
+            }
+            String component = selector.substring(0, colon).trim();
+            String metricName = selector.substring(colon + 1).trim();
+            if (MetricField.fromName(metricName) == null) {
+                throw new IllegalArgumentException("未知指标: " + metricName);
+            }
+            if (component.endsWith("*")) {
+                String prefix = component.substring(0, component.length() - 1);
+                for (MetricSeries series : seriesRegistry.getAllSeries()) {
+                    if (series.getComponentName().startsWith(prefix) && series.getMetricName().equals(metricName)) {
+                        matched.putIfAbsent(series.getId(), series);
+                    }
+                }
+            } else {
+                MetricSeries series = findSeries(component, metricName);
+                if (series != null) {
+                    matched.putIfAbsent(series.getId(), series);
+                }
+            }
+        }
+        long step = resolveStep(fromMs, toMs, stepMs, DEFAULT_POINTS);
+        RollupTier tier = RollupTier.forStep(step);
+
+        List<MetricSeries> seriesList = new ArrayList<>(matched.values());
+        List<List<Map<String, Object>>> points = seriesQueryExecutor.map(seriesList,
+                series -> toPoints(aggregate(series.getId(), fromMs, toMs, step, tier)));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < seriesList.size(); i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("component", seriesList.get(i).getComponentName());
+            item.put("metric", seriesList.get(i).getMetricName());
+            item.put("points", points.get(i));
+            result.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("start", fromMs);
+        response.put("end", toMs);
+        response.put("step", step);
+        response.put("tier", tier != null ? tier.getName() : "raw");
+        response.put("series", result);
+        return response;
+    }
+
+    /**
+     * 所有序列在时间范围内的降采样行（每个步长取平均值），按时间倒序，供历史页面使用。
+     * 各组件并行读取，同一组件的序列写入同一组行，在一个任务内顺序处理
+     *
+     * @param targetPoints 每个组件期望的行数
+     */
+    public List<SystemMetrics> selectRows(long fromMs, long toMs, int targetPoints) {
+        long step = resolveStep(fromMs, toMs, null, targetPoints);
+        RollupTier tier = RollupTier.forStep(step);
+
+        Map<String, List<MetricSeries>> seriesByComponent = new LinkedHashMap<>();
+        for (MetricSeries series : seriesRegistry.getAllSeries()) {
+            if (MetricField.fromName(series.getMetricName()) != null) {
+                seriesByComponent.computeIfAbsent(series.getComponentName(), c -> new ArrayList<>()).add(series);
+            }
+        }
+
+        List<Collection<SystemMetrics>> componentRows = seriesQueryExecutor.map(
+                new ArrayList<>(seriesByComponent.entrySet()), entry -> {
+            Map<Long, SystemMetrics> rows = new HashMap<>();
+            for (MetricSeries series : entry.getValue()) {
+                MetricField field = MetricField.fromName(series.getMetricName());
+                for (RollupAccumulator bucket : aggregate(series.getId(), fromMs, toMs, step, tier)) {
+                    SystemMetrics row = rows.computeIfAbsent(bucket.getStart(), t -> {
+                        SystemMetrics r = new SystemMetrics();
+                        r.setComponentName(entry.getKey());
+                        r.setTimestamp(MetricStorageService.toLocalDateTime(t));
+                        return r;
+                    });
+                    field.apply(row, bucket.getAverage());
+                }
+            }
+            return rows.values();
+        });
+
+        List<SystemMetrics> result = new ArrayList<>();
+        for (Collection<SystemMetrics> rows : componentRows) {
+            result.addAll(rows);
+        }
+        result.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        return result;
+    }
+
+    /**
+     * 实际使用的步长：未指定时按目标点数计算，有合适的档位时向上取整为桶宽度的整数倍
+     */
+    public long resolveStep(long fromMs, long toMs, Long stepMs, int targetPoints) {
+        if (toMs <= fromMs) {
+            throw new IllegalArgumentException("结束时间必须晚于开始时间");
+        }
+        long step = stepMs != null ? stepMs : (toMs - fromMs) / targetPoints;
+        step = Math.max(step, MIN_STEP_MS);
+        RollupTier tier = RollupTier.forStep(step);
+        // 起点已过保留期的档位没有数据，依次换更粗的档位
+        RollupTier[] tiers = RollupTier.values();
+        int next = tier == null ? 0 : tier.ordinal() + 1;
+        while (!retentionService.isRetained(tier, fromMs) && next < tiers.length) {
+            tier = tiers[next++];
+            step = Math.max(step, tier.getWidthMs());
+        }
+        if (tier != null) {
+            long width = tier.getWidthMs();
+            step = (step + width - 1) / width * width;
+        }
+        if ((toMs - fromMs) / step > MAX_POINTS) {
+            throw new IllegalArgumentException("点数超过上限 " + MAX_POINTS + "，请增大步长");
+        }
+        return step;
+    }
+
+    /**
+     * 把序列在 [fromMs, toMs) 内的数据合并成每个步长一个桶，按时间升序；已关闭的桶走结果缓存
+     */
+    private List<RollupAccumulator> aggregate(int seriesId, long fromMs, long toMs, long stepMs, RollupTier tier) {
+        return rangeQueryCache.aggregate(seriesId, tier, stepMs, fromMs, toMs,
+                (from, to) -> computeBuckets(seriesId, from, to, stepMs, tier));
+    }
+
+    private List<RollupAccumulator> computeBuckets(int seriesId, long fromMs, long toMs, long stepMs, RollupTier tier) {
+        TreeMap<Long, RollupAccumulator> out = new TreeMap<>();
+        long alignedFrom = Math.floorDiv(fromMs, stepMs) * stepMs;
+
+        boolean sketched = rollupService.isSketched(seriesId);
+        if (tier == null) {
+            metricStorageService.scanSamples(seriesId, fromMs, toMs - 1, (ts, value) ->
+                    out.computeIfAbsent(Math.floorDiv(ts, stepMs) * stepMs,
+                            start -> new RollupAccumulator(start, sketched ? rollupService.newSketch() : null))
+                            .add(ts, value));
+            return new ArrayList<>(out.values());
+        }
+
+        // 快照和读表之间不能有桶写入表中，否则同一部分会算两次，由 readConsistent 保证
+        return rollupService.readConsistent(() -> {
+            TreeMap<Long, RollupAccumulator> merged = new TreeMap<>();
+            List<RollupAccumulator> inMemory = rollupService.snapshot(seriesId, tier);
+            List<MetricRollup> rows = metricRollupMapper.selectRange(tier.getTable(), seriesId,
+                    MetricStorageService.toLocalDateTime(alignedFrom), MetricStorageService.toLocalDateTime(toMs));
+            for (MetricRollup row : rows) {
+                long start = MetricStorageService.toEpochMillis(row.getBucket());
+                merged.computeIfAbsent(Math.floorDiv(start, stepMs) * stepMs, RollupAccumulator::new).merge(row);
+            }
+            if (sketched) {
+                List<MetricSketch> sketches = metricSketchMapper.selectRange(tier.getSketchTable(), seriesId,
+                        MetricStorageService.toLocalDateTime(alignedFrom), MetricStorageService.toLocalDateTime(toMs));
+                for (MetricSketch row : sketches) {
+                    DDSketch sketch = rollupService.decodeSketch(row);
+                    long start = Math.floorDiv(MetricStorageService.toEpochMillis(row.getBucket()), stepMs) * stepMs;
+                    RollupAccumulator bucket = merged.get(start);
+                    if (sketch != null && bucket != null) {
+                        bucket.mergeSketch(sketch);
+                    }
+                }
+            }
+            for (RollupAccumulator bucket : inMemory) {
+                if (bucket.getStart() >= alignedFrom && bucket.getStart() < toMs) {
+                    merged.computeIfAbsent(Math.floorDiv(bucket.getStart(), stepMs) * stepMs, RollupAccumulator::new)
+                            .merge(bucket);
+                }
+            }
+            return new ArrayList<>(merged.values());
+        });
+    }
+
+    /**
+     * 读取序列在 [fromMs, toMs] 内、供按步长求值的稀疏样本：求值时刻为 toMs、toMs - stepMs ...，
+     * 每个时刻只需要之前 lookbackMs 内的最后一个样本。
+     * 有宽度 W 满足 W 不超过步长和 lookback、步长是 W 的整数倍、toMs 按 W 对齐的档位时，取其中最粗的一档
+     * （优先取起点仍在保留期内的），[fromMs, toMs) 内每个聚合桶回调桶内最后一个样本（原样的时间和值），
+     * 这样每个求值时刻之前的桶都是完整的（正好落在求值时刻上的样本归入下一个桶）；toMs 时刻本身的样本读原始数据。
+     * 没有满足条件的档位时回调全部原始样本
+     *
+     * @return 回调的样本数
+     */
+    public int scanLastPerBucket(int seriesId, long fromMs, long toMs, long stepMs, long lookbackMs,
+                                 SampleConsumer consumer) {
+        RollupTier tier = null;
+        RollupTier[] tiers = RollupTier.values();
+        for (int i = tiers.length - 1; i >= 0; i--) {
+            long width = tiers[i].getWidthMs();
+            if (width <= Math.min(stepMs, lookbackMs) && stepMs % width == 0 && Math.floorMod(toMs, width) == 0) {
+                if (tier == null) {
+                    tier = tiers[i];
+                }
+                if (retentionService.isRetained(tiers[i], fromMs)) {
+                    tier = tiers[i];
+                    break;
+                }
+            }
+        }
+        if (tier == null) {
+            return metricStorageService.scanSamples(seriesId, fromMs, toMs, consumer);
+        }
+        long width = tier.getWidthMs();
+        int emitted = 0;
+        for (RollupAccumulator bucket : aggregate(seriesId, Math.floorDiv(fromMs, width) * width, toMs, width, tier)) {
+            long lastTs = bucket.getLastTs();
+            if (bucket.getCount() > 0 && lastTs >= fromMs) {
+                consumer.accept(lastTs, bucket.getLast());
+                emitted++;
+            }
+        }
+        return emitted + metricStorageService.scanSamples(seriesId, toMs, toMs, consumer);
+    }
+
+    /**
+     * 延迟类序列在整个 [fromMs, toMs) 内的分位数：取能放进时间范围的最粗一档，合并对齐部分各聚合桶的草图，
+     * 两端不足一个桶的部分依次用更细的档位，最后不足一分钟的部分读原始样本。
+     * 30 天的查询约读 720 个 1h 桶加两端的少量细粒度桶
+     *
+     * @return 包含 count、min、max 和 quantiles（分位数 -> 值）的结果，没有草图数据时 count 为 0
+     */
+    public Map<String, Object> queryQuantiles(String componentName, String metricName,
+                                              long fromMs, long toMs, List<Double> quantiles) {
+        for (double q : quantiles) {
+            if (!(q >= 0 && q <= 1)) {
+                throw new IllegalArgumentException("分位数必须在 0 到 1 之间: " + q);
+            }
+        }
+        MetricSeries series = findSeries(componentName, metricName);
+        if (series != null && !rollupService.isSketched(series.getId())) {
+            throw new IllegalArgumentException("指标 " + metricName + " 没有分位数草图（见 monitor.storage.rollup.sketch-metrics）");
+        }
+
+        DDSketch merged = rollupService.newSketch();
+        RollupTier tier = null;
+        if (series != null && toMs > fromMs) {
+            tier = mergeSketches(series.getId(), fromMs, toMs, RollupTier.values().length - 1, merged);
+        }
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (double q : quantiles) {
+            values.put(String.valueOf(q), merged.quantile(q));
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("component", componentName);
+        response.put("metric", metricName);
+        response.put("start", fromMs);
+        response.put("end", toMs);
+        response.put("tier", tier != null ? tier.getName() : "raw");
+        response.put("relativeAccuracy", merged.getRelativeAccuracy());
+        response.put("count", merged.getCount());
+        if (merged.getCount() > 0) {
+            response.put("min", merged.getMin());
+            response.put("max", merged.getMax());
+        }
+        response.put("quantiles", values);
+        return response;
+    }
+
+    /**
+     * 把 [fromMs, toMs) 内的草图合并到 into：用不超过 maxTier 的、能放进范围的最粗一档读对齐部分，两端递归用更细的档位
+     *
+     * @return 使用的最粗档位，只读了原始样本时为 null
+     */
+    private RollupTier mergeSketches(int seriesId, long fromMs, long toMs, int maxTier, DDSketch into) {
+        RollupTier[] tiers = RollupTier.values();
+        for (int i = maxTier; i >= 0; i--) {
+            long width = tiers[i].getWidthMs();
+            long alignedFrom = Math.floorDiv(fromMs + width - 1, width) * width;
+            long alignedTo = Math.floorDiv(toMs, width) * width;
+            if (alignedTo <= alignedFrom) {
+                continue;
+            }
+            for (RollupAccumulator bucket : aggregate(seriesId, alignedFrom, alignedTo, width, tiers[i])) {
+                if (bucket.getSketch() != null) {
+                    into.merge(bucket.getSketch());
+                }
+            }
+            if (fromMs < alignedFrom) {
+                mergeSketches(seriesId, fromMs, alignedFrom, i - 1, into);
+            }
+            if (alignedTo < toMs) {
+                mergeSketches(seriesId, alignedTo, toMs, i - 1, into);
+            }
+            return tiers[i];
+        }
+        metricStorageService.scanSamples(seriesId, fromMs, toMs - 1, (ts, value) -> into.add(value));
+        return null;
+    }
+
+    /**
+     * 单个序列的图表查询：返回最多 maxPoints 个原始形状的点（每点 ts/value）
+     *
+     * @param mode lttb（默认）或 minmax
+     */
+    public Map<String, Object> queryDownsampled(String componentName, String metricName,
+                                                long fromMs, long toMs, int maxPoints, String mode) {
+        MetricField field = MetricField.fromName(metricName);
+        if (field == null) {
+            throw new IllegalArgumentException("未知指标: " + metricName);
+        }
+        if (maxPoints > MAX_POINTS) {
+            throw new IllegalArgumentException("maxPoints 不能超过 " + MAX_POINTS);
+        }
+        Downsampler downsampler = Downsampler.create(mode, fromMs, toMs, maxPoints);
+        boolean minMax = downsampler instanceof MinMaxDownsampler;
+        long sourceStep = resolveStep(fromMs, toMs, null, Math.min(maxPoints * DOWNSAMPLE_SOURCE_FACTOR, MAX_POINTS));
+        RollupTier tier = RollupTier.forStep(sourceStep);
+
+        MetricSeries series = findSeries(componentName, metricName);
+        if (series != null) {
+            if (tier == null) {
+                // 原始样本直接流入降采样，不在内存中保存
+                metricStorageService.scanSamples(series.getId(), fromMs, toMs - 1, downsampler);
+            } else {
+                for (RollupAccumulator bucket : aggregate(series.getId(), fromMs, toMs, sourceStep, tier)) {
+                    if (minMax) {
+                        // 聚合桶只有极值没有极值的时间，都记在桶起点
+                        downsampler.accept(bucket.getStart(), bucket.getMin());
+                        downsampler.accept(bucket.getStart(), bucket.getMax());
+                    } else {
+                        downsampler.accept(bucket.getStart(), bucket.getAverage());
+                    }
+                }
+            }
+            downsampler.finish();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("component", componentName);
+        response.put("metric", metricName);
+        response.put("start", fromMs);
+        response.put("end", toMs);
+        response.put("maxPoints", maxPoints);
+        response.put("downsample", minMax ? Downsampler.MIN_MAX : Downsampler.LTTB);
+        response.put("tier", tier != null ? tier.getName() : "raw");
+        response.put("points", downsampler.getPoints());
+        return response;
+    }
+
+    /**
+     * 聚合桶转成接口返回的点（每点 ts/min/max/avg/count/last，有草图时另有 p50/p95/p99）
+     */
+    private static List<Map<String, Object>> toPoints(List<RollupAccumulator> buckets) {
+        List<Map<String, Object>> points = new ArrayList<>(buckets.size());
+        for (RollupAccumulator bucket : buckets) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("ts", bucket.getStart());
+            point.put("min", bucket.getMin());
+            point.put("max", bucket.getMax());
+            point.put("avg", bucket.getAverage());
+            point.put("count", bucket.getCount());
+            point.put("last", bucket.getLast());
+            DDSketch sketch = bucket.getSketch();
+            if (sketch != null && sketch.getCount() > 0) {
+                point.put("p50", sketch.quantile(0.5));
+                point.put("p95", sketch.quantile(0.95));
+                point.put("p99", sketch.quantile(0.99));
+            }
+            points.add(point);
+        }
+        return points;
+    }
+
+    private MetricSeries findSeries(String componentName, String metricName) {
+        for (MetricSeries series : seriesRegistry.getComponentSeries(componentName)) {
+            if (series.getMetricName().equals(metricName)) {
+                return series;
+            }
+        }
+        return null;
+    }
+}
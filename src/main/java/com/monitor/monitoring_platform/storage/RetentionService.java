@@ -0,0 +1,284 @@
+//数据保留：样本表和聚合表按天分区，每档有自己的保留天数，过期时整个分区删除
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.mapper.PartitionMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分区 pYYYYMMDD 存放该日的数据（VALUES LESS THAN 次日零点），p_future 是始终为空的兜底分区。
+ * 每轮检查：
+ * <ol>
+ *   <li>提前创建到 precreate-days 天后的分区（拆分空的 p_future，只改元数据）</li>
+ *   <li>删除整天都早于保留期的分区（DROP PARTITION，不逐行 DELETE）</li>
+ *   <li>开启内嵌时序存储时，删除整个早于原始数据保留期的段文件</li>
+ * </ol>
+ * 在独立线程上运行，不占用 @Scheduled 的公共线程（采集调度也在那个线程上）。
+ * DDL 设置了较短的元数据锁等待时间：表上有长查询时本轮放弃，而不是排队挡住后续的写入。
+ */
+@Service
+public class RetentionService {
+
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter PARTITION_BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd 00:00:00");
+
+    @Autowired
+    private PartitionMapper partitionMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private SegmentStore segmentStore;
+
+    @Autowired
+    private RangeQueryCache rangeQueryCache;
+
+    @Value("${monitor.storage.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.storage.retention.raw-days:7}")
+    private int rawDays;
+
+    @Value("${monitor.storage.retention.rollup-1m-days:30}")
+    private int rollup1mDays;
+
+    @Value("${monitor.storage.retention.rollup-5m-days:90}")
+    private int rollup5mDays;
+
+    @Value("${monitor.storage.retention.rollup-1h-days:730}")
+    private int rollup1hDays;
+
+    @Value("${monitor.storage.retention.precreate-days:3}")
+    private int precreateDays;
+
+    @Value("${monitor.storage.retention.check-interval-ms:3600000}")
+    private long checkIntervalMs;
+
+    @Value("${monitor.storage.retention.lock-wait-timeout-seconds:5}")
+    private int lockWaitTimeoutSeconds;
+
+    private ScheduledExecutorService executor;
+
+    // 已提示过未分区的表，避免每轮重复打印
+    private final Set<String> unpartitionedWarned = new HashSet<>();
+
+    private Counter droppedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void start() {
+        droppedCounter = Counter.builder("monitor.storage.retention.dropped")
+                .description("按保留期删除的分区数").register(meterRegistry);
+        failedCounter = Counter.builder("monitor.storage.retention.failed")
+                .description("分区维护失败次数").register(meterRegistry);
+        if (!enabled) {
+            System.out.println("数据保留任务未开启");
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metric-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 启动后尽快建好当天和之后几天的分区
+        executor.scheduleWithFixedDelay(this::runSafely, 10_000, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 档位的保留天数，tier 为 null 表示原始样本；0 或负数表示不删除
+     */
+    public int getRetentionDays(RollupTier tier) {
+        if (tier == null) {
+            return rawDays;
+        }
+        return switch (tier) {
+            case MINUTE_1 -> rollup1mDays;
+            case MINUTE_5 -> rollup5mDays;
+            case HOUR_1 -> rollup1hDays;
+        };
+    }
+
+    /**
+     * 档位在 timestampMs 时刻的数据是否还在保留期内
+     */
+    public boolean isRetained(RollupTier tier, long timestampMs) {
+        int days = getRetentionDays(tier);
+        return days <= 0 || timestampMs >= toEpochMillis(cutoff(LocalDate.now(), days));
+    }
+
+    /**
+     * 执行一轮维护，返回每张表新增和删除的分区
+     */
+    public Map<String, Object> run() {
+        LocalDate today = LocalDate.now();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("metric_samples", maintainSafely("metric_samples", rawDays, today));
+        for (RollupTier tier : RollupTier.values()) {
+            result.put(tier.getTable(), maintainSafely(tier.getTable(), getRetentionDays(tier), today));
+            result.put(tier.getSketchTable(), maintainSafely(tier.getSketchTable(), getRetentionDays(tier), today));
+        }
+        if (segmentStore != null && rawDays > 0) {
+            int deleted = segmentStore.deleteBefore(toEpochMillis(cutoff(today, rawDays)));
+            if (deleted > 0) {
+                rangeQueryCache.clear();
+            }
+            result.put("segments", deleted);
+        }
+        return result;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (Exception e) {
+            failedCounter.increment();
+            System.err.println("数据保留任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 单张表失败（例如锁等待超时）不影响其他表，下一轮重试
+     */
+    private Map<String, Object> maintainSafely(String table, int retentionDays, LocalDate today) {
+        try {
+            return maintain(table, retentionDays, today);
+        } catch (Exception e) {
+            failedCounter.increment();
+            System.err.println("表 " + table + " 分区维护失败: " + e.getMessage());
+            return Map.of("error", String.valueOf(e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> maintain(String table, int retentionDays, LocalDate today) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        List<String> partitions = partitionMapper.selectPartitionNames(table);
+        if (partitions.isEmpty() || !partitions.contains(FUTURE_PARTITION)) {
+            if (unpartitionedWarned.add(table)) {
+                System.err.println("表 " + table + " 未按天分区，跳过数据保留（见 db/partition_metric_tables.sql）");
+            }
+            summary.put("skipped", "未分区");
+            return summary;
+        }
+
+        List<LocalDate> days = new ArrayList<>();
+        for (String name : partitions) {
+            LocalDate day = parsePartitionDay(name);
+            if (day != null) {
+                days.add(day);
+            }
+        }
+        LocalDate cutoff = retentionDays > 0 ? cutoff(today, retentionDays) : null;
+
+        // 1. 提前创建分区。第一次从保留期起点的前一天开始，之前的历史数据都落在这个分区里，随后一并删除
+        LocalDate next = days.isEmpty()
+                ? (cutoff != null ? cutoff.minusDays(1) : today)
+                : days.get(days.size() - 1).plusDays(1);
+        List<String> added = new ArrayList<>();
+        StringBuilder definitions = new StringBuilder();
+        for (LocalDate day = next; !day.isAfter(today.plusDays(precreateDays)); day = day.plusDays(1)) {
+            if (definitions.length() > 0) {
+                definitions.append(", ");
+            }
+            definitions.append("PARTITION ").append(partitionName(day))
+                    .append(" VALUES LESS THAN ('").append(day.plusDays(1).format(PARTITION_BOUND)).append("')");
+            added.add(partitionName(day));
+            days.add(day);
+        }
+        if (!added.isEmpty()) {
+            String sql = definitions.toString();
+            executeDdl(() -> partitionMapper.addPartitions(table, sql));
+            System.out.println("表 " + table + " 新增分区 " + added);
+        }
+
+        // 2. 删除过期分区：分区 D 的数据都早于 D+1 零点，D 早于保留期起点时整个分区过期
+        List<String> dropped = new ArrayList<>();
+        if (cutoff != null) {
+            for (LocalDate day : days) {
+                if (day.isBefore(cutoff)) {
+                    dropped.add(partitionName(day));
+                }
+            }
+        }
+        if (!dropped.isEmpty()) {
+            String names = String.join(", ", dropped);
+            executeDdl(() -> partitionMapper.dropPartitions(table, names));
+            // 缓存的桶可能来自被删除的分区
+            rangeQueryCache.clear();
+            droppedCounter.increment(dropped.size());
+            System.out.println("表 " + table + " 删除过期分区 " + dropped);
+        }
+
+        summary.put("added", added);
+        summary.put("dropped", dropped);
+        return summary;
+    }
+
+    /**
+     * 在同一个连接上设置锁等待超时并执行 DDL，执行后恢复连接的默认值（连接会回到连接池）
+     */
+    private void executeDdl(Runnable ddl) {
+        transactionTemplate.executeWithoutResult(status -> {
+            partitionMapper.setLockWaitTimeout(lockWaitTimeoutSeconds);
+            try {
+                ddl.run();
+            } finally {
+                partitionMapper.resetLockWaitTimeout();
+            }
+        });
+    }
+
+    private static LocalDate cutoff(LocalDate today, int retentionDays) {
+        return today.minusDays(retentionDays);
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "p" + day.format(PARTITION_DAY);
+    }
+
+    private static LocalDate parsePartitionDay(String name) {
+        if (name.length() != 9 || name.charAt(0) != 'p') {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(1), PARTITION_DAY);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long toEpochMillis(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,117 @@
+//一个时间桶内的 min/max/sum/count/last 累加器（延迟类序列另带分位数草图），写入时维护聚合桶、查询时合并桶都用它
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricRollup;
+
+final class RollupAccumulator {
+
+    private final long start;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private long count;
+    private double last;
+    private long lastTs = Long.MIN_VALUE;
+    // 只有延迟类序列有，其他为 null
+    private DDSketch sketch;
+    // 迟到样本单独成的桶
+    private boolean late;
+
+    RollupAccumulator(long start) {
+        this.start = start;
+    }
+
+    RollupAccumulator(long start, DDSketch sketch) {
+        this.start = start;
+        this.sketch = sketch;
+    }
+
+    void add(long timestampMs, double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+        if (timestampMs >= lastTs) {
+            last = value;
+            lastTs = timestampMs;
+        }
+        if (sketch != null) {
+            sketch.add(value);
+        }
+    }
+
+    void merge(RollupAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.sketch != null) {
+            mergeSketch(other.sketch);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        count += other.count;
+        if (other.lastTs >= lastTs) {
+            last = other.last;
+            lastTs = other.lastTs;
+        }
+    }
+
+    void merge(MetricRollup row) {
+        min = Math.min(min, row.getMinValue());
+        max = Math.max(max, row.getMaxValue());
+        sum += row.getSumValue();
+        count += row.getSampleCount();
+        long rowLastTs = MetricStorageService.toEpochMillis(row.getLastTs());
+        if (rowLastTs >= lastTs) {
+            last = row.getLastValue();
+            lastTs = rowLastTs;
+        }
+    }
+
+    /**
+     * 合并草图（从草图表读出的，或另一个桶的），参数不会被修改
+     */
+    void mergeSketch(DDSketch other) {
+        if (sketch == null) {
+            sketch = other.copy();
+        } else {
+            sketch.merge(other);
+        }
+    }
+
+    RollupAccumulator copy() {
+        RollupAccumulator copy = new RollupAccumulator(start);
+        copy.merge(this);
+        return copy;
+    }
+
+    MetricRollup toRollup(int seriesId) {
+        return new MetricRollup(seriesId, MetricStorageService.toLocalDateTime(start), min, max, sum, count, last,
+                MetricStorageService.toLocalDateTime(lastTs));
+    }
+
+    void markLate() {
+        late = true;
+    }
+
+    long getStart() { return start; }
+
+    boolean isLate() { return late; }
+
+    DDSketch getSketch() { return sketch; }
+
+    double getMin() { return min; }
+
+    double getMax() { return max; }
+
+    double getSum() { return sum; }
+
+    long getCount() { return count; }
+
+    double getLast() { return last; }
+
+    long getLastTs() { return lastTs; }
+
+    double getAverage() { return count > 0 ? sum / count : Double.NaN; }
+}
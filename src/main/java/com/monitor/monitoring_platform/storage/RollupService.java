@@ -0,0 +1,384 @@
+//降采样聚合：样本写入时增量维护 1m/5m/1h 三档聚合桶，桶关闭时合并写入对应的聚合表
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricRollup;
+import com.monitor.monitoring_platform.entity.MetricSample;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.entity.MetricSketch;
+import com.monitor.monitoring_platform.mapper.MetricRollupMapper;
+import com.monitor.monitoring_platform.mapper.MetricSketchMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 每个序列每档只有一个打开的桶在内存中累加，不回扫原始数据：
+ * <ul>
+ *   <li>样本落入更晚的桶时，当前桶关闭，进入待写列表</li>
+ *   <li>迟到的样本（早于打开的桶）单独成为一个只有一个样本的桶，写入时与表中已有的桶合并</li>
+ *   <li>长时间没有新样本的序列由定时任务按时间关闭</li>
+ * </ul>
+ * 聚合表的写入是合并（见 MetricRollupMapper.xml），同一个桶分几次写入结果不变，
+ * 但同一个样本重复投递会被重复计数。写入失败的桶留在待写列表，下次定时任务重试。
+ * 打开的和待写的桶都可以通过 snapshot 查询，查询时不必等桶关闭：查询结果是聚合表与内存中的桶相加，
+ * 写入聚合表和移出待写列表之间的窗口由 readConsistent 避开，同一部分不会算两次。
+ * <p>
+ * 延迟类序列（sketch-metrics 中的指标）的桶另带一个 DDSketch，写入对应的草图表。
+ * SQL 无法合并草图，所以写入时先加锁读出表中已有的草图，在副本上合并后覆盖写回，
+ * 与聚合表的写入在同一个事务里：失败重试时两张表都不会重复计数。
+ */
+@Service
+public class RollupService {
+
+    private static final RollupTier[] TIERS = RollupTier.values();
+
+    // 读取期间遇到写入时的重试次数，之后在写入锁内读取
+    private static final int CONSISTENT_READ_ATTEMPTS = 3;
+
+    @Autowired
+    private MetricRollupMapper metricRollupMapper;
+
+    @Autowired
+    private MetricSketchMapper metricSketchMapper;
+
+    @Autowired
+    private SeriesRegistry seriesRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RangeQueryCache rangeQueryCache;
+
+    @Value("${monitor.storage.rollup.batch-size:500}")
+    private int batchSize;
+
+    @Value("${monitor.storage.rollup.sketch-metrics:response_time_ms}")
+    private List<String> sketchMetrics;
+
+    @Value("${monitor.storage.rollup.sketch-accuracy:0.01}")
+    private double sketchAccuracy;
+
+    @Value("${monitor.storage.rollup.sketch-max-bins:1024}")
+    private int sketchMaxBins;
+
+    // 序列ID -> 各档的桶
+    private final Map<Integer, SeriesRollup> seriesRollups = new ConcurrentHashMap<>();
+
+    // 待写的桶数，为 0 时跳过写入
+    private final AtomicInteger unflushed = new AtomicInteger();
+
+    // 写入串行化：同一个桶只能被写入一次
+    private final Object flushLock = new Object();
+
+    // 写入版本：一批桶写入聚合表到移出待写列表期间为奇数，见 readConsistent
+    private final AtomicLong flushVersion = new AtomicLong();
+
+    private Counter writtenCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        writtenCounter = Counter.builder("monitor.storage.rollup.written")
+                .description("写入聚合表的桶数").register(meterRegistry);
+        failedCounter = Counter.builder("monitor.storage.rollup.failed")
+                .description("写入聚合表失败的批次数").register(meterRegistry);
+    }
+
+    /**
+     * 累加一批样本，并写入因此关闭的桶（在写入线程上调用）
+     */
+    public void accept(List<MetricSample> samples) {
+        for (MetricSample sample : samples) {
+            seriesRollups.computeIfAbsent(sample.getSeriesId(), SeriesRollup::new)
+                    .add(MetricStorageService.toEpochMillis(sample.getTimestamp()), sample.getValue());
+        }
+        flushClosed();
+    }
+
+    /**
+     * 定时关闭已经过期的桶（序列停止上报时桶不会被新样本关闭），并重试之前写入失败的桶
+     */
+    @Scheduled(fixedDelayString = "${monitor.storage.rollup.flush-interval-ms:30000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (SeriesRollup rollup : seriesRollups.values()) {
+            rollup.closeBefore(now);
+        }
+        flushClosed();
+    }
+
+    @PreDestroy
+    public void close() {
+        for (SeriesRollup rollup : seriesRollups.values()) {
+            rollup.closeBefore(Long.MAX_VALUE);
+        }
+        flushClosed();
+    }
+
+    /**
+     * 序列在某一档尚未写入聚合表的桶（打开的和待写的），按起始时间升序，打开的桶返回副本。
+     * 这些桶与聚合表中同一时间的部分互不重叠（迟到样本单独成桶、重启前写入的部分在表中），查询时与表中的行相加，
+     * 快照和读表要在同一个 readConsistent 内
+     */
+    List<RollupAccumulator> snapshot(int seriesId, RollupTier tier) {
+        SeriesRollup rollup = seriesRollups.get(seriesId);
+        return rollup != null ? rollup.snapshot(tier) : List.of();
+    }
+
+    /**
+     * 执行 reader（取快照并读聚合表），保证期间没有桶从待写列表写入聚合表：
+     * 读取前后写入版本相同且不在写入中时结果有效，否则重试，多次失败后在写入锁内读取
+     */
+    <T> T readConsistent(Supplier<T> reader) {
+        for (int attempt = 0; attempt < CONSISTENT_READ_ATTEMPTS; attempt++) {
+            long version = flushVersion.get();
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            T result = reader.get();
+            if (flushVersion.get() == version) {
+                return result;
+            }
+        }
+        synchronized (flushLock) {
+            return reader.get();
+        }
+    }
+
+    /**
+     * 序列是否维护分位数草图
+     */
+    boolean isSketched(int seriesId) {
+        MetricSeries series = seriesRegistry.get(seriesId);
+        return series != null && sketchMetrics.contains(series.getMetricName());
+    }
+
+    /**
+     * 按配置的精度新建一个空草图
+     */
+    DDSketch newSketch() {
+        return new DDSketch(sketchAccuracy, sketchMaxBins);
+    }
+
+    /**
+     * 从草图表读出的数据还原草图，数据损坏时返回 null
+     */
+    DDSketch decodeSketch(MetricSketch row) {
+        try {
+            return DDSketch.decode(row.getSketch(), sketchMaxBins);
+        } catch (RuntimeException e) {
+            System.err.println("草图数据无法解析（序列 " + row.getSeriesId() + "，桶 " + row.getBucket() + "）: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void flushClosed() {
+        if (unflushed.get() == 0) {
+            return;
+        }
+        synchronized (flushLock) {
+            for (RollupTier tier : TIERS) {
+                List<SeriesRollup> owners = new ArrayList<>();
+                List<RollupAccumulator> buckets = new ArrayList<>();
+                for (SeriesRollup rollup : seriesRollups.values()) {
+                    rollup.collectClosed(tier, owners, buckets);
+                }
+                for (int from = 0; from < buckets.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, buckets.size());
+                    List<MetricRollup> rows = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        rows.add(buckets.get(i).toRollup(owners.get(i).seriesId));
+                    }
+                    List<SeriesRollup> batchOwners = owners.subList(from, to);
+                    List<RollupAccumulator> batchBuckets = buckets.subList(from, to);
+                    flushVersion.incrementAndGet();
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            metricRollupMapper.upsertBatch(tier.getTable(), rows);
+                            writeSketches(tier, batchOwners, batchBuckets);
+                        });
+                        for (int i = from; i < to; i++) {
+                            owners.get(i).release(tier, buckets.get(i));
+                        }
+                        invalidateLate(batchOwners, batchBuckets);
+                    } catch (Exception e) {
+                        // 留在待写列表中，下次定时任务重试
+                        failedCounter.increment();
+                        System.err.println("写入聚合表 " + tier.getTable() + " 失败（" + rows.size() + " 个桶）: " + e.getMessage());
+                        continue;
+                    } finally {
+                        flushVersion.incrementAndGet();
+                    }
+                    writtenCounter.increment(rows.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * 迟到的桶写入后，查询缓存中该序列从桶起始时间起的部分失效
+     */
+    private void invalidateLate(List<SeriesRollup> owners, List<RollupAccumulator> buckets) {
+        Map<Integer, Long> earliestLate = null;
+        for (int i = 0; i < buckets.size(); i++) {
+            if (buckets.get(i).isLate()) {
+                if (earliestLate == null) {
+                    earliestLate = new HashMap<>();
+                }
+                earliestLate.merge(owners.get(i).seriesId, buckets.get(i).getStart(), Math::min);
+            }
+        }
+        if (earliestLate != null) {
+            rangeQueryCache.invalidate(earliestLate);
+        }
+    }
+
+    /**
+     * 把一批桶的草图与表中已有的合并后写回（在写入聚合表的事务中调用）。
+     * 同一批里可能有同一个桶的多个部分（迟到样本单独成桶），先在内存中合并
+     */
+    private void writeSketches(RollupTier tier, List<SeriesRollup> owners, List<RollupAccumulator> buckets) {
+        Map<String, MetricSketch> keys = new LinkedHashMap<>();
+        Map<String, DDSketch> merged = new HashMap<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            DDSketch sketch = buckets.get(i).getSketch();
+            if (sketch == null) {
+                continue;
+            }
+            int seriesId = owners.get(i).seriesId;
+            String key = seriesId + ":" + buckets.get(i).getStart();
+            keys.putIfAbsent(key, new MetricSketch(seriesId,
+                    MetricStorageService.toLocalDateTime(buckets.get(i).getStart()), null));
+            // 在副本上合并，写入失败重试时内存中的桶不变
+            merged.computeIfAbsent(key, k -> newSketch()).merge(sketch);
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<MetricSketch> rows = new ArrayList<>(keys.values());
+        for (MetricSketch existing : metricSketchMapper.selectBuckets(tier.getSketchTable(), rows)) {
+            DDSketch stored = decodeSketch(existing);
+            if (stored != null) {
+                String key = existing.getSeriesId() + ":" + MetricStorageService.toEpochMillis(existing.getBucket());
+                DDSketch sketch = merged.get(key);
+                if (sketch != null) {
+                    sketch.merge(stored);
+                }
+            }
+        }
+        for (Map.Entry<String, MetricSketch> entry : keys.entrySet()) {
+            entry.getValue().setSketch(merged.get(entry.getKey()).encode());
+        }
+        metricSketchMapper.upsertBatch(tier.getSketchTable(), rows);
+    }
+
+    /**
+     * 一个序列各档的桶，读写都在该对象上加锁
+     */
+    private final class SeriesRollup {
+        private final int seriesId;
+        private final boolean sketched;
+        private final RollupAccumulator[] open = new RollupAccumulator[TIERS.length];
+        // 已关闭、尚未写入的桶
+        private final List<List<RollupAccumulator>> closed = new ArrayList<>(TIERS.length);
+
+        private SeriesRollup(int seriesId) {
+            this.seriesId = seriesId;
+            this.sketched = isSketched(seriesId);
+            for (int i = 0; i < TIERS.length; i++) {
+                closed.add(new ArrayList<>());
+            }
+        }
+
+        private synchronized void add(long timestampMs, double value) {
+            for (int i = 0; i < TIERS.length; i++) {
+                long start = TIERS[i].bucketStart(timestampMs);
+                RollupAccumulator bucket = open[i];
+                if (bucket == null || start > bucket.getStart()) {
+                    if (bucket != null) {
+                        closeBucket(i, bucket);
+                    }
+                    bucket = newBucket(start);
+                    open[i] = bucket;
+                } else if (start < bucket.getStart()) {
+                    // 迟到的样本
+                    bucket = newBucket(start);
+                    bucket.markLate();
+                    closeBucket(i, bucket);
+                }
+                bucket.add(timestampMs, value);
+            }
+        }
+
+        private RollupAccumulator newBucket(long start) {
+            return new RollupAccumulator(start, sketched ? newSketch() : null);
+        }
+
+        private synchronized void closeBefore(long timestampMs) {
+            for (int i = 0; i < TIERS.length; i++) {
+                RollupAccumulator bucket = open[i];
+                if (bucket != null && bucket.getStart() + TIERS[i].getWidthMs() <= timestampMs) {
+                    closeBucket(i, bucket);
+                    open[i] = null;
+                }
+            }
+        }
+
+        private void closeBucket(int tierIndex, RollupAccumulator bucket) {
+            closed.get(tierIndex).add(bucket);
+            unflushed.incrementAndGet();
+        }
+
+        private synchronized void collectClosed(RollupTier tier, List<SeriesRollup> owners,
+                                                List<RollupAccumulator> buckets) {
+            for (RollupAccumulator bucket : closed.get(tier.ordinal())) {
+                owners.add(this);
+                buckets.add(bucket);
+            }
+        }
+
+        private synchronized void release(RollupTier tier, RollupAccumulator bucket) {
+            // 关闭的桶不再修改，按引用移除
+            List<RollupAccumulator> list = closed.get(tier.ordinal());
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == bucket) {
+                    list.remove(i);
+                    unflushed.decrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        private synchronized List<RollupAccumulator> snapshot(RollupTier tier) {
+            List<RollupAccumulator> result = new ArrayList<>(closed.get(tier.ordinal()));
+            RollupAccumulator bucket = open[tier.ordinal()];
+            if (bucket != null) {
+                // 打开的桶还在变化，返回副本
+                result.add(bucket.copy());
+            }
+            result.sort((a, b) -> Long.compare(a.getStart(), b.getStart()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+//降采样档位：桶宽度和对应的聚合表、分位数草图表
+package com.monitor.monitoring_platform.storage;
+
+public enum RollupTier {
+
+    MINUTE_1("1m", 60_000L, "metric_rollup_1m", "metric_sketch_1m"),
+    MINUTE_5("5m", 300_000L, "metric_rollup_5m", "metric_sketch_5m"),
+    HOUR_1("1h", 3_600_000L, "metric_rollup_1h", "metric_sketch_1h");
+
+    private static final RollupTier[] VALUES = values();
+
+    private final String name;
+    private final long widthMs;
+    private final String table;
+    private final String sketchTable;
+
+    RollupTier(String name, long widthMs, String table, String sketchTable) {
+        this.name = name;
+        this.widthMs = widthMs;
+        this.table = table;
+        this.sketchTable = sketchTable;
+    }
+
+    public String getName() { return name; }
+
+    public long getWidthMs() { return widthMs; }
+
+    public String getTable() { return table; }
+
+    public String getSketchTable() { return sketchTable; }
+
+    /**
+     * 时间戳所在桶的起始时间（按 epoch 对齐）
+     */
+    public long bucketStart(long timestampMs) {
+        return Math.floorDiv(timestampMs, widthMs) * widthMs;
+    }
+
+    /**
+     * 满足步长的最粗档位：桶宽度不超过 stepMs 的档位中最宽的一个，步长小于 1 分钟时返回 null（读原始样本）
+     */
+    public static RollupTier forStep(long stepMs) {
+        RollupTier result = null;
+        for (RollupTier tier : VALUES) {
+            if (tier.widthMs <= stepMs) {
+                result = tier;
+            }
+        }
+        return result;
+    }
+}
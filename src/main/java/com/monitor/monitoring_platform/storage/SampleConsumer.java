@@ -0,0 +1,7 @@
+//样本回调：扫描、解码时逐条回调，不为每个样本创建对象
+package com.monitor.monitoring_platform.storage;
+
+public interface SampleConsumer {
+
+    void accept(long timestampMs, double value);
+}
@@ -0,0 +1,164 @@
+//不可变段文件：一批封存的数据块 + 索引，写完后只读，通过内存映射访问
+package com.monitor.monitoring_platform.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文件格式（大端）：
+ * <pre>
+ * 头部   "MSEG" + u8 版本 + 3 字节保留
+ * 数据   各块的压缩数据依次排列
+ * 索引   u32 块数 + 每块 [i32 序列ID][i64 最小时间][i64 最大时间][i64 最后时间][f64 最后值][i32 样本数][i64 偏移][i32 长度]
+ * 尾部   i64 索引偏移 + "MSEG"
+ * </pre>
+ * 先写临时文件、fsync 后原子改名，目录中只会出现完整的段文件。
+ * 文件名为 {块起始时间}-{序号}.seg，按时间删除过期数据时只需看文件名和最大时间。
+ */
+final class Segment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x4D534547; // "MSEG"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 4 + 8 + 8 + 8 + 8 + 4 + 8 + 4;
+    private static final int FOOTER_SIZE = 8 + 4;
+
+    private final Path path;
+    private final long blockStart;
+    private final long maxTimestamp;
+    private final long sizeBytes;
+    private final List<Chunk> chunks;
+
+    private Segment(Path path, long blockStart, long maxTimestamp, long sizeBytes, List<Chunk> chunks) {
+        this.path = path;
+        this.blockStart = blockStart;
+        this.maxTimestamp = maxTimestamp;
+        this.sizeBytes = sizeBytes;
+        this.chunks = chunks;
+    }
+
+    /**
+     * 把一批块写成新的段文件并映射打开
+     */
+    static Segment write(Path dir, long blockStart, int sequence, List<Chunk> chunks) throws IOException {
+        long dataBytes = 0;
+        for (Chunk chunk : chunks) {
+            dataBytes += chunk.getLength();
+        }
+        long total = HEADER_SIZE + dataBytes + 4 + (long) INDEX_ENTRY_SIZE * chunks.size() + FOOTER_SIZE;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("段文件过大: " + total);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) total);
+        out.putInt(MAGIC).put(VERSION).put(new byte[3]);
+        long[] offsets = new long[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i] = out.position();
+            chunks.get(i).copyTo(out);
+        }
+
+        long indexOffset = out.position();
+        out.putInt(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            out.putInt(chunk.getSeriesId())
+                    .putLong(chunk.getMinTimestamp())
+                    .putLong(chunk.getMaxTimestamp())
+                    .putLong(chunk.getLastTimestamp())
+                    .putDouble(chunk.getLastValue())
+                    .putInt(chunk.getCount())
+                    .putLong(offsets[i])
+                    .putInt(chunk.getLength());
+        }
+        out.putLong(indexOffset).putInt(MAGIC);
+        out.flip();
+
+        Path target = dir.resolve(fileName(blockStart, sequence));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * 映射打开段文件并读取索引
+     */
+    static Segment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < HEADER_SIZE + 4 + FOOTER_SIZE) {
+                throw new IOException("段文件不完整: " + path);
+            }
+            // 映射在通道关闭后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt((int) size - 4) != MAGIC) {
+            throw new IOException("段文件格式错误: " + path);
+        }
+
+        int position = (int) buffer.getLong((int) size - FOOTER_SIZE);
+        int count = buffer.getInt(position);
+        position += 4;
+        List<Chunk> chunks = new ArrayList<>(count);
+        long maxTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int seriesId = buffer.getInt(position);
+            long minTs = buffer.getLong(position + 4);
+            long maxTs = buffer.getLong(position + 12);
+            long lastTs = buffer.getLong(position + 20);
+            double lastValue = buffer.getDouble(position + 28);
+            int samples = buffer.getInt(position + 36);
+            int offset = (int) buffer.getLong(position + 40);
+            int length = buffer.getInt(position + 48);
+            position += INDEX_ENTRY_SIZE;
+
+            chunks.add(Chunk.mapped(seriesId, minTs, maxTs, lastTs, lastValue, samples, buffer, offset, length));
+            maxTimestamp = Math.max(maxTimestamp, maxTs);
+        }
+        return new Segment(path, parseBlockStart(path), maxTimestamp, size, Collections.unmodifiableList(chunks));
+    }
+
+    static String fileName(long blockStart, int sequence) {
+        return blockStart + "-" + sequence + SUFFIX;
+    }
+
+    static long parseBlockStart(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('-')));
+    }
+
+    static int parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    Path getPath() { return path; }
+
+    long getBlockStart() { return blockStart; }
+
+    long getMaxTimestamp() { return maxTimestamp; }
+
+    long getSizeBytes() { return sizeBytes; }
+
+    List<Chunk> getChunks() { return chunks; }
+}
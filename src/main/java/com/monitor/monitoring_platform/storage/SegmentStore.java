@@ -0,0 +1,410 @@
+//内嵌时序存储：每个序列追加写压缩块，封存的块定期写成不可变段文件，查询通过内存映射直接解码
+package com.monitor.monitoring_platform.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据流转：
+ * <ol>
+ *   <li>append 写入序列的头块（内存中的 ChunkEncoder）</li>
+ *   <li>头块写满 chunk-samples 个样本或时间跨入下一个块周期时封存，进入待落盘列表，立即可查</li>
+ *   <li>定时任务把待落盘的块按块周期写成段文件，索引里的堆内存块替换为映射块</li>
+ * </ol>
+ * 序列字典仍在 MySQL（metric_series），这里只按序列ID存样本。
+ * 头块和待落盘的块只在内存中，进程崩溃后由写入缓冲区的预写日志重放恢复（见 WriteAheadLog），停机时会全部落盘。
+ * 过期数据按整个段文件删除（deleteBefore，由 RetentionService 调用）。
+ * 锁顺序：序列头块锁 -> indexLock，持有 indexLock 时不会再获取头块锁。
+ */
+@Service
+@ConditionalOnProperty(prefix = "monitor.storage.tsdb", name = "enabled", havingValue = "true")
+public class SegmentStore {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${monitor.storage.tsdb.dir:data/tsdb}")
+    private String directory;
+
+    @Value("${monitor.storage.tsdb.block-minutes:120}")
+    private long blockMinutes;
+
+    @Value("${monitor.storage.tsdb.chunk-samples:240}")
+    private int chunkSamples;
+
+    private Path dir;
+    private long blockMillis;
+
+    // 序列ID -> 头块
+    private final Map<Integer, HeadSeries> heads = new ConcurrentHashMap<>();
+
+    // 序列ID -> 已封存的块（按封存顺序），列表不可变，修改时整体替换
+    private final Map<Integer, List<Chunk>> chunksBySeries = new ConcurrentHashMap<>();
+
+    // 已封存、尚未写入段文件的块
+    private final List<Chunk> pending = new ArrayList<>();
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private final Object indexLock = new Object();
+    private final Object flushLock = new Object();
+    private int nextSequence;
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Paths.get(directory);
+        blockMillis = TimeUnit.MINUTES.toMillis(blockMinutes);
+        Files.createDirectories(dir);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // 上次写到一半的段文件
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(Segment.SUFFIX)) {
+                    files.add(path);
+                }
+            }
+        }
+        files.sort((a, b) -> {
+            int byBlock = Long.compare(Segment.parseBlockStart(a), Segment.parseBlockStart(b));
+            return byBlock != 0 ? byBlock : Integer.compare(Segment.parseSequence(a), Segment.parseSequence(b));
+        });
+
+        for (Path path : files) {
+            try {
+                Segment segment = Segment.open(path);
+                segments.add(segment);
+                for (Chunk chunk : segment.getChunks()) {
+                    addToIndex(chunk);
+                }
+                nextSequence = Math.max(nextSequence, Segment.parseSequence(path) + 1);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("跳过无法读取的段文件 " + path + ": " + e.getMessage());
+            }
+        }
+
+        Gauge.builder("monitor.storage.tsdb.segments", segments, List::size).register(meterRegistry);
+        Gauge.builder("monitor.storage.tsdb.bytes", this, SegmentStore::getSegmentBytes).register(meterRegistry);
+        Gauge.builder("monitor.storage.tsdb.bytes.per.sample", this, SegmentStore::getBytesPerSample)
+                .description("段文件中每个样本的平均字节数（含索引）")
+                .register(meterRegistry);
+        System.out.println("时序存储已打开: " + dir.toAbsolutePath() + "，段文件 " + segments.size() + " 个");
+    }
+
+    /**
+     * 追加一个样本
+     */
+    public void append(int seriesId, long timestampMs, double value) {
+        heads.computeIfAbsent(seriesId, HeadSeries::new).append(timestampMs, value);
+    }
+
+    /**
+     * 扫描序列在 [fromMs, toMs] 内的样本，按写入顺序回调（通常即时间顺序）
+     *
+     * @return 回调的样本数
+     */
+    public int scan(int seriesId, long fromMs, long toMs, SampleConsumer consumer) {
+        // 封存在头块锁内完成，在同一把锁内取块列表和头块快照，封存前后都不会漏读或重复
+        List<Chunk> chunks;
+        Chunk headChunk = null;
+        HeadSeries head = heads.get(seriesId);
+        if (head != null) {
+            synchronized (head) {
+                chunks = chunksBySeries.get(seriesId);
+                headChunk = head.snapshot(fromMs, toMs);
+            }
+        } else {
+            chunks = chunksBySeries.get(seriesId);
+        }
+
+        int emitted = 0;
+        if (chunks != null) {
+            for (Chunk chunk : chunks) {
+                if (chunk.overlaps(fromMs, toMs)) {
+                    emitted += chunk.scan(fromMs, toMs, consumer);
+                }
+            }
+        }
+        if (headChunk != null) {
+            emitted += headChunk.scan(fromMs, toMs, consumer);
+        }
+        return emitted;
+    }
+
+    /**
+     * 定时落盘：封存已跨过块周期的头块，把所有待落盘的块写成段文件
+     */
+    @Scheduled(fixedDelayString = "${monitor.storage.tsdb.flush-interval-ms:300000}")
+    public void flush() {
+        sealExpiredHeads(currentBlock(System.currentTimeMillis()));
+        writePending();
+    }
+
+    @PreDestroy
+    public void close() {
+        sealExpiredHeads(Long.MAX_VALUE);
+        writePending();
+    }
+
+    /**
+     * 删除所有样本都早于 cutoffMs 的段文件（按保留期清理），返回删除的段文件数。
+     * 正在扫描这些块的查询不受影响：文件删除后映射区域在被回收前仍然有效
+     */
+    public int deleteBefore(long cutoffMs) {
+        List<Segment> expired = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.getMaxTimestamp() < cutoffMs) {
+                expired.add(segment);
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        synchronized (indexLock) {
+            Map<Chunk, Boolean> expiredChunks = new IdentityHashMap<>();
+            Map<Integer, Boolean> touched = new HashMap<>();
+            for (Segment segment : expired) {
+                for (Chunk chunk : segment.getChunks()) {
+                    expiredChunks.put(chunk, Boolean.TRUE);
+                    touched.put(chunk.getSeriesId(), Boolean.TRUE);
+                }
+            }
+            for (Integer seriesId : touched.keySet()) {
+                List<Chunk> current = chunksBySeries.getOrDefault(seriesId, List.of());
+                List<Chunk> updated = new ArrayList<>(current.size());
+                for (Chunk chunk : current) {
+                    if (!expiredChunks.containsKey(chunk)) {
+                        updated.add(chunk);
+                    }
+                }
+                if (updated.isEmpty()) {
+                    chunksBySeries.remove(seriesId);
+                } else {
+                    chunksBySeries.put(seriesId, Collections.unmodifiableList(updated));
+                }
+            }
+            segments.removeAll(expired);
+        }
+
+        for (Segment segment : expired) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                // 下次启动时重新加载，再次到期时删除
+                System.err.println("删除过期段文件失败 " + segment.getPath() + ": " + e.getMessage());
+            }
+        }
+        System.out.println("已删除 " + expired.size() + " 个过期段文件");
+        return expired.size();
+    }
+
+    /**
+     * 尚未写入段文件的样本（头块和待落盘的块）中最早的时间，没有时返回 Long.MAX_VALUE。
+     * 调用前已经 append 的样本中，早于该时间的都已在段文件里（预写日志据此截断）
+     */
+    public long getUnpersistedFrom() {
+        long from = Long.MAX_VALUE;
+        // 先看头块再看待落盘列表：头块在封存时才进入待落盘列表，按这个顺序不会漏掉正在封存的块
+        for (HeadSeries head : heads.values()) {
+            from = Math.min(from, head.getMinTimestamp());
+        }
+        synchronized (indexLock) {
+            for (Chunk chunk : pending) {
+                from = Math.min(from, chunk.getMinTimestamp());
+            }
+        }
+        return from;
+    }
+
+    /**
+     * 每个序列已写入段文件的最大样本时间，重放预写日志时不再写入这些样本
+     */
+    public Map<Integer, Long> getPersistedUpTo() {
+        Map<Integer, Long> upTo = new HashMap<>();
+        for (Segment segment : segments) {
+            for (Chunk chunk : segment.getChunks()) {
+                upTo.merge(chunk.getSeriesId(), chunk.getMaxTimestamp(), Math::max);
+            }
+        }
+        return upTo;
+    }
+
+    private void sealExpiredHeads(long currentBlock) {
+        for (HeadSeries head : heads.values()) {
+            head.sealIfBefore(currentBlock);
+        }
+    }
+
+    private void writePending() {
+        synchronized (flushLock) {
+            List<Chunk> toWrite;
+            synchronized (indexLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                toWrite = new ArrayList<>(pending);
+            }
+
+            // 按块周期分组，每组一个段文件
+            Map<Long, List<Chunk>> byBlock = new TreeMap<>();
+            for (Chunk chunk : toWrite) {
+                byBlock.computeIfAbsent(currentBlock(chunk.getMinTimestamp()), b -> new ArrayList<>()).add(chunk);
+            }
+
+            for (Map.Entry<Long, List<Chunk>> entry : byBlock.entrySet()) {
+                List<Chunk> group = entry.getValue();
+                Segment segment;
+                try {
+                    segment = Segment.write(dir, entry.getKey(), nextSequence++, group);
+                } catch (IOException e) {
+                    // 留在待落盘列表中，下次重试
+                    System.err.println("写入段文件失败（" + group.size() + " 个块）: " + e.getMessage());
+                    continue;
+                }
+                segments.add(segment);
+
+                Map<Chunk, Chunk> replacements = new IdentityHashMap<>();
+                for (int i = 0; i < group.size(); i++) {
+                    replacements.put(group.get(i), segment.getChunks().get(i));
+                }
+                synchronized (indexLock) {
+                    pending.removeIf(replacements::containsKey);
+                    Map<Integer, Boolean> touched = new HashMap<>();
+                    for (Chunk chunk : group) {
+                        touched.put(chunk.getSeriesId(), Boolean.TRUE);
+                    }
+                    for (Integer seriesId : touched.keySet()) {
+                        List<Chunk> current = chunksBySeries.get(seriesId);
+                        List<Chunk> updated = new ArrayList<>(current.size());
+                        for (Chunk chunk : current) {
+                            updated.add(replacements.getOrDefault(chunk, chunk));
+                        }
+                        chunksBySeries.put(seriesId, Collections.unmodifiableList(updated));
+                    }
+                }
+            }
+        }
+    }
+
+    private void publish(Chunk chunk) {
+        synchronized (indexLock) {
+            pending.add(chunk);
+            addToIndex(chunk);
+        }
+    }
+
+    private void addToIndex(Chunk chunk) {
+        List<Chunk> current = chunksBySeries.getOrDefault(chunk.getSeriesId(), List.of());
+        List<Chunk> updated = new ArrayList<>(current.size() + 1);
+        updated.addAll(current);
+        updated.add(chunk);
+        chunksBySeries.put(chunk.getSeriesId(), Collections.unmodifiableList(updated));
+    }
+
+    private long currentBlock(long timestampMs) {
+        return Math.floorDiv(timestampMs, blockMillis) * blockMillis;
+    }
+
+    // ===== 统计 =====
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getSegmentBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getSizeBytes();
+        }
+        return bytes;
+    }
+
+    public double getBytesPerSample() {
+        long bytes = 0;
+        long samples = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getSizeBytes();
+            for (Chunk chunk : segment.getChunks()) {
+                samples += chunk.getCount();
+            }
+        }
+        return samples > 0 ? (double) bytes / samples : 0.0;
+    }
+
+    /**
+     * 一个序列的头块，写入和读取都在该对象上加锁
+     */
+    private final class HeadSeries {
+        private final int seriesId;
+        private ChunkEncoder encoder;
+        private long encoderBlock;
+
+        private HeadSeries(int seriesId) {
+            this.seriesId = seriesId;
+        }
+
+        private synchronized void append(long timestampMs, double value) {
+            long block = currentBlock(timestampMs);
+            if (encoder != null && (encoder.getCount() >= chunkSamples || block > encoderBlock)) {
+                seal();
+            }
+            if (encoder == null) {
+                encoder = new ChunkEncoder(chunkSamples);
+                encoderBlock = block;
+            }
+            encoder.append(timestampMs, value);
+        }
+
+        private synchronized void sealIfBefore(long block) {
+            if (encoder != null && encoderBlock < block) {
+                seal();
+            }
+        }
+
+        private synchronized long getMinTimestamp() {
+            return encoder != null ? encoder.getMinTimestamp() : Long.MAX_VALUE;
+        }
+
+        private void seal() {
+            publish(encoder.seal(seriesId));
+            encoder = null;
+        }
+
+        /**
+         * 头块中与时间范围重叠的数据的副本，调用方已持有本对象的锁
+         */
+        private Chunk snapshot(long fromMs, long toMs) {
+            if (encoder == null || encoder.getMaxTimestamp() < fromMs || encoder.getMinTimestamp() > toMs) {
+                return null;
+            }
+            return encoder.seal(seriesId);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+//多序列查询的并行执行：把按序列的读取分发到有界线程池，结果按输入顺序合并，总耗时接近最慢的单个序列
+package com.monitor.monitoring_platform.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 每个序列的读取可能落到热数据层、时序存储（本地计算）或 MySQL（聚合表、样本表），
+ * 线程数按数据库连接池留出余量配置，避免并行查询占满连接、挤掉写入。
+ * 调用线程自己执行第一个任务，其余任务提交到线程池；队列满时由调用线程执行（CallerRunsPolicy），
+ * 查询线程内再次发起的多序列查询直接在当前线程顺序执行，不会互相等待造成死锁。
+ * 任一任务抛出的运行时异常原样抛给调用方，其余未开始的任务被取消。
+ */
+@Service
+public class SeriesQueryExecutor {
+
+    private static final String THREAD_PREFIX = "series-query-";
+
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+
+    private final Counter parallelCounter;
+    private final Counter inlineCounter;
+
+    @Autowired
+    public SeriesQueryExecutor(@Value("${monitor.query.parallelism:8}") int parallelism,
+                               @Value("${monitor.query.max-queued:256}") int maxQueued,
+                               MeterRegistry meterRegistry) {
+        this.parallelism = Math.max(1, parallelism);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.parallelCounter = Counter.builder("monitor.query.fanout")
+                .description("多序列查询的执行方式")
+                .tag("mode", "parallel")
+                .register(meterRegistry);
+        this.inlineCounter = Counter.builder("monitor.query.fanout")
+                .description("多序列查询的执行方式")
+                .tag("mode", "inline")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 对每个元素执行 task，返回与 items 顺序一致的结果
+     */
+    public <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> task) {
+        List<R> results = new ArrayList<>(items.size());
+        if (items.size() <= 1 || parallelism <= 1 || Thread.currentThread().getName().startsWith(THREAD_PREFIX)) {
+            inlineCounter.increment();
+            for (T item : items) {
+                results.add(task.apply(item));
+            }
+            return results;
+        }
+        parallelCounter.increment();
+
+        List<Future<? extends R>> futures = new ArrayList<>(items.size() - 1);
+        try {
+            for (int i = 1; i < items.size(); i++) {
+                T item = items.get(i);
+                futures.add(executor.submit(() -> task.apply(item)));
+            }
+            results.add(task.apply(items.get(0)));
+            for (Future<? extends R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("多序列查询被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("多序列查询失败: " + cause.getMessage(), cause);
+        } finally {
+            if (results.size() < items.size()) {
+                for (Future<? extends R> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
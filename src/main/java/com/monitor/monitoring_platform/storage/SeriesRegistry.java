@@ -0,0 +1,113 @@
+//序列字典缓存：组件 + 指标 -> 序列ID，启动时从 metric_series 加载，新序列首次出现时注册
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.MetricSeries;
+import com.monitor.monitoring_platform.mapper.MetricSeriesMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 写入路径上每个样本都要查一次序列ID，所以按组件名分组、按 MetricField 下标存放，
+ * 查找只有一次哈希查找和一次数组读取，不创建对象。
+ * 目前平台自身的序列都没有附加标签（tags 为空串）。
+ */
+@Service
+public class SeriesRegistry {
+
+    private static final String NO_TAGS = "";
+
+    @Autowired
+    private MetricSeriesMapper metricSeriesMapper;
+
+    // 组件名 -> 各指标的序列ID（0 表示尚未注册）
+    private final Map<String, AtomicIntegerArray> idsByComponent = new ConcurrentHashMap<>();
+
+    // 序列ID -> 序列定义，供查询时反查
+    private final Map<Integer, MetricSeries> seriesById = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        try {
+            for (MetricSeries series : metricSeriesMapper.selectAll()) {
+                remember(series);
+            }
+            System.out.println("已加载 " + seriesById.size() + " 条指标序列");
+        } catch (Exception e) {
+            // 数据库暂不可用时不阻止启动，序列在首次写入时再注册
+            System.err.println("加载指标序列失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取序列ID，不存在时注册
+     */
+    public int resolve(String componentName, MetricField field) {
+        AtomicIntegerArray ids = idsByComponent.computeIfAbsent(componentName,
+                name -> new AtomicIntegerArray(MetricField.values().length));
+        int id = ids.get(field.ordinal());
+        if (id != 0) {
+            return id;
+        }
+        return register(componentName, field, ids);
+    }
+
+    /**
+     * 按ID获取序列定义，未知返回 null
+     */
+    public MetricSeries get(int seriesId) {
+        return seriesById.get(seriesId);
+    }
+
+    /**
+     * 某个组件已注册的全部序列
+     */
+    public List<MetricSeries> getComponentSeries(String componentName) {
+        List<MetricSeries> result = new ArrayList<>();
+        AtomicIntegerArray ids = idsByComponent.get(componentName);
+        if (ids != null) {
+            for (int i = 0; i < ids.length(); i++) {
+                MetricSeries series = ids.get(i) != 0 ? seriesById.get(ids.get(i)) : null;
+                if (series != null) {
+                    result.add(series);
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<MetricSeries> getAllSeries() {
+        return new ArrayList<>(seriesById.values());
+    }
+
+    private synchronized int register(String componentName, MetricField field, AtomicIntegerArray ids) {
+        int id = ids.get(field.ordinal());
+        if (id != 0) {
+            return id;
+        }
+        MetricSeries series = new MetricSeries(componentName, field.getMetricName(), NO_TAGS);
+        metricSeriesMapper.upsert(series);
+        remember(series);
+        return series.getId();
+    }
+
+    private void remember(MetricSeries series) {
+        seriesById.put(series.getId(), series);
+        if (!NO_TAGS.equals(series.getTags())) {
+            return;
+        }
+        MetricField field = MetricField.fromName(series.getMetricName());
+        if (field != null) {
+            idsByComponent.computeIfAbsent(series.getComponentName(),
+                    name -> new AtomicIntegerArray(MetricField.values().length))
+                    .set(field.ordinal(), series.getId());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+//带序列信息的样本回调：导出等跨序列的流式读取使用
+package com.monitor.monitoring_platform.storage;
+
+import com.monitor.monitoring_platform.entity.MetricSeries;
+
+import java.io.IOException;
+
+public interface SeriesSampleConsumer {
+
+    void accept(MetricSeries series, long timestampMs, double value) throws IOException;
+}
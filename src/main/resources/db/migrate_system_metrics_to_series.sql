@@ -0,0 +1,55 @@
+-- 把旧的宽表 system_metrics 迁移到 metric_series + metric_samples（手工执行一次）
+-- 前提：应用已按新版本启动过一次（schema.sql 已建好新表），或先手工执行 schema.sql。
+-- 旧表从未写入过 response_time_ms，不迁移该列。
+-- 各语句可重复执行；最后一步重命名旧表，确认数据无误后再删除 system_metrics_legacy。
+
+-- 1. 为旧表中出现过的每个 (组件, 非空指标列) 建立序列
+INSERT IGNORE INTO metric_series (component_name, metric_name, tags)
+SELECT DISTINCT component_name, 'cpu_usage', '' FROM system_metrics WHERE cpu_usage IS NOT NULL
+UNION
+SELECT DISTINCT component_name, 'mem_usage', '' FROM system_metrics WHERE mem_usage IS NOT NULL
+UNION
+SELECT DISTINCT component_name, 'disk_usage', '' FROM system_metrics WHERE disk_usage IS NOT NULL
+UNION
+SELECT DISTINCT component_name, 'network_rate', '' FROM system_metrics WHERE network_rate IS NOT NULL
+UNION
+SELECT DISTINCT component_name, 'process_count', '' FROM system_metrics WHERE process_count IS NOT NULL;
+
+-- 2. 每个非空列拆成一条样本（同一序列同一时刻有多行时保留最后写入的值）
+INSERT INTO metric_samples (series_id, ts, value)
+SELECT s.id, m.timestamp, m.cpu_usage
+FROM system_metrics m
+JOIN metric_series s ON s.component_name = m.component_name AND s.metric_name = 'cpu_usage' AND s.tags = ''
+WHERE m.cpu_usage IS NOT NULL AND m.timestamp IS NOT NULL
+ON DUPLICATE KEY UPDATE value = VALUES(value);
+
+INSERT INTO metric_samples (series_id, ts, value)
+SELECT s.id, m.timestamp, m.mem_usage
+FROM system_metrics m
+JOIN metric_series s ON s.component_name = m.component_name AND s.metric_name = 'mem_usage' AND s.tags = ''
+WHERE m.mem_usage IS NOT NULL AND m.timestamp IS NOT NULL
+ON DUPLICATE KEY UPDATE value = VALUES(value);
+
+INSERT INTO metric_samples (series_id, ts, value)
+SELECT s.id, m.timestamp, m.disk_usage
+FROM system_metrics m
+JOIN metric_series s ON s.component_name = m.component_name AND s.metric_name = 'disk_usage' AND s.tags = ''
+WHERE m.disk_usage IS NOT NULL AND m.timestamp IS NOT NULL
+ON DUPLICATE KEY UPDATE value = VALUES(value);
+
+INSERT INTO metric_samples (series_id, ts, value)
+SELECT s.id, m.timestamp, m.network_rate
+FROM system_metrics m
+JOIN metric_series s ON s.component_name = m.component_name AND s.metric_name = 'network_rate' AND s.tags = ''
+WHERE m.network_rate IS NOT NULL AND m.timestamp IS NOT NULL
+ON DUPLICATE KEY UPDATE value = VALUES(value);
+
+INSERT INTO metric_samples (series_id, ts, value)
+SELECT s.id, m.timestamp, m.process_count
+FROM system_metrics m
+JOIN metric_series s ON s.component_name = m.component_name AND s.metric_name = 'process_count' AND s.tags = ''
+WHERE m.process_count IS NOT NULL AND m.timestamp IS NOT NULL
+ON DUPLICATE KEY UPDATE value = VALUES(value);
+
+-- 3. 旧表改名保留，确认无误后可删除
+RENAME TABLE system_metrics TO system_metrics_legacy;
@@ -0,0 +1,22 @@
+-- 把按旧版 schema.sql 建好的未分区样本表、聚合表改为按天分区（手工执行一次）
+-- RetentionService 只维护已分区的表，遇到未分区的表会跳过并打印提示。
+-- ALTER TABLE ... PARTITION BY 会重建整张表，数据量大时请在低峰期执行。
+-- 执行后所有已有数据都在 p_future 中。RetentionService 首次运行时从保留期起点开始拆出按天的分区，
+-- 这一次需要搬移数据；保留期之前的数据落在第一个分区里，随即整个分区删除。
+-- 之后 p_future 始终为空，新增分区只改元数据。
+
+ALTER TABLE metric_samples PARTITION BY RANGE COLUMNS (ts) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+ALTER TABLE metric_rollup_1m PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+ALTER TABLE metric_rollup_5m PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+ALTER TABLE metric_rollup_1h PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
@@ -0,0 +1,114 @@
+-- 指标存储结构（启动时执行，spring.sql.init.mode=always，语句均可重复执行）
+-- 旧的宽表 system_metrics 迁移见 db/migrate_system_metrics_to_series.sql
+-- 样本表和聚合表按天分区（RANGE COLUMNS），建表时只有兜底分区 p_future，
+-- 按天的分区由 RetentionService 提前创建，过期时整个分区删除；已有的未分区表见 db/partition_metric_tables.sql
+
+-- 序列字典：一个组件的一个指标（加一组标签）是一条序列
+CREATE TABLE IF NOT EXISTS metric_series (
+    id             INT UNSIGNED NOT NULL AUTO_INCREMENT,
+    component_name VARCHAR(100) NOT NULL,
+    metric_name    VARCHAR(64)  NOT NULL,
+    tags           VARCHAR(512) NOT NULL DEFAULT '',
+    created_at     DATETIME(3)  NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_series (component_name, metric_name, tags)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- 样本窄表：每行只有序列ID、时间和值，按 (series_id, ts) 聚簇存储
+CREATE TABLE IF NOT EXISTS metric_samples (
+    series_id INT UNSIGNED NOT NULL,
+    ts        DATETIME(3)  NOT NULL,
+    value     DOUBLE       NOT NULL,
+    PRIMARY KEY (series_id, ts),
+    KEY idx_ts (ts)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (ts) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+-- 降采样聚合表：写入时按桶增量维护（RollupService），每个桶一行 min/max/sum/count/last
+-- 1m / 5m / 1h 三档结构相同，长时间范围的查询读较粗的一档
+CREATE TABLE IF NOT EXISTS metric_rollup_1m (
+    series_id    INT UNSIGNED NOT NULL,
+    bucket       DATETIME     NOT NULL,
+    min_value    DOUBLE       NOT NULL,
+    max_value    DOUBLE       NOT NULL,
+    sum_value    DOUBLE       NOT NULL,
+    sample_count INT UNSIGNED NOT NULL,
+    last_value   DOUBLE       NOT NULL,
+    last_ts      DATETIME(3)  NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS metric_rollup_5m (
+    series_id    INT UNSIGNED NOT NULL,
+    bucket       DATETIME     NOT NULL,
+    min_value    DOUBLE       NOT NULL,
+    max_value    DOUBLE       NOT NULL,
+    sum_value    DOUBLE       NOT NULL,
+    sample_count INT UNSIGNED NOT NULL,
+    last_value   DOUBLE       NOT NULL,
+    last_ts      DATETIME(3)  NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS metric_rollup_1h (
+    series_id    INT UNSIGNED NOT NULL,
+    bucket       DATETIME     NOT NULL,
+    min_value    DOUBLE       NOT NULL,
+    max_value    DOUBLE       NOT NULL,
+    sum_value    DOUBLE       NOT NULL,
+    sample_count INT UNSIGNED NOT NULL,
+    last_value   DOUBLE       NOT NULL,
+    last_ts      DATETIME(3)  NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+-- 分位数草图：延迟类序列（monitor.storage.rollup.sketch-metrics）每个聚合桶一个 DDSketch，
+-- 任意时间窗口的 p50/p95/p99 由几个草图合并得到。桶与同档的聚合表一一对应，分区和保留期也相同
+CREATE TABLE IF NOT EXISTS metric_sketch_1m (
+    series_id INT UNSIGNED NOT NULL,
+    bucket    DATETIME     NOT NULL,
+    sketch    VARBINARY(16384) NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS metric_sketch_5m (
+    series_id INT UNSIGNED NOT NULL,
+    bucket    DATETIME     NOT NULL,
+    sketch    VARBINARY(16384) NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS metric_sketch_1h (
+    series_id INT UNSIGNED NOT NULL,
+    bucket    DATETIME     NOT NULL,
+    sketch    VARBINARY(16384) NOT NULL,
+    PRIMARY KEY (series_id, bucket)
+) ENGINE = InnoDB
+PARTITION BY RANGE COLUMNS (bucket) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+-- 每个序列的最新值：LatestValueStore 在内存中维护，这张表只用于重启后恢复
+CREATE TABLE IF NOT EXISTS metric_latest (
+    series_id INT UNSIGNED NOT NULL,
+    ts        DATETIME(3)  NOT NULL,
+    value     DOUBLE       NOT NULL,
+    PRIMARY KEY (series_id)
+) ENGINE = InnoDB;
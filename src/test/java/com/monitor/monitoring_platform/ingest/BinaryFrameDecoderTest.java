@@ -0,0 +1,108 @@
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.MetricField;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 二进制帧解码：定义后的样本按序回调，越界的序列ID按格式错误处理
+ */
+class BinaryFrameDecoderTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    void decodesDefinedSeries() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        define(buffer, 3, "CPU/cpu_usage");
+        int start = startFrame(buffer, BinaryFrameDecoder.TYPE_SAMPLES);
+        buffer.putLong(BASE);
+        BinaryFrameDecoder.writeVarLong(buffer, 3);
+        sample(buffer, 3, 0, 12.5);
+        // 未定义的序列跳过
+        sample(buffer, 7, 1000, 1);
+        sample(buffer, 3, 1000, 13.5);
+        endFrame(buffer, start);
+        buffer.flip();
+
+        List<String> samples = new ArrayList<>();
+        int decoded = new BinaryFrameDecoder(1024).decode(buffer, (component, field, ts, value) ->
+                samples.add(component + " " + field + " " + (ts - BASE) + " " + value));
+        assertEquals(2, decoded);
+        assertEquals(List.of("CPU " + MetricField.CPU_USAGE + " 0 12.5", "CPU " + MetricField.CPU_USAGE + " 2000 13.5"),
+                samples);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void keepsIncompleteFrameForMoreData() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        define(buffer, 1, "CPU/cpu_usage");
+        int complete = buffer.position();
+        buffer.putInt(100).put(BinaryFrameDecoder.TYPE_SAMPLES);
+        buffer.flip();
+        assertEquals(0, new BinaryFrameDecoder(1024).decode(buffer, (component, field, ts, value) -> { }));
+        assertEquals(complete, buffer.position());
+    }
+
+    @Test
+    void rejectsSeriesIdOutOfRange() {
+        // 截断成 int 后是负数的 varint
+        long negativeAsInt = 0xFFFF_FFFFL;
+        ByteBuffer definition = ByteBuffer.allocate(64);
+        int start = startFrame(definition, BinaryFrameDecoder.TYPE_DEFINE);
+        BinaryFrameDecoder.writeVarLong(definition, negativeAsInt);
+        definition.putShort((short) 1).put((byte) 'x');
+        endFrame(definition, start);
+        definition.flip();
+        assertThrows(IllegalStateException.class,
+                () -> new BinaryFrameDecoder(1024).decode(definition, (component, field, ts, value) -> { }));
+
+        ByteBuffer samples = ByteBuffer.allocate(64);
+        start = startFrame(samples, BinaryFrameDecoder.TYPE_SAMPLES);
+        samples.putLong(BASE);
+        BinaryFrameDecoder.writeVarLong(samples, 1);
+        sample(samples, negativeAsInt, 0, 1);
+        endFrame(samples, start);
+        samples.flip();
+        assertThrows(IllegalStateException.class,
+                () -> new BinaryFrameDecoder(1024).decode(samples, (component, field, ts, value) -> { }));
+
+        ByteBuffer tooLarge = ByteBuffer.allocate(64);
+        define(tooLarge, 65536, "CPU/cpu_usage");
+        tooLarge.flip();
+        assertThrows(IllegalStateException.class,
+                () -> new BinaryFrameDecoder(1024).decode(tooLarge, (component, field, ts, value) -> { }));
+    }
+
+    private static void define(ByteBuffer buffer, long seriesId, String name) {
+        int start = startFrame(buffer, BinaryFrameDecoder.TYPE_DEFINE);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        BinaryFrameDecoder.writeVarLong(buffer, seriesId);
+        buffer.putShort((short) bytes.length).put(bytes);
+        endFrame(buffer, start);
+    }
+
+    private static void sample(ByteBuffer buffer, long seriesId, long delta, double value) {
+        BinaryFrameDecoder.writeVarLong(buffer, seriesId);
+        BinaryFrameDecoder.writeVarLong(buffer, BinaryFrameDecoder.zigzag(delta));
+        buffer.putDouble(value);
+    }
+
+    private static int startFrame(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.putInt(0).put(type);
+        return start;
+    }
+
+    private static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+}
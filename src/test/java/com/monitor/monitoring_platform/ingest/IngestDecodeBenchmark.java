@@ -0,0 +1,180 @@
+package com.monitor.monitoring_platform.ingest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.monitor.monitoring_platform.entity.MetricField;
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 二进制协议与 NDJSON 的解码吞吐对比：同一批数据（每行 3 个指标）分别编码，只计解码，不含 HTTP 和服务端其余部分。
+ * 类名不以 Test 结尾，默认的 mvn test 不运行；需要时单独执行：
+ * <pre>
+ * mvn test -Dtest=IngestDecodeBenchmark
+ * </pre>
+ * 先预热再计时，输出每个样本的耗时和每行的字节数。
+ */
+class IngestDecodeBenchmark {
+
+    private static final long BASE = 1_700_000_000_000L;
+    private static final String[] COMPONENTS = {"CPU", "Memory", "Disk-C", "Disk-D", "eth0", "api-gateway"};
+    private static final MetricField[] FIELDS = {MetricField.CPU_USAGE, MetricField.MEM_USAGE, MetricField.NETWORK_RATE};
+    private static final int ROWS = 100_000;
+    private static final int SAMPLES_PER_FRAME = 1024;
+    private static final int MAX_FRAME = 64 * 1024;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareDecodeThroughput() throws IOException {
+        ByteBuffer binary = encodeBinary();
+        String ndjson = encodeNdjson();
+        int samples = ROWS * FIELDS.length;
+
+        long binaryNanos = measure(() -> assertEquals(samples, decodeBinary(binary)));
+        ObjectMapper mapper = newMapper();
+        long jsonNanos = measure(() -> assertEquals(ROWS, decodeNdjson(mapper, ndjson)));
+
+        System.out.printf(Locale.ROOT, "二进制解码 %.1f ns/样本，%.1f 字节/行%n",
+                (double) binaryNanos / samples, (double) binary.remaining() / ROWS);
+        System.out.printf(Locale.ROOT, "NDJSON 解析 %.1f ns/样本，%.1f 字节/行%n",
+                (double) jsonNanos / samples, (double) ndjson.getBytes(StandardCharsets.UTF_8).length / ROWS);
+    }
+
+    /**
+     * 预热后取多轮中最快的一轮
+     */
+    private static long measure(Round round) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static int decodeBinary(ByteBuffer encoded) {
+        ByteBuffer buffer = encoded.duplicate();
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(MAX_FRAME);
+        int[] accepted = {0};
+        decoder.decode(buffer, (componentName, field, timestampMs, value) -> accepted[0]++);
+        return accepted[0];
+    }
+
+    private static int decodeNdjson(ObjectMapper mapper, String ndjson) throws IOException {
+        int rows = 0;
+        try (BufferedReader reader = new BufferedReader(new StringReader(ndjson))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                mapper.readValue(line, SystemMetrics.class);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 一个定义帧，之后每帧 SAMPLES_PER_FRAME 个样本；同一行的 3 个指标时间增量为 0
+     */
+    private static ByteBuffer encodeBinary() {
+        ByteBuffer out = ByteBuffer.allocate(ROWS * FIELDS.length * 16 + MAX_FRAME);
+        int frameStart = startFrame(out, BinaryFrameDecoder.TYPE_DEFINE);
+        for (int c = 0; c < COMPONENTS.length; c++) {
+            for (int f = 0; f < FIELDS.length; f++) {
+                byte[] name = (COMPONENTS[c] + "/" + FIELDS[f].getMetricName()).getBytes(StandardCharsets.UTF_8);
+                BinaryFrameDecoder.writeVarLong(out, (long) c * FIELDS.length + f);
+                out.putShort((short) name.length);
+                out.put(name);
+            }
+        }
+        endFrame(out, frameStart);
+
+        int samples = ROWS * FIELDS.length;
+        for (int first = 0; first < samples; first += SAMPLES_PER_FRAME) {
+            int count = Math.min(SAMPLES_PER_FRAME, samples - first);
+            frameStart = startFrame(out, BinaryFrameDecoder.TYPE_SAMPLES);
+            long previous = timestampOf(first / FIELDS.length);
+            out.putLong(previous);
+            BinaryFrameDecoder.writeVarLong(out, count);
+            for (int s = first; s < first + count; s++) {
+                int row = s / FIELDS.length;
+                int field = s % FIELDS.length;
+                long timestamp = timestampOf(row);
+                BinaryFrameDecoder.writeVarLong(out, (long) (row % COMPONENTS.length) * FIELDS.length + field);
+                BinaryFrameDecoder.writeVarLong(out, BinaryFrameDecoder.zigzag(timestamp - previous));
+                out.putDouble(valueOf(row, field));
+                previous = timestamp;
+            }
+            endFrame(out, frameStart);
+        }
+        out.flip();
+        return out;
+    }
+
+    private static String encodeNdjson() throws IOException {
+        ObjectMapper mapper = newMapper();
+        StringBuilder out = new StringBuilder(ROWS * 200);
+        for (int row = 0; row < ROWS; row++) {
+            SystemMetrics metrics = new SystemMetrics();
+            metrics.setComponentName(COMPONENTS[row % COMPONENTS.length]);
+            metrics.setTimestamp(MetricStorageService.toLocalDateTime(timestampOf(row)));
+            for (int f = 0; f < FIELDS.length; f++) {
+                FIELDS[f].apply(metrics, valueOf(row, f));
+            }
+            out.append(mapper.writeValueAsString(metrics)).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * 与 Spring Boot 默认的 ObjectMapper 配置一致
+     */
+    private static ObjectMapper newMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private static int startFrame(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putInt(0);
+        out.put(type);
+        return start;
+    }
+
+    private static void endFrame(ByteBuffer out, int frameStart) {
+        out.putInt(frameStart, out.position() - frameStart - 4);
+    }
+
+    /**
+     * 每个组件每秒一行
+     */
+    private static long timestampOf(int row) {
+        return BASE + (long) (row / COMPONENTS.length) * 1000;
+    }
+
+    private static double valueOf(int row, int field) {
+        return Math.round((20 + field * 15 + (row * 7 % 100) / 10.0) * 100) / 100.0;
+    }
+
+    private interface Round {
+        void run() throws IOException;
+    }
+}
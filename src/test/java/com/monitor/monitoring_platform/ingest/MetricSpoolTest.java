@@ -0,0 +1,169 @@
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地暂存的试探、补写顺序、重启后续补，以及补写的令牌桶限速
+ */
+class MetricSpoolTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+    private static final int DRAIN_RATE = 100;
+
+    @TempDir
+    Path dir;
+
+    private final List<MetricSpool> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(MetricSpool::close);
+    }
+
+    @Test
+    void probesWithSmallBatchThenDrainsInOrder() throws IOException {
+        MetricSpool spool = open(0);
+        spool.markUnavailable(new IllegalStateException("连接超时"));
+        assertTrue(spool.isSpooling());
+        assertTrue(spool.spool(rows(0, 15)));
+        assertEquals(15, spool.getBacklog());
+
+        // 暂存状态下只取一小批试探
+        List<SystemMetrics> probe = List.copyOf(spool.nextDrainBatch(100));
+        assertEquals(10, probe.size());
+        assertEquals(BASE, MetricStorageService.toEpochMillis(probe.get(0).getTimestamp()));
+        spool.drained(probe.size());
+        assertFalse(spool.isSpooling());
+        assertEquals(5, spool.getBacklog());
+
+        refill(spool, 10_000);
+        List<SystemMetrics> rest = List.copyOf(spool.nextDrainBatch(100));
+        assertEquals(5, rest.size());
+        assertEquals(BASE + 10_000, MetricStorageService.toEpochMillis(rest.get(0).getTimestamp()));
+        spool.drained(rest.size());
+        assertEquals(0, spool.getBacklog());
+        assertTrue(spool.nextDrainBatch(100).isEmpty());
+    }
+
+    @Test
+    void waitsForRetryIntervalBeforeProbing() throws IOException {
+        MetricSpool spool = open(60_000);
+        spool.markUnavailable(new IllegalStateException("连接超时"));
+        spool.spool(rows(0, 3));
+        assertTrue(spool.nextDrainBatch(100).isEmpty());
+        assertEquals(3, spool.getBacklog());
+    }
+
+    @Test
+    void failedDrainReturnsSameBatchAgain() throws IOException {
+        MetricSpool spool = open(0);
+        spool.markUnavailable(new IllegalStateException("连接超时"));
+        spool.spool(rows(0, 3));
+        List<SystemMetrics> first = List.copyOf(spool.nextDrainBatch(100));
+        // 写入失败不调用 drained，仍处于暂存状态
+        spool.markUnavailable(new IllegalStateException("仍然超时"));
+        List<SystemMetrics> second = List.copyOf(spool.nextDrainBatch(100));
+        assertEquals(first, second);
+    }
+
+    @Test
+    void tokenBucketLimitsDrainRate() throws IOException {
+        MetricSpool spool = open(0);
+        spool.markUnavailable(new IllegalStateException("连接超时"));
+        spool.spool(rows(0, 300));
+        spool.drained(spool.nextDrainBatch(10).size());
+        assertEquals(290, spool.getBacklog());
+
+        // 恢复后令牌从 0 开始，200ms 攒 20 个（另加测试本身耗费的时间）
+        refill(spool, 200);
+        int refilled = spool.nextDrainBatch(1000).size();
+        assertTrue(refilled >= 20 && refilled < 30, "补写 " + refilled + " 行");
+        spool.drained(refilled);
+
+        // 令牌上限是每秒的速率，空闲再久也不超过 DRAIN_RATE
+        refill(spool, 60_000);
+        assertEquals(DRAIN_RATE, spool.nextDrainBatch(1000).size());
+        // 单批不超过 maxRows，剩余的令牌留到下一批
+        assertEquals(30, spool.nextDrainBatch(30).size());
+        spool.drained(30);
+        refill(spool, 0);
+        int remaining = spool.nextDrainBatch(1000).size();
+        assertTrue(remaining >= DRAIN_RATE - 30 && remaining < DRAIN_RATE - 20, "补写 " + remaining + " 行");
+    }
+
+    @Test
+    void backlogSurvivesRestart() throws IOException {
+        MetricSpool spool = open(0);
+        spool.markUnavailable(new IllegalStateException("连接超时"));
+        spool.spool(rows(0, 4));
+        spool.close();
+        opened.remove(spool);
+
+        MetricSpool restarted = open(0);
+        assertEquals(4, restarted.getBacklog());
+        refill(restarted, 10_000);
+        List<SystemMetrics> batch = List.copyOf(restarted.nextDrainBatch(100));
+        assertEquals(4, batch.size());
+        assertEquals("CPU", batch.get(3).getComponentName());
+        assertEquals(BASE + 3000, MetricStorageService.toEpochMillis(batch.get(3).getTimestamp()));
+        restarted.drained(4);
+        assertEquals(0, restarted.getBacklog());
+    }
+
+    @Test
+    void classifiesUnavailableErrors() {
+        assertTrue(MetricSpool.isUnavailable(new DataAccessResourceFailureException("连接失败")));
+        assertTrue(MetricSpool.isUnavailable(new RuntimeException(new SQLTransientConnectionException("超时"))));
+        assertFalse(MetricSpool.isUnavailable(new IllegalArgumentException("数据错误")));
+    }
+
+    private MetricSpool open(long retryIntervalMs) {
+        MetricSpool spool = new MetricSpool();
+        ReflectionTestUtils.setField(spool, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spool, "enabled", true);
+        ReflectionTestUtils.setField(spool, "directory", dir.toString());
+        ReflectionTestUtils.setField(spool, "segmentBytes", 1L << 20);
+        ReflectionTestUtils.setField(spool, "drainRate", DRAIN_RATE);
+        ReflectionTestUtils.setField(spool, "retryIntervalMs", retryIntervalMs);
+        spool.open();
+        assertTrue(spool.isEnabled());
+        opened.add(spool);
+        return spool;
+    }
+
+    /**
+     * 把上次补充令牌的时间往前拨，下一次取批时按经过的时间补充
+     */
+    private static void refill(MetricSpool spool, long elapsedMs) {
+        ReflectionTestUtils.setField(spool, "tokensUpdatedAt", System.currentTimeMillis() - elapsedMs);
+    }
+
+    private static List<SystemMetrics> rows(int from, int count) {
+        List<SystemMetrics> rows = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            SystemMetrics row = new SystemMetrics();
+            row.setComponentName("CPU");
+            row.setTimestamp(MetricStorageService.toLocalDateTime(BASE + i * 1000L));
+            row.setCpuUsage((double) i);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
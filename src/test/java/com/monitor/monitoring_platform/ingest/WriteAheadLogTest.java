@@ -0,0 +1,181 @@
+package com.monitor.monitoring_platform.ingest;
+
+import com.monitor.monitoring_platform.entity.SystemMetrics;
+import com.monitor.monitoring_platform.storage.MetricStorageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 预写日志重启后的重放，以及末尾写了一半、校验和不符的记录被丢弃
+ */
+class WriteAheadLogTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedRecordsAfterReopen() throws IOException {
+        WriteAheadLog wal = open();
+        assertEquals(0, wal.append(row("CPU", BASE, 12.5)));
+        SystemMetrics partial = new SystemMetrics();
+        partial.setComponentName("磁盘-C");
+        partial.setTimestamp(MetricStorageService.toLocalDateTime(BASE + 1));
+        partial.setDiskUsage(512L);
+        partial.setResponseTimeMS(40);
+        assertEquals(1, wal.append(partial));
+        assertEquals(3, wal.appendAll(List.of(row("CPU", BASE + 2, 13.0), row("Memory", BASE + 3, 70.25))));
+        wal.awaitDurable(3);
+        wal.close();
+
+        WriteAheadLog reopened = open();
+        assertEquals(0, reopened.getReplayFrom());
+        assertEquals(4, reopened.getReplayTo());
+        assertEquals(4, reopened.getNextSequence());
+        List<SystemMetrics> rows = replay(reopened);
+        assertEquals(4, rows.size());
+        assertRow(rows.get(0), "CPU", BASE, 12.5);
+        assertEquals("磁盘-C", rows.get(1).getComponentName());
+        assertEquals(512L, (long) rows.get(1).getDiskUsage());
+        assertEquals(40, (int) rows.get(1).getResponseTimeMs());
+        assertNull(rows.get(1).getCpuUsage());
+        assertRow(rows.get(2), "CPU", BASE + 2, 13.0);
+        assertRow(rows.get(3), "Memory", BASE + 3, 70.25);
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsDropped() throws IOException {
+        WriteAheadLog wal = open();
+        wal.appendAll(List.of(row("CPU", BASE, 1), row("CPU", BASE + 1, 2), row("CPU", BASE + 2, 3)));
+        wal.close();
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        WriteAheadLog reopened = open();
+        assertEquals(2, reopened.getReplayTo());
+        List<SystemMetrics> rows = replay(reopened);
+        assertEquals(2, rows.size());
+        assertRow(rows.get(1), "CPU", BASE + 1, 2);
+        // 新记录从丢弃的那条的序号继续
+        assertEquals(2, reopened.append(row("CPU", BASE + 3, 4)));
+        reopened.close();
+    }
+
+    @Test
+    void corruptedRecordStopsReplay() throws IOException {
+        WriteAheadLog wal = open();
+        wal.appendAll(List.of(row("CPU", BASE, 1), row("CPU", BASE + 1, 2), row("CPU", BASE + 2, 3)));
+        wal.close();
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        // 第二条记录载荷的最后一个字节（数值的低位）
+        int recordLength = bytes.length / 3;
+        bytes[2 * recordLength - 1] ^= 0x01;
+        Files.write(segment, bytes);
+
+        WriteAheadLog reopened = open();
+        assertEquals(1, reopened.getReplayTo());
+        assertEquals(1, replay(reopened).size());
+        reopened.close();
+    }
+
+    @Test
+    void appendAllRejectsWholeBatchWithOverlongName() throws IOException {
+        WriteAheadLog wal = open();
+        String longName = "x".repeat(WriteAheadLog.MAX_NAME_BYTES + 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> wal.appendAll(List.of(row("CPU", BASE, 1), row(longName, BASE + 1, 2))));
+        assertEquals(0, wal.getNextSequence());
+        assertEquals(0, wal.append(row("CPU", BASE + 2, 3)));
+        wal.close();
+
+        WriteAheadLog reopened = open();
+        List<SystemMetrics> rows = replay(reopened);
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "CPU", BASE + 2, 3);
+        reopened.close();
+    }
+
+    @Test
+    void truncateDeletesPersistedSegments() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, 1, WriteAheadLog.FsyncPolicy.NONE);
+        wal.open();
+        // 段大小 1 字节：每次追加前都切换段
+        for (int i = 0; i < 4; i++) {
+            wal.append(row("CPU", BASE + i, i));
+        }
+        assertEquals(4, wal.getSegmentCount());
+        // 前两条已写入存储，但第二条的样本时间还没有持久化
+        assertEquals(1, wal.truncate(2, BASE + 1));
+        assertEquals(3, wal.getSegmentCount());
+        // 前三条都已写入存储并持久化，正在写的段保留
+        assertEquals(2, wal.truncate(3, Long.MAX_VALUE));
+        wal.close();
+
+        WriteAheadLog reopened = open();
+        assertEquals(3, reopened.getReplayFrom());
+        List<SystemMetrics> rows = replay(reopened);
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "CPU", BASE + 3, 3);
+        reopened.close();
+    }
+
+    private WriteAheadLog open() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir, 1 << 20, WriteAheadLog.FsyncPolicy.ALWAYS);
+        wal.open();
+        return wal;
+    }
+
+    private static List<SystemMetrics> replay(WriteAheadLog wal) throws IOException {
+        List<SystemMetrics> rows = new ArrayList<>();
+        assertEquals(wal.getReplayTo() - wal.getReplayFrom(), wal.replay(rows::add));
+        return rows;
+    }
+
+    /**
+     * 唯一一个有数据的段文件（重新打开后新开的段是空的）
+     */
+    private Path onlySegment() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path path : stream) {
+                if (Files.size(path) > 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private static SystemMetrics row(String component, long timestampMs, double cpu) {
+        SystemMetrics row = new SystemMetrics();
+        row.setComponentName(component);
+        row.setTimestamp(MetricStorageService.toLocalDateTime(timestampMs));
+        row.setCpuUsage(cpu);
+        return row;
+    }
+
+    private static void assertRow(SystemMetrics row, String component, long timestampMs, double cpu) {
+        assertEquals(component, row.getComponentName());
+        assertEquals(timestampMs, MetricStorageService.toEpochMillis(row.getTimestamp()));
+        assertEquals(cpu, (double) row.getCpuUsage());
+    }
+}
@@ -0,0 +1,206 @@
+package com.monitor.monitoring_platform.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 表达式解析与求值：运算符优先级、by/without 聚合、计数器重置、样本上限
+ */
+class QueryEvaluatorTest {
+
+    private static final long STEP = 10_000;
+
+    @Test
+    void arithmeticFollowsPrecedence() {
+        assertEquals(7.0, scalar("1 + 2 * 3"));
+        assertEquals(9.0, scalar("(1 + 2) * 3"));
+        assertEquals(-4.0, scalar("-2 * 3 + 10 % 4"));
+        assertEquals(1.0, scalar("8 - 4 - 2 - 1"));
+        assertEquals(2.0, scalar("8 / 2 / 2"));
+        // 比较运算的优先级最低，两个标量比较结果为 1 或 0
+        assertEquals(1.0, scalar("1 + 1 == 2"));
+        assertEquals(0.0, scalar("2 * 3 < 5"));
+
+        Expr.Binary add = assertInstanceOf(Expr.Binary.class, QueryParser.parse("a + b * c"));
+        assertEquals(QueryLexer.Type.ADD, add.op);
+        assertInstanceOf(Expr.Selector.class, add.lhs);
+        assertEquals(QueryLexer.Type.MUL, assertInstanceOf(Expr.Binary.class, add.rhs).op);
+    }
+
+    @Test
+    void parsesSelectorsAndRejectsMalformedQueries() {
+        Expr.Selector selector = assertInstanceOf(Expr.Selector.class,
+                QueryParser.parse("cpu{component=\"A\", host!~\"h.*\"}[1m30s]"));
+        assertEquals(90_000L, selector.rangeMs);
+        assertEquals(3, selector.matchers.size());
+        assertEquals(LabelMatcher.Op.NRE, selector.matchers.get(2).getOp());
+
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("sum(cpu"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("1 +"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("{host=\"\"}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("cpu[0s]"));
+        assertThrows(IllegalArgumentException.class, () -> evaluate("cpu[1m]", new ListSource(List.of()), 1000));
+    }
+
+    @Test
+    void aggregatesByAndWithoutLabels() {
+        ListSource source = new ListSource(List.of(
+                constant(Map.of("component", "A", "host", "h1"), 1),
+                constant(Map.of("component", "A", "host", "h2"), 2),
+                constant(Map.of("component", "B", "host", "h1"), 5)));
+
+        QueryResult sum = evaluate("sum by (component) (cpu)", source, 1000);
+        assertEquals(2, sum.getSeries().size());
+        assertEquals(Map.of("component", "A"), sum.getSeries().get(0).getLabels());
+        assertEquals(3.0, sum.getSeries().get(0).getValues()[0]);
+        assertEquals(Map.of("component", "B"), sum.getSeries().get(1).getLabels());
+        assertEquals(5.0, sum.getSeries().get(1).getValues()[0]);
+
+        // 分组子句也可以写在后面；without 同时去掉指标名
+        QueryResult max = evaluate("max(cpu) without (host)", source, 1000);
+        assertEquals(2, max.getSeries().size());
+        assertEquals(Map.of("component", "A"), max.getSeries().get(0).getLabels());
+        assertEquals(2.0, max.getSeries().get(0).getValues()[0]);
+
+        QueryResult count = evaluate("count(cpu > 1)", source, 1000);
+        assertEquals(1, count.getSeries().size());
+        assertEquals(Map.of(), count.getSeries().get(0).getLabels());
+        assertEquals(2.0, count.getSeries().get(0).getValues()[0]);
+    }
+
+    @Test
+    void rateAndIncreaseSurviveCounterReset() {
+        // 30s 时计数器从 20 重置，之后又增长 15
+        SampleSeries counter = new SampleSeries(labels("requests", Map.of()));
+        double[] values = {0, 10, 20, 5, 15};
+        for (int i = 0; i < values.length; i++) {
+            counter.accept(i * STEP, values[i]);
+        }
+        ListSource source = new ListSource(List.of(counter));
+        long end = 4 * STEP;
+
+        QueryResult increase = QueryEvaluator.evaluate("increase(requests[41s])", source, end, end, STEP, STEP, 1000);
+        assertEquals(35.0, increase.getSeries().get(0).getValues()[0]);
+        assertEquals(Map.of(), increase.getSeries().get(0).getLabels());
+
+        QueryResult rate = QueryEvaluator.evaluate("rate(requests[41s])", source, end, end, STEP, STEP, 1000);
+        assertEquals(35.0 / 40, rate.getSeries().get(0).getValues()[0], 1e-12);
+
+        // 窗口只含重置后的两个样本
+        QueryResult tail = QueryEvaluator.evaluate("increase(requests[11s])", source, end, end, STEP, STEP, 1000);
+        assertEquals(10.0, tail.getSeries().get(0).getValues()[0]);
+        // 窗口只含重置前后各一个样本：重置前的值全部计为增长
+        QueryResult across = QueryEvaluator.evaluate("increase(requests[11s])", source, 3 * STEP, 3 * STEP, STEP,
+                STEP, 1000);
+        assertEquals(5.0, across.getSeries().get(0).getValues()[0]);
+    }
+
+    @Test
+    void sampleBudgetAbortsWhileReading() {
+        int samples = 10 * SampleBudget.CHARGE_SAMPLES;
+        int[] read = new int[1];
+        SeriesSource streaming = new SeriesSource() {
+            @Override
+            public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs) {
+                throw new AssertionError("应走带 budget 的读取");
+            }
+
+            @Override
+            public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs,
+                                             long stepMs, long lookbackMs, SampleBudget budget) {
+                SampleSeries series = new SampleSeries(labels("cpu", Map.of()), budget);
+                for (int i = 0; i < samples; i++) {
+                    read[0]++;
+                    series.accept(i, i);
+                }
+                return List.of(series);
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () ->
+                QueryEvaluator.evaluate("max_over_time(cpu[1h])", streaming, samples, samples, STEP, STEP,
+                        2 * SampleBudget.CHARGE_SAMPLES));
+        // 在读到第三个记账块时就中止，不会把全部样本读完
+        assertEquals(3 * SampleBudget.CHARGE_SAMPLES, read[0]);
+
+        // 不按 budget 读取的来源，读取后按准确的样本数检查
+        SampleSeries small = new SampleSeries(labels("cpu", Map.of()));
+        for (int i = 0; i < 100; i++) {
+            small.accept(i, i);
+        }
+        ListSource source = new ListSource(List.of(small));
+        assertThrows(IllegalArgumentException.class, () ->
+                QueryEvaluator.evaluate("cpu", source, 99, 99, STEP, STEP, 99));
+        assertEquals(99.0, QueryEvaluator.evaluate("cpu", source, 99, 99, STEP, STEP, 100)
+                .getSeries().get(0).getValues()[0]);
+    }
+
+    @Test
+    void dropsSeriesWithoutData() {
+        SampleSeries early = new SampleSeries(labels("cpu", Map.of("component", "A")));
+        early.accept(0, 1);
+        SampleSeries late = new SampleSeries(labels("cpu", Map.of("component", "B")));
+        late.accept(5 * STEP, 2);
+        QueryResult result = QueryEvaluator.evaluate("cpu", new ListSource(List.of(early, late)),
+                4 * STEP, 6 * STEP, STEP, STEP, 1000);
+        assertEquals(1, result.getSeries().size());
+        double[] values = result.getSeries().get(0).getValues();
+        assertTrue(Double.isNaN(values[0]));
+        assertEquals(2.0, values[1]);
+        // 窗口左开：样本恰好在 lookback 之前时不再可见
+        assertTrue(Double.isNaN(values[2]));
+    }
+
+    private static double scalar(String query) {
+        QueryResult result = QueryEvaluator.evaluate(query, new ListSource(List.of()), 0, 0, STEP, STEP, 1000);
+        assertTrue(result.isScalar());
+        return result.getScalar()[0];
+    }
+
+    private static QueryResult evaluate(String query, SeriesSource source, long maxSamples) {
+        return QueryEvaluator.evaluate(query, source, 0, 0, STEP, STEP, maxSamples);
+    }
+
+    private static SampleSeries constant(Map<String, String> labels, double value) {
+        SampleSeries series = new SampleSeries(labels("cpu", labels));
+        series.accept(0, value);
+        return series;
+    }
+
+    private static Map<String, String> labels(String name, Map<String, String> labels) {
+        Map<String, String> all = new TreeMap<>(labels);
+        all.put(QueryEvaluator.NAME_LABEL, name);
+        return all;
+    }
+
+    /**
+     * 固定的一组序列，忽略时间范围
+     */
+    private static final class ListSource implements SeriesSource {
+        private final List<SampleSeries> series;
+
+        ListSource(List<SampleSeries> series) {
+            this.series = series;
+        }
+
+        @Override
+        public List<SampleSeries> select(List<LabelMatcher> matchers, long fromMs, long toMs) {
+            List<SampleSeries> result = new ArrayList<>();
+            for (SampleSeries s : series) {
+                if (LabelMatcher.matchesAll(matchers, s.getLabels())) {
+                    result.add(s);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.monitor.monitoring_platform.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 区间函数与逐步暴力计算对照：不规则时间戳、窗口为空、窗口比步长大或小
+ */
+class RangeFunctionsTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void windowsMatchBruteForce() {
+        Random random = new Random(42);
+        SampleSeries series = new SampleSeries(Map.of());
+        long t = START;
+        for (int i = 0; i < 2000; i++) {
+            // 间隔 0~30s，中间偶尔有长时间空白
+            t += random.nextInt(10) == 0 ? 120_000 : random.nextInt(30_000);
+            series.accept(t, random.nextInt(5) == 0 ? 7 : random.nextGaussian() * 100);
+        }
+
+        int steps = 400;
+        for (long step : new long[]{15_000, 60_000}) {
+            for (long range : new long[]{10_000, 60_000, 300_000}) {
+                for (double q : new double[]{0, 0.25, 0.5, 0.9, 1}) {
+                    check("quantile_over_time", series, step, steps, range, q);
+                }
+                check("min_over_time", series, step, steps, range, 0);
+                check("max_over_time", series, step, steps, range, 0);
+                check("avg_over_time", series, step, steps, range, 0);
+                check("count_over_time", series, step, steps, range, 0);
+            }
+        }
+    }
+
+    @Test
+    void quantileInterpolatesBetweenRanks() {
+        double[] sorted = {1, 2, 4, 8};
+        assertEquals(1.0, RangeFunctions.quantileOfSorted(sorted, 4, 0));
+        assertEquals(8.0, RangeFunctions.quantileOfSorted(sorted, 4, 1));
+        assertEquals(3.0, RangeFunctions.quantileOfSorted(sorted, 4, 0.5));
+        assertEquals(3.0, RangeFunctions.quantileOfSorted(sorted, 3, 0.75), 1e-12);
+        assertEquals(Double.NEGATIVE_INFINITY, RangeFunctions.quantileOfSorted(sorted, 4, -0.1));
+        assertEquals(Double.POSITIVE_INFINITY, RangeFunctions.quantileOfSorted(sorted, 4, 1.1));
+        assertTrue(Double.isNaN(RangeFunctions.quantileOfSorted(sorted, 4, Double.NaN)));
+    }
+
+    private static void check(String name, SampleSeries series, long step, int steps, long range, double q) {
+        double[] actual = RangeFunctions.apply(name, series, START, step, steps, range, q);
+        assertEquals(steps, actual.length);
+        for (int i = 0; i < steps; i++) {
+            double expected = bruteForce(name, series, START + i * step, range, q);
+            String message = name + " step=" + step + " range=" + range + " q=" + q + " i=" + i;
+            if (Double.isNaN(expected)) {
+                assertTrue(Double.isNaN(actual[i]), message);
+            } else {
+                assertEquals(expected, actual[i], 1e-9 * Math.max(1, Math.abs(expected)), message);
+            }
+        }
+    }
+
+    private static double bruteForce(String name, SampleSeries series, long t, long range, double q) {
+        double[] window = new double[series.size()];
+        int count = 0;
+        for (int j = 0; j < series.size(); j++) {
+            long ts = series.getTimestamps()[j];
+            if (ts > t - range && ts <= t) {
+                window[count++] = series.getValues()[j];
+            }
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        window = Arrays.copyOf(window, count);
+        Arrays.sort(window);
+        return switch (name) {
+            case "min_over_time" -> window[0];
+            case "max_over_time" -> window[count - 1];
+            case "avg_over_time" -> Arrays.stream(window).sum() / count;
+            case "count_over_time" -> count;
+            default -> {
+                double rank = q * (count - 1);
+                int below = (int) rank;
+                double weight = rank - below;
+                yield below + 1 < count ? window[below] + (window[below + 1] - window[below]) * weight : window[below];
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.monitor.monitoring_platform.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ChunkEncoder / ChunkDecoder 往返：数值按位比较（NaN、-0.0 也要原样还原），
+ * 时间戳和数值的差值取在各编码宽度的边界两侧
+ */
+class ChunkCodecTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    void specialValuesRoundTripBitExact() {
+        double[] values = {0.0, -0.0, 0.0, Double.NaN, Double.NaN, 1.25, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, Double.MIN_VALUE,
+                Double.MAX_VALUE, -Double.MAX_VALUE, 1e13, 99999999999.99, -0.01, 0.01};
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = BASE + i * 1000L;
+        }
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void nonCanonicalNaNKeepsItsBits() {
+        double nan = Double.longBitsToDouble(0x7ff8_0000_dead_beefL);
+        assertRoundTrip(new long[]{BASE, BASE + 1000, BASE + 2000}, new double[]{1.5, nan, 1.5});
+    }
+
+    @Test
+    void deltaOfDeltaWidthBoundaries() {
+        long[] dods = {0, 1, -1, 64, -63, 65, -64, 256, -255, 257, -256, 2048, -2047, 2049, -2048,
+                1L << 40, -(1L << 40)};
+        List<Long> timestamps = new ArrayList<>();
+        long timestamp = BASE;
+        long delta = 10_000;
+        timestamps.add(timestamp);
+        timestamp += delta;
+        timestamps.add(timestamp);
+        for (long dod : dods) {
+            delta += dod;
+            timestamp += delta;
+            timestamps.add(timestamp);
+            // 每个边界值之后回到原来的间隔，下一次的 dod 就是 -dod
+            delta -= dod;
+            timestamp += delta;
+            timestamps.add(timestamp);
+        }
+        long[] ts = timestamps.stream().mapToLong(Long::longValue).toArray();
+        double[] values = new double[ts.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 3;
+        }
+        assertRoundTrip(ts, values);
+    }
+
+    @Test
+    void decimalDeltaWidthBoundaries() {
+        long[] deltas = {1, -1, 64, -63, 65, -64, 2048, -2047, 2049, -2048, 524288, -524287, 524289, -524288};
+        List<Double> values = new ArrayList<>();
+        long scaled = 5_000_000;
+        values.add(scaled / 100.0);
+        for (long d : deltas) {
+            scaled += d;
+            values.add(scaled / 100.0);
+            scaled -= d;
+            values.add(scaled / 100.0);
+        }
+        double[] v = values.stream().mapToDouble(Double::doubleValue).toArray();
+        long[] ts = new long[v.length];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = BASE + i * 1000L;
+        }
+        assertRoundTrip(ts, v);
+    }
+
+    @Test
+    void xorWindowReuseAndReset() {
+        // 第三个值的有效位落在上一个窗口内（复用），之后前导零超过 31 的差异、整个尾数都变的差异各换一次窗口
+        double a = 3.14159;
+        double b = Double.longBitsToDouble(Double.doubleToRawLongBits(a) ^ 0x0000_00ff_0000_0000L);
+        double c = Double.longBitsToDouble(Double.doubleToRawLongBits(b) ^ 0x0000_0011_0000_0000L);
+        double d = Double.longBitsToDouble(Double.doubleToRawLongBits(c) ^ 0x1L);
+        double e = Double.longBitsToDouble(Double.doubleToRawLongBits(d) ^ 0x8000_0000_0000_0001L);
+        double f = Double.longBitsToDouble(Double.doubleToRawLongBits(e) ^ 0x000f_ffff_ffff_ffffL);
+        assertRoundTrip(new long[]{BASE, BASE + 1, BASE + 2, BASE + 3, BASE + 4, BASE + 5},
+                new double[]{a, b, c, d, e, f});
+    }
+
+    @Test
+    void mixesDecimalAndXorEncodings() {
+        double[] values = {12.34, 12.35, Math.PI, 12.35, 12.35, Math.E, -0.0, 0.0, 1e15, 1e15 + 0.5, 42.0};
+        long[] ts = new long[values.length];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = BASE + i * 15_000L;
+        }
+        assertRoundTrip(ts, values);
+    }
+
+    @Test
+    void regularSeriesTakesAboutTwoBitsPerSample() {
+        ChunkEncoder encoder = new ChunkEncoder(1000);
+        for (int i = 0; i < 1000; i++) {
+            encoder.append(BASE + i * 1000L, 55.5);
+        }
+        // 第一个样本 128 位；第二个样本的间隔相对 0 是 '1110' + 12 位，之后每个样本时间戳 1 位 + 数值 1 位
+        assertEquals((128 + 16 + 1 + 998 * 2 + 7) / 8, encoder.getByteLength());
+    }
+
+    @Test
+    void decodeFiltersByTimeRange() {
+        ChunkEncoder encoder = new ChunkEncoder(10);
+        for (int i = 0; i < 10; i++) {
+            encoder.append(BASE + i * 1000L, i);
+        }
+        Chunk chunk = encoder.seal(7);
+        List<Long> seen = new ArrayList<>();
+        int emitted = chunk.scan(BASE + 2000, BASE + 5000, (ts, value) -> seen.add(ts));
+        assertEquals(4, emitted);
+        assertEquals(List.of(BASE + 2000, BASE + 3000, BASE + 4000, BASE + 5000), seen);
+        assertEquals(0, chunk.scan(BASE + 10_000, BASE + 20_000, (ts, value) -> { }));
+        assertEquals(BASE, chunk.getMinTimestamp());
+        assertEquals(BASE + 9000, chunk.getMaxTimestamp());
+        assertEquals(9.0, chunk.getLastValue());
+    }
+
+    @Test
+    void emptyChunkDecodesNothing() {
+        assertEquals(0, ChunkDecoder.decode(ByteBuffer.allocate(0), 0, 0, 0, Long.MIN_VALUE, Long.MAX_VALUE,
+                (ts, value) -> { throw new AssertionError(); }));
+    }
+
+    static void assertRoundTrip(long[] timestamps, double[] values) {
+        ChunkEncoder encoder = new ChunkEncoder(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        assertEquals(timestamps.length, encoder.getCount());
+        assertEquals(Double.doubleToRawLongBits(values[values.length - 1]),
+                Double.doubleToRawLongBits(encoder.getLastValue()));
+        assertSamples(encoder.seal(1), timestamps, values);
+    }
+
+    static void assertSamples(Chunk chunk, long[] timestamps, double[] values) {
+        List<long[]> decoded = new ArrayList<>();
+        int emitted = chunk.scan(Long.MIN_VALUE, Long.MAX_VALUE,
+                (ts, value) -> decoded.add(new long[]{ts, Double.doubleToRawLongBits(value)}));
+        assertEquals(timestamps.length, emitted);
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], decoded.get(i)[0], "第 " + i + " 个时间戳");
+            assertEquals(Double.doubleToRawLongBits(values[i]), decoded.get(i)[1],
+                    "第 " + i + " 个值 " + values[i]);
+        }
+    }
+}
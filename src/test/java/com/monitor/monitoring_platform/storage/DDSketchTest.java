@@ -0,0 +1,174 @@
+package com.monitor.monitoring_platform.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DDSketch：序列化往返、合并与整体构建一致、相对误差上限、超出 maxBins 时的低端合并、不同精度的合并
+ */
+class DDSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        DDSketch sketch = new DDSketch(0.01, 2048);
+        double[] values = latencies(new Random(1), 5000);
+        for (double v : values) {
+            sketch.add(v);
+        }
+        sketch.add(0);
+        sketch.add(-3);
+
+        DDSketch decoded = DDSketch.decode(sketch.encode(), 2048);
+        assertEquals(sketch.getCount(), decoded.getCount());
+        assertEquals(sketch.getMin(), decoded.getMin());
+        assertEquals(sketch.getMax(), decoded.getMax());
+        assertEquals(sketch.getRelativeAccuracy(), decoded.getRelativeAccuracy());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), decoded.quantile(q), "q=" + q);
+        }
+        assertArrayEquals(sketch.encode(), decoded.encode());
+
+        DDSketch empty = DDSketch.decode(new DDSketch(0.02, 64).encode(), 64);
+        assertEquals(0L, empty.getCount());
+        assertTrue(Double.isNaN(empty.quantile(0.5)));
+
+        byte[] unknownVersion = sketch.encode();
+        unknownVersion[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.decode(unknownVersion, 2048));
+    }
+
+    @Test
+    void mergeEqualsUnion() {
+        Random random = new Random(2);
+        DDSketch left = new DDSketch(0.01, 2048);
+        DDSketch right = new DDSketch(0.01, 2048);
+        DDSketch union = new DDSketch(0.01, 2048);
+        for (double v : latencies(random, 3000)) {
+            left.add(v);
+            union.add(v);
+        }
+        // 右侧的数值范围更高，合并时左侧的数组要向上扩展
+        for (double v : latencies(random, 2000)) {
+            right.add(v * 1000);
+            union.add(v * 1000);
+        }
+        byte[] rightBefore = right.encode();
+
+        left.merge(right);
+        assertEquals(union.getCount(), left.getCount());
+        assertEquals(union.getMin(), left.getMin());
+        assertEquals(union.getMax(), left.getMax());
+        for (double q : QUANTILES) {
+            assertEquals(union.quantile(q), left.quantile(q), "q=" + q);
+        }
+        assertArrayEquals(union.encode(), left.encode());
+        assertArrayEquals(rightBefore, right.encode());
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        for (double accuracy : new double[]{0.005, 0.01, 0.05}) {
+            DDSketch sketch = new DDSketch(accuracy, 4096);
+            double[] values = latencies(new Random(3), 20_000);
+            for (double v : values) {
+                sketch.add(v);
+            }
+            Arrays.sort(values);
+            assertWithin(sketch, values, accuracy);
+            assertEquals(values[0], sketch.getMin());
+            assertEquals(values[values.length - 1], sketch.getMax());
+        }
+    }
+
+    @Test
+    void collapsesLowestBinsBeyondMaxBins() {
+        DDSketch sketch = new DDSketch(0.01, 8);
+        double[] values = new double[4000];
+        for (int i = 0; i < 1000; i++) {
+            values[i] = 1;
+            values[1000 + i] = 10;
+            values[2000 + i] = 100;
+            values[3000 + i] = 1000 + i * 0.1;
+        }
+        for (double v : values) {
+            sketch.add(v);
+        }
+
+        assertTrue(((long[]) ReflectionTestUtils.getField(sketch, "counts")).length <= 8);
+        assertEquals(4000L, sketch.getCount());
+        assertEquals(1.0, sketch.getMin());
+        assertEquals(1099.9, sketch.getMax());
+        // 最高的样本仍然精确；更低的样本并入保留的最低桶，估计偏大但不超过最大值
+        for (double q : new double[]{0.8, 0.9, 0.99, 1}) {
+            double exact = values[(int) Math.floor(q * (values.length - 1))];
+            assertEquals(exact, sketch.quantile(q), 0.01 * exact, "q=" + q);
+        }
+        assertTrue(sketch.quantile(0.1) > 100, "低端被并入保留的最低桶");
+        assertTrue(sketch.quantile(0.1) <= sketch.getMax());
+
+        DDSketch decoded = DDSketch.decode(sketch.encode(), 8);
+        assertEquals(sketch.quantile(0.9), decoded.quantile(0.9));
+    }
+
+    @Test
+    void mergeAcrossAccuraciesKeepsExactMinMax() {
+        Random random = new Random(4);
+        DDSketch fine = new DDSketch(0.01, 2048);
+        DDSketch coarse = new DDSketch(0.05, 2048);
+        double[] fineValues = latencies(random, 3000);
+        double[] coarseValues = latencies(random, 3000);
+        for (double v : fineValues) {
+            fine.add(v);
+        }
+        for (double v : coarseValues) {
+            coarse.add(v);
+        }
+        double[] all = new double[fineValues.length + coarseValues.length];
+        System.arraycopy(fineValues, 0, all, 0, fineValues.length);
+        System.arraycopy(coarseValues, 0, all, fineValues.length, coarseValues.length);
+        Arrays.sort(all);
+
+        // 两个方向都合并：最小、最大值必须是真实样本，不能是粗精度桶的代表值
+        DDSketch intoFine = fine.copy();
+        intoFine.merge(coarse);
+        DDSketch intoCoarse = coarse.copy();
+        intoCoarse.merge(fine);
+        for (DDSketch merged : new DDSketch[]{intoFine, intoCoarse}) {
+            assertEquals((long) all.length, merged.getCount());
+            assertEquals(all[0], merged.getMin());
+            assertEquals(all[all.length - 1], merged.getMax());
+            // 重新分桶的误差叠加：(1 + 0.01)(1 + 0.05) - 1
+            assertWithin(merged, all, 0.0605);
+        }
+    }
+
+    private static void assertWithin(DDSketch sketch, double[] sorted, double accuracy) {
+        for (double q : QUANTILES) {
+            double exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            double estimate = sketch.quantile(q);
+            assertTrue(Math.abs(estimate - exact) <= accuracy * exact * (1 + 1e-9),
+                    "q=" + q + " exact=" + exact + " estimate=" + estimate + " accuracy=" + accuracy);
+        }
+    }
+
+    /**
+     * 对数正态分布的延迟（毫秒），跨越几个数量级
+     */
+    private static double[] latencies(Random random, int n) {
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.exp(3 + 1.5 * random.nextGaussian());
+        }
+        return values;
+    }
+}
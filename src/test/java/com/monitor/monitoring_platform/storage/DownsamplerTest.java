@@ -0,0 +1,148 @@
+package com.monitor.monitoring_platform.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LTTB 与最小/最大值降采样：输出点数上限、首末点、尖峰保留、时间有序
+ */
+class DownsamplerTest {
+
+    private static final long FROM = 1_700_000_000_000L;
+    private static final long STEP = 1000;
+
+    @Test
+    void lttbKeepsEndpointsAndSpikeWithinLimit() {
+        int n = 10_000;
+        List<Map<String, Object>> points = run(Downsampler.create("lttb", FROM, FROM + n * STEP, 100), n, i ->
+                i == 4321 ? 500.0 : 50 + 10 * Math.sin(i / 100.0));
+
+        assertTrue(points.size() <= 100, "输出 " + points.size() + " 个点");
+        assertEquals(FROM, ts(points.get(0)));
+        assertEquals(FROM + (n - 1) * STEP, ts(points.get(points.size() - 1)));
+        assertTrue(points.stream().anyMatch(p -> value(p) == 500.0), "尖峰被保留");
+        assertIncreasing(points);
+    }
+
+    @Test
+    void lttbPassesSparseInputThrough() {
+        // 每个点落在不同的桶里，全部保留
+        List<Map<String, Object>> points = run(new LttbDownsampler(FROM, FROM + 100 * STEP, 50), 100, i -> 0, 20);
+        assertEquals(5, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(FROM + i * 20 * STEP, ts(points.get(i)));
+        }
+    }
+
+    @Test
+    void lttbHandlesTinyInputs() {
+        assertEquals(0, run(new LttbDownsampler(FROM, FROM + STEP, 3), 0, i -> 1).size());
+        assertEquals(1, run(new LttbDownsampler(FROM, FROM + STEP, 3), 1, i -> 1).size());
+        List<Map<String, Object>> two = run(new LttbDownsampler(FROM, FROM + 2 * STEP, 3), 2, i -> i);
+        assertEquals(2, two.size());
+        assertEquals(1.0, value(two.get(1)));
+    }
+
+    @Test
+    void lttbSkipsNaN() {
+        List<Map<String, Object>> points = run(new LttbDownsampler(FROM, FROM + 10 * STEP, 20), 10,
+                i -> i % 2 == 0 ? Double.NaN : i);
+        assertEquals(5, points.size());
+        assertTrue(points.stream().noneMatch(p -> Double.isNaN(value(p))));
+    }
+
+    @Test
+    void minMaxKeepsBothExtremesPerBucketInTimeOrder() {
+        int n = 1000;
+        // 10 个桶，每桶 100 个点；第 3 个桶里先有低谷后有尖峰
+        List<Map<String, Object>> points = run(Downsampler.create("MinMax", FROM, FROM + n * STEP, 20), n, i ->
+                i == 250 ? -40.0 : i == 260 ? 900.0 : 10 + (i % 7));
+
+        assertTrue(points.size() <= 20, "输出 " + points.size() + " 个点");
+        assertEquals(20, points.size());
+        assertEquals(FROM + 250 * STEP, ts(points.get(4)));
+        assertEquals(-40.0, value(points.get(4)));
+        assertEquals(FROM + 260 * STEP, ts(points.get(5)));
+        assertEquals(900.0, value(points.get(5)));
+        assertIncreasing(points);
+    }
+
+    @Test
+    void minMaxEmitsMaxFirstWhenItComesFirst() {
+        List<Map<String, Object>> points = run(new MinMaxDownsampler(FROM, FROM + 10 * STEP, 2), 10,
+                i -> i == 2 ? 9.0 : i == 7 ? -9.0 : 0);
+        assertEquals(2, points.size());
+        assertEquals(9.0, value(points.get(0)));
+        assertEquals(-9.0, value(points.get(1)));
+    }
+
+    @Test
+    void minMaxConstantBucketEmitsOnePoint() {
+        List<Map<String, Object>> points = run(new MinMaxDownsampler(FROM, FROM + 10 * STEP, 4), 10, i -> 3.5);
+        assertEquals(2, points.size());
+        assertEquals(3.5, value(points.get(0)));
+        assertEquals(3.5, value(points.get(1)));
+    }
+
+    @Test
+    void minMaxMergesLateSampleIntoCurrentBucket() {
+        Downsampler downsampler = new MinMaxDownsampler(FROM, FROM + 10 * STEP, 4);
+        downsampler.accept(FROM, 1);
+        downsampler.accept(FROM + 6 * STEP, 2);
+        // 属于第一个桶的迟到样本并入当前桶，成为它的最大值，按时间排在前面
+        downsampler.accept(FROM + STEP, 5);
+        downsampler.finish();
+        List<Map<String, Object>> points = downsampler.getPoints();
+        assertEquals(3, points.size());
+        assertEquals(FROM + STEP, ts(points.get(1)));
+        assertEquals(5.0, value(points.get(1)));
+        assertEquals(2.0, value(points.get(2)));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> Downsampler.create("avg", FROM, FROM + STEP, 10));
+        assertThrows(IllegalArgumentException.class, () -> new LttbDownsampler(FROM, FROM + STEP, 2));
+        assertThrows(IllegalArgumentException.class, () -> new MinMaxDownsampler(FROM, FROM + STEP, 1));
+        assertInstanceOf(LttbDownsampler.class, Downsampler.create(null, FROM, FROM + STEP, 10));
+    }
+
+    private static List<Map<String, Object>> run(Downsampler downsampler, int n, IntToDoubleFunction value) {
+        return run(downsampler, n, value, 1);
+    }
+
+    /**
+     * 每隔 stride 个 STEP 输入一个点，共 n / stride 个
+     */
+    private static List<Map<String, Object>> run(Downsampler downsampler, int n,
+                                                 IntToDoubleFunction value, int stride) {
+        for (int i = 0; i < n; i += stride) {
+            downsampler.accept(FROM + i * STEP, value.applyAsDouble(i));
+        }
+        downsampler.finish();
+        assertEquals(downsampler.size(), downsampler.getPoints().size());
+        return downsampler.getPoints();
+    }
+
+    private static void assertIncreasing(List<Map<String, Object>> points) {
+        for (int i = 1; i < points.size(); i++) {
+            assertTrue(ts(points.get(i - 1)) < ts(points.get(i)), "第 " + i + " 个点时间有序");
+        }
+    }
+
+    private static long ts(Map<String, Object> point) {
+        return (Long) point.get("ts");
+    }
+
+    private static double value(Map<String, Object> point) {
+        return (Double) point.get("value");
+    }
+}
@@ -0,0 +1,150 @@
+package com.monitor.monitoring_platform.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 热数据层的乱序插入和环形覆盖：每个序列 16 个槽位（1 小时 / 225 秒）
+ */
+class HotTierTest {
+
+    private static final int CAPACITY = 16;
+
+    private HotTier hotTier;
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        hotTier = newHotTier(1L << 30);
+        // 样本时间都在启动之后，才在覆盖范围内
+        base = System.currentTimeMillis() + 60_000;
+    }
+
+    @Test
+    void scansAppendedSamplesInRange() {
+        for (int i = 0; i < 5; i++) {
+            hotTier.append(1, base + i * 1000L, i);
+        }
+        List<long[]> samples = scan(1, base + 1000, base + 3000);
+        assertEquals(3, samples.size());
+        assertEquals(base + 1000, samples.get(0)[0]);
+        assertEquals(base + 3000, samples.get(2)[0]);
+        assertEquals(0, hotTier.scan(1, base + 10_000, base + 20_000, (ts, value) -> { }));
+        assertEquals(0, hotTier.scan(2, base, base + 20_000, (ts, value) -> { }), "没有写入过的序列");
+    }
+
+    @Test
+    void lateSampleIsInsertedInTimeOrder() {
+        hotTier.append(1, base + 1000, 1);
+        hotTier.append(1, base + 4000, 4);
+        hotTier.append(1, base + 3000, 3);
+        hotTier.append(1, base + 2000, 2);
+        hotTier.append(1, base, 0);
+
+        assertEquals(List.of(base, base + 1000, base + 2000, base + 3000, base + 4000), timestamps(scan(1, base, base + 4000)));
+        assertEquals(List.of(0.0, 1.0, 2.0, 3.0, 4.0), values(scan(1, base, base + 4000)));
+    }
+
+    @Test
+    void sampleAtExistingTimestampOverwrites() {
+        hotTier.append(1, base, 1);
+        hotTier.append(1, base + 1000, 2);
+        hotTier.append(1, base, 10);
+        hotTier.append(1, base + 1000, 20);
+        assertEquals(List.of(10.0, 20.0), values(scan(1, base, base + 1000)));
+    }
+
+    @Test
+    void ringWrapDropsOldestAndMovesCoverage() {
+        for (int i = 0; i < CAPACITY + 4; i++) {
+            hotTier.append(1, base + i * 1000L, i);
+        }
+        long oldest = base + 4000;
+        assertEquals(oldest, hotTier.coveredFrom(1));
+        assertEquals(-1, hotTier.scan(1, base, base + 100_000, (ts, value) -> { }), "范围起点已被覆盖");
+
+        List<long[]> samples = scan(1, oldest, base + 100_000);
+        assertEquals(CAPACITY, samples.size());
+        assertEquals(oldest, samples.get(0)[0]);
+        assertEquals(base + (CAPACITY + 3) * 1000L, samples.get(CAPACITY - 1)[0]);
+    }
+
+    @Test
+    void lateSampleIntoFullRingDropsOldest() {
+        for (int i = 0; i < CAPACITY; i++) {
+            hotTier.append(1, base + i * 2000L, i);
+        }
+        hotTier.append(1, base + 5000, 99);
+
+        assertEquals(base + 2000, hotTier.coveredFrom(1));
+        List<long[]> samples = scan(1, base + 2000, Long.MAX_VALUE);
+        assertEquals(CAPACITY, samples.size());
+        List<Long> ts = timestamps(samples);
+        for (int i = 1; i < ts.size(); i++) {
+            assertTrue(ts.get(i - 1) < ts.get(i), "时间有序");
+        }
+        assertTrue(ts.contains(base + 5000));
+    }
+
+    @Test
+    void lateSampleOlderThanWrappedRingIsIgnored() {
+        for (int i = 0; i < CAPACITY + 1; i++) {
+            hotTier.append(1, base + 10_000 + i * 1000L, i);
+        }
+        long coveredFrom = hotTier.coveredFrom(1);
+        hotTier.append(1, base, -1);
+        assertEquals(coveredFrom, hotTier.coveredFrom(1));
+        assertEquals(CAPACITY, scan(1, coveredFrom, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void seriesBeyondBudgetIsNotTracked() {
+        // 只够一个序列的区域
+        HotTier small = newHotTier(16 + CAPACITY * 16);
+        small.append(1, base, 1);
+        small.append(2, base, 2);
+        assertEquals(1, small.getTrackedSeries());
+        assertEquals(Long.MAX_VALUE, small.coveredFrom(2));
+        assertEquals(-1, small.scan(2, base, base, (ts, value) -> { }));
+        assertEquals(1, small.scan(1, base, base, (ts, value) -> { }));
+    }
+
+    @Test
+    void rangeBeforeStartIsNotCovered() {
+        assertEquals(-1, hotTier.scan(1, base - 3_600_000, base, (ts, value) -> { }));
+    }
+
+    private static HotTier newHotTier(long maxBytes) {
+        HotTier hotTier = new HotTier();
+        ReflectionTestUtils.setField(hotTier, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hotTier, "hours", 1);
+        ReflectionTestUtils.setField(hotTier, "minIntervalMs", 3_600_000L / CAPACITY);
+        ReflectionTestUtils.setField(hotTier, "maxBytes", maxBytes);
+        hotTier.init();
+        return hotTier;
+    }
+
+    private List<long[]> scan(int seriesId, long fromMs, long toMs) {
+        List<long[]> samples = new ArrayList<>();
+        int n = hotTier.scan(seriesId, fromMs, toMs,
+                (ts, value) -> samples.add(new long[]{ts, Double.doubleToLongBits(value)}));
+        assertEquals(samples.size(), n);
+        return samples;
+    }
+
+    private static List<Long> timestamps(List<long[]> samples) {
+        return samples.stream().map(s -> s[0]).toList();
+    }
+
+    private static List<Double> values(List<long[]> samples) {
+        return samples.stream().map(s -> Double.longBitsToDouble(s[1])).toList();
+    }
+}
@@ -0,0 +1,175 @@
+package com.monitor.monitoring_platform.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 范围查询缓存：窗口滑动时复用已缓存的桶、丢弃缓存时截短覆盖范围、计算期间发生丢弃时不写回缓存
+ */
+class RangeQueryCacheTest {
+
+    private static final long STEP = 60_000;
+    // 按步长对齐，且早于 now - late-grace-ms，所有桶都已关闭
+    private static final long BASE = 28_000_000L * STEP;
+    private static final int SERIES = 7;
+
+    private RangeQueryCache cache;
+    private RecordingLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RangeQueryCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBuckets", 200_000L);
+        ReflectionTestUtils.setField(cache, "lateGraceMs", 60_000L);
+        cache.init();
+        loader = new RecordingLoader();
+    }
+
+    @Test
+    void slidingWindowReusesCachedBuckets() {
+        List<RollupAccumulator> first = query(BASE, BASE + 10 * STEP);
+        assertStarts(first, BASE, 10);
+        assertEquals(List.of(range(BASE, BASE + 10 * STEP)), loader.takeCalls());
+        assertEquals(10L, cache.getBucketCount());
+
+        // 向前滑动两步：只计算新增的两个桶，重叠部分是同一批对象
+        List<RollupAccumulator> second = query(BASE + 2 * STEP, BASE + 12 * STEP);
+        assertStarts(second, BASE + 2 * STEP, 10);
+        assertEquals(List.of(range(BASE + 10 * STEP, BASE + 12 * STEP)), loader.takeCalls());
+        for (int i = 0; i < 8; i++) {
+            assertSame(first.get(i + 2), second.get(i));
+        }
+        assertEquals(12L, cache.getBucketCount());
+
+        // 完全命中
+        List<RollupAccumulator> third = query(BASE + 2 * STEP, BASE + 12 * STEP);
+        assertEquals(List.of(), loader.takeCalls());
+        for (int i = 0; i < 10; i++) {
+            assertSame(second.get(i), third.get(i));
+        }
+
+        // 起点不对齐：不完整的首桶单独计算，不进缓存
+        List<RollupAccumulator> unaligned = query(BASE + 3 * STEP - 1000, BASE + 5 * STEP);
+        assertEquals(List.of(range(BASE + 3 * STEP - 1000, BASE + 3 * STEP)), loader.takeCalls());
+        assertSame(second.get(1), unaligned.get(1));
+        assertEquals(12L, cache.getBucketCount());
+    }
+
+    @Test
+    void openTailIsRecomputedEveryTime() {
+        long now = System.currentTimeMillis();
+        long closedTo = Math.floorDiv(now - 60_000, STEP) * STEP;
+        long from = closedTo - 5 * STEP;
+        query(from, now);
+        loader.takeCalls();
+
+        query(from, now + 1);
+        List<List<Long>> calls = loader.takeCalls();
+        assertTrue(!calls.isEmpty());
+        for (List<Long> call : calls) {
+            assertTrue(call.get(0) >= closedTo, "只重新计算未关闭的尾部");
+        }
+    }
+
+    @Test
+    void invalidateTrimsCoveredRange() {
+        query(BASE, BASE + 10 * STEP);
+        cache.aggregate(SERIES + 1, null, STEP, BASE, BASE + 10 * STEP, loader);
+        loader.takeCalls();
+        assertEquals(20L, cache.getBucketCount());
+
+        // 迟到样本落在第 5 个桶内：该桶起的缓存丢弃，其他序列不受影响
+        cache.invalidate(Map.of(SERIES, BASE + 5 * STEP + 123));
+        assertEquals(15L, cache.getBucketCount());
+        query(BASE, BASE + 10 * STEP);
+        assertEquals(List.of(range(BASE + 5 * STEP, BASE + 10 * STEP)), loader.takeCalls());
+        cache.aggregate(SERIES + 1, null, STEP, BASE, BASE + 10 * STEP, loader);
+        assertEquals(List.of(), loader.takeCalls());
+
+        // 早于整段的起点：整段丢弃
+        cache.invalidate(Map.of(SERIES, BASE - STEP));
+        assertEquals(10L, cache.getBucketCount());
+        query(BASE, BASE + 10 * STEP);
+        assertEquals(List.of(range(BASE, BASE + 10 * STEP)), loader.takeCalls());
+    }
+
+    @Test
+    void storeOverlappingInvalidationIsDiscarded() {
+        // 计算期间有迟到样本写入：这次的结果照常返回，但不能写进缓存
+        loader.during = () -> cache.invalidate(Map.of(SERIES, BASE));
+        List<RollupAccumulator> result = query(BASE, BASE + 10 * STEP);
+        assertStarts(result, BASE, 10);
+        assertEquals(0L, cache.getBucketCount());
+
+        loader.during = null;
+        loader.takeCalls();
+        query(BASE, BASE + 10 * STEP);
+        assertEquals(List.of(range(BASE, BASE + 10 * STEP)), loader.takeCalls());
+        assertEquals(10L, cache.getBucketCount());
+
+        // 扩展已有段时同样适用，clear 也会使进行中的计算作废
+        loader.during = cache::clear;
+        query(BASE, BASE + 12 * STEP);
+        assertEquals(0L, cache.getBucketCount());
+        loader.during = null;
+        loader.takeCalls();
+        query(BASE + 2 * STEP, BASE + 12 * STEP);
+        assertEquals(List.of(range(BASE + 2 * STEP, BASE + 12 * STEP)), loader.takeCalls());
+    }
+
+    private List<RollupAccumulator> query(long fromMs, long toMs) {
+        return cache.aggregate(SERIES, null, STEP, fromMs, toMs, loader);
+    }
+
+    private static void assertStarts(List<RollupAccumulator> buckets, long from, int count) {
+        assertEquals(count, buckets.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(from + i * STEP, buckets.get(i).getStart());
+        }
+    }
+
+    private static List<Long> range(long from, long to) {
+        return List.of(from, to);
+    }
+
+    /**
+     * 每个对齐的桶新建一个累加器（不完整的首桶以查询起点为起始），并记录调用的区间
+     */
+    private static final class RecordingLoader implements RangeQueryCache.BucketLoader {
+        private final List<List<Long>> calls = new ArrayList<>();
+        private Runnable during;
+
+        @Override
+        public List<RollupAccumulator> load(long fromMs, long toMs) {
+            calls.add(range(fromMs, toMs));
+            if (during != null) {
+                during.run();
+            }
+            List<RollupAccumulator> buckets = new ArrayList<>();
+            for (long start = fromMs; start < toMs; start = Math.floorDiv(start, STEP) * STEP + STEP) {
+                RollupAccumulator bucket = new RollupAccumulator(start);
+                bucket.add(start, start / STEP);
+                buckets.add(bucket);
+            }
+            return buckets;
+        }
+
+        List<List<Long>> takeCalls() {
+            List<List<Long>> taken = new ArrayList<>(calls);
+            calls.clear();
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.monitor.monitoring_platform.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 段文件写入后重新映射打开，索引和样本与写入前一致
+ */
+class SegmentTest {
+
+    private static final long BLOCK = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeThenReopen() throws IOException {
+        long[] ts1 = {BLOCK, BLOCK + 1000, BLOCK + 2000, BLOCK + 3500};
+        double[] v1 = {1.5, Double.NaN, -0.0, 99.99};
+        long[] ts2 = {BLOCK + 500, BLOCK + 60_500};
+        double[] v2 = {Math.PI, Double.NEGATIVE_INFINITY};
+        Chunk chunk1 = seal(3, ts1, v1);
+        Chunk chunk2 = seal(9, ts2, v2);
+
+        Segment written = Segment.write(dir, BLOCK, 2, List.of(chunk1, chunk2));
+        assertEquals(dir.resolve(BLOCK + "-2.seg"), written.getPath());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(written.getPath()), files.toList(), "临时文件已改名");
+        }
+
+        Segment reopened = Segment.open(written.getPath());
+        assertEquals(BLOCK, reopened.getBlockStart());
+        assertEquals(BLOCK + 60_500, reopened.getMaxTimestamp());
+        assertEquals(Files.size(written.getPath()), reopened.getSizeBytes());
+        assertEquals(2, Segment.parseSequence(reopened.getPath()));
+        assertEquals(2, reopened.getChunks().size());
+
+        Chunk first = reopened.getChunks().get(0);
+        assertEquals(3, first.getSeriesId());
+        assertEquals(BLOCK, first.getMinTimestamp());
+        assertEquals(BLOCK + 3500, first.getMaxTimestamp());
+        assertEquals(BLOCK + 3500, first.getLastTimestamp());
+        assertEquals(99.99, first.getLastValue());
+        assertEquals(chunk1.getLength(), first.getLength());
+        ChunkCodecTest.assertSamples(first, ts1, v1);
+
+        Chunk second = reopened.getChunks().get(1);
+        assertEquals(9, second.getSeriesId());
+        assertEquals(2, second.getCount());
+        ChunkCodecTest.assertSamples(second, ts2, v2);
+    }
+
+    @Test
+    void emptySegmentReopens() throws IOException {
+        Segment segment = Segment.open(Segment.write(dir, BLOCK, 0, List.of()).getPath());
+        assertTrue(segment.getChunks().isEmpty());
+        assertEquals(Long.MIN_VALUE, segment.getMaxTimestamp());
+    }
+
+    @Test
+    void truncatedSegmentIsRejected() throws IOException {
+        Path path = Segment.write(dir, BLOCK, 1, List.of(seal(1, new long[]{BLOCK}, new double[]{1}))).getPath();
+        byte[] bytes = Files.readAllBytes(path);
+        Path truncated = dir.resolve(Segment.fileName(BLOCK, 5));
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> Segment.open(truncated));
+
+        Path tiny = dir.resolve(Segment.fileName(BLOCK, 6));
+        Files.write(tiny, new byte[]{'M', 'S', 'E', 'G'});
+        assertThrows(IOException.class, () -> Segment.open(tiny));
+    }
+
+    private static Chunk seal(int seriesId, long[] timestamps, double[] values) {
+        ChunkEncoder encoder = new ChunkEncoder(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        return encoder.seal(seriesId);
+    }
+}